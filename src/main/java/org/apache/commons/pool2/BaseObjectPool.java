@@ -16,6 +16,9 @@
  */
 package org.apache.commons.pool2;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * A simple base implementation of {@link ObjectPool}.
  * Optional operations are implemented to either do nothing, return a value
@@ -27,7 +30,7 @@ package org.apache.commons.pool2;
  *
  * @since 2.0
  */
-public abstract class BaseObjectPool<T> extends BaseObject implements ObjectPool<T> {
+public abstract class BaseObjectPool<T> extends BaseObject implements BatchObjectPool<T> {
 
     @Override
     public abstract T borrowObject() throws Exception;
@@ -38,6 +41,28 @@ public abstract class BaseObjectPool<T> extends BaseObject implements ObjectPool
     @Override
     public abstract void invalidateObject(T obj) throws Exception;
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This base implementation borrows the instances one at a time using
+     * {@link #borrowObject()} and ignores <code>maxWaitMillis</code>.
+     */
+    @Override
+    public List<T> borrowObjects(final int n, final long maxWaitMillis) throws Exception {
+        return PoolUtils.borrowEach(this, n);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This base implementation returns the instances one at a time using
+     * {@link #returnObject(Object)}.
+     */
+    @Override
+    public void returnObjects(final Collection<T> objs) throws Exception {
+        PoolUtils.returnEach(this, objs);
+    }
+
     /**
      * Not supported in this base implementation.
      *
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link KeyedObjectPool} that can borrow and return several instances for
+ * a key in a single operation. Pools that do not implement this interface may
+ * be used in the same way via
+ * {@link PoolUtils#borrowObjects(KeyedObjectPool, Object, int, long)} and
+ * {@link PoolUtils#returnObjects(KeyedObjectPool, Object, Collection)}, which
+ * borrow and return the instances one at a time.
+ *
+ * @param <K> The type of keys maintained by this pool.
+ * @param <V> Type of element pooled in this pool.
+ *
+ * @see KeyedObjectPool
+ * @since 2.6.1
+ */
+public interface BatchKeyedObjectPool<K, V> extends KeyedObjectPool<K, V> {
+
+    /**
+     * Obtains <code>n</code> instances from this pool for the specified
+     * <code>key</code> in a single operation.
+     * <p>
+     * Either all <code>n</code> instances are borrowed or none are. If an
+     * instance cannot be obtained, any instances already obtained by this call
+     * are returned to the pool before the exception is thrown.
+     * </p>
+     * <p>
+     * By contract, clients <strong>must</strong> return each borrowed object
+     * using {@link #returnObject returnObject},
+     * {@link #returnObjects returnObjects},
+     * {@link #invalidateObject invalidateObject}, or a related method as
+     * defined in an implementation or sub-interface, using a <code>key</code>
+     * that is {@link Object#equals equivalent} to the one used to borrow the
+     * instances in the first place.
+     * </p>
+     *
+     * @param key the key used to obtain the objects
+     * @param n the number of instances to obtain
+     * @param maxWaitMillis the maximum time in milliseconds to wait for all of
+     *        the instances to become available, if the pool waits when
+     *        exhausted. A negative value means wait indefinitely.
+     *        Implementations that do not support a wait time may ignore this.
+     *
+     * @return a list of <code>n</code> instances from this pool.
+     *
+     * @throws IllegalArgumentException
+     *              if <code>n</code> is negative
+     * @throws IllegalStateException
+     *              after {@link #close close} has been called on this pool
+     * @throws Exception
+     *              when {@link KeyedPooledObjectFactory#makeObject
+     *              makeObject} throws an exception
+     * @throws NoSuchElementException
+     *              when the pool is exhausted and cannot or will not return
+     *              enough instances
+     *
+     * @since 2.6.1
+     */
+    List<V> borrowObjects(K key, int n, long maxWaitMillis) throws Exception,
+            NoSuchElementException, IllegalStateException;
+
+    /**
+     * Return several instances to the pool in a single operation. By contract,
+     * each instance <strong>must</strong> have been obtained using
+     * {@link #borrowObject borrowObject}, {@link #borrowObjects borrowObjects}
+     * or a related method as defined in an implementation or sub-interface
+     * using a <code>key</code> that is equivalent to the one used to borrow
+     * the instances in the first place.
+     * <p>
+     * An attempt is made to return every instance even if returning one of
+     * them fails. The first failure is then thrown.
+     * </p>
+     *
+     * @param key the key used to obtain the objects
+     * @param objs {@link #borrowObject borrowed} instances to be returned.
+     *
+     * @throws IllegalStateException
+     *              if an attempt is made to return an object to the pool that
+     *              is in any state other than allocated (i.e. borrowed).
+     *
+     * @throws Exception if an instance cannot be returned to the pool
+     *
+     * @since 2.6.1
+     */
+    void returnObjects(K key, Collection<V> objs) throws Exception;
+}
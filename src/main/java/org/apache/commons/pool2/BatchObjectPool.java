@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link ObjectPool} that can borrow and return several instances in a
+ * single operation. Pools that do not implement this interface may be used
+ * in the same way via {@link PoolUtils#borrowObjects(ObjectPool, int, long)}
+ * and {@link PoolUtils#returnObjects(ObjectPool, Collection)}, which borrow
+ * and return the instances one at a time.
+ *
+ * @param <T> Type of element pooled in this pool.
+ *
+ * @see ObjectPool
+ * @since 2.6.1
+ */
+public interface BatchObjectPool<T> extends ObjectPool<T> {
+
+    /**
+     * Obtains <code>n</code> instances from this pool in a single operation.
+     * <p>
+     * Either all <code>n</code> instances are borrowed or none are. If an
+     * instance cannot be obtained, any instances already obtained by this call
+     * are returned to the pool before the exception is thrown.
+     * </p>
+     * <p>
+     * By contract, clients <strong>must</strong> return each borrowed instance
+     * using {@link #returnObject}, {@link #returnObjects},
+     * {@link #invalidateObject}, or a related method as defined in an
+     * implementation or sub-interface.
+     * </p>
+     *
+     * @param n the number of instances to obtain
+     * @param maxWaitMillis the maximum time in milliseconds to wait for all of
+     *        the instances to become available, if the pool waits when
+     *        exhausted. A negative value means wait indefinitely.
+     *        Implementations that do not support a wait time may ignore this.
+     *
+     * @return a list of <code>n</code> instances from this pool.
+     *
+     * @throws IllegalArgumentException
+     *              if <code>n</code> is negative.
+     * @throws IllegalStateException
+     *              after {@link #close close} has been called on this pool.
+     * @throws Exception
+     *              when {@link PooledObjectFactory#makeObject} throws an
+     *              exception.
+     * @throws NoSuchElementException
+     *              when the pool is exhausted and cannot or will not return
+     *              enough instances.
+     *
+     * @since 2.6.1
+     */
+    List<T> borrowObjects(int n, long maxWaitMillis) throws Exception,
+            NoSuchElementException, IllegalStateException;
+
+    /**
+     * Returns several instances to the pool in a single operation. By
+     * contract, each instance <strong>must</strong> have been obtained using
+     * {@link #borrowObject()}, {@link #borrowObjects(int, long)} or a related
+     * method as defined in an implementation or sub-interface.
+     * <p>
+     * An attempt is made to return every instance even if returning one of
+     * them fails. The first failure is then thrown.
+     * </p>
+     *
+     * @param objs {@link #borrowObject borrowed} instances to be returned.
+     *
+     * @throws IllegalStateException
+     *              if an attempt is made to return an object to the pool that
+     *              is in any state other than allocated (i.e. borrowed).
+     *
+     * @throws Exception if an instance cannot be returned to the pool
+     *
+     * @since 2.6.1
+     */
+    void returnObjects(Collection<T> objs) throws Exception;
+}
@@ -16,10 +16,12 @@
  */
 package org.apache.commons.pool2;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Timer;
@@ -289,6 +291,195 @@ public final class PoolUtils {
         }
     }
 
+    /**
+     * Obtains <code>n</code> instances from <code>pool</code>, using
+     * {@link BatchObjectPool#borrowObjects(int, long)} if the pool supports it
+     * and otherwise borrowing the instances one at a time with
+     * {@link ObjectPool#borrowObject()}, in which case
+     * <code>maxWaitMillis</code> is ignored. Either way, either all
+     * <code>n</code> instances are borrowed or none are.
+     *
+     * @param pool the pool to borrow from
+     * @param n the number of instances to obtain
+     * @param maxWaitMillis the maximum time in milliseconds to wait for all of
+     *        the instances
+     * @param <T> the type of objects in the pool
+     * @return a list of <code>n</code> instances from the pool
+     * @throws Exception if the instances cannot be obtained
+     * @since 2.6.1
+     */
+    public static <T> List<T> borrowObjects(final ObjectPool<T> pool, final int n,
+            final long maxWaitMillis) throws Exception {
+        if (pool instanceof BatchObjectPool) {
+            return ((BatchObjectPool<T>) pool).borrowObjects(n, maxWaitMillis);
+        }
+        return borrowEach(pool, n);
+    }
+
+    /**
+     * Returns several instances to <code>pool</code>, using
+     * {@link BatchObjectPool#returnObjects(Collection)} if the pool supports
+     * it and otherwise returning the instances one at a time with
+     * {@link ObjectPool#returnObject(Object)}. Either way, an attempt is made
+     * to return every instance and the first failure is then thrown.
+     *
+     * @param pool the pool to return the instances to
+     * @param objs the instances to return
+     * @param <T> the type of objects in the pool
+     * @throws Exception if an instance cannot be returned
+     * @since 2.6.1
+     */
+    public static <T> void returnObjects(final ObjectPool<T> pool, final Collection<T> objs)
+            throws Exception {
+        if (pool instanceof BatchObjectPool) {
+            ((BatchObjectPool<T>) pool).returnObjects(objs);
+        } else {
+            returnEach(pool, objs);
+        }
+    }
+
+    /**
+     * Obtains <code>n</code> instances for <code>key</code> from
+     * <code>keyedPool</code>, using
+     * {@link BatchKeyedObjectPool#borrowObjects(Object, int, long)} if the
+     * pool supports it and otherwise borrowing the instances one at a time
+     * with {@link KeyedObjectPool#borrowObject(Object)}, in which case
+     * <code>maxWaitMillis</code> is ignored. Either way, either all
+     * <code>n</code> instances are borrowed or none are.
+     *
+     * @param keyedPool the pool to borrow from
+     * @param key the key used to obtain the objects
+     * @param n the number of instances to obtain
+     * @param maxWaitMillis the maximum time in milliseconds to wait for all of
+     *        the instances
+     * @param <K> the type of the pool key
+     * @param <V> the type of pool entries
+     * @return a list of <code>n</code> instances from the pool
+     * @throws Exception if the instances cannot be obtained
+     * @since 2.6.1
+     */
+    public static <K, V> List<V> borrowObjects(final KeyedObjectPool<K, V> keyedPool,
+            final K key, final int n, final long maxWaitMillis) throws Exception {
+        if (keyedPool instanceof BatchKeyedObjectPool) {
+            return ((BatchKeyedObjectPool<K, V>) keyedPool).borrowObjects(key, n, maxWaitMillis);
+        }
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        final List<V> borrowed = new ArrayList<>(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                borrowed.add(keyedPool.borrowObject(key));
+            }
+        } catch (final Exception e) {
+            for (final V obj : borrowed) {
+                try {
+                    keyedPool.returnObject(key, obj);
+                } catch (final Exception e1) {
+                    // Ignore - the borrow failure is more important
+                }
+            }
+            throw e;
+        }
+        return borrowed;
+    }
+
+    /**
+     * Returns several instances for <code>key</code> to
+     * <code>keyedPool</code>, using
+     * {@link BatchKeyedObjectPool#returnObjects(Object, Collection)} if the
+     * pool supports it and otherwise returning the instances one at a time
+     * with {@link KeyedObjectPool#returnObject(Object, Object)}. Either way,
+     * an attempt is made to return every instance and the first failure is
+     * then thrown.
+     *
+     * @param keyedPool the pool to return the instances to
+     * @param key the key used to obtain the objects
+     * @param objs the instances to return
+     * @param <K> the type of the pool key
+     * @param <V> the type of pool entries
+     * @throws Exception if an instance cannot be returned
+     * @since 2.6.1
+     */
+    public static <K, V> void returnObjects(final KeyedObjectPool<K, V> keyedPool,
+            final K key, final Collection<V> objs) throws Exception {
+        if (keyedPool instanceof BatchKeyedObjectPool) {
+            ((BatchKeyedObjectPool<K, V>) keyedPool).returnObjects(key, objs);
+            return;
+        }
+        Exception failure = null;
+        for (final V obj : objs) {
+            try {
+                keyedPool.returnObject(key, obj);
+            } catch (final Exception e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Borrows <code>n</code> instances from <code>pool</code> one at a time,
+     * returning any already borrowed if one cannot be obtained.
+     *
+     * @param pool the pool to borrow from
+     * @param n the number of instances to obtain
+     * @param <T> the type of objects in the pool
+     * @return a list of <code>n</code> instances from the pool
+     * @throws Exception if the instances cannot be obtained
+     */
+    static <T> List<T> borrowEach(final ObjectPool<T> pool, final int n) throws Exception {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        final List<T> borrowed = new ArrayList<>(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                borrowed.add(pool.borrowObject());
+            }
+        } catch (final Exception e) {
+            for (final T obj : borrowed) {
+                try {
+                    pool.returnObject(obj);
+                } catch (final Exception e1) {
+                    // Ignore - the borrow failure is more important
+                }
+            }
+            throw e;
+        }
+        return borrowed;
+    }
+
+    /**
+     * Returns instances to <code>pool</code> one at a time, attempting to
+     * return every instance before throwing the first failure.
+     *
+     * @param pool the pool to return the instances to
+     * @param objs the instances to return
+     * @param <T> the type of objects in the pool
+     * @throws Exception if an instance cannot be returned
+     */
+    static <T> void returnEach(final ObjectPool<T> pool, final Collection<T> objs)
+            throws Exception {
+        Exception failure = null;
+        for (final T obj : objs) {
+            try {
+                pool.returnObject(obj);
+            } catch (final Exception e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
     /**
      * Returns a synchronized (thread-safe) ObjectPool backed by the specified
      * ObjectPool.
@@ -724,7 +915,7 @@ public final class PoolUtils {
      *
      * @param <T> type of objects in the pool
      */
-    private static final class SynchronizedObjectPool<T> implements ObjectPool<T> {
+    private static final class SynchronizedObjectPool<T> implements BatchObjectPool<T> {
 
         /**
          * Object whose monitor is used to synchronize methods on the wrapped
@@ -767,6 +958,37 @@ public final class PoolUtils {
             }
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<T> borrowObjects(final int n, final long maxWaitMillis)
+                throws Exception, NoSuchElementException, IllegalStateException {
+            final WriteLock writeLock = readWriteLock.writeLock();
+            writeLock.lock();
+            try {
+                return PoolUtils.borrowObjects(pool, n, maxWaitMillis);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void returnObjects(final Collection<T> objs) {
+            final WriteLock writeLock = readWriteLock.writeLock();
+            writeLock.lock();
+            try {
+                PoolUtils.returnObjects(pool, objs);
+            } catch (final Exception e) {
+                // swallowed as of Pool 2
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -901,7 +1123,7 @@ public final class PoolUtils {
      * @param <V> object pool value type
      */
     private static final class SynchronizedKeyedObjectPool<K, V> implements
-            KeyedObjectPool<K, V> {
+            BatchKeyedObjectPool<K, V> {
 
         /**
          * Object whose monitor is used to synchronize methods on the wrapped
@@ -944,6 +1166,37 @@ public final class PoolUtils {
             }
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<V> borrowObjects(final K key, final int n, final long maxWaitMillis)
+                throws Exception, NoSuchElementException, IllegalStateException {
+            final WriteLock writeLock = readWriteLock.writeLock();
+            writeLock.lock();
+            try {
+                return PoolUtils.borrowObjects(keyedPool, key, n, maxWaitMillis);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void returnObjects(final K key, final Collection<V> objs) {
+            final WriteLock writeLock = readWriteLock.writeLock();
+            writeLock.lock();
+            try {
+                PoolUtils.returnObjects(keyedPool, key, objs);
+            } catch (final Exception e) {
+                // swallowed
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -1420,7 +1673,7 @@ public final class PoolUtils {
      *
      * @param <T> type of objects in the pool
      */
-    private static class ErodingObjectPool<T> implements ObjectPool<T> {
+    private static class ErodingObjectPool<T> implements BatchObjectPool<T> {
 
         /** Underlying object pool */
         private final ObjectPool<T> pool;
@@ -1453,6 +1706,29 @@ public final class PoolUtils {
             return pool.borrowObject();
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<T> borrowObjects(final int n, final long maxWaitMillis)
+                throws Exception, NoSuchElementException, IllegalStateException {
+            return PoolUtils.borrowObjects(pool, n, maxWaitMillis);
+        }
+
+        /**
+         * Returns each object to the pool using {@link #returnObject(Object)}
+         * so that erosion is applied to each object in turn.
+         *
+         * @param objs
+         *            objects to return or invalidate
+         */
+        @Override
+        public void returnObjects(final Collection<T> objs) {
+            for (final T obj : objs) {
+                returnObject(obj);
+            }
+        }
+
         /**
          * Returns obj to the pool, unless erosion is triggered, in which case
          * obj is invalidated. Erosion is triggered when there are idle
@@ -1566,7 +1842,7 @@ public final class PoolUtils {
      * @param <V> object pool value type
      */
     private static class ErodingKeyedObjectPool<K, V> implements
-            KeyedObjectPool<K, V> {
+            BatchKeyedObjectPool<K, V> {
 
         /** Underlying pool */
         private final KeyedObjectPool<K, V> keyedPool;
@@ -1620,6 +1896,34 @@ public final class PoolUtils {
             return keyedPool.borrowObject(key);
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<V> borrowObjects(final K key, final int n, final long maxWaitMillis)
+                throws Exception, NoSuchElementException, IllegalStateException {
+            return PoolUtils.borrowObjects(keyedPool, key, n, maxWaitMillis);
+        }
+
+        /**
+         * Returns each object to the pool using
+         * {@link #returnObject(Object, Object)} so that erosion is applied to
+         * each object in turn.
+         *
+         * @param key
+         *            key
+         * @param objs
+         *            objects to return or invalidate
+         * @throws Exception
+         *             not thrown by this implementation
+         */
+        @Override
+        public void returnObjects(final K key, final Collection<V> objs) throws Exception {
+            for (final V obj : objs) {
+                returnObject(key, obj);
+            }
+        }
+
         /**
          * Returns obj to the pool, unless erosion is triggered, in which case
          * obj is invalidated. Erosion is triggered when there are idle
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2;
+
+/**
+ * Estimates the memory retained by pooled objects so that pools can limit
+ * the total size of the objects they hold as well as their number.
+ * <p>
+ * Implementations should be cheap to call as objects are measured when they
+ * are created and each time they are returned to the pool. They must be
+ * thread-safe.
+ * </p>
+ *
+ * @param <T> Type of element managed by the pool.
+ *
+ * @see org.apache.commons.pool2.impl.GenericObjectPool#getMaxTotalBytes()
+ * @see org.apache.commons.pool2.impl.GenericObjectPool#getMaxIdleBytes()
+ * @since 2.6.1
+ */
+public interface PooledObjectSizer<T> {
+
+    /**
+     * Estimate the number of bytes retained by an instance.
+     *
+     * @param p a {@code PooledObject} wrapping the instance to be measured
+     *
+     * @return the estimated retained size in bytes
+     */
+    long sizeOf(PooledObject<T> p);
+}
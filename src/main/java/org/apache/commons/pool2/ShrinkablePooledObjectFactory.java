@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2;
+
+/**
+ * A {@link PooledObjectFactory} for objects that can release some of the
+ * memory they hold while they are idle, for example by discarding internal
+ * buffers that are recreated on demand.
+ * <p>
+ * Pools that trim their idle objects when the heap is running low call
+ * {@link #shrinkObject(PooledObject)} on each object they would otherwise
+ * destroy. Objects that are shrunk stay in the pool.
+ * </p>
+ *
+ * @param <T> Type of element managed by this factory.
+ *
+ * @see org.apache.commons.pool2.impl.GenericObjectPool#getMemoryPressureThreshold()
+ * @since 2.6.1
+ */
+public interface ShrinkablePooledObjectFactory<T> extends PooledObjectFactory<T> {
+
+    /**
+     * Reduce the memory held by an idle instance. Only called on passivated
+     * instances that are not in use.
+     *
+     * @param p a {@code PooledObject} wrapping the instance to be shrunk
+     *
+     * @return {@code true} if the instance was shrunk and should be kept,
+     *         {@code false} if it should be destroyed instead
+     *
+     * @throws Exception if there is a problem shrinking the instance, in
+     *    which case it is destroyed
+     */
+    boolean shrinkObject(PooledObject<T> p) throws Exception;
+}
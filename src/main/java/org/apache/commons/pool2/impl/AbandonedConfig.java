@@ -206,6 +206,86 @@ public class AbandonedConfig {
         this.requireFullStackTrace = requireFullStackTrace;
     }
 
+    /**
+     * Whether objects borrowed via a lease are removed as soon as the lease
+     * becomes unreachable without having been released.
+     *
+     * @since 2.6.1
+     */
+    private boolean removeUnreachableLeases = false;
+
+    /**
+     * Flag to remove objects borrowed via
+     * {@link GenericObjectPool#borrowLease(long) borrowLease} when the lease
+     * becomes unreachable without the object having been returned or
+     * invalidated. Such objects are invalidated, and logged if
+     * {@link #getLogAbandoned() logAbandoned} is true, on the first borrow or
+     * maintenance run after the garbage collector has found the lease to be
+     * unreachable, regardless of the
+     * {@link #getRemoveAbandonedTimeout() removeAbandonedTimeout}.
+     * <p>
+     * When enabled, a lease must remain reachable for as long as the borrowed
+     * object is in use.
+     *
+     * @return true if objects with an unreachable lease are removed
+     * @see PooledObjectLease
+     * @since 2.6.1
+     */
+    public boolean getRemoveUnreachableLeases() {
+        return removeUnreachableLeases;
+    }
+
+    /**
+     * Sets the flag to remove objects borrowed via a lease when the lease
+     * becomes unreachable without the object having been returned or
+     * invalidated.
+     *
+     * @param removeUnreachableLeases true means objects with an unreachable
+     *                                lease are removed
+     * @see #getRemoveUnreachableLeases()
+     * @since 2.6.1
+     */
+    public void setRemoveUnreachableLeases(final boolean removeUnreachableLeases) {
+        this.removeUnreachableLeases = removeUnreachableLeases;
+    }
+
+    /**
+     * The fraction of borrows (and uses, if usage tracking is enabled) that
+     * record a stack trace when logAbandoned is true.
+     *
+     * @since 2.6.1
+     */
+    private double stackTraceSampleRate = 1.0;
+
+    /**
+     * Gets the fraction of borrows (and uses, if
+     * {@link #getUseUsageTracking() usage tracking} is enabled) that record a
+     * stack trace when {@link #getLogAbandoned() logAbandoned} is true.
+     * Defaults to 1, which records every stack trace. Lower values reduce the
+     * cost of abandoned object logging at the price of abandoned objects
+     * sometimes being reported without the code that borrowed them.
+     *
+     * @return the fraction, between 0 and 1, of stack traces recorded
+     * @see SampledCallStack
+     * @since 2.6.1
+     */
+    public double getStackTraceSampleRate() {
+        return stackTraceSampleRate;
+    }
+
+    /**
+     * Sets the fraction of borrows (and uses, if usage tracking is enabled)
+     * that record a stack trace when logAbandoned is true.
+     *
+     * @param stackTraceSampleRate the fraction, between 0 and 1, of stack
+     *                             traces to record
+     * @see #getStackTraceSampleRate()
+     * @since 2.6.1
+     */
+    public void setStackTraceSampleRate(final double stackTraceSampleRate) {
+        this.stackTraceSampleRate = stackTraceSampleRate;
+    }
+
     /**
      * PrintWriter to use to log information on abandoned objects.
      * Use of default system encoding is deliberate.
@@ -283,6 +363,10 @@ public class AbandonedConfig {
         builder.append(logWriter);
         builder.append(", useUsageTracking=");
         builder.append(useUsageTracking);
+        builder.append(", removeUnreachableLeases=");
+        builder.append(removeUnreachableLeases);
+        builder.append(", stackTraceSampleRate=");
+        builder.append(stackTraceSampleRate);
         builder.append("]");
         return builder.toString();
     }
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectState;
+import org.apache.commons.pool2.impl.BaseGenericObjectPool.IdentityWrapper;
+
+/**
+ * Index of the objects borrowed from a pool, ordered by the time they were
+ * last used, so that abandoned objects can be found by visiting only the
+ * objects that have not been used within the abandoned timeout rather than
+ * every object in the pool.
+ * <p>
+ * Objects are indexed when they are borrowed and removed from the index when
+ * they are returned or destroyed. Calls to {@link PooledObject#use()} and
+ * {@link org.apache.commons.pool2.TrackedUse#getLastUsed()} do not update the
+ * index, so the time an object is indexed under may be earlier than the time
+ * it was last used. Objects that turn out to have been used since they were
+ * indexed are re-indexed under their last used time when they are found, so
+ * the cost of tracking usage is only paid once per timeout.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @param <T> Type of element pooled in the pool.
+ *
+ * @since 2.6.1
+ */
+final class AbandonedIndex<T> {
+
+    private final ConcurrentSkipListSet<Entry<T>> entries = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<IdentityWrapper<PooledObject<T>>, Entry<T>> current =
+            new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    /**
+     * Indexes an object that has been borrowed under its last used time.
+     *
+     * @param p the borrowed object
+     */
+    void add(final PooledObject<T> p) {
+        final Entry<T> entry = new Entry<>(p, p.getLastUsedTime(), sequence.incrementAndGet());
+        final Entry<T> previous = current.put(new IdentityWrapper<>(p), entry);
+        if (previous != null) {
+            entries.remove(previous);
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * Removes an object that has been returned or destroyed from the index.
+     *
+     * @param p the object
+     */
+    void remove(final PooledObject<T> p) {
+        final Entry<T> entry = current.remove(new IdentityWrapper<>(p));
+        if (entry != null) {
+            entries.remove(entry);
+        }
+    }
+
+    /**
+     * Removes all objects from the index.
+     */
+    void clear() {
+        current.clear();
+        entries.clear();
+    }
+
+    /**
+     * Determines whether any object has been indexed under a time at or
+     * before the given time. Only the oldest entry is examined.
+     *
+     * @param timeout the latest last used time for an object to be
+     *                considered abandoned
+     *
+     * @return {@code true} if there may be abandoned objects
+     */
+    boolean hasCandidates(final long timeout) {
+        try {
+            return entries.first().time <= timeout;
+        } catch (final NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Marks the objects that have not been used since the given time as
+     * {@link PooledObjectState#ABANDONED ABANDONED} and removes them from the
+     * index. Only the objects indexed under a time at or before the given
+     * time are visited.
+     *
+     * @param timeout the latest last used time for an object to be
+     *                considered abandoned
+     *
+     * @return the objects that were marked as abandoned
+     */
+    List<PooledObject<T>> removeAbandoned(final long timeout) {
+        final List<PooledObject<T>> abandoned = new ArrayList<>();
+        for (final Entry<T> entry : entries) {
+            if (entry.time > timeout) {
+                // The remaining objects were used more recently
+                break;
+            }
+            final PooledObject<T> p = entry.pooledObject;
+            final IdentityWrapper<PooledObject<T>> key = new IdentityWrapper<>(p);
+            if (current.get(key) != entry) {
+                // Superseded by a concurrent update
+                entries.remove(entry);
+            } else if (BaseGenericObjectPool.markAbandoned(p, timeout)) {
+                abandoned.add(p);
+                current.remove(key, entry);
+                entries.remove(entry);
+            } else if (p.getState() == PooledObjectState.ALLOCATED) {
+                // Used since it was indexed. Never re-index at or before the
+                // timeout so that every entry is visited at most once.
+                final Entry<T> replacement = new Entry<>(p,
+                        Math.max(p.getLastUsedTime(), timeout + 1),
+                        sequence.incrementAndGet());
+                if (current.replace(key, entry, replacement)) {
+                    entries.remove(entry);
+                    entries.add(replacement);
+                }
+            }
+            // Otherwise the object is being returned, which removes it
+        }
+        return abandoned;
+    }
+
+    /**
+     * Obtains the number of objects in the index.
+     *
+     * @return the number of indexed objects
+     */
+    int size() {
+        return current.size();
+    }
+
+    /**
+     * An indexed object and the time it is indexed under. Entries with the
+     * same time are ordered by when they were created.
+     */
+    private static final class Entry<T> implements Comparable<Entry<T>> {
+
+        final PooledObject<T> pooledObject;
+        final long time;
+        private final long sequence;
+
+        Entry(final PooledObject<T> pooledObject, final long time, final long sequence) {
+            this.pooledObject = pooledObject;
+            this.time = time;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Entry<T> other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.io.PrintWriter;
+
+/**
+ * Configuration settings for automatic tuning of the sizing attributes of a
+ * {@link GenericObjectPool}.
+ * <p>
+ * When configured, the pool adjusts {@link GenericObjectPool#getMaxTotal()
+ * maxTotal}, {@link GenericObjectPool#getMaxIdle() maxIdle} and
+ * {@link GenericObjectPool#getMinIdle() minIdle} each time the evictor runs,
+ * aiming for a 99th percentile borrow wait time no greater than
+ * {@link #getTargetBorrowWaitMillis() targetBorrowWaitMillis} with as few
+ * objects as possible. Automatic tuning has no effect unless the evictor is
+ * enabled by setting
+ * {@link GenericObjectPool#getTimeBetweenEvictionRunsMillis() timeBetweenEvictionRunsMillis}
+ * to a positive number.
+ *
+ * @since 2.6.1
+ */
+public class AutoTuneConfig {
+
+    /**
+     * The target 99th percentile borrow wait time in milliseconds.
+     */
+    private long targetBorrowWaitMillis = 100;
+
+    /**
+     * <p>The target 99th percentile time in milliseconds that threads wait to
+     * borrow an object.</p>
+     *
+     * <p>The default value is 100 milliseconds.</p>
+     *
+     * @return the target borrow wait time in milliseconds
+     */
+    public long getTargetBorrowWaitMillis() {
+        return targetBorrowWaitMillis;
+    }
+
+    /**
+     * <p>Sets the target 99th percentile time in milliseconds that threads
+     * wait to borrow an object.</p>
+     *
+     * @param targetBorrowWaitMillis the target borrow wait time in
+     *                               milliseconds
+     * @see #getTargetBorrowWaitMillis()
+     */
+    public void setTargetBorrowWaitMillis(final long targetBorrowWaitMillis) {
+        this.targetBorrowWaitMillis = targetBorrowWaitMillis;
+    }
+
+    /**
+     * The lowest value automatic tuning may set maxTotal to.
+     */
+    private int minMaxTotal = 1;
+
+    /**
+     * <p>The lowest value automatic tuning may set
+     * {@link GenericObjectPool#getMaxTotal() maxTotal} to.</p>
+     *
+     * <p>The default value is 1.</p>
+     *
+     * @return the lower bound for maxTotal
+     */
+    public int getMinMaxTotal() {
+        return minMaxTotal;
+    }
+
+    /**
+     * <p>Sets the lowest value automatic tuning may set
+     * {@link GenericObjectPool#getMaxTotal() maxTotal} to.</p>
+     *
+     * @param minMaxTotal the lower bound for maxTotal
+     * @see #getMinMaxTotal()
+     */
+    public void setMinMaxTotal(final int minMaxTotal) {
+        this.minMaxTotal = minMaxTotal;
+    }
+
+    /**
+     * The highest value automatic tuning may set maxTotal to.
+     */
+    private int maxMaxTotal = 64;
+
+    /**
+     * <p>The highest value automatic tuning may set
+     * {@link GenericObjectPool#getMaxTotal() maxTotal} to. Automatic tuning
+     * never makes maxTotal unlimited.</p>
+     *
+     * <p>The default value is 64.</p>
+     *
+     * @return the upper bound for maxTotal
+     */
+    public int getMaxMaxTotal() {
+        return maxMaxTotal;
+    }
+
+    /**
+     * <p>Sets the highest value automatic tuning may set
+     * {@link GenericObjectPool#getMaxTotal() maxTotal} to.</p>
+     *
+     * @param maxMaxTotal the upper bound for maxTotal
+     * @see #getMaxMaxTotal()
+     */
+    public void setMaxMaxTotal(final int maxMaxTotal) {
+        this.maxMaxTotal = maxMaxTotal;
+    }
+
+    /**
+     * The number of tuning decisions retained in the audit log.
+     */
+    private int auditLogSize = 100;
+
+    /**
+     * <p>The number of the most recent tuning decisions retained by the pool
+     * and reported by {@link GenericObjectPool#getAutoTuneAuditLog()}.</p>
+     *
+     * <p>The default value is 100.</p>
+     *
+     * @return the number of decisions retained
+     */
+    public int getAuditLogSize() {
+        return auditLogSize;
+    }
+
+    /**
+     * <p>Sets the number of the most recent tuning decisions retained by the
+     * pool.</p>
+     *
+     * @param auditLogSize the number of decisions retained
+     * @see #getAuditLogSize()
+     */
+    public void setAuditLogSize(final int auditLogSize) {
+        this.auditLogSize = auditLogSize;
+    }
+
+    /**
+     * PrintWriter to use to log tuning decisions.
+     */
+    private PrintWriter logWriter = null;
+
+    /**
+     * Returns the log writer being used by this configuration to log tuning
+     * decisions as they are made. If not set, decisions are only retained
+     * in the pool's audit log.
+     *
+     * @return log writer in use or <code>null</code>
+     */
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    /**
+     * Sets the log writer to be used by this configuration to log tuning
+     * decisions as they are made.
+     *
+     * @param logWriter The new log writer or <code>null</code> for none
+     */
+    public void setLogWriter(final PrintWriter logWriter) {
+        this.logWriter = logWriter;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("AutoTuneConfig [targetBorrowWaitMillis=");
+        builder.append(targetBorrowWaitMillis);
+        builder.append(", minMaxTotal=");
+        builder.append(minMaxTotal);
+        builder.append(", maxMaxTotal=");
+        builder.append(maxMaxTotal);
+        builder.append(", auditLogSize=");
+        builder.append(auditLogSize);
+        builder.append(", logWriter=");
+        builder.append(logWriter);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Adjusts the sizing attributes of a {@link GenericObjectPool} from the wait
+ * and utilization statistics the pool already collects. Called by the
+ * evictor, so {@link #tune(GenericObjectPool)} is only ever called by one
+ * thread at a time.
+ * <p>
+ * Each call makes at most one kind of change:
+ * <ul>
+ * <li>If borrowers are waiting, or there have been borrows since the previous
+ * call and the 99th percentile wait time of the most recent borrows exceeds
+ * the target, the pool is under
+ * pressure. If it is exhausted, maxTotal (and maxIdle with it) is grown by a
+ * quarter. Otherwise the waits are for new objects to be created so minIdle
+ * is grown by one.</li>
+ * <li>If no borrowers are waiting and the 99th percentile borrow wait time is
+ * no more than half the target, the pool has slack. minIdle is reduced by
+ * one and, once it is zero, maxTotal (and maxIdle with it) is reduced by a
+ * quarter if fewer than half of the allowed objects are active.</li>
+ * </ul>
+ * Every change is recorded in an audit log.
+ *
+ * @since 2.6.1
+ */
+final class AutoTuner {
+
+    private final long targetBorrowWaitMillis;
+    private final int minMaxTotal;
+    private final int maxMaxTotal;
+    private final int auditLogSize;
+    private final PrintWriter logWriter;
+
+    private final ConcurrentLinkedDeque<String> auditLog = new ConcurrentLinkedDeque<>();
+    private int auditLogCount = 0; // Only the evictor modifies the log
+    private long lastBorrowedCount = -1;
+
+    /**
+     * Create a new tuner from a copy of the given configuration.
+     *
+     * @param config the configuration
+     */
+    AutoTuner(final AutoTuneConfig config) {
+        this.targetBorrowWaitMillis = config.getTargetBorrowWaitMillis();
+        this.minMaxTotal = Math.max(1, config.getMinMaxTotal());
+        this.maxMaxTotal = Math.max(this.minMaxTotal, config.getMaxMaxTotal());
+        this.auditLogSize = config.getAuditLogSize();
+        this.logWriter = config.getLogWriter();
+    }
+
+    /**
+     * Adjusts the sizing attributes of the given pool.
+     *
+     * @param pool the pool to tune
+     */
+    void tune(final GenericObjectPool<?> pool) {
+        final long borrowedCount = pool.getBorrowedCount();
+        final boolean borrowed = lastBorrowedCount >= 0 && borrowedCount > lastBorrowedCount;
+        lastBorrowedCount = borrowedCount;
+
+        // The wait times are only relevant if there have been borrows since
+        // the last run
+        final long p99Wait = borrowed ? pool.getP99BorrowWaitTimeMillis() : 0;
+        final int waiters = pool.getNumWaiters();
+        final int active = pool.getNumActive();
+        final int maxTotal = pool.getMaxTotal();
+        final int maxIdle = pool.getMaxIdle();
+        final int minIdle = pool.getMinIdle();
+
+        final String stats = "p99BorrowWaitMillis=" + p99Wait + ", numWaiters=" +
+                waiters + ", numActive=" + active + ", numIdle=" + pool.getNumIdle();
+
+        if (waiters > 0 || p99Wait > targetBorrowWaitMillis) {
+            if (maxTotal < 0 || active + waiters < maxTotal) {
+                final int limit = maxIdle < 0 ? (maxTotal < 0 ? Integer.MAX_VALUE : maxTotal) : maxIdle;
+                if (minIdle < limit) {
+                    pool.setMinIdle(minIdle + 1);
+                    record("minIdle", minIdle, minIdle + 1,
+                            "borrowers waiting for objects to be created", stats);
+                }
+            } else if (maxTotal < maxMaxTotal) {
+                final int newMaxTotal = Math.min(maxMaxTotal, maxTotal + Math.max(1, maxTotal / 4));
+                pool.setMaxTotal(newMaxTotal);
+                record("maxTotal", maxTotal, newMaxTotal, "pool exhausted", stats);
+                if (maxIdle >= 0 && maxIdle < newMaxTotal) {
+                    pool.setMaxIdle(newMaxTotal);
+                    record("maxIdle", maxIdle, newMaxTotal, "pool exhausted", stats);
+                }
+            }
+        } else if (p99Wait <= targetBorrowWaitMillis / 2) {
+            if (minIdle > 0) {
+                pool.setMinIdle(minIdle - 1);
+                record("minIdle", minIdle, minIdle - 1, "borrow wait below target", stats);
+            } else if (maxTotal < 0 || maxTotal > maxMaxTotal) {
+                // Bring an unlimited or out of bounds pool within bounds
+                shrink(pool, maxTotal, maxIdle, maxMaxTotal, stats);
+            } else if (maxTotal > minMaxTotal && active < maxTotal / 2) {
+                final int newMaxTotal = Math.max(minMaxTotal, maxTotal - Math.max(1, maxTotal / 4));
+                shrink(pool, maxTotal, maxIdle, newMaxTotal, stats);
+            }
+        }
+    }
+
+    private void shrink(final GenericObjectPool<?> pool, final int maxTotal,
+            final int maxIdle, final int newMaxTotal, final String stats) {
+        pool.setMaxTotal(newMaxTotal);
+        record("maxTotal", maxTotal, newMaxTotal, "pool under utilized", stats);
+        if (maxIdle < 0 || maxIdle > newMaxTotal) {
+            pool.setMaxIdle(newMaxTotal);
+            record("maxIdle", maxIdle, newMaxTotal, "pool under utilized", stats);
+        }
+    }
+
+    private void record(final String attribute, final int oldValue,
+            final int newValue, final String reason, final String stats) {
+        final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z");
+        final String entry = sdf.format(new Date()) + " " + attribute + " " +
+                oldValue + " -> " + newValue + ": " + reason + " [" + stats + "]";
+        auditLog.addLast(entry);
+        if (++auditLogCount > auditLogSize) {
+            auditLog.pollFirst();
+            auditLogCount--;
+        }
+        if (logWriter != null) {
+            logWriter.println(entry);
+            logWriter.flush();
+        }
+    }
+
+    /**
+     * Obtains the most recent tuning decisions, oldest first.
+     *
+     * @return the audit log
+     */
+    List<String> getAuditLog() {
+        return new ArrayList<>(auditLog);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("AutoTuner [targetBorrowWaitMillis=");
+        builder.append(targetBorrowWaitMillis);
+        builder.append(", minMaxTotal=");
+        builder.append(minMaxTotal);
+        builder.append(", maxMaxTotal=");
+        builder.append(maxMaxTotal);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -20,15 +20,33 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
@@ -39,7 +57,9 @@ import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 
 import org.apache.commons.pool2.BaseObject;
+import org.apache.commons.pool2.PoolUtils;
 import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectSizer;
 import org.apache.commons.pool2.PooledObjectState;
 import org.apache.commons.pool2.SwallowedExceptionListener;
 
@@ -72,12 +92,32 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
             BaseObjectPoolConfig.DEFAULT_BLOCK_WHEN_EXHAUSTED;
     private volatile long maxWaitMillis =
             BaseObjectPoolConfig.DEFAULT_MAX_WAIT_MILLIS;
+    private volatile int maxWaiters =
+            BaseObjectPoolConfig.DEFAULT_MAX_WAITERS;
+    private volatile long maxLifetimeMillis =
+            BaseObjectPoolConfig.DEFAULT_MAX_LIFETIME_MILLIS;
+    private volatile long maxBorrowCount =
+            BaseObjectPoolConfig.DEFAULT_MAX_BORROW_COUNT;
+    private volatile double retirementJitter =
+            BaseObjectPoolConfig.DEFAULT_RETIREMENT_JITTER;
+    private volatile PooledObjectSizer<T> objectSizer = null;
+    private volatile long maxTotalBytes =
+            BaseObjectPoolConfig.DEFAULT_MAX_TOTAL_BYTES;
+    private volatile long maxIdleBytes =
+            BaseObjectPoolConfig.DEFAULT_MAX_IDLE_BYTES;
+    private volatile double memoryPressureThreshold =
+            BaseObjectPoolConfig.DEFAULT_MEMORY_PRESSURE_THRESHOLD;
+    private volatile int memoryPressureMaxIdle =
+            BaseObjectPoolConfig.DEFAULT_MEMORY_PRESSURE_MAX_IDLE;
     private volatile boolean lifo = BaseObjectPoolConfig.DEFAULT_LIFO;
     private final boolean fairness;
+    private final boolean handOff;
     private volatile boolean testOnCreate =
             BaseObjectPoolConfig.DEFAULT_TEST_ON_CREATE;
     private volatile boolean testOnBorrow =
             BaseObjectPoolConfig.DEFAULT_TEST_ON_BORROW;
+    private volatile long validationIdleThresholdMillis =
+            BaseObjectPoolConfig.DEFAULT_VALIDATION_IDLE_THRESHOLD_MILLIS;
     private volatile boolean testOnReturn =
             BaseObjectPoolConfig.DEFAULT_TEST_ON_RETURN;
     private volatile boolean testWhileIdle =
@@ -86,6 +126,10 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
             BaseObjectPoolConfig.DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS;
     private volatile int numTestsPerEvictionRun =
             BaseObjectPoolConfig.DEFAULT_NUM_TESTS_PER_EVICTION_RUN;
+    private volatile int evictionParallelism =
+            BaseObjectPoolConfig.DEFAULT_EVICTION_PARALLELISM;
+    private volatile boolean evictAllExpired =
+            BaseObjectPoolConfig.DEFAULT_EVICT_ALL_EXPIRED;
     private volatile long minEvictableIdleTimeMillis =
             BaseObjectPoolConfig.DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
     private volatile long softMinEvictableIdleTimeMillis =
@@ -93,14 +137,20 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
     private volatile EvictionPolicy<T> evictionPolicy;
     private volatile long evictorShutdownTimeoutMillis =
             BaseObjectPoolConfig.DEFAULT_EVICTOR_SHUTDOWN_TIMEOUT_MILLIS;
+    private volatile int evictorThreadCount =
+            BaseObjectPoolConfig.DEFAULT_EVICTOR_THREAD_COUNT;
+    private volatile long evictionJitterMillis =
+            BaseObjectPoolConfig.DEFAULT_EVICTION_JITTER_MILLIS;
+    private volatile Executor replenishExecutor = null;
 
 
     // Internal (primarily state) attributes
-    final Object closeLock = new Object();
+    final Lock closeLock = new ReentrantLock();
     volatile boolean closed = false;
-    final Object evictionLock = new Object();
+    final Lock evictionLock = new ReentrantLock();
     private Evictor evictor = null; // @GuardedBy("evictionLock")
     EvictionIterator evictionIterator = null; // @GuardedBy("evictionLock")
+    private ThreadPoolExecutor evictionWorkers = null; // @GuardedBy("evictionLock")
     /*
      * Class loader for evictor thread to use since, in a JavaEE or similar
      * environment, the context class loader for the evictor thread may not have
@@ -119,10 +169,24 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
     final AtomicLong destroyedCount = new AtomicLong(0);
     final AtomicLong destroyedByEvictorCount = new AtomicLong(0);
     final AtomicLong destroyedByBorrowValidationCount = new AtomicLong(0);
+    final AtomicLong retiredCount = new AtomicLong(0);
+    final AtomicLong memoryPressureDestroyedCount = new AtomicLong(0);
+    private final AtomicLong totalBytes = new AtomicLong(0);
+    final AtomicLong memoryPressureShrunkCount = new AtomicLong(0);
     private final StatsStore activeTimes = new StatsStore(MEAN_TIMING_STATS_CACHE_SIZE);
     private final StatsStore idleTimes = new StatsStore(MEAN_TIMING_STATS_CACHE_SIZE);
     private final StatsStore waitTimes = new StatsStore(MEAN_TIMING_STATS_CACHE_SIZE);
     private final AtomicLong maxBorrowWaitTimeMillis = new AtomicLong(0L);
+    private final AtomicInteger waiterCount = new AtomicInteger(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong skippedValidationCount = new AtomicLong(0);
+    private final AtomicInteger replenishQueueDepth = new AtomicInteger(0);
+    private final StatsStore replenishLatencies = new StatsStore(MEAN_TIMING_STATS_CACHE_SIZE);
+    private final StatsStore evictionLags = new StatsStore(MEAN_TIMING_STATS_CACHE_SIZE);
+    private final StatsStore evictionRunTimes = new StatsStore(MEAN_TIMING_STATS_CACHE_SIZE);
+    private final AtomicLong maxEvictionLagMillis = new AtomicLong(0L);
+    private final DemandForecast demandForecast =
+            new DemandForecast(System.currentTimeMillis());
     private volatile SwallowedExceptionListener swallowedExceptionListener = null;
 
 
@@ -155,6 +219,7 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         }
 
         fairness = config.getFairness();
+        handOff = config.getHandOff();
     }
 
 
@@ -220,13 +285,27 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
     protected void setConfig(final BaseObjectPoolConfig<T> conf) {
         setLifo(conf.getLifo());
         setMaxWaitMillis(conf.getMaxWaitMillis());
+        setMaxWaiters(conf.getMaxWaiters());
+        setMaxLifetimeMillis(conf.getMaxLifetimeMillis());
+        setMaxBorrowCount(conf.getMaxBorrowCount());
+        setRetirementJitter(conf.getRetirementJitter());
+        setObjectSizer(conf.getObjectSizer());
+        setMaxTotalBytes(conf.getMaxTotalBytes());
+        setMaxIdleBytes(conf.getMaxIdleBytes());
+        setMemoryPressureMaxIdle(conf.getMemoryPressureMaxIdle());
+        setMemoryPressureThreshold(conf.getMemoryPressureThreshold());
         setBlockWhenExhausted(conf.getBlockWhenExhausted());
         setTestOnCreate(conf.getTestOnCreate());
         setTestOnBorrow(conf.getTestOnBorrow());
+        setValidationIdleThresholdMillis(conf.getValidationIdleThresholdMillis());
         setTestOnReturn(conf.getTestOnReturn());
         setTestWhileIdle(conf.getTestWhileIdle());
         setNumTestsPerEvictionRun(conf.getNumTestsPerEvictionRun());
+        setEvictionParallelism(conf.getEvictionParallelism());
+        setEvictAllExpired(conf.getEvictAllExpired());
         setMinEvictableIdleTimeMillis(conf.getMinEvictableIdleTimeMillis());
+        setEvictorThreadCount(conf.getEvictorThreadCount());
+        setEvictionJitterMillis(conf.getEvictionJitterMillis());
         setTimeBetweenEvictionRunsMillis(conf.getTimeBetweenEvictionRunsMillis());
         setSoftMinEvictableIdleTimeMillis(conf.getSoftMinEvictableIdleTimeMillis());
         final EvictionPolicy<T> policy = conf.getEvictionPolicy();
@@ -238,6 +317,7 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
             setEvictionPolicy(policy);
         }
         setEvictorShutdownTimeoutMillis(conf.getEvictorShutdownTimeoutMillis());
+        setReplenishExecutor(conf.getReplenishExecutor());
     }
 
     /**
@@ -275,6 +355,444 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         this.maxWaitMillis = maxWaitMillis;
     }
 
+    /**
+     * Returns the maximum number of borrowers that may wait for an object
+     * when the pool is exhausted and {@link #getBlockWhenExhausted} is true.
+     * Further borrows are rejected immediately with a
+     * {@link BorrowRejectedException}. When negative, there is no limit.
+     *
+     * @return the maximum number of waiting borrowers
+     *
+     * @see #setMaxWaiters
+     * @see #getRejectedCount()
+     * @since 2.6.1
+     */
+    public final int getMaxWaiters() {
+        return maxWaiters;
+    }
+
+    /**
+     * Sets the maximum number of borrowers that may wait for an object
+     * when the pool is exhausted and {@link #getBlockWhenExhausted} is true.
+     * Further borrows are rejected immediately with a
+     * {@link BorrowRejectedException}. Use a negative value for no limit.
+     *
+     * @param maxWaiters the maximum number of waiting borrowers or negative
+     *                   for no limit
+     *
+     * @see #getMaxWaiters
+     * @since 2.6.1
+     */
+    public final void setMaxWaiters(final int maxWaiters) {
+        this.maxWaiters = maxWaiters;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds since creation that an object
+     * is kept by the pool. Objects that reach this age are destroyed when
+     * they are returned. Idle objects that reach it are replaced by the
+     * evictor, up to {@link #getNumTestsPerEvictionRun()} per run, which
+     * adds the replacement before destroying the old object. If the pool is
+     * at capacity the old object is kept until it is next returned. Each
+     * object's lifetime is shortened
+     * by its share of {@link #getRetirementJitter() retirementJitter}. A
+     * value of zero or less means objects are kept regardless of age.
+     *
+     * @return the maximum object lifetime in milliseconds
+     *
+     * @see #setMaxLifetimeMillis
+     * @see #getRetiredCount()
+     * @since 2.6.1
+     */
+    public final long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds since creation that an object
+     * is kept by the pool.
+     *
+     * @param maxLifetimeMillis the maximum object lifetime in milliseconds,
+     *                          zero or less for no limit
+     *
+     * @see #getMaxLifetimeMillis
+     * @since 2.6.1
+     */
+    public final void setMaxLifetimeMillis(final long maxLifetimeMillis) {
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+
+    /**
+     * Returns the maximum number of times an object is borrowed before it is
+     * destroyed on return, or replaced by the evictor if it is idle. Each
+     * object's limit is reduced by its share of
+     * {@link #getRetirementJitter() retirementJitter}. The limit only applies
+     * to objects wrapped by {@link DefaultPooledObject}, which count their
+     * borrows. A value of zero or less means objects are kept regardless of
+     * how often they are borrowed.
+     *
+     * @return the maximum number of borrows per object
+     *
+     * @see #setMaxBorrowCount
+     * @see #getRetiredCount()
+     * @since 2.6.1
+     */
+    public final long getMaxBorrowCount() {
+        return maxBorrowCount;
+    }
+
+    /**
+     * Sets the maximum number of times an object is borrowed before it is
+     * retired.
+     *
+     * @param maxBorrowCount the maximum number of borrows per object, zero
+     *                       or less for no limit
+     *
+     * @see #getMaxBorrowCount
+     * @since 2.6.1
+     */
+    public final void setMaxBorrowCount(final long maxBorrowCount) {
+        this.maxBorrowCount = maxBorrowCount;
+    }
+
+    /**
+     * Returns the largest fraction by which {@link #getMaxLifetimeMillis()
+     * maxLifetimeMillis} and {@link #getMaxBorrowCount() maxBorrowCount} are
+     * reduced for an individual object. Each object is given a fixed,
+     * pseudo-random share of this fraction so that objects created at the
+     * same time are retired at different times. For example, with a jitter
+     * of 0.2 and a maximum lifetime of ten minutes, objects are retired
+     * between eight and ten minutes after they are created. Values are
+     * limited to the range 0 to 0.9.
+     *
+     * @return the retirement jitter as a fraction of the limits
+     *
+     * @see #setRetirementJitter
+     * @since 2.6.1
+     */
+    public final double getRetirementJitter() {
+        return retirementJitter;
+    }
+
+    /**
+     * Sets the largest fraction by which the retirement limits are reduced
+     * for an individual object.
+     *
+     * @param retirementJitter the retirement jitter as a fraction of the
+     *                         limits
+     *
+     * @see #getRetirementJitter
+     * @since 2.6.1
+     */
+    public final void setRetirementJitter(final double retirementJitter) {
+        this.retirementJitter = retirementJitter;
+    }
+
+    /**
+     * Returns the estimator used to measure the retained size of each
+     * object when it is created and each time it is returned. Sizes are only
+     * tracked for objects wrapped by {@link DefaultPooledObject}, which
+     * record their {@link DefaultPooledObject#getSize() size}. If no sizer
+     * is set the {@link #getMaxTotalBytes() maxTotalBytes} and
+     * {@link #getMaxIdleBytes() maxIdleBytes} limits do not apply.
+     *
+     * @return the object sizer or {@code null} if objects are not measured
+     *
+     * @see #setObjectSizer
+     * @since 2.6.1
+     */
+    public final PooledObjectSizer<T> getObjectSizer() {
+        return objectSizer;
+    }
+
+    /**
+     * Sets the estimator used to measure the retained size of each object.
+     * Objects created before the sizer is set are measured when they are
+     * next returned.
+     *
+     * @param objectSizer the object sizer or {@code null} to stop measuring
+     *                    objects
+     *
+     * @see #getObjectSizer
+     * @since 2.6.1
+     */
+    public final void setObjectSizer(final PooledObjectSizer<T> objectSizer) {
+        this.objectSizer = objectSizer;
+    }
+
+    /**
+     * Returns the limit on the combined size of the objects managed by the
+     * pool (checked out to clients, or idle awaiting checkout), as measured
+     * by the {@link #getObjectSizer() objectSizer}. Once the limit is reached
+     * no more objects are created, as if {@link #getMaxTotal() maxTotal} had
+     * been reached. Objects are only measured once they have been created so
+     * the limit may be exceeded by the objects whose creation is in progress
+     * when it is reached. A value of zero or less means there is no limit.
+     *
+     * @return the limit on the size of all objects in bytes
+     *
+     * @see #setMaxTotalBytes
+     * @see #getTotalBytes()
+     * @since 2.6.1
+     */
+    public final long getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    /**
+     * Sets the limit on the combined size of the objects managed by the
+     * pool.
+     *
+     * @param maxTotalBytes the limit in bytes, zero or less for no limit
+     *
+     * @see #getMaxTotalBytes
+     * @since 2.6.1
+     */
+    public final void setMaxTotalBytes(final long maxTotalBytes) {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    /**
+     * Returns the limit on the combined size of the idle objects in the
+     * pool (per key for keyed pools), as measured by the
+     * {@link #getObjectSizer() objectSizer}. Objects returned when the limit
+     * would be exceeded are destroyed, as are objects returned when
+     * {@link #getMaxIdle() maxIdle} has been reached, and each eviction run
+     * destroys the oldest idle objects until the idle objects fit within the
+     * limit. A value of zero or less means there is no limit.
+     *
+     * @return the limit on the size of the idle objects in bytes
+     *
+     * @see #setMaxIdleBytes
+     * @since 2.6.1
+     */
+    public final long getMaxIdleBytes() {
+        return maxIdleBytes;
+    }
+
+    /**
+     * Sets the limit on the combined size of the idle objects in the pool.
+     *
+     * @param maxIdleBytes the limit in bytes, zero or less for no limit
+     *
+     * @see #getMaxIdleBytes
+     * @since 2.6.1
+     */
+    public final void setMaxIdleBytes(final long maxIdleBytes) {
+        this.maxIdleBytes = maxIdleBytes;
+    }
+
+    /**
+     * Measures an object that has been created or returned with the
+     * {@link #getObjectSizer() objectSizer} and adds any change in its size
+     * to {@link #getTotalBytes()}.
+     *
+     * @param p the object to measure
+     */
+    final void measureSize(final PooledObject<T> p) {
+        final PooledObjectSizer<T> sizer = getObjectSizer();
+        if (sizer == null || !(p instanceof DefaultPooledObject<?>)) {
+            return;
+        }
+        final long size;
+        try {
+            size = Math.max(0, sizer.sizeOf(p));
+        } catch (final Exception e) {
+            swallowException(e);
+            return;
+        }
+        final DefaultPooledObject<T> dpo = (DefaultPooledObject<T>) p;
+        totalBytes.addAndGet(size - dpo.getSize());
+        dpo.setSize(size);
+    }
+
+    /**
+     * Removes the size of an object that is being destroyed from
+     * {@link #getTotalBytes()}.
+     *
+     * @param p the object being destroyed
+     */
+    final void releaseSize(final PooledObject<T> p) {
+        if (p instanceof DefaultPooledObject<?>) {
+            final DefaultPooledObject<T> dpo = (DefaultPooledObject<T>) p;
+            totalBytes.addAndGet(-dpo.getSize());
+            dpo.setSize(0);
+        }
+    }
+
+    /**
+     * Determines whether the pool has reached {@link #getMaxTotalBytes()
+     * maxTotalBytes}.
+     *
+     * @return {@code true} if no more objects should be created
+     */
+    final boolean isTotalBytesExceeded() {
+        final long max = getMaxTotalBytes();
+        return max > 0 && getObjectSizer() != null && totalBytes.get() >= max;
+    }
+
+    /**
+     * Obtains the recorded size of an object.
+     *
+     * @param p the object
+     *
+     * @return the size in bytes, zero if the object has not been measured
+     */
+    static long sizeOf(final PooledObject<?> p) {
+        return p instanceof DefaultPooledObject<?> ?
+                ((DefaultPooledObject<?>) p).getSize() : 0;
+    }
+
+    /**
+     * Returns the fraction of a heap memory pool's maximum size that must
+     * still be in use after a garbage collection for the pool to trim its
+     * idle objects down to {@link #getMemoryPressureMaxIdle()
+     * memoryPressureMaxIdle}, oldest first. If the factory implements
+     * {@code ShrinkablePooledObjectFactory} (or
+     * {@code ShrinkableKeyedPooledObjectFactory}), the objects are offered
+     * to the factory to shrink before they are destroyed. The pool is
+     * trimmed as soon as the JVM reports that a collection has left the
+     * heap above the threshold, independently of the evictor. A value of
+     * zero or less disables trimming.
+     *
+     * @return the heap usage threshold as a fraction of the maximum heap
+     *
+     * @see #setMemoryPressureThreshold
+     * @see #getMemoryPressureDestroyedCount()
+     * @see #getMemoryPressureShrunkCount()
+     * @since 2.6.1
+     */
+    public final double getMemoryPressureThreshold() {
+        return memoryPressureThreshold;
+    }
+
+    /**
+     * Sets the fraction of a heap memory pool's maximum size that must
+     * still be in use after a garbage collection for the pool to trim its
+     * idle objects.
+     * <p>
+     * <strong>Note:</strong> the JVM has a single collection usage threshold
+     * per memory pool, shared by the whole application. While any pool has a
+     * positive threshold, the lowest threshold of all such pools is applied
+     * to every heap memory pool whose collection usage threshold was zero
+     * when the first pool registered (see
+     * {@link java.lang.management.MemoryPoolMXBean#setCollectionUsageThreshold(long)}).
+     * Thresholds set by other code are never overwritten, and a threshold
+     * that other code changes afterwards is left to that code. Thresholds
+     * still managed by the pools are reset to zero once no pool has a
+     * positive threshold.
+     *
+     * @param memoryPressureThreshold the heap usage threshold as a fraction
+     *                                of the maximum heap, zero or less to
+     *                                disable trimming
+     *
+     * @see #getMemoryPressureThreshold
+     * @since 2.6.1
+     */
+    public final void setMemoryPressureThreshold(final double memoryPressureThreshold) {
+        this.memoryPressureThreshold = memoryPressureThreshold;
+        if (memoryPressureThreshold > 0 && !isClosed()) {
+            MemoryPressureMonitor.register(this);
+        } else {
+            MemoryPressureMonitor.unregister(this);
+        }
+    }
+
+    /**
+     * Returns the number of idle objects (per key for keyed pools) that are
+     * kept when the pool is trimmed because the heap has exceeded
+     * {@link #getMemoryPressureThreshold() memoryPressureThreshold}.
+     *
+     * @return the maximum number of idle objects under memory pressure
+     *
+     * @see #setMemoryPressureMaxIdle
+     * @since 2.6.1
+     */
+    public final int getMemoryPressureMaxIdle() {
+        return memoryPressureMaxIdle;
+    }
+
+    /**
+     * Sets the number of idle objects (per key for keyed pools) that are
+     * kept when the pool is trimmed under memory pressure.
+     *
+     * @param memoryPressureMaxIdle the maximum number of idle objects under
+     *                              memory pressure
+     *
+     * @see #getMemoryPressureMaxIdle
+     * @since 2.6.1
+     */
+    public final void setMemoryPressureMaxIdle(final int memoryPressureMaxIdle) {
+        this.memoryPressureMaxIdle = memoryPressureMaxIdle;
+    }
+
+    /**
+     * Called when a heap memory pool has exceeded the lowest threshold of
+     * the pools registered with the {@link MemoryPressureMonitor}. Trims the
+     * idle objects if the usage also exceeds this pool's
+     * {@link #getMemoryPressureThreshold() memoryPressureThreshold}.
+     *
+     * @param usage the usage of the memory pool after a garbage collection
+     */
+    final void memoryPressure(final MemoryUsage usage) {
+        final double threshold = getMemoryPressureThreshold();
+        if (isClosed() || threshold <= 0 || usage.getMax() <= 0 ||
+                usage.getUsed() < usage.getMax() * threshold) {
+            return;
+        }
+        try {
+            trimIdleObjects();
+        } catch (final Exception e) {
+            swallowException(e);
+        }
+    }
+
+    /**
+     * Determines whether an object has reached its
+     * {@link #getMaxLifetimeMillis() maximum lifetime} or
+     * {@link #getMaxBorrowCount() maximum borrow count}.
+     *
+     * @param p the object to check
+     *
+     * @return {@code true} if the object should be retired
+     */
+    final boolean isRetired(final PooledObject<T> p) {
+        final long maxLifetime = getMaxLifetimeMillis();
+        final long maxBorrows = getMaxBorrowCount();
+        if (maxLifetime <= 0 && maxBorrows <= 0) {
+            return false;
+        }
+        final double jitter = Math.min(0.9, Math.max(0, getRetirementJitter()));
+        final double scale = 1 - jitter * jitterFraction(p);
+        if (maxLifetime > 0 && System.currentTimeMillis() - p.getCreateTime() >=
+                Math.max(1, (long) (maxLifetime * scale))) {
+            return true;
+        }
+        return maxBorrows > 0 && p instanceof DefaultPooledObject<?> &&
+                ((DefaultPooledObject<?>) p).getBorrowedCount() >=
+                        Math.max(1, (long) Math.ceil(maxBorrows * scale));
+    }
+
+    /**
+     * Derives a fraction in the range [0, 1) from the identity of an object,
+     * so that each object gets a fixed, evenly distributed share of the
+     * retirement jitter without storing it.
+     *
+     * @param p the object
+     *
+     * @return the object's jitter fraction
+     */
+    private static double jitterFraction(final PooledObject<?> p) {
+        // Finalization mix from MurmurHash3 to spread the identity hash codes
+        int h = System.identityHashCode(p);
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h >>> 8) / (double) (1 << 24);
+    }
+
     /**
      * Returns whether the pool has LIFO (last in, first out) behaviour with
      * respect to idle objects - always returning the most recently used object
@@ -302,6 +820,22 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         return fairness;
     }
 
+    /**
+     * Returns whether or not the pool hands objects directly to waiting
+     * threads. True means that an object returned to the pool, or created for
+     * the pool, while threads are waiting to borrow is passed to the thread
+     * that has been waiting longest rather than being added to the idle
+     * objects where a newly arriving thread could take it first. Hand-off is
+     * always used when {@link #getFairness()} is true.
+     *
+     * @return <code>true</code> if objects are handed directly to waiting
+     *         threads
+     * @since 2.6.1
+     */
+    public final boolean getHandOff() {
+        return handOff;
+    }
+
     /**
      * Sets whether the pool has LIFO (last in, first out) behaviour with
      * respect to idle objects - always returning the most recently used object
@@ -390,6 +924,41 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         this.testOnBorrow = testOnBorrow;
     }
 
+    /**
+     * Returns the minimum time in milliseconds an idle object must have spent
+     * in the pool since it was created, last returned or last successfully
+     * validated before {@link #getTestOnBorrow() testOnBorrow} validates it
+     * again. Objects used or validated more recently are assumed to still be
+     * valid and are not validated when borrowed. Objects created to satisfy a
+     * borrow are always validated when testOnBorrow is set. A value of zero or less means that
+     * every borrow is validated.
+     *
+     * @return the validation idle threshold in milliseconds
+     *
+     * @see #setValidationIdleThresholdMillis
+     * @see #getSkippedValidationCount()
+     * @since 2.6.1
+     */
+    public final long getValidationIdleThresholdMillis() {
+        return validationIdleThresholdMillis;
+    }
+
+    /**
+     * Sets the minimum time in milliseconds an idle object must have spent
+     * in the pool since it was last returned or successfully validated before
+     * {@link #getTestOnBorrow() testOnBorrow} validates it again.
+     *
+     * @param validationIdleThresholdMillis the validation idle threshold in
+     *                                      milliseconds, zero or less to
+     *                                      validate every borrow
+     *
+     * @see #getValidationIdleThresholdMillis
+     * @since 2.6.1
+     */
+    public final void setValidationIdleThresholdMillis(final long validationIdleThresholdMillis) {
+        this.validationIdleThresholdMillis = validationIdleThresholdMillis;
+    }
+
     /**
      * Returns whether objects borrowed from the pool will be validated when
      * they are returned to the pool via the <code>returnObject()</code> method.
@@ -530,6 +1099,99 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         this.numTestsPerEvictionRun = numTestsPerEvictionRun;
     }
 
+    /**
+     * Returns the maximum number of idle objects that are tested concurrently
+     * when {@link #getTestWhileIdle() testWhileIdle} is set. When greater
+     * than one, each eviction run first selects the objects to examine and
+     * applies the eviction policy on the evictor thread, then activates,
+     * validates and passivates the objects that were not evicted on up to
+     * this many worker threads. The run completes once every object has been
+     * tested. When one or less, objects are tested one at a time on the
+     * evictor thread.
+     *
+     * @return the maximum number of idle objects tested concurrently
+     *
+     * @see #setEvictionParallelism
+     * @since 2.6.1
+     */
+    public final int getEvictionParallelism() {
+        return evictionParallelism;
+    }
+
+    /**
+     * Sets the maximum number of idle objects that are tested concurrently
+     * when {@link #getTestWhileIdle() testWhileIdle} is set. The change takes
+     * effect from the next eviction run.
+     *
+     * @param evictionParallelism the maximum number of idle objects tested
+     *                            concurrently
+     *
+     * @see #getEvictionParallelism
+     * @since 2.6.1
+     */
+    public final void setEvictionParallelism(final int evictionParallelism) {
+        this.evictionParallelism = evictionParallelism;
+    }
+
+    /**
+     * Returns whether each eviction run destroys every idle object that has
+     * been idle for longer than {@link #getMinEvictableIdleTimeMillis()} or,
+     * when applicable, {@link #getSoftMinEvictableIdleTimeMillis()}, rather
+     * than examining {@link #getNumTestsPerEvictionRun()} objects.
+     * <p>
+     * The evictor checks every idle object, oldest first, against the
+     * eviction policy before it places the object in the eviction state, so
+     * only expired objects are moved to the eviction state and borrowers do
+     * not contend with the evictor for objects that are kept. Every idle
+     * object is checked because the idle objects are not strictly ordered by
+     * return time: objects flushed from thread caches, returned unused from a
+     * failed batch or re-inserted after an eviction test are added at the
+     * head.
+     * <p>
+     * This setting only applies when the eviction policy is
+     * {@link DefaultEvictionPolicy}, which only considers idle time, and
+     * {@link #getTestWhileIdle() testWhileIdle} is not set, since testing
+     * needs to visit objects that are kept.
+     *
+     * @return <code>true</code> if eviction runs destroy all expired idle
+     *         objects
+     *
+     * @see #setEvictAllExpired
+     * @since 2.6.1
+     */
+    public final boolean getEvictAllExpired() {
+        return evictAllExpired;
+    }
+
+    /**
+     * Sets whether each eviction run destroys every idle object that has
+     * been idle for longer than the eviction thresholds, examining only those
+     * objects.
+     *
+     * @param evictAllExpired <code>true</code> if eviction runs should
+     *                        destroy all expired idle objects
+     *
+     * @see #getEvictAllExpired
+     * @since 2.6.1
+     */
+    public final void setEvictAllExpired(final boolean evictAllExpired) {
+        this.evictAllExpired = evictAllExpired;
+    }
+
+    /**
+     * Determines whether an eviction run should destroy all expired idle
+     * objects rather than examine {@link #getNumTestsPerEvictionRun()}
+     * objects.
+     *
+     * @param evictionPolicy the eviction policy for the run
+     *
+     * @return <code>true</code> if only expired objects should be examined
+     */
+    final boolean isEvictExpiredOnly(final EvictionPolicy<T> evictionPolicy) {
+        return getEvictAllExpired() && !getTestWhileIdle() &&
+                evictionPolicy.getClass() == DefaultEvictionPolicy.class;
+    }
+
     /**
      * Returns the minimum amount of time an object may sit idle in the pool
      * before it is eligible for eviction by the idle object evictor (if any -
@@ -713,6 +1375,104 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         this.evictorShutdownTimeoutMillis = evictorShutdownTimeoutMillis;
     }
 
+    /**
+     * Returns the number of threads this pool requests for the eviction
+     * timer. The timer is shared by all pools, so it runs as many threads as
+     * the largest value requested by any pool using it, and a slow eviction
+     * run in one pool only delays the other pools when every thread is busy.
+     *
+     * @return the number of eviction timer threads requested by this pool
+     *
+     * @see #setEvictorThreadCount
+     * @since 2.6.1
+     */
+    public final int getEvictorThreadCount() {
+        return evictorThreadCount;
+    }
+
+    /**
+     * Sets the number of threads this pool requests for the shared eviction
+     * timer. The timer never shrinks while pools are using it. The change
+     * takes effect the next time the evictor is started, for example when
+     * {@link #setTimeBetweenEvictionRunsMillis(long)} is called.
+     *
+     * @param evictorThreadCount the number of eviction timer threads
+     *
+     * @see #getEvictorThreadCount
+     * @since 2.6.1
+     */
+    public final void setEvictorThreadCount(final int evictorThreadCount) {
+        this.evictorThreadCount = evictorThreadCount;
+    }
+
+    /**
+     * Returns the maximum random delay in milliseconds added to the start of
+     * the first eviction run. Pools created at the same time with the same
+     * {@link #getTimeBetweenEvictionRunsMillis() timeBetweenEvictionRunsMillis}
+     * would otherwise run their evictors at the same moment for as long as
+     * they exist. Setting this to the eviction period spreads their runs
+     * evenly across it. A value of zero or less disables the jitter.
+     *
+     * @return the maximum eviction jitter in milliseconds
+     *
+     * @see #setEvictionJitterMillis
+     * @since 2.6.1
+     */
+    public final long getEvictionJitterMillis() {
+        return evictionJitterMillis;
+    }
+
+    /**
+     * Sets the maximum random delay in milliseconds added to the start of
+     * the first eviction run. The change takes effect the next time the
+     * evictor is started, for example when
+     * {@link #setTimeBetweenEvictionRunsMillis(long)} is called.
+     *
+     * @param evictionJitterMillis the maximum eviction jitter in milliseconds
+     *
+     * @see #getEvictionJitterMillis
+     * @since 2.6.1
+     */
+    public final void setEvictionJitterMillis(final long evictionJitterMillis) {
+        this.evictionJitterMillis = evictionJitterMillis;
+    }
+
+    /**
+     * Returns the executor used to create objects that replace objects
+     * destroyed while threads are waiting to borrow, for example when an
+     * object fails validation on return or is invalidated. When
+     * <code>null</code>, the replacement is created by the thread that caused
+     * the object to be destroyed, which blocks that thread for as long as
+     * the factory takes to make the new object. When an executor is set, the
+     * replacement is created asynchronously and handed to a waiting thread
+     * once it is ready.
+     *
+     * @return the replenishment executor or <code>null</code> if replacement
+     *         objects are created by the calling thread
+     *
+     * @see #setReplenishExecutor(Executor)
+     * @since 2.6.1
+     */
+    public final Executor getReplenishExecutor() {
+        return replenishExecutor;
+    }
+
+    /**
+     * Sets the executor used to create objects that replace objects
+     * destroyed while threads are waiting to borrow. The pool does not shut
+     * the executor down when it is closed.
+     *
+     * @param replenishExecutor the replenishment executor or
+     *                          <code>null</code> to create replacement
+     *                          objects on the calling thread
+     *
+     * @see #getReplenishExecutor()
+     * @since 2.6.1
+     */
+    public final void setReplenishExecutor(final Executor replenishExecutor) {
+        this.replenishExecutor = replenishExecutor;
+    }
+
     /**
      * Closes the pool, destroys the remaining idle objects and, if registered
      * in JMX, deregisters it.
@@ -771,16 +1531,23 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
      * @param delay time in milliseconds before start and between eviction runs
      */
     final void startEvictor(final long delay) {
-        synchronized (evictionLock) {
+        evictionLock.lock();
+        try {
             if (null != evictor) {
                 EvictionTimer.cancel(evictor, evictorShutdownTimeoutMillis, TimeUnit.MILLISECONDS);
                 evictor = null;
                 evictionIterator = null;
             }
             if (delay > 0) {
+                final long jitter = getEvictionJitterMillis();
+                final long initialDelay = jitter > 0 ?
+                        delay + ThreadLocalRandom.current().nextLong(jitter + 1) : delay;
                 evictor = new Evictor();
-                EvictionTimer.schedule(evictor, delay, delay);
+                evictor.nextRunTime = System.currentTimeMillis() + initialDelay;
+                EvictionTimer.schedule(evictor, initialDelay, delay, getEvictorThreadCount());
             }
+        } finally {
+            evictionLock.unlock();
         }
     }
 
@@ -789,6 +1556,78 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
      */
     void stopEvitor() {
         startEvictor(-1L);
+        evictionLock.lock();
+        try {
+            if (evictionWorkers != null) {
+                evictionWorkers.shutdown();
+                evictionWorkers = null;
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Runs the given idle object tests on the eviction worker threads and
+     * waits for all of them to complete. Each test is responsible for ending
+     * the eviction test of its object. Exceptions thrown by the tests are
+     * swallowed. Must be called while holding the {@link #evictionLock}.
+     *
+     * @param tests the tests to run
+     */
+    final void runEvictionTests(final List<Callable<Void>> tests) {
+        if (tests.isEmpty()) {
+            return;
+        }
+        final int parallelism = Math.max(1, getEvictionParallelism());
+        if (evictionWorkers == null) {
+            evictionWorkers = new ThreadPoolExecutor(parallelism, parallelism,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new EvictionWorkerThreadFactory());
+            evictionWorkers.allowCoreThreadTimeOut(true);
+        } else if (evictionWorkers.getMaximumPoolSize() < parallelism) {
+            evictionWorkers.setMaximumPoolSize(parallelism);
+            evictionWorkers.setCorePoolSize(parallelism);
+        } else if (evictionWorkers.getMaximumPoolSize() > parallelism) {
+            evictionWorkers.setCorePoolSize(parallelism);
+            evictionWorkers.setMaximumPoolSize(parallelism);
+        }
+
+        final List<Future<Void>> futures = new ArrayList<>(tests.size());
+        for (final Callable<Void> test : tests) {
+            try {
+                futures.add(evictionWorkers.submit(test));
+            } catch (final RejectedExecutionException ree) {
+                // Test on this thread rather than leave the object in the
+                // eviction state
+                try {
+                    test.call();
+                } catch (final Exception e) {
+                    swallowException(e);
+                }
+            }
+        }
+        boolean interrupted = false;
+        for (final Future<Void> future : futures) {
+            // The run must not end while objects are still being tested
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                } catch (final ExecutionException ee) {
+                    final Throwable cause = ee.getCause();
+                    PoolUtils.checkRethrow(cause);
+                    swallowException(cause instanceof Exception ?
+                            (Exception) cause : new Exception(cause));
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
     /**
      * Tries to ensure that the configured minimum number of idle instances are
@@ -797,6 +1636,14 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
      */
     abstract void ensureMinIdle() throws Exception;
 
+    /**
+     * Reduces the idle objects to {@link #getMemoryPressureMaxIdle()
+     * memoryPressureMaxIdle}, oldest first, shrinking them instead of
+     * destroying them if the factory supports it.
+     * @throws Exception if an error occurs destroying idle instances
+     */
+    abstract void trimIdleObjects() throws Exception;
+
 
     // Monitoring (primarily JMX) related methods
 
@@ -908,6 +1755,18 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         return waitTimes.getMean();
     }
 
+    /**
+     * The 99th percentile of the time threads wait to borrow an object based
+     * on the last {@link #MEAN_TIMING_STATS_CACHE_SIZE} objects borrowed from
+     * the pool.
+     * @return 99th percentile time in milliseconds that a recently served
+     * thread has had to wait to borrow an object from the pool
+     * @since 2.6.1
+     */
+    public final long getP99BorrowWaitTimeMillis() {
+        return waitTimes.getPercentile(99);
+    }
+
     /**
      * The maximum time a thread has waited to borrow objects from the pool.
      * @return maximum wait time in milliseconds since the pool was created
@@ -916,6 +1775,245 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         return maxBorrowWaitTimeMillis.get();
     }
 
+    /**
+     * The mean time eviction runs started after they were due, based on the
+     * last {@link #MEAN_TIMING_STATS_CACHE_SIZE} runs. Runs start late when
+     * all the eviction timer threads are busy with other pools.
+     * @return mean eviction lag in milliseconds of recent runs
+     * @see #getEvictorThreadCount()
+     * @since 2.6.1
+     */
+    public final long getMeanEvictionLagMillis() {
+        return evictionLags.getMean();
+    }
+
+    /**
+     * The maximum time an eviction run has started after it was due.
+     * @return maximum eviction lag in milliseconds since the pool was created
+     * @since 2.6.1
+     */
+    public final long getMaxEvictionLagMillis() {
+        return maxEvictionLagMillis.get();
+    }
+
+    /**
+     * The mean time taken by eviction runs, including restoring the minimum
+     * number of idle objects, based on the last
+     * {@link #MEAN_TIMING_STATS_CACHE_SIZE} runs.
+     * @return mean duration in milliseconds of recent eviction runs
+     * @since 2.6.1
+     */
+    public final long getMeanEvictionRunTimeMillis() {
+        return evictionRunTimes.getMean();
+    }
+
+    /**
+     * Records the timing of an eviction run.
+     *
+     * @param lag  time in milliseconds the run started after it was due
+     * @param runTime time in milliseconds the run took
+     */
+    final void updateStatsEviction(final long lag, final long runTime) {
+        evictionLags.add(lag);
+        evictionRunTimes.add(runTime);
+        // Only the evictor updates the maximum
+        if (lag > maxEvictionLagMillis.get()) {
+            maxEvictionLagMillis.set(lag);
+        }
+    }
+
+    /**
+     * The number of times validation on borrow was skipped because the
+     * object had been returned or validated within
+     * {@link #getValidationIdleThresholdMillis()}.
+     * @return the number of validations skipped since the pool was created
+     * @since 2.6.1
+     */
+    public final long getSkippedValidationCount() {
+        return skippedValidationCount.get();
+    }
+
+    /**
+     * Determines whether an idle object that is being borrowed needs to be
+     * validated because it has been idle for at least
+     * {@link #getValidationIdleThresholdMillis()} since it was last returned
+     * or validated. Skipped validations are counted.
+     *
+     * @param p the object being borrowed
+     *
+     * @return {@code true} if the object should be validated
+     */
+    final boolean isValidationDue(final PooledObject<T> p) {
+        final long threshold = getValidationIdleThresholdMillis();
+        if (threshold <= 0) {
+            return true;
+        }
+        long last = p.getLastReturnTime();
+        if (p instanceof DefaultPooledObject<?>) {
+            last = Math.max(last, ((DefaultPooledObject<?>) p).getLastValidatedTime());
+        }
+        if (System.currentTimeMillis() - last < threshold) {
+            skippedValidationCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that an object has been successfully validated so that
+     * validation on borrow can be skipped within
+     * {@link #getValidationIdleThresholdMillis()}.
+     *
+     * @param p the validated object
+     */
+    static void markValidated(final PooledObject<?> p) {
+        if (p instanceof DefaultPooledObject<?>) {
+            ((DefaultPooledObject<?>) p).setLastValidatedTime(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * The number of borrows rejected without waiting because
+     * {@link #getMaxWaiters()} borrowers were already waiting.
+     * @return the number of rejected borrows since the pool was created
+     * @since 2.6.1
+     */
+    public final long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * The number of objects destroyed because they reached their
+     * {@link #getMaxLifetimeMillis() maximum lifetime} or
+     * {@link #getMaxBorrowCount() maximum borrow count}.
+     * @return the number of retired objects since the pool was created
+     * @since 2.6.1
+     */
+    public final long getRetiredCount() {
+        return retiredCount.get();
+    }
+
+    /**
+     * The number of idle objects destroyed because the heap exceeded
+     * {@link #getMemoryPressureThreshold() memoryPressureThreshold}.
+     * @return the number of objects destroyed under memory pressure since
+     *         the pool was created
+     * @since 2.6.1
+     */
+    public final long getMemoryPressureDestroyedCount() {
+        return memoryPressureDestroyedCount.get();
+    }
+
+    /**
+     * The number of times the factory shrank an idle object instead of it
+     * being destroyed because the heap exceeded
+     * {@link #getMemoryPressureThreshold() memoryPressureThreshold}.
+     * @return the number of objects shrunk under memory pressure since the
+     *         pool was created
+     * @since 2.6.1
+     */
+    public final long getMemoryPressureShrunkCount() {
+        return memoryPressureShrunkCount.get();
+    }
+
+    /**
+     * The combined size of the objects currently managed by the pool, as
+     * measured by the {@link #getObjectSizer() objectSizer}.
+     * @return the size of all objects in bytes
+     * @since 2.6.1
+     */
+    public final long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * The combined size of the idle objects in the pool, as measured by the
+     * {@link #getObjectSizer() objectSizer}. The size of the idle objects is
+     * maintained as they are added and removed, but the result may be briefly
+     * inaccurate while objects are being borrowed or returned.
+     * @return the size of the idle objects in bytes
+     * @since 2.6.1
+     */
+    public abstract long getIdleBytes();
+
+    /**
+     * Registers a borrower that is about to wait for an object. Every
+     * successful call must be matched by a call to {@link #removeWaiter()}.
+     *
+     * @throws BorrowRejectedException if {@link #getMaxWaiters()} borrowers
+     *                                 are already waiting
+     */
+    final void addWaiter() {
+        final int localMaxWaiters = getMaxWaiters();
+        if (waiterCount.incrementAndGet() > localMaxWaiters && localMaxWaiters >= 0) {
+            waiterCount.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            throw new BorrowRejectedException(
+                    "Pool exhausted and maxWaiters (" + localMaxWaiters + ") reached");
+        }
+    }
+
+    /**
+     * Deregisters a borrower registered by {@link #addWaiter()}.
+     */
+    final void removeWaiter() {
+        waiterCount.decrementAndGet();
+    }
+
+    /**
+     * The number of tasks submitted to the {@link #getReplenishExecutor()
+     * replenishment executor} that have not yet completed.
+     * @return the number of pending replenishment tasks
+     * @since 2.6.1
+     */
+    public final int getReplenishQueueDepth() {
+        return replenishQueueDepth.get();
+    }
+
+    /**
+     * The mean time from submission to completion of tasks run by the
+     * {@link #getReplenishExecutor() replenishment executor} based on the
+     * last {@link #MEAN_TIMING_STATS_CACHE_SIZE} tasks.
+     * @return mean time in milliseconds a recent replenishment task took to
+     * complete, including time spent queued
+     * @since 2.6.1
+     */
+    public final long getMeanReplenishLatencyMillis() {
+        return replenishLatencies.getMean();
+    }
+
+    /**
+     * The forecast rate at which objects are borrowed from the pool. This is
+     * an exponentially weighted moving average that is sampled as objects are
+     * borrowed and when the evictor runs.
+     * @return the forecast number of objects borrowed per second
+     * @since 2.6.1
+     */
+    public final double getForecastBorrowRate() {
+        return demandForecast.getBorrowRate();
+    }
+
+    /**
+     * The forecast time objects are kept active. This is an exponentially
+     * weighted moving average of {@link #getMeanActiveTimeMillis()}.
+     * @return the forecast active time in milliseconds
+     * @since 2.6.1
+     */
+    public final double getForecastActiveTimeMillis() {
+        return demandForecast.getActiveTimeMillis();
+    }
+
+    /**
+     * The forecast number of objects active at any one time, being the
+     * product of {@link #getForecastBorrowRate()} and
+     * {@link #getForecastActiveTimeMillis()}.
+     * @return the forecast number of active objects
+     * @since 2.6.1
+     */
+    public final double getForecastDemand() {
+        return demandForecast.getDemand();
+    }
+
     /**
      * The number of instances currently idle in this pool.
      * @return count of instances available for checkout from the pool
@@ -966,6 +2064,74 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         }
     }
 
+    /**
+     * Submits a task that creates replacement objects to the replenishment
+     * executor, if one is configured. The task should swallow any exceptions
+     * it encounters.
+     *
+     * @param task The task to run
+     *
+     * @return {@code true} if the task was accepted by the executor or
+     *         {@code false} if the caller should run the task itself
+     */
+    final boolean replenishAsync(final Runnable task) {
+        final Executor executor = replenishExecutor;
+        if (executor == null) {
+            return false;
+        }
+        final long submitTime = System.currentTimeMillis();
+        replenishQueueDepth.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        replenishQueueDepth.decrementAndGet();
+                        replenishLatencies.add(System.currentTimeMillis() - submitTime);
+                    }
+                }
+            });
+            return true;
+        } catch (final RejectedExecutionException e) {
+            replenishQueueDepth.decrementAndGet();
+            swallowException(e);
+            return false;
+        }
+    }
+
+    /**
+     * Samples the demand on the pool if a sample is due and, if one is taken,
+     * calls {@link #demandForecastUpdated()}.
+     */
+    final void sampleDemand() {
+        final long now = System.currentTimeMillis();
+        if (demandForecast.isSampleDue(now) &&
+                demandForecast.sample(now, borrowedCount.get(), activeTimes.getMean())) {
+            demandForecastUpdated();
+        }
+    }
+
+    /**
+     * Called after a new sample has been added to the demand forecast. The
+     * default implementation does nothing.
+     */
+    void demandForecastUpdated() {
+        // NO-OP
+    }
+
+    /**
+     * Adjusts the sizing attributes of the pool if automatic tuning is
+     * configured. Called by the evictor after each eviction run. The default
+     * implementation does nothing.
+     *
+     * @throws Exception if creating objects for waiting borrowers fails
+     */
+    void autoTune() throws Exception {
+        // NO-OP
+    }
+
     /**
      * Updates statistics after an object is borrowed from the pool.
      * @param p object borrowed from the pool
@@ -984,6 +2150,7 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
                 break;
             }
         } while (!maxBorrowWaitTimeMillis.compareAndSet(currentMax, waitTime));
+        sampleDemand();
     }
 
     /**
@@ -996,21 +2163,186 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         activeTimes.add(activeTime);
     }
 
+    /**
+     * Updates statistics after a batch of objects is borrowed from the pool.
+     * @param borrowed objects borrowed from the pool
+     * @param waitTime time (in milliseconds) that the borrowing thread had to wait
+     *                 for the batch
+     */
+    final void updateStatsBorrow(final Collection<PooledObject<T>> borrowed, final long waitTime) {
+        final int n = borrowed.size();
+        if (n == 0) {
+            return;
+        }
+        borrowedCount.addAndGet(n);
+        final long[] times = new long[n];
+        int i = 0;
+        for (final PooledObject<T> p : borrowed) {
+            times[i++] = p.getIdleTimeMillis();
+        }
+        idleTimes.addAll(times, n);
+        Arrays.fill(times, waitTime);
+        waitTimes.addAll(times, n);
+
+        // lock-free optimistic-locking maximum
+        long currentMax;
+        do {
+            currentMax = maxBorrowWaitTimeMillis.get();
+            if (currentMax >= waitTime) {
+                break;
+            }
+        } while (!maxBorrowWaitTimeMillis.compareAndSet(currentMax, waitTime));
+        sampleDemand();
+    }
+
+    /**
+     * Updates statistics after a batch of objects is returned to the pool.
+     * @param activeTimes the amount of time (in milliseconds) that each
+     *                    returning object was checked out
+     * @param count       the number of valid entries in activeTimes
+     */
+    final void updateStatsReturn(final long[] activeTimes, final int count) {
+        if (count == 0) {
+            return;
+        }
+        returnedCount.addAndGet(count);
+        this.activeTimes.addAll(activeTimes, count);
+    }
+
     /**
      * Marks the object as returning to the pool.
      * @param pooledObject instance to return to the keyed pool
      */
     protected void markReturningState(final PooledObject<T> pooledObject) {
-        synchronized(pooledObject) {
-            final PooledObjectState state = pooledObject.getState();
-            if (state != PooledObjectState.ALLOCATED) {
-                throw new IllegalStateException(
-                        "Object has already been returned to this pool or is invalid");
+        // Keep from being marked abandoned
+        if (!compareAndSetState(pooledObject, PooledObjectState.ALLOCATED,
+                PooledObjectState.RETURNING)) {
+            throw new IllegalStateException(
+                    "Object has already been returned to this pool or is invalid");
+        }
+    }
+
+    /**
+     * Atomically changes the state of a pooled object if it is in the
+     * expected state. The state of a {@link DefaultPooledObject} is changed
+     * without holding a monitor so a virtual thread is not pinned to its
+     * carrier thread. Other implementations are synchronized on while the
+     * state is checked and changed.
+     *
+     * @param p      The pooled object
+     * @param expect The expected state
+     * @param update The new state which must be
+     *               {@link PooledObjectState#RETURNING RETURNING},
+     *               {@link PooledObjectState#ABANDONED ABANDONED} or
+     *               {@link PooledObjectState#INVALID INVALID}
+     *
+     * @return {@code true} if the state was changed
+     */
+    static boolean compareAndSetState(final PooledObject<?> p,
+            final PooledObjectState expect, final PooledObjectState update) {
+        if (p instanceof DefaultPooledObject<?>) {
+            return ((DefaultPooledObject<?>) p).compareAndSetState(expect, update);
+        }
+        synchronized (p) {
+            if (p.getState() != expect) {
+                return false;
+            }
+            switch (update) {
+                case RETURNING:
+                    p.markReturning();
+                    break;
+                case ABANDONED:
+                    p.markAbandoned();
+                    break;
+                case INVALID:
+                    p.invalidate();
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Unsupported state transition to " + update);
             }
-            pooledObject.markReturning(); // Keep from being marked abandoned
+            return true;
         }
     }
 
+    /**
+     * Atomically marks a pooled object as {@link PooledObjectState#INVALID
+     * INVALID} unless it is already invalid.
+     *
+     * @param p The pooled object
+     *
+     * @return {@code true} if this call invalidated the object or
+     *         {@code false} if it was already invalid
+     */
+    static boolean markInvalid(final PooledObject<?> p) {
+        PooledObjectState state = p.getState();
+        while (state != PooledObjectState.INVALID) {
+            if (compareAndSetState(p, state, PooledObjectState.INVALID)) {
+                return true;
+            }
+            state = p.getState();
+        }
+        return false;
+    }
+
+    /**
+     * Atomically marks a pooled object as {@link PooledObjectState#ABANDONED
+     * ABANDONED} if it is {@link PooledObjectState#ALLOCATED ALLOCATED} and
+     * was last used no later than the given time.
+     *
+     * @param p       The pooled object
+     * @param timeout The latest last used time, in milliseconds since the
+     *                epoch, for which the object is considered abandoned
+     *
+     * @return {@code true} if this call marked the object as abandoned
+     */
+    static boolean markAbandoned(final PooledObject<?> p, final long timeout) {
+        if (p instanceof DefaultPooledObject<?>) {
+            return ((DefaultPooledObject<?>) p).markAbandoned(timeout);
+        }
+        synchronized (p) {
+            if (p.getState() == PooledObjectState.ALLOCATED &&
+                    p.getLastUsedTime() <= timeout) {
+                p.markAbandoned();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Converts the time a borrow may wait to a budget that can be passed to
+     * {@link #remainingNanos(long, long)}.
+     *
+     * @param maxWaitMillis The time to wait in milliseconds. A negative value
+     *                      waits indefinitely.
+     *
+     * @return the budget in nanoseconds or -1 if there is no limit
+     */
+    static long toMaxWaitNanos(final long maxWaitMillis) {
+        return maxWaitMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Calculates how much of a borrow's budget remains. The budget is
+     * measured with {@link System#nanoTime()} so it is not affected by
+     * changes to the system clock.
+     *
+     * @param startNanos   The value of {@link System#nanoTime()} when the
+     *                     borrow started
+     * @param maxWaitNanos The budget in nanoseconds or a negative value for
+     *                     no limit
+     *
+     * @return the remaining time in nanoseconds, zero if the budget has been
+     *         used up or -1 if there is no limit
+     */
+    static long remainingNanos(final long startNanos, final long maxWaitNanos) {
+        if (maxWaitNanos < 0) {
+            return -1;
+        }
+        return Math.max(0, maxWaitNanos - (System.nanoTime() - startNanos));
+    }
+
     /**
      * Unregisters this pool's MBean.
      */
@@ -1109,6 +2441,9 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
 
         private ScheduledFuture<?> scheduledFuture;
 
+        /** Time the next run is due or zero if not known */
+        volatile long nextRunTime = 0;
+
         /**
          * Run pool maintenance.  Evict objects qualifying for eviction and then
          * ensure that the minimum number of idle instances are available.
@@ -1119,6 +2454,7 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
          */
         @Override
         public void run() {
+            final long startTime = System.currentTimeMillis();
             final ClassLoader savedClassLoader =
                     Thread.currentThread().getContextClassLoader();
             try {
@@ -1145,8 +2481,14 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
                     // in case error is recoverable
                     oome.printStackTrace(System.err);
                 }
+                try {
+                    autoTune();
+                } catch (final Exception e) {
+                    swallowException(e);
+                }
                 // Re-create idle instances.
                 try {
+                    sampleDemand();
                     ensureMinIdle();
                 } catch (final Exception e) {
                     swallowException(e);
@@ -1154,6 +2496,13 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
             } finally {
                 // Restore the previous CCL
                 Thread.currentThread().setContextClassLoader(savedClassLoader);
+                final long endTime = System.currentTimeMillis();
+                if (nextRunTime > 0) {
+                    updateStatsEviction(Math.max(0, startTime - nextRunTime),
+                            endTime - startTime);
+                }
+                // Runs are scheduled with a fixed delay between them
+                nextRunTime = endTime + getTimeBetweenEvictionRunsMillis();
             }
         }
 
@@ -1168,15 +2517,42 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         }
     }
 
+    /**
+     * Creates the daemon threads that test idle objects in parallel, with the
+     * context class loader of the factory associated with the pool.
+     */
+    private class EvictionWorkerThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(null, runnable, "commons-pool-eviction-worker");
+            thread.setDaemon(true);
+
+            AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                @Override
+                public Void run() {
+                    final ClassLoader cl = factoryClassLoader == null ?
+                            null : factoryClassLoader.get();
+                    thread.setContextClassLoader(cl != null ? cl :
+                            EvictionWorkerThreadFactory.class.getClassLoader());
+                    return null;
+                }
+            });
+
+            return thread;
+        }
+    }
+
     /**
      * Maintains a cache of values for a single metric and reports
      * statistics on the cached values.
      */
-    private class StatsStore {
+    class StatsStore {
 
         private final AtomicLong values[];
         private final int size;
-        private int index;
+        /** Total number of values added. The next value is stored at index % size. */
+        private final AtomicLong index = new AtomicLong(0);
 
         /**
          * Create a StatsStore with the given cache size.
@@ -1197,12 +2573,47 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
          *
          * @param value new value to add to the cache.
          */
-        public synchronized void add(final long value) {
-            values[index].set(value);
-            index++;
-            if (index == size) {
-                index = 0;
+        public void add(final long value) {
+            values[(int) (index.getAndIncrement() % size)].set(value);
+        }
+
+        /**
+         * Adds the first count values from the given array to the cache,
+         * reserving the slots for all of them in a single operation.
+         *
+         * @param newValues values to add to the cache
+         * @param count     the number of values to add
+         */
+        public void addAll(final long[] newValues, final int count) {
+            final long first = index.getAndAdd(count);
+            for (int i = 0; i < count; i++) {
+                values[(int) ((first + i) % size)].set(newValues[i]);
+            }
+        }
+
+        /**
+         * Returns the given percentile of the cached values using the
+         * nearest-rank method.
+         *
+         * @param percentile the percentile, between 0 and 100
+         *
+         * @return the percentile of the cache or zero if the cache is empty
+         */
+        public long getPercentile(final double percentile) {
+            final long[] sorted = new long[size];
+            int counter = 0;
+            for (int i = 0; i < size; i++) {
+                final long value = values[i].get();
+                if (value != -1) {
+                    sorted[counter++] = value;
+                }
+            }
+            if (counter == 0) {
+                return 0;
             }
+            Arrays.sort(sorted, 0, counter);
+            final int rank = (int) Math.ceil(percentile / 100 * counter);
+            return sorted[Math.min(counter, Math.max(rank, 1)) - 1];
         }
 
         /**
@@ -1232,7 +2643,7 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
             builder.append(", size=");
             builder.append(size);
             builder.append(", index=");
-            builder.append(index);
+            builder.append(index.get() % size);
             builder.append("]");
             return builder.toString();
         }
@@ -1351,6 +2762,8 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         builder.append(lifo);
         builder.append(", fairness=");
         builder.append(fairness);
+        builder.append(", handOff=");
+        builder.append(handOff);
         builder.append(", testOnCreate=");
         builder.append(testOnCreate);
         builder.append(", testOnBorrow=");
@@ -1363,12 +2776,36 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         builder.append(timeBetweenEvictionRunsMillis);
         builder.append(", numTestsPerEvictionRun=");
         builder.append(numTestsPerEvictionRun);
+        builder.append(", evictorThreadCount=");
+        builder.append(evictorThreadCount);
+        builder.append(", evictionJitterMillis=");
+        builder.append(evictionJitterMillis);
         builder.append(", minEvictableIdleTimeMillis=");
         builder.append(minEvictableIdleTimeMillis);
         builder.append(", softMinEvictableIdleTimeMillis=");
         builder.append(softMinEvictableIdleTimeMillis);
         builder.append(", evictionPolicy=");
         builder.append(evictionPolicy);
+        builder.append(", replenishExecutor=");
+        builder.append(replenishExecutor);
+        builder.append(", maxWaiters=");
+        builder.append(maxWaiters);
+        builder.append(", maxLifetimeMillis=");
+        builder.append(maxLifetimeMillis);
+        builder.append(", maxBorrowCount=");
+        builder.append(maxBorrowCount);
+        builder.append(", retirementJitter=");
+        builder.append(retirementJitter);
+        builder.append(", objectSizer=");
+        builder.append(objectSizer);
+        builder.append(", maxTotalBytes=");
+        builder.append(maxTotalBytes);
+        builder.append(", maxIdleBytes=");
+        builder.append(maxIdleBytes);
+        builder.append(", memoryPressureThreshold=");
+        builder.append(memoryPressureThreshold);
+        builder.append(", memoryPressureMaxIdle=");
+        builder.append(memoryPressureMaxIdle);
         builder.append(", closeLock=");
         builder.append(closeLock);
         builder.append(", closed=");
@@ -16,7 +16,10 @@
  */
 package org.apache.commons.pool2.impl;
 
+import java.util.concurrent.Executor;
+
 import org.apache.commons.pool2.BaseObject;
+import org.apache.commons.pool2.PooledObjectSizer;
 
 /**
  * Provides the implementation for the common attributes shared by the
@@ -45,6 +48,14 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
      */
     public static final boolean DEFAULT_FAIRNESS = false;
 
+    /**
+     * The default value for the {@code handOff} configuration attribute.
+     * @see GenericObjectPool#getHandOff()
+     * @see GenericKeyedObjectPool#getHandOff()
+     * @since 2.6.1
+     */
+    public static final boolean DEFAULT_HAND_OFF = false;
+
     /**
      * The default value for the {@code maxWait} configuration attribute.
      * @see GenericObjectPool#getMaxWaitMillis()
@@ -52,6 +63,77 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
      */
     public static final long DEFAULT_MAX_WAIT_MILLIS = -1L;
 
+    /**
+     * The default value for the {@code maxWaiters} configuration attribute.
+     * @see GenericObjectPool#getMaxWaiters()
+     * @see GenericKeyedObjectPool#getMaxWaiters()
+     * @since 2.6.1
+     */
+    public static final int DEFAULT_MAX_WAITERS = -1;
+
+    /**
+     * The default value for the {@code maxLifetimeMillis} configuration
+     * attribute.
+     * @see GenericObjectPool#getMaxLifetimeMillis()
+     * @see GenericKeyedObjectPool#getMaxLifetimeMillis()
+     * @since 2.6.1
+     */
+    public static final long DEFAULT_MAX_LIFETIME_MILLIS = -1L;
+
+    /**
+     * The default value for the {@code maxBorrowCount} configuration
+     * attribute.
+     * @see GenericObjectPool#getMaxBorrowCount()
+     * @see GenericKeyedObjectPool#getMaxBorrowCount()
+     * @since 2.6.1
+     */
+    public static final long DEFAULT_MAX_BORROW_COUNT = -1L;
+
+    /**
+     * The default value for the {@code retirementJitter} configuration
+     * attribute.
+     * @see GenericObjectPool#getRetirementJitter()
+     * @see GenericKeyedObjectPool#getRetirementJitter()
+     * @since 2.6.1
+     */
+    public static final double DEFAULT_RETIREMENT_JITTER = 0;
+
+    /**
+     * The default value for the {@code maxTotalBytes} configuration
+     * attribute.
+     * @see GenericObjectPool#getMaxTotalBytes()
+     * @see GenericKeyedObjectPool#getMaxTotalBytes()
+     * @since 2.6.1
+     */
+    public static final long DEFAULT_MAX_TOTAL_BYTES = -1L;
+
+    /**
+     * The default value for the {@code maxIdleBytes} configuration
+     * attribute.
+     * @see GenericObjectPool#getMaxIdleBytes()
+     * @see GenericKeyedObjectPool#getMaxIdleBytes()
+     * @since 2.6.1
+     */
+    public static final long DEFAULT_MAX_IDLE_BYTES = -1L;
+
+    /**
+     * The default value for the {@code memoryPressureThreshold} configuration
+     * attribute.
+     * @see GenericObjectPool#getMemoryPressureThreshold()
+     * @see GenericKeyedObjectPool#getMemoryPressureThreshold()
+     * @since 2.6.1
+     */
+    public static final double DEFAULT_MEMORY_PRESSURE_THRESHOLD = 0;
+
+    /**
+     * The default value for the {@code memoryPressureMaxIdle} configuration
+     * attribute.
+     * @see GenericObjectPool#getMemoryPressureMaxIdle()
+     * @see GenericKeyedObjectPool#getMemoryPressureMaxIdle()
+     * @since 2.6.1
+     */
+    public static final int DEFAULT_MEMORY_PRESSURE_MAX_IDLE = 0;
+
     /**
      * The default value for the {@code minEvictableIdleTimeMillis}
      * configuration attribute.
@@ -78,6 +160,24 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
     public static final long DEFAULT_EVICTOR_SHUTDOWN_TIMEOUT_MILLIS =
             10L * 1000L;
 
+    /**
+     * The default value for the {@code evictorThreadCount} configuration
+     * attribute.
+     * @see GenericObjectPool#getEvictorThreadCount()
+     * @see GenericKeyedObjectPool#getEvictorThreadCount()
+     * @since 2.6.1
+     */
+    public static final int DEFAULT_EVICTOR_THREAD_COUNT = 1;
+
+    /**
+     * The default value for the {@code evictionJitterMillis} configuration
+     * attribute.
+     * @see GenericObjectPool#getEvictionJitterMillis()
+     * @see GenericKeyedObjectPool#getEvictionJitterMillis()
+     * @since 2.6.1
+     */
+    public static final long DEFAULT_EVICTION_JITTER_MILLIS = 0;
+
     /**
      * The default value for the {@code numTestsPerEvictionRun} configuration
      * attribute.
@@ -86,6 +186,24 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
      */
     public static final int DEFAULT_NUM_TESTS_PER_EVICTION_RUN = 3;
 
+    /**
+     * The default value for the {@code evictionParallelism} configuration
+     * attribute.
+     * @see GenericObjectPool#getEvictionParallelism()
+     * @see GenericKeyedObjectPool#getEvictionParallelism()
+     * @since 2.6.1
+     */
+    public static final int DEFAULT_EVICTION_PARALLELISM = 1;
+
+    /**
+     * The default value for the {@code evictAllExpired} configuration
+     * attribute.
+     * @see GenericObjectPool#getEvictAllExpired()
+     * @see GenericKeyedObjectPool#getEvictAllExpired()
+     * @since 2.6.1
+     */
+    public static final boolean DEFAULT_EVICT_ALL_EXPIRED = false;
+
     /**
      * The default value for the {@code testOnCreate} configuration attribute.
      * @see GenericObjectPool#getTestOnCreate()
@@ -102,6 +220,15 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
      */
     public static final boolean DEFAULT_TEST_ON_BORROW = false;
 
+    /**
+     * The default value for the {@code validationIdleThresholdMillis}
+     * configuration attribute.
+     * @see GenericObjectPool#getValidationIdleThresholdMillis()
+     * @see GenericKeyedObjectPool#getValidationIdleThresholdMillis()
+     * @since 2.6.1
+     */
+    public static final long DEFAULT_VALIDATION_IDLE_THRESHOLD_MILLIS = 0;
+
     /**
      * The default value for the {@code testOnReturn} configuration attribute.
      * @see GenericObjectPool#getTestOnReturn()
@@ -167,28 +294,61 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
 
     private boolean fairness = DEFAULT_FAIRNESS;
 
+    private boolean handOff = DEFAULT_HAND_OFF;
+
     private long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
 
+    private int maxWaiters = DEFAULT_MAX_WAITERS;
+
+    private long maxLifetimeMillis = DEFAULT_MAX_LIFETIME_MILLIS;
+
+    private long maxBorrowCount = DEFAULT_MAX_BORROW_COUNT;
+
+    private double retirementJitter = DEFAULT_RETIREMENT_JITTER;
+
+    private PooledObjectSizer<T> objectSizer = null;
+
+    private long maxTotalBytes = DEFAULT_MAX_TOTAL_BYTES;
+
+    private long maxIdleBytes = DEFAULT_MAX_IDLE_BYTES;
+
+    private double memoryPressureThreshold = DEFAULT_MEMORY_PRESSURE_THRESHOLD;
+
+    private int memoryPressureMaxIdle = DEFAULT_MEMORY_PRESSURE_MAX_IDLE;
+
     private long minEvictableIdleTimeMillis =
             DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
 
     private long evictorShutdownTimeoutMillis =
             DEFAULT_EVICTOR_SHUTDOWN_TIMEOUT_MILLIS;
 
+    private int evictorThreadCount = DEFAULT_EVICTOR_THREAD_COUNT;
+
+    private long evictionJitterMillis = DEFAULT_EVICTION_JITTER_MILLIS;
+
     private long softMinEvictableIdleTimeMillis =
             DEFAULT_SOFT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
 
     private int numTestsPerEvictionRun =
             DEFAULT_NUM_TESTS_PER_EVICTION_RUN;
 
+    private int evictionParallelism = DEFAULT_EVICTION_PARALLELISM;
+
+    private boolean evictAllExpired = DEFAULT_EVICT_ALL_EXPIRED;
+
     private EvictionPolicy<T> evictionPolicy = null; // Only 2.6.0 applications set this
 
+    private Executor replenishExecutor = null;
+
     private String evictionPolicyClassName = DEFAULT_EVICTION_POLICY_CLASS_NAME;
 
     private boolean testOnCreate = DEFAULT_TEST_ON_CREATE;
 
     private boolean testOnBorrow = DEFAULT_TEST_ON_BORROW;
 
+    private long validationIdleThresholdMillis =
+            DEFAULT_VALIDATION_IDLE_THRESHOLD_MILLIS;
+
     private boolean testOnReturn = DEFAULT_TEST_ON_RETURN;
 
     private boolean testWhileIdle = DEFAULT_TEST_WHILE_IDLE;
@@ -262,6 +422,36 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
         this.fairness = fairness;
     }
 
+    /**
+     * Get the value for the {@code handOff} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @return  The current setting of {@code handOff} for this configuration
+     *          instance
+     *
+     * @see GenericObjectPool#getHandOff()
+     * @see GenericKeyedObjectPool#getHandOff()
+     * @since 2.6.1
+     */
+    public boolean getHandOff() {
+        return handOff;
+    }
+
+    /**
+     * Set the value for the {@code handOff} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @param handOff The new setting of {@code handOff}
+     *        for this configuration instance
+     *
+     * @see GenericObjectPool#getHandOff()
+     * @see GenericKeyedObjectPool#getHandOff()
+     * @since 2.6.1
+     */
+    public void setHandOff(final boolean handOff) {
+        this.handOff = handOff;
+    }
+
     /**
      * Get the value for the {@code maxWait} configuration attribute for pools
      * created with this configuration instance.
@@ -378,6 +568,66 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
         this.numTestsPerEvictionRun = numTestsPerEvictionRun;
     }
 
+    /**
+     * Get the value for the {@code evictionParallelism} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code evictionParallelism} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getEvictionParallelism()
+     * @see GenericKeyedObjectPool#getEvictionParallelism()
+     * @since 2.6.1
+     */
+    public int getEvictionParallelism() {
+        return evictionParallelism;
+    }
+
+    /**
+     * Set the value for the {@code evictionParallelism} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param evictionParallelism The new setting of
+     *        {@code evictionParallelism} for this configuration instance
+     *
+     * @see GenericObjectPool#getEvictionParallelism()
+     * @see GenericKeyedObjectPool#getEvictionParallelism()
+     * @since 2.6.1
+     */
+    public void setEvictionParallelism(final int evictionParallelism) {
+        this.evictionParallelism = evictionParallelism;
+    }
+
+    /**
+     * Get the value for the {@code evictAllExpired} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code evictAllExpired} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getEvictAllExpired()
+     * @see GenericKeyedObjectPool#getEvictAllExpired()
+     * @since 2.6.1
+     */
+    public boolean getEvictAllExpired() {
+        return evictAllExpired;
+    }
+
+    /**
+     * Set the value for the {@code evictAllExpired} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @param evictAllExpired The new setting of {@code evictAllExpired} for
+     *        this configuration instance
+     *
+     * @see GenericObjectPool#getEvictAllExpired()
+     * @see GenericKeyedObjectPool#getEvictAllExpired()
+     * @since 2.6.1
+     */
+    public void setEvictAllExpired(final boolean evictAllExpired) {
+        this.evictAllExpired = evictAllExpired;
+    }
+
     /**
      * Get the value for the {@code evictorShutdownTimeoutMillis} configuration
      * attribute for pools created with this configuration instance.
@@ -408,6 +658,66 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
         this.evictorShutdownTimeoutMillis = evictorShutdownTimeoutMillis;
     }
 
+    /**
+     * Get the value for the {@code evictorThreadCount} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code evictorThreadCount} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getEvictorThreadCount()
+     * @see GenericKeyedObjectPool#getEvictorThreadCount()
+     * @since 2.6.1
+     */
+    public int getEvictorThreadCount() {
+        return evictorThreadCount;
+    }
+
+    /**
+     * Set the value for the {@code evictorThreadCount} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param evictorThreadCount The new setting of
+     *        {@code evictorThreadCount} for this configuration instance
+     *
+     * @see GenericObjectPool#getEvictorThreadCount()
+     * @see GenericKeyedObjectPool#getEvictorThreadCount()
+     * @since 2.6.1
+     */
+    public void setEvictorThreadCount(final int evictorThreadCount) {
+        this.evictorThreadCount = evictorThreadCount;
+    }
+
+    /**
+     * Get the value for the {@code evictionJitterMillis} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code evictionJitterMillis} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getEvictionJitterMillis()
+     * @see GenericKeyedObjectPool#getEvictionJitterMillis()
+     * @since 2.6.1
+     */
+    public long getEvictionJitterMillis() {
+        return evictionJitterMillis;
+    }
+
+    /**
+     * Set the value for the {@code evictionJitterMillis} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param evictionJitterMillis The new setting of
+     *        {@code evictionJitterMillis} for this configuration instance
+     *
+     * @see GenericObjectPool#getEvictionJitterMillis()
+     * @see GenericKeyedObjectPool#getEvictionJitterMillis()
+     * @since 2.6.1
+     */
+    public void setEvictionJitterMillis(final long evictionJitterMillis) {
+        this.evictionJitterMillis = evictionJitterMillis;
+    }
+
     /**
      * Get the value for the {@code testOnCreate} configuration attribute for
      * pools created with this configuration instance.
@@ -640,6 +950,309 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
         this.blockWhenExhausted = blockWhenExhausted;
     }
 
+    /**
+     * Get the value for the {@code validationIdleThresholdMillis}
+     * configuration attribute for pools created with this configuration
+     * instance.
+     *
+     * @return  The current setting of {@code validationIdleThresholdMillis}
+     *          for this configuration instance
+     *
+     * @see GenericObjectPool#getValidationIdleThresholdMillis()
+     * @see GenericKeyedObjectPool#getValidationIdleThresholdMillis()
+     * @since 2.6.1
+     */
+    public long getValidationIdleThresholdMillis() {
+        return validationIdleThresholdMillis;
+    }
+
+    /**
+     * Set the value for the {@code validationIdleThresholdMillis}
+     * configuration attribute for pools created with this configuration
+     * instance.
+     *
+     * @param validationIdleThresholdMillis The new setting of
+     *        {@code validationIdleThresholdMillis} for this configuration
+     *        instance
+     *
+     * @see GenericObjectPool#getValidationIdleThresholdMillis()
+     * @see GenericKeyedObjectPool#getValidationIdleThresholdMillis()
+     * @since 2.6.1
+     */
+    public void setValidationIdleThresholdMillis(final long validationIdleThresholdMillis) {
+        this.validationIdleThresholdMillis = validationIdleThresholdMillis;
+    }
+
+    /**
+     * Get the value for the {@code maxWaiters} configuration attribute for
+     * pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code maxWaiters} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getMaxWaiters()
+     * @see GenericKeyedObjectPool#getMaxWaiters()
+     * @since 2.6.1
+     */
+    public int getMaxWaiters() {
+        return maxWaiters;
+    }
+
+    /**
+     * Set the value for the {@code maxWaiters} configuration attribute for
+     * pools created with this configuration instance.
+     *
+     * @param maxWaiters The new setting of {@code maxWaiters}
+     *        for this configuration instance
+     *
+     * @see GenericObjectPool#getMaxWaiters()
+     * @see GenericKeyedObjectPool#getMaxWaiters()
+     * @since 2.6.1
+     */
+    public void setMaxWaiters(final int maxWaiters) {
+        this.maxWaiters = maxWaiters;
+    }
+
+    /**
+     * Get the value for the {@code maxLifetimeMillis} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @return  The current setting of {@code maxLifetimeMillis} for this configuration
+     *          instance
+     *
+     * @see GenericObjectPool#getMaxLifetimeMillis()
+     * @see GenericKeyedObjectPool#getMaxLifetimeMillis()
+     * @since 2.6.1
+     */
+    public long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+
+    /**
+     * Set the value for the {@code maxLifetimeMillis} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @param maxLifetimeMillis The new setting of {@code maxLifetimeMillis} for this
+     *        configuration instance
+     *
+     * @see GenericObjectPool#getMaxLifetimeMillis()
+     * @see GenericKeyedObjectPool#getMaxLifetimeMillis()
+     * @since 2.6.1
+     */
+    public void setMaxLifetimeMillis(final long maxLifetimeMillis) {
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+
+    /**
+     * Get the value for the {@code maxBorrowCount} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @return  The current setting of {@code maxBorrowCount} for this configuration
+     *          instance
+     *
+     * @see GenericObjectPool#getMaxBorrowCount()
+     * @see GenericKeyedObjectPool#getMaxBorrowCount()
+     * @since 2.6.1
+     */
+    public long getMaxBorrowCount() {
+        return maxBorrowCount;
+    }
+
+    /**
+     * Set the value for the {@code maxBorrowCount} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @param maxBorrowCount The new setting of {@code maxBorrowCount} for this
+     *        configuration instance
+     *
+     * @see GenericObjectPool#getMaxBorrowCount()
+     * @see GenericKeyedObjectPool#getMaxBorrowCount()
+     * @since 2.6.1
+     */
+    public void setMaxBorrowCount(final long maxBorrowCount) {
+        this.maxBorrowCount = maxBorrowCount;
+    }
+
+    /**
+     * Get the value for the {@code retirementJitter} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @return  The current setting of {@code retirementJitter} for this configuration
+     *          instance
+     *
+     * @see GenericObjectPool#getRetirementJitter()
+     * @see GenericKeyedObjectPool#getRetirementJitter()
+     * @since 2.6.1
+     */
+    public double getRetirementJitter() {
+        return retirementJitter;
+    }
+
+    /**
+     * Set the value for the {@code retirementJitter} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @param retirementJitter The new setting of {@code retirementJitter} for this
+     *        configuration instance
+     *
+     * @see GenericObjectPool#getRetirementJitter()
+     * @see GenericKeyedObjectPool#getRetirementJitter()
+     * @since 2.6.1
+     */
+    public void setRetirementJitter(final double retirementJitter) {
+        this.retirementJitter = retirementJitter;
+    }
+
+    /**
+     * Get the value for the {@code objectSizer} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @return  The current setting of {@code objectSizer} for this configuration
+     *          instance
+     *
+     * @see GenericObjectPool#getObjectSizer()
+     * @see GenericKeyedObjectPool#getObjectSizer()
+     * @since 2.6.1
+     */
+    public PooledObjectSizer<T> getObjectSizer() {
+        return objectSizer;
+    }
+
+    /**
+     * Set the value for the {@code objectSizer} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @param objectSizer The new setting of {@code objectSizer} for this
+     *        configuration instance
+     *
+     * @see GenericObjectPool#getObjectSizer()
+     * @see GenericKeyedObjectPool#getObjectSizer()
+     * @since 2.6.1
+     */
+    public void setObjectSizer(final PooledObjectSizer<T> objectSizer) {
+        this.objectSizer = objectSizer;
+    }
+
+    /**
+     * Get the value for the {@code maxTotalBytes} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @return  The current setting of {@code maxTotalBytes} for this configuration
+     *          instance
+     *
+     * @see GenericObjectPool#getMaxTotalBytes()
+     * @see GenericKeyedObjectPool#getMaxTotalBytes()
+     * @since 2.6.1
+     */
+    public long getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    /**
+     * Set the value for the {@code maxTotalBytes} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @param maxTotalBytes The new setting of {@code maxTotalBytes} for this
+     *        configuration instance
+     *
+     * @see GenericObjectPool#getMaxTotalBytes()
+     * @see GenericKeyedObjectPool#getMaxTotalBytes()
+     * @since 2.6.1
+     */
+    public void setMaxTotalBytes(final long maxTotalBytes) {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    /**
+     * Get the value for the {@code maxIdleBytes} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @return  The current setting of {@code maxIdleBytes} for this configuration
+     *          instance
+     *
+     * @see GenericObjectPool#getMaxIdleBytes()
+     * @see GenericKeyedObjectPool#getMaxIdleBytes()
+     * @since 2.6.1
+     */
+    public long getMaxIdleBytes() {
+        return maxIdleBytes;
+    }
+
+    /**
+     * Set the value for the {@code maxIdleBytes} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @param maxIdleBytes The new setting of {@code maxIdleBytes} for this
+     *        configuration instance
+     *
+     * @see GenericObjectPool#getMaxIdleBytes()
+     * @see GenericKeyedObjectPool#getMaxIdleBytes()
+     * @since 2.6.1
+     */
+    public void setMaxIdleBytes(final long maxIdleBytes) {
+        this.maxIdleBytes = maxIdleBytes;
+    }
+
+    /**
+     * Get the value for the {@code memoryPressureThreshold} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @return  The current setting of {@code memoryPressureThreshold} for this configuration
+     *          instance
+     *
+     * @see GenericObjectPool#getMemoryPressureThreshold()
+     * @see GenericKeyedObjectPool#getMemoryPressureThreshold()
+     * @since 2.6.1
+     */
+    public double getMemoryPressureThreshold() {
+        return memoryPressureThreshold;
+    }
+
+    /**
+     * Set the value for the {@code memoryPressureThreshold} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @param memoryPressureThreshold The new setting of {@code memoryPressureThreshold} for this
+     *        configuration instance
+     *
+     * @see GenericObjectPool#getMemoryPressureThreshold()
+     * @see GenericKeyedObjectPool#getMemoryPressureThreshold()
+     * @since 2.6.1
+     */
+    public void setMemoryPressureThreshold(final double memoryPressureThreshold) {
+        this.memoryPressureThreshold = memoryPressureThreshold;
+    }
+
+    /**
+     * Get the value for the {@code memoryPressureMaxIdle} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @return  The current setting of {@code memoryPressureMaxIdle} for this configuration
+     *          instance
+     *
+     * @see GenericObjectPool#getMemoryPressureMaxIdle()
+     * @see GenericKeyedObjectPool#getMemoryPressureMaxIdle()
+     * @since 2.6.1
+     */
+    public int getMemoryPressureMaxIdle() {
+        return memoryPressureMaxIdle;
+    }
+
+    /**
+     * Set the value for the {@code memoryPressureMaxIdle} configuration attribute for pools
+     * created with this configuration instance.
+     *
+     * @param memoryPressureMaxIdle The new setting of {@code memoryPressureMaxIdle} for this
+     *        configuration instance
+     *
+     * @see GenericObjectPool#getMemoryPressureMaxIdle()
+     * @see GenericKeyedObjectPool#getMemoryPressureMaxIdle()
+     * @since 2.6.1
+     */
+    public void setMemoryPressureMaxIdle(final int memoryPressureMaxIdle) {
+        this.memoryPressureMaxIdle = memoryPressureMaxIdle;
+    }
+
     /**
      * Gets the value of the flag that determines if JMX will be enabled for
      * pools created with this configuration instance.
@@ -712,12 +1325,44 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
         this.jmxNamePrefix = jmxNamePrefix;
     }
 
+    /**
+     * Get the value for the {@code replenishExecutor} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code replenishExecutor} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getReplenishExecutor()
+     * @see GenericKeyedObjectPool#getReplenishExecutor()
+     * @since 2.6.1
+     */
+    public Executor getReplenishExecutor() {
+        return replenishExecutor;
+    }
+
+    /**
+     * Set the value for the {@code replenishExecutor} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @param replenishExecutor The new setting of {@code replenishExecutor}
+     *        for this configuration instance
+     *
+     * @see GenericObjectPool#getReplenishExecutor()
+     * @see GenericKeyedObjectPool#getReplenishExecutor()
+     * @since 2.6.1
+     */
+    public void setReplenishExecutor(final Executor replenishExecutor) {
+        this.replenishExecutor = replenishExecutor;
+    }
+
     @Override
     protected void toStringAppendFields(final StringBuilder builder) {
         builder.append("lifo=");
         builder.append(lifo);
         builder.append(", fairness=");
         builder.append(fairness);
+        builder.append(", handOff=");
+        builder.append(handOff);
         builder.append(", maxWaitMillis=");
         builder.append(maxWaitMillis);
         builder.append(", minEvictableIdleTimeMillis=");
@@ -726,20 +1371,50 @@ public abstract class BaseObjectPoolConfig<T> extends BaseObject implements Clon
         builder.append(softMinEvictableIdleTimeMillis);
         builder.append(", numTestsPerEvictionRun=");
         builder.append(numTestsPerEvictionRun);
+        builder.append(", evictionParallelism=");
+        builder.append(evictionParallelism);
+        builder.append(", evictAllExpired=");
+        builder.append(evictAllExpired);
         builder.append(", evictionPolicyClassName=");
         builder.append(evictionPolicyClassName);
+        builder.append(", replenishExecutor=");
+        builder.append(replenishExecutor);
         builder.append(", testOnCreate=");
         builder.append(testOnCreate);
         builder.append(", testOnBorrow=");
         builder.append(testOnBorrow);
+        builder.append(", validationIdleThresholdMillis=");
+        builder.append(validationIdleThresholdMillis);
         builder.append(", testOnReturn=");
         builder.append(testOnReturn);
         builder.append(", testWhileIdle=");
         builder.append(testWhileIdle);
         builder.append(", timeBetweenEvictionRunsMillis=");
         builder.append(timeBetweenEvictionRunsMillis);
+        builder.append(", evictorThreadCount=");
+        builder.append(evictorThreadCount);
+        builder.append(", evictionJitterMillis=");
+        builder.append(evictionJitterMillis);
         builder.append(", blockWhenExhausted=");
         builder.append(blockWhenExhausted);
+        builder.append(", maxWaiters=");
+        builder.append(maxWaiters);
+        builder.append(", maxLifetimeMillis=");
+        builder.append(maxLifetimeMillis);
+        builder.append(", maxBorrowCount=");
+        builder.append(maxBorrowCount);
+        builder.append(", retirementJitter=");
+        builder.append(retirementJitter);
+        builder.append(", objectSizer=");
+        builder.append(objectSizer);
+        builder.append(", maxTotalBytes=");
+        builder.append(maxTotalBytes);
+        builder.append(", maxIdleBytes=");
+        builder.append(maxIdleBytes);
+        builder.append(", memoryPressureThreshold=");
+        builder.append(memoryPressureThreshold);
+        builder.append(", memoryPressureMaxIdle=");
+        builder.append(memoryPressureMaxIdle);
         builder.append(", jmxEnabled=");
         builder.append(jmxEnabled);
         builder.append(", jmxNamePrefix=");
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The pending result of an asynchronous borrow from a
+ * {@link GenericObjectPool} or {@link GenericKeyedObjectPool}.
+ * <p>
+ * A pending borrow does not occupy a thread. It is completed by the thread
+ * that returns or creates the object handed to it or, if it is not satisfied
+ * in time, by the pool's shared timeout thread. Callers that must not block
+ * should register a listener with {@link #addListener(Runnable)} rather than
+ * calling {@link #get()}. Listeners are run by the thread that completes the
+ * borrow so they should be short and must not block.
+ * <p>
+ * If the borrow fails, {@link #get()} throws an {@link ExecutionException}
+ * wrapping the exception {@code borrowObject} would have thrown. Once
+ * successfully completed, the borrowed object must be returned to the pool
+ * in the usual way. Cancelling a pending borrow withdraws it from the pool.
+ * If an object is handed to a borrow as it is cancelled, the pool takes the
+ * object back.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @param <T> Type of element pooled.
+ * @since 2.6.1
+ */
+public class BorrowFuture<T> implements Future<T> {
+
+    private static final int PENDING = 0;
+    private static final int COMPLETED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final Lock lock = new ReentrantLock();
+
+    private final Condition completed = lock.newCondition();
+
+    private int state = PENDING; //@GuardedBy("lock")
+
+    private T object = null; //@GuardedBy("lock")
+
+    private Throwable failure = null; //@GuardedBy("lock")
+
+    private List<Runnable> listeners = new ArrayList<>(); //@GuardedBy("lock")
+
+    /**
+     * Create a new, pending borrow.
+     */
+    BorrowFuture() {
+        // Only the pools create these
+    }
+
+    /**
+     * Registers a listener to be run once the borrow is complete, whether it
+     * succeeded, failed or was cancelled. If the borrow is already complete,
+     * the listener is run immediately by the calling thread.
+     *
+     * @param listener The listener to run
+     */
+    public void addListener(final Runnable listener) {
+        lock.lock();
+        try {
+            if (state == PENDING) {
+                listeners.add(listener);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        listener.run();
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        return setState(CANCELLED, null, null);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        lock.lock();
+        try {
+            return state == CANCELLED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        lock.lock();
+        try {
+            return state != PENDING;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        lock.lock();
+        try {
+            while (state == PENDING) {
+                completed.await();
+            }
+            return getResult();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T get(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        lock.lock();
+        try {
+            long remaining = unit.toNanos(timeout);
+            while (state == PENDING) {
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                remaining = completed.awaitNanos(remaining);
+            }
+            return getResult();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Completes the borrow with the borrowed object.
+     *
+     * @param obj The borrowed object
+     *
+     * @return {@code true} if the borrow was completed or {@code false} if it
+     *         had already completed, in which case the caller must return the
+     *         object to the pool
+     */
+    boolean complete(final T obj) {
+        return setState(COMPLETED, obj, null);
+    }
+
+    /**
+     * Completes the borrow with a failure.
+     *
+     * @param t The cause of the failure
+     *
+     * @return {@code true} if the borrow was completed or {@code false} if it
+     *         had already completed
+     */
+    boolean fail(final Throwable t) {
+        return setState(FAILED, null, t);
+    }
+
+    /**
+     * Called when the borrow fails or is cancelled so the pool can withdraw
+     * it. This is called before any waiting threads or listeners are
+     * notified and must not block.
+     */
+    void withdraw() {
+        // NO-OP by default
+    }
+
+    private T getResult() throws ExecutionException {
+        switch (state) {
+            case COMPLETED:
+                return object;
+            case FAILED:
+                throw new ExecutionException(failure);
+            default:
+                throw new CancellationException();
+        }
+    }
+
+    private boolean setState(final int newState, final T obj, final Throwable t) {
+        final List<Runnable> toRun;
+        lock.lock();
+        try {
+            if (state != PENDING) {
+                return false;
+            }
+            state = newState;
+            object = obj;
+            failure = t;
+            if (newState != COMPLETED) {
+                withdraw();
+            }
+            toRun = listeners;
+            listeners = null;
+            completed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (final Runnable listener : toRun) {
+            try {
+                listener.run();
+            } catch (final RuntimeException e) {
+                // Listeners must not throw. Ignore it so the remaining
+                // listeners still run and the pool is not disrupted.
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(getClass().getSimpleName());
+        builder.append(" [state=");
+        lock.lock();
+        try {
+            appendState(builder);
+        } finally {
+            lock.unlock();
+        }
+        builder.append("]");
+        return builder.toString();
+    }
+
+    private void appendState(final StringBuilder builder) {
+        switch (state) {
+            case PENDING:
+                builder.append("PENDING");
+                break;
+            case COMPLETED:
+                builder.append("COMPLETED, object=");
+                builder.append(object);
+                break;
+            case FAILED:
+                builder.append("FAILED, failure=");
+                builder.append(failure);
+                break;
+            default:
+                builder.append("CANCELLED");
+        }
+    }
+}
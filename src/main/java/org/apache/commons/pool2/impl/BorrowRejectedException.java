@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Thrown when a borrow is rejected without waiting because the pool is
+ * exhausted and {@link BaseGenericObjectPool#getMaxWaiters() maxWaiters}
+ * borrowers are already waiting.
+ * <p>
+ * Rejections are expected to happen in bursts when the pool is overloaded so
+ * this exception does not capture a stack trace.
+ *
+ * @since 2.6.1
+ */
+public class BorrowRejectedException extends NoSuchElementException {
+
+    private static final long serialVersionUID = 2919520719960853232L;
+
+    /**
+     * Create a new exception with the given message.
+     *
+     * @param message the detail message
+     */
+    public BorrowRejectedException(final String message) {
+        super(message);
+    }
+
+    /**
+     * Does not fill in the stack trace.
+     *
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides a shared timer for all pools that fails asynchronous borrow
+ * requests that are not satisfied within their timeout. The timer uses a
+ * single daemon thread that is only started when there are timeouts pending
+ * and stops again once it has been idle for a while, so no thread is left
+ * running in application server environments.
+ * <p>
+ * This class has package scope to prevent its inclusion in the pool public API.
+ * The class declaration below should *not* be changed to public.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @since 2.6.1
+ */
+class BorrowTimeoutTimer {
+
+    /** How long the timer thread waits for new work before it stops */
+    private static final long KEEP_ALIVE_MILLIS = 10000L;
+
+    /** Executor instance */
+    private static final ScheduledThreadPoolExecutor executor;
+
+    static {
+        executor = new ScheduledThreadPoolExecutor(1, new BorrowTimeoutThreadFactory());
+        executor.setKeepAliveTime(KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /** Prevent instantiation */
+    private BorrowTimeoutTimer() {
+        // Hide the default constructor
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("BorrowTimeoutTimer []");
+        return builder.toString();
+    }
+
+    /**
+     * Schedules a timeout. The returned future should be cancelled if the
+     * borrow request completes before the timeout expires.
+     *
+     * @param task  Task to run when the timeout expires
+     * @param delay Delay in milliseconds before the task is run
+     *
+     * @return the scheduled timeout
+     */
+    static ScheduledFuture<?> schedule(final Runnable task, final long delay) {
+        return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Thread factory that creates a daemon thread, with the context class
+     * loader from this class.
+     */
+    private static class BorrowTimeoutThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(null, runnable, "commons-pool-borrow-timeout-thread");
+            thread.setDaemon(true);
+
+            AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                @Override
+                public Void run() {
+                    thread.setContextClassLoader(BorrowTimeoutThreadFactory.class.getClassLoader());
+                    return null;
+                }
+            });
+
+            return thread;
+        }
+    }
+}
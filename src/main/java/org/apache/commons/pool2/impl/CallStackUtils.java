@@ -81,6 +81,34 @@ public final class CallStackUtils {
             : new ThrowableCallStack(messageFormat, useTimestamp);
     }
 
+    /**
+     * Constructs a new {@link CallStack} using the fastest allowed strategy
+     * that only records the given fraction of calls to
+     * {@link CallStack#fillInStackTrace()}. The full stack trace strategy
+     * captures frames without converting them to text, so the cost of
+     * formatting is only paid when a stack trace is printed.
+     *
+     * @param messageFormat         message (or format) to print first in stack traces
+     * @param useTimestamp          if true, interpret message as a SimpleDateFormat and print the created timestamp;
+     *                              otherwise, print message format literally
+     * @param requireFullStackTrace if true, forces the use of a stack walking mechanism that includes full stack trace
+     *                              information; otherwise, uses a faster implementation if possible
+     * @param sampleRate            the fraction, between 0 and 1, of calls that record a stack trace
+     * @return a new CallStack
+     * @see SampledCallStack
+     * @since 2.6.1
+     */
+    public static CallStack newCallStack(final String messageFormat,
+                                         final boolean useTimestamp,
+                                         final boolean requireFullStackTrace,
+                                         final double sampleRate) {
+        if (sampleRate <= 0) {
+            return NoOpCallStack.INSTANCE;
+        }
+        final CallStack callStack = newCallStack(messageFormat, useTimestamp, requireFullStackTrace);
+        return sampleRate < 1 ? new SampledCallStack(callStack, sampleRate) : callStack;
+    }
+
     /**
      * Hidden constructor.
      */
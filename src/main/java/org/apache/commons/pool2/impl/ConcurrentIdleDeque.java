@@ -0,0 +1,984 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.util.AbstractQueue;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.pool2.PooledObject;
+
+/**
+ * An unbounded deque of idle objects that supports blocking retrieval without
+ * using a lock for the non-blocking operations.
+ * <p>
+ * Elements are held in a {@link ConcurrentLinkedDeque} so adding and removing
+ * elements only requires CAS operations. Threads that need to wait for an
+ * element are parked on a separate queue of waiters which is only consulted
+ * when an element is added, so the uncontended borrow / return cycle of a
+ * pool never takes a lock or signals a condition.
+ * <p>
+ * When created with fairness or hand-off, an element added while threads are
+ * waiting is handed directly to the thread that has been waiting longest
+ * rather than being added to the deque, so waiting threads are served in
+ * arrival order and a newly arriving thread cannot take the element first.
+ * Otherwise, the longest waiting thread is woken and competes with any other
+ * thread for the element.
+ * <p>
+ * Callers that must not block may register an {@link AsyncWaiter} instead of
+ * waiting. An asynchronous waiter takes its turn with the waiting threads but,
+ * as it cannot compete for an element, it is always handed one directly by
+ * the thread that adds the element.
+ * <p>
+ * Waiters may be given a priority. The waiter with the highest priority is
+ * served first, and waiters with the same priority are served in arrival
+ * order. So that low priority waiters are not starved, a waiter's priority
+ * is raised by one for every {@link #setPriorityAgingNanos(long) aging
+ * interval} it has waited. Waiters are queued separately for each priority
+ * so callers should use a small number of distinct priorities.
+ * <p>
+ * {@link #size()} is maintained with a counter so it is a constant time
+ * operation, but it may be briefly inaccurate while elements are being added
+ * or removed by other threads. The same applies to {@link #getBytes()}, the
+ * combined recorded size of the pooled objects in the deque, which requires
+ * that the recorded size of an element does not change while it is in the
+ * deque.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @param <E> the type of elements held in this collection
+ *
+ * @see LinkedBlockingDeque
+ * @since 2.6.1
+ */
+class ConcurrentIdleDeque<E> extends AbstractQueue<E> implements Deque<E> {
+
+    /** Marks a waiter that gave up before it was handed an element. */
+    private static final Object CANCELLED = new Object();
+
+    /** The elements. */
+    private final ConcurrentLinkedDeque<E> items = new ConcurrentLinkedDeque<>();
+
+    /** Number of elements, maintained separately as counting the deque is O(n). */
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    /** Combined recorded size of the elements that are pooled objects. */
+    private final AtomicLong bytes = new AtomicLong(0);
+
+    /**
+     * Threads and asynchronous waiters waiting for an element, longest
+     * waiting first, for each priority.
+     */
+    private final ConcurrentMap<Integer, ConcurrentLinkedQueue<Waiter>> waiters =
+            new ConcurrentSkipListMap<>();
+
+    /** The queue of waiters with the default priority. */
+    private final ConcurrentLinkedQueue<Waiter> defaultWaiters = waiterQueue(0);
+
+    /** Has a priority other than the default been used? */
+    private volatile boolean prioritized = false;
+
+    /** Number of threads and asynchronous waiters waiting for an element. */
+    private final AtomicInteger waiterCount = new AtomicInteger(0);
+
+    /** Are added elements handed directly to waiting threads? */
+    private final boolean handOff;
+
+    /** Time a waiter must wait for its priority to be raised by one. */
+    private volatile long priorityAgingNanos = -1;
+
+    /**
+     * Creates a {@code ConcurrentIdleDeque} without fairness.
+     */
+    public ConcurrentIdleDeque() {
+        this(false);
+    }
+
+    /**
+     * Creates a {@code ConcurrentIdleDeque} with the given fairness policy.
+     *
+     * @param fairness true means threads waiting to take elements will be
+     *        served in arrival order
+     */
+    public ConcurrentIdleDeque(final boolean fairness) {
+        this(fairness, false);
+    }
+
+    /**
+     * Creates a {@code ConcurrentIdleDeque} with the given fairness and
+     * hand-off policy.
+     *
+     * @param fairness true means threads waiting to take elements will be
+     *        served in arrival order
+     * @param handOff true means elements added while threads are waiting will
+     *        be passed directly to the thread that has been waiting longest.
+     *        This is always the case if fairness is true.
+     */
+    public ConcurrentIdleDeque(final boolean fairness, final boolean handOff) {
+        this.handOff = fairness || handOff;
+    }
+
+    /**
+     * Sets the time a waiter must wait for its priority to be raised by one.
+     *
+     * @param priorityAgingNanos the aging interval in nanoseconds. Zero or
+     *        negative means priorities are never raised.
+     */
+    void setPriorityAgingNanos(final long priorityAgingNanos) {
+        this.priorityAgingNanos = priorityAgingNanos;
+    }
+
+    // Basic adding and removing operations
+
+    /**
+     * Adds the element to the deque or, if hand-off is enabled and a thread
+     * is waiting, hands it to the thread that has been waiting longest.
+     *
+     * @param e element to add
+     * @param first add at the head (true) or the tail (false) of the deque
+     *
+     * @throws NullPointerException if e is null
+     */
+    private void link(final E e, final boolean first) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        if (handOff) {
+            Waiter w;
+            while ((w = dequeueWaiter()) != null) {
+                if (w.fulfill(e)) {
+                    return;
+                }
+            }
+        }
+        if (first) {
+            items.addFirst(e);
+        } else {
+            items.addLast(e);
+        }
+        count.incrementAndGet();
+        addBytes(e, 1);
+        signalWaiter();
+    }
+
+    /**
+     * Registers a thread as waiting for an element.
+     *
+     * @param w The waiter to register
+     */
+    private void enqueueWaiter(final Waiter w) {
+        w.queued.set(true);
+        waiterQueue(w.priority).add(w);
+        waiterCount.incrementAndGet();
+    }
+
+    /**
+     * Removes a waiter that has stopped waiting from the waiters.
+     *
+     * @param w The waiter to remove
+     */
+    private void removeWaiter(final Waiter w) {
+        if (w.queued.compareAndSet(true, false)) {
+            waiterQueue(w.priority).remove(w);
+            waiterCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Obtains the queue of waiters with the given priority.
+     *
+     * @param priority The priority
+     *
+     * @return the queue
+     */
+    private ConcurrentLinkedQueue<Waiter> waiterQueue(final int priority) {
+        final Integer key = Integer.valueOf(priority);
+        ConcurrentLinkedQueue<Waiter> queue = waiters.get(key);
+        if (queue == null) {
+            queue = new ConcurrentLinkedQueue<>();
+            final ConcurrentLinkedQueue<Waiter> existing = waiters.putIfAbsent(key, queue);
+            if (existing != null) {
+                queue = existing;
+            } else if (priority != 0) {
+                prioritized = true;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Removes the waiter that should be served next from the waiters. That
+     * is the waiter with the highest priority, after aging, that has been
+     * waiting longest.
+     *
+     * @return the removed waiter or {@code null} if there are no waiters
+     */
+    private Waiter dequeueWaiter() {
+        for (;;) {
+            final ConcurrentLinkedQueue<Waiter> queue = selectWaiterQueue();
+            if (queue == null) {
+                return null;
+            }
+            final Waiter w = queue.poll();
+            // Skip waiters that are concurrently removing themselves
+            if (w != null && w.queued.compareAndSet(true, false)) {
+                waiterCount.decrementAndGet();
+                return w;
+            }
+        }
+    }
+
+    /**
+     * Selects the queue whose longest waiting waiter should be served next.
+     *
+     * @return the queue or {@code null} if there are no waiters
+     */
+    private ConcurrentLinkedQueue<Waiter> selectWaiterQueue() {
+        if (!prioritized) {
+            return defaultWaiters.isEmpty() ? null : defaultWaiters;
+        }
+        final long agingNanos = priorityAgingNanos;
+        final long now = System.nanoTime();
+        ConcurrentLinkedQueue<Waiter> selected = null;
+        long selectedPriority = 0;
+        long selectedSince = 0;
+        for (final ConcurrentLinkedQueue<Waiter> queue : waiters.values()) {
+            final Waiter head = queue.peek();
+            if (head == null) {
+                continue;
+            }
+            long priority = head.priority;
+            if (agingNanos > 0) {
+                priority += (now - head.since) / agingNanos;
+            }
+            if (selected == null || priority > selectedPriority ||
+                    priority == selectedPriority && head.since - selectedSince < 0) {
+                selected = queue;
+                selectedPriority = priority;
+                selectedSince = head.since;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Wakes the thread that has been waiting longest, if any, so that it
+     * re-checks for available elements. As with
+     * {@link java.util.concurrent.locks.Condition#signal()}, the woken thread
+     * is no longer counted as waiting unless it has to wait again. If the
+     * longest waiter is an asynchronous waiter, it is handed the first
+     * element instead.
+     */
+    private void signalWaiter() {
+        Waiter w;
+        while ((w = dequeueWaiter()) != null) {
+            if (w.thread != null) {
+                LockSupport.unpark(w.thread);
+                return;
+            }
+            final E e = pollFirst();
+            if (e == null) {
+                // Another thread took the element. Keep waiting, albeit at
+                // the back of the queue.
+                enqueueWaiter(w);
+                if (isEmpty()) {
+                    return;
+                }
+                // An element arrived while the waiter was not queued
+                continue;
+            }
+            if (w.fulfill(e)) {
+                return;
+            }
+            // Cancelled. Put the element back and try the next waiter.
+            items.addFirst(e);
+            count.incrementAndGet();
+            addBytes(e, 1);
+        }
+    }
+
+    /**
+     * Adds the recorded size of an element that is a pooled object to, or
+     * removes it from, {@link #getBytes()}.
+     *
+     * @param e the element that has been added or removed
+     * @param sign 1 if the element was added, -1 if it was removed
+     */
+    private void addBytes(final Object e, final int sign) {
+        if (e instanceof PooledObject<?>) {
+            final long size = BaseGenericObjectPool.sizeOf((PooledObject<?>) e);
+            if (size != 0) {
+                bytes.addAndGet(sign * size);
+            }
+        }
+    }
+
+    /**
+     * Waits for an element to become available and removes it from the
+     * deque.
+     *
+     * @param timed    Should the wait time out?
+     * @param nanos    The time to wait if timed
+     * @param priority The priority of the waiting thread
+     *
+     * @return the element or {@code null} if the wait timed out
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    @SuppressWarnings("unchecked")
+    private E awaitFirst(final boolean timed, final long nanos, final int priority)
+            throws InterruptedException {
+        final Waiter w = new Waiter(Thread.currentThread(), priority);
+        enqueueWaiter(w);
+        final long deadline = timed ? System.nanoTime() + nanos : 0;
+        try {
+            for (;;) {
+                final Object handed = w.item.get();
+                if (handed != null) {
+                    // Only this thread ever cancels so this must be an element
+                    return (E) handed;
+                }
+                E e = pollFirst();
+                if (e == null) {
+                    e = pollFallback();
+                }
+                if (e != null) {
+                    if (w.cancel()) {
+                        return e;
+                    }
+                    // Handed an element at the same time. Keep that one and
+                    // put this one back where it came from.
+                    link(e, true);
+                    continue;
+                }
+                if (Thread.interrupted()) {
+                    if (!w.cancel()) {
+                        link((E) w.item.get(), true);
+                    }
+                    throw new InterruptedException();
+                }
+                if (timed) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        if (w.cancel()) {
+                            return null;
+                        }
+                        continue;
+                    }
+                }
+                if (!w.queued.get()) {
+                    // Signalled but another thread took the element. Wait
+                    // again, checking for an element once registered.
+                    enqueueWaiter(w);
+                    continue;
+                }
+                if (timed) {
+                    LockSupport.parkNanos(this, deadline - System.nanoTime());
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        } finally {
+            removeWaiter(w);
+            // This thread may have consumed a wake up intended for an element
+            // it did not take. Pass it on.
+            if (!items.isEmpty()) {
+                signalWaiter();
+            }
+        }
+    }
+
+    /**
+     * Obtains an element held outside of this deque for a thread that is
+     * waiting for an element. This is called after the thread has been
+     * registered as a waiter so an owner of such elements that checks
+     * {@link #hasTakeWaiters()} after storing an element elsewhere will not
+     * leave the waiting thread blocked. Sub-classes that hold elements
+     * elsewhere should override this method.
+     *
+     * @return an element or {@code null} if none is available
+     */
+    E pollFallback() {
+        return null;
+    }
+
+    // BlockingDeque methods
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addFirst(final E e) {
+        link(e, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addLast(final E e) {
+        link(e, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offerFirst(final E e) {
+        link(e, true);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offerLast(final E e) {
+        link(e, false);
+        return true;
+    }
+
+    /**
+     * Links the provided element as the last in the queue. As the deque is
+     * unbounded, this never blocks.
+     *
+     * @param e element to link
+     *
+     * @throws NullPointerException if e is null
+     */
+    public void put(final E e) {
+        link(e, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public E removeFirst() {
+        final E x = pollFirst();
+        if (x == null) {
+            throw new NoSuchElementException();
+        }
+        return x;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public E removeLast() {
+        final E x = pollLast();
+        if (x == null) {
+            throw new NoSuchElementException();
+        }
+        return x;
+    }
+
+    @Override
+    public E pollFirst() {
+        final E e = items.pollFirst();
+        if (e != null) {
+            count.decrementAndGet();
+            addBytes(e, -1);
+        }
+        return e;
+    }
+
+    @Override
+    public E pollLast() {
+        final E e = items.pollLast();
+        if (e != null) {
+            count.decrementAndGet();
+            addBytes(e, -1);
+        }
+        return e;
+    }
+
+    /**
+     * Unlinks the first element in the queue, waiting until there is an
+     * element to unlink if the queue is empty.
+     *
+     * @return the unlinked element
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public E takeFirst() throws InterruptedException {
+        return takeFirst(0);
+    }
+
+    /**
+     * Unlinks the first element in the queue, waiting with the given
+     * priority until there is an element to unlink if the queue is empty.
+     *
+     * @param priority the priority of the waiting thread. Higher values are
+     *                 served first.
+     * @return the unlinked element
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public E takeFirst(final int priority) throws InterruptedException {
+        final E e = pollFirst();
+        if (e != null) {
+            return e;
+        }
+        return awaitFirst(false, 0, priority);
+    }
+
+    /**
+     * Unlinks the first element in the queue, waiting up to the specified
+     * wait time if necessary for an element to become available.
+     *
+     * @param timeout length of time to wait
+     * @param unit units that timeout is expressed in
+     * @return the unlinked element or {@code null} if the timeout expired
+     *         before an element became available
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public E pollFirst(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return pollFirst(timeout, unit, 0);
+    }
+
+    /**
+     * Unlinks the first element in the queue, waiting with the given
+     * priority up to the specified wait time if necessary for an element to
+     * become available.
+     *
+     * @param timeout length of time to wait
+     * @param unit units that timeout is expressed in
+     * @param priority the priority of the waiting thread. Higher values are
+     *                 served first.
+     * @return the unlinked element or {@code null} if the timeout expired
+     *         before an element became available
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public E pollFirst(final long timeout, final TimeUnit unit, final int priority)
+            throws InterruptedException {
+        final E e = pollFirst();
+        if (e != null) {
+            return e;
+        }
+        return awaitFirst(true, unit.toNanos(timeout), priority);
+    }
+
+    /**
+     * Unlinks the first element in the queue without waiting. If the queue is
+     * empty, the given waiter is registered and will be handed an element
+     * when one becomes available unless it is first cancelled with
+     * {@link #cancelAsync(AsyncWaiter)}.
+     *
+     * @param w the waiter to register if no element is available. A waiter
+     *          may only be registered once.
+     * @return the unlinked element or {@code null} if the waiter was
+     *         registered
+     */
+    public E takeFirstAsync(final AsyncWaiter<E> w) {
+        E e = pollFirst();
+        if (e != null) {
+            return e;
+        }
+        enqueueWaiter(w);
+        // Check again now the waiter is visible to threads adding elements
+        e = pollFirst();
+        if (e == null) {
+            e = pollFallback();
+        }
+        if (e != null) {
+            if (cancelAsync(w)) {
+                return e;
+            }
+            // Handed an element at the same time. The waiter has that one so
+            // put this one back.
+            link(e, true);
+        }
+        return null;
+    }
+
+    /**
+     * Cancels a waiter registered by {@link #takeFirstAsync(AsyncWaiter)}.
+     *
+     * @param w the waiter to cancel
+     * @return {@code true} if the waiter was cancelled or {@code false} if it
+     *         has already been handed an element
+     */
+    public boolean cancelAsync(final AsyncWaiter<E> w) {
+        final Waiter waiter = w;
+        if (!waiter.cancel()) {
+            return false;
+        }
+        removeWaiter(waiter);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public E getFirst() {
+        final E x = peekFirst();
+        if (x == null) {
+            throw new NoSuchElementException();
+        }
+        return x;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public E getLast() {
+        final E x = peekLast();
+        if (x == null) {
+            throw new NoSuchElementException();
+        }
+        return x;
+    }
+
+    @Override
+    public E peekFirst() {
+        return items.peekFirst();
+    }
+
+    @Override
+    public E peekLast() {
+        return items.peekLast();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(final Object o) {
+        if (o != null && items.removeFirstOccurrence(o)) {
+            count.decrementAndGet();
+            addBytes(o, -1);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeLastOccurrence(final Object o) {
+        if (o != null && items.removeLastOccurrence(o)) {
+            count.decrementAndGet();
+            addBytes(o, -1);
+            return true;
+        }
+        return false;
+    }
+
+    // Queue and stack methods
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offer(final E e) {
+        return offerLast(e);
+    }
+
+    @Override
+    public E poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public E peek() {
+        return peekFirst();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void push(final E e) {
+        addFirst(e);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public E pop() {
+        return removeFirst();
+    }
+
+    // Collection methods
+
+    /**
+     * Removes the first occurrence of the specified element from this deque.
+     *
+     * @param o element to be removed from this deque, if present
+     * @return {@code true} if this deque changed as a result of the call
+     */
+    @Override
+    public boolean remove(final Object o) {
+        return removeFirstOccurrence(o);
+    }
+
+    /**
+     * Returns the number of elements in this deque.
+     *
+     * @return the number of elements in this deque
+     */
+    @Override
+    public int size() {
+        final int c = count.get();
+        return c < 0 ? 0 : c;
+    }
+
+    /**
+     * Returns the combined recorded size, in bytes, of the elements of this
+     * deque that are pooled objects. This is maintained with a counter so it
+     * is a constant time operation.
+     *
+     * @return the combined size in bytes
+     */
+    long getBytes() {
+        final long b = bytes.get();
+        return b < 0 ? 0 : b;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return items.contains(o);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(items.iterator());
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new Itr(items.descendingIterator());
+    }
+
+    @Override
+    public String toString() {
+        return items.toString();
+    }
+
+    // Monitoring methods
+
+    /**
+     * Returns true if there are threads waiting to take instances from this
+     * deque. The result is only an estimate as threads may start or stop
+     * waiting at any time.
+     *
+     * @return true if there is at least one thread waiting to take an
+     *         element from this deque.
+     */
+    public boolean hasTakeWaiters() {
+        return waiterCount.get() > 0;
+    }
+
+    /**
+     * Returns the length of the queue of threads waiting to take instances
+     * from this deque. The result is only an estimate as threads may start or
+     * stop waiting at any time.
+     *
+     * @return number of threads waiting to take an element from this deque.
+     */
+    public int getTakeQueueLength() {
+        final int c = waiterCount.get();
+        return c < 0 ? 0 : c;
+    }
+
+    /**
+     * Interrupts the threads currently waiting to take an object from the
+     * pool. Asynchronous waiters are cancelled and notified via
+     * {@link AsyncWaiter#interrupted()}. Threads that start waiting while this
+     * method is running may not be interrupted.
+     */
+    public void interuptTakeWaiters() {
+        for (final ConcurrentLinkedQueue<Waiter> queue : waiters.values()) {
+            for (final Waiter w : queue) {
+                if (w.thread != null) {
+                    w.thread.interrupt();
+                } else {
+                    @SuppressWarnings("unchecked")
+                    final AsyncWaiter<E> aw = (AsyncWaiter<E>) w;
+                    if (cancelAsync(aw)) {
+                        aw.interrupted();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A thread waiting for an element.
+     */
+    private static class Waiter {
+
+        /** The waiting thread or {@code null} for an asynchronous waiter. */
+        private final Thread thread;
+
+        /** The priority of the waiter before aging. */
+        private final int priority;
+
+        /** The {@link System#nanoTime()} at which the waiter started waiting. */
+        private final long since = System.nanoTime();
+
+        /** Is the thread currently registered in the waiters queue? */
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        /**
+         * {@code null} while waiting, the handed element once fulfilled or
+         * {@link ConcurrentIdleDeque#CANCELLED} once the thread gave up.
+         */
+        private final AtomicReference<Object> item = new AtomicReference<>();
+
+        /**
+         * Create a new waiter for the given thread.
+         *
+         * @param thread   The waiting thread
+         * @param priority The priority of the waiter
+         */
+        Waiter(final Thread thread, final int priority) {
+            this.thread = thread;
+            this.priority = priority;
+        }
+
+        /**
+         * Hands an element to the waiting thread.
+         *
+         * @param e The element
+         *
+         * @return {@code true} if the waiter accepted the element or
+         *         {@code false} if it has already given up waiting
+         */
+        boolean fulfill(final Object e) {
+            if (item.compareAndSet(null, e)) {
+                wake(e);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Notifies the waiter that it has been handed an element.
+         *
+         * @param e The element
+         */
+        void wake(final Object e) {
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Stops the waiter accepting elements.
+         *
+         * @return {@code true} if cancelled or {@code false} if the waiter
+         *         has already been handed an element
+         */
+        boolean cancel() {
+            return item.compareAndSet(null, CANCELLED);
+        }
+    }
+
+    /**
+     * A waiter that is notified when it is handed an element rather than
+     * blocking a thread while it waits.
+     * <p>
+     * The notification methods are called by whichever thread hands over the
+     * element or interrupts the waiters and must not throw.
+     *
+     * @param <E> the type of elements held in the deque
+     */
+    abstract static class AsyncWaiter<E> extends Waiter {
+
+        /**
+         * Create a new asynchronous waiter.
+         */
+        AsyncWaiter() {
+            super(null, 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        final void wake(final Object e) {
+            taken((E) e);
+        }
+
+        /**
+         * Called when the waiter is handed an element.
+         *
+         * @param e The element
+         */
+        abstract void taken(E e);
+
+        /**
+         * Called when the waiter is cancelled by
+         * {@link ConcurrentIdleDeque#interuptTakeWaiters()}.
+         */
+        abstract void interrupted();
+    }
+
+    /**
+     * Iterator that keeps the element count accurate when elements are
+     * removed.
+     */
+    private class Itr implements Iterator<E> {
+
+        private final Iterator<E> delegate;
+
+        /** The element returned by the most recent call to next. */
+        private E lastRet;
+
+        /**
+         * Create a new iterator wrapping an iterator of the underlying deque.
+         *
+         * @param delegate The iterator to wrap
+         */
+        Itr(final Iterator<E> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public E next() {
+            lastRet = delegate.next();
+            return lastRet;
+        }
+
+        @Override
+        public void remove() {
+            final E e = lastRet;
+            if (e == null) {
+                throw new IllegalStateException();
+            }
+            lastRet = null;
+            removeFirstOccurrence(e);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.apache.commons.pool2.TrackedUse;
 
 import java.io.PrintWriter;
 import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This wrapper is used to track the additional information, such as state, for
@@ -36,12 +37,25 @@ import java.util.Deque;
  */
 public class DefaultPooledObject<T> implements PooledObject<T> {
 
+    private static final PooledObjectState[] STATES = PooledObjectState.values();
+    private static final int STATE_BITS = 4;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+
     private final T object;
-    private PooledObjectState state = PooledObjectState.IDLE; // @GuardedBy("this") to ensure transitions are valid
+    /**
+     * The ordinal of the state in the low bits and the number of times the
+     * object has been allocated above them. State transitions are
+     * compare-and-set operations so that they are valid without locking, and
+     * a transition that depends on a particular allocation fails if the
+     * object has since been returned and allocated again.
+     */
+    private final AtomicLong state = new AtomicLong(PooledObjectState.IDLE.ordinal());
     private final long createTime = System.currentTimeMillis();
     private volatile long lastBorrowTime = createTime;
     private volatile long lastUseTime = createTime;
     private volatile long lastReturnTime = createTime;
+    private volatile long lastValidatedTime = 0;
+    private volatile long size = 0;
     private volatile boolean logAbandoned = false;
     private volatile CallStack borrowedBy = NoOpCallStack.INSTANCE;
     private volatile CallStack usedBy = NoOpCallStack.INSTANCE;
@@ -98,6 +112,49 @@ public class DefaultPooledObject<T> implements PooledObject<T> {
         return lastReturnTime;
     }
 
+    /**
+     * Get the time the pool last successfully validated this object while it
+     * was idle or being borrowed.
+     *
+     * @return the time in milliseconds since the epoch or zero if the object
+     *         has not been validated
+     * @since 2.6.1
+     */
+    public long getLastValidatedTime() {
+        return lastValidatedTime;
+    }
+
+    /**
+     * Records that the pool has successfully validated this object.
+     *
+     * @param time the time of the validation in milliseconds since the epoch
+     */
+    void setLastValidatedTime(final long time) {
+        lastValidatedTime = time;
+    }
+
+    /**
+     * Get the retained size of this object, as estimated by the pool's
+     * {@link org.apache.commons.pool2.PooledObjectSizer} when the object was
+     * created or last returned.
+     *
+     * @return the estimated size in bytes or zero if the pool does not
+     *         measure its objects
+     * @since 2.6.1
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Records the retained size of this object.
+     *
+     * @param size the estimated size in bytes
+     */
+    void setSize(final long size) {
+        this.size = size;
+    }
+
     /**
      * Get the number of times this object has been borrowed.
      * @return The number of times this object has been borrowed.
@@ -144,31 +201,25 @@ public class DefaultPooledObject<T> implements PooledObject<T> {
         result.append("Object: ");
         result.append(object.toString());
         result.append(", State: ");
-        synchronized (this) {
-            result.append(state.toString());
-        }
+        result.append(getState().toString());
         return result.toString();
         // TODO add other attributes
     }
 
     @Override
-    public synchronized boolean startEvictionTest() {
-        if (state == PooledObjectState.IDLE) {
-            state = PooledObjectState.EVICTION;
-            return true;
-        }
-
-        return false;
+    public boolean startEvictionTest() {
+        return compareAndSetState(PooledObjectState.IDLE, PooledObjectState.EVICTION);
     }
 
     @Override
-    public synchronized boolean endEvictionTest(
+    public boolean endEvictionTest(
             final Deque<PooledObject<T>> idleQueue) {
-        if (state == PooledObjectState.EVICTION) {
-            state = PooledObjectState.IDLE;
+        if (compareAndSetState(PooledObjectState.EVICTION, PooledObjectState.IDLE)) {
             return true;
-        } else if (state == PooledObjectState.EVICTION_RETURN_TO_HEAD) {
-            state = PooledObjectState.IDLE;
+        }
+        // A borrower tried to allocate this object during the eviction test
+        if (compareAndSetState(PooledObjectState.EVICTION_RETURN_TO_HEAD,
+                PooledObjectState.IDLE)) {
             if (!idleQueue.offerFirst(this)) {
                 // TODO - Should never happen
             }
@@ -183,24 +234,40 @@ public class DefaultPooledObject<T> implements PooledObject<T> {
      * @return {@code true} if the original state was {@link PooledObjectState#IDLE IDLE}
      */
     @Override
-    public synchronized boolean allocate() {
-        if (state == PooledObjectState.IDLE) {
-            state = PooledObjectState.ALLOCATED;
-            lastBorrowTime = System.currentTimeMillis();
-            lastUseTime = lastBorrowTime;
-            borrowedCount++;
-            if (logAbandoned) {
-                borrowedBy.fillInStackTrace();
+    public boolean allocate() {
+        for (;;) {
+            final long stamped = state.get();
+            final PooledObjectState current = stateOf(stamped);
+            if (current == PooledObjectState.IDLE) {
+                // The last use time is written before the transition so that
+                // anyone who sees this object as ALLOCATED also sees the time
+                // of this borrow, not the previous one
+                final long now = System.currentTimeMillis();
+                lastUseTime = now;
+                if (!state.compareAndSet(stamped, withState(stamped + (1L << STATE_BITS),
+                        PooledObjectState.ALLOCATED))) {
+                    continue;
+                }
+                // Only the thread that won the transition gets here so the
+                // remaining attributes do not need to be updated atomically
+                lastBorrowTime = now;
+                borrowedCount++;
+                if (logAbandoned) {
+                    borrowedBy.fillInStackTrace();
+                }
+                return true;
+            } else if (current == PooledObjectState.EVICTION) {
+                // TODO Allocate anyway and ignore eviction test
+                if (!state.compareAndSet(stamped,
+                        withState(stamped, PooledObjectState.EVICTION_RETURN_TO_HEAD))) {
+                    continue;
+                }
+                return false;
             }
-            return true;
-        } else if (state == PooledObjectState.EVICTION) {
-            // TODO Allocate anyway and ignore eviction test
-            state = PooledObjectState.EVICTION_RETURN_TO_HEAD;
+            // TODO if validating and testOnBorrow == true then pre-allocate for
+            // performance
             return false;
         }
-        // TODO if validating and testOnBorrow == true then pre-allocate for
-        // performance
-        return false;
     }
 
     /**
@@ -210,24 +277,28 @@ public class DefaultPooledObject<T> implements PooledObject<T> {
      * @return {@code true} if the state was {@link PooledObjectState#ALLOCATED ALLOCATED}
      */
     @Override
-    public synchronized boolean deallocate() {
-        if (state == PooledObjectState.ALLOCATED ||
-                state == PooledObjectState.RETURNING) {
-            state = PooledObjectState.IDLE;
-            lastReturnTime = System.currentTimeMillis();
-            borrowedBy.clear();
-            return true;
+    public boolean deallocate() {
+        for (;;) {
+            final long stamped = state.get();
+            final PooledObjectState current = stateOf(stamped);
+            if (current != PooledObjectState.ALLOCATED &&
+                    current != PooledObjectState.RETURNING) {
+                return false;
+            }
+            if (state.compareAndSet(stamped, withState(stamped, PooledObjectState.IDLE))) {
+                lastReturnTime = System.currentTimeMillis();
+                borrowedBy.clear();
+                return true;
+            }
         }
-
-        return false;
     }
 
     /**
      * Sets the state to {@link PooledObjectState#INVALID INVALID}
      */
     @Override
-    public synchronized void invalidate() {
-        state = PooledObjectState.INVALID;
+    public void invalidate() {
+        setState(PooledObjectState.INVALID);
     }
 
     @Override
@@ -250,24 +321,93 @@ public class DefaultPooledObject<T> implements PooledObject<T> {
      * @return state
      */
     @Override
-    public synchronized PooledObjectState getState() {
-        return state;
+    public PooledObjectState getState() {
+        return stateOf(state.get());
     }
 
     /**
      * Marks the pooled object as abandoned.
      */
     @Override
-    public synchronized void markAbandoned() {
-        state = PooledObjectState.ABANDONED;
+    public void markAbandoned() {
+        setState(PooledObjectState.ABANDONED);
     }
 
     /**
      * Marks the object as returning to the pool.
      */
     @Override
-    public synchronized void markReturning() {
-        state = PooledObjectState.RETURNING;
+    public void markReturning() {
+        setState(PooledObjectState.RETURNING);
+    }
+
+    /**
+     * Atomically marks the object as {@link PooledObjectState#ABANDONED
+     * ABANDONED} if it is {@link PooledObjectState#ALLOCATED ALLOCATED} and
+     * was last used no later than the given time. The state is only changed
+     * if the object has not been returned since the time was checked, so a
+     * borrower that obtained the object after it was checked never sees it
+     * as abandoned.
+     *
+     * @param timeout The latest last used time, in milliseconds since the
+     *                epoch, for which the object is considered abandoned
+     *
+     * @return {@code true} if this call marked the object as abandoned
+     */
+    boolean markAbandoned(final long timeout) {
+        // A borrow records the last used time before the object becomes
+        // ALLOCATED so the time read here is no earlier than that borrow
+        final long stamped = state.get();
+        if (stateOf(stamped) != PooledObjectState.ALLOCATED ||
+                getLastUsedTime() > timeout) {
+            return false;
+        }
+        return state.compareAndSet(stamped, withState(stamped, PooledObjectState.ABANDONED));
+    }
+
+    /**
+     * Atomically sets the state to the given updated state if the current
+     * state is the expected state. No other attributes of the object are
+     * changed.
+     *
+     * @param expect The expected state
+     * @param update The new state
+     *
+     * @return {@code true} if the state was changed
+     */
+    boolean compareAndSetState(final PooledObjectState expect,
+            final PooledObjectState update) {
+        for (;;) {
+            final long stamped = state.get();
+            if (stateOf(stamped) != expect) {
+                return false;
+            }
+            if (state.compareAndSet(stamped, withState(stamped, update))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sets the state without changing the allocation count.
+     *
+     * @param update The new state
+     */
+    private void setState(final PooledObjectState update) {
+        for (;;) {
+            final long stamped = state.get();
+            if (state.compareAndSet(stamped, withState(stamped, update))) {
+                return;
+            }
+        }
+    }
+
+    private static PooledObjectState stateOf(final long stamped) {
+        return STATES[(int) (stamped & STATE_MASK)];
+    }
+
+    private static long withState(final long stamped, final PooledObjectState update) {
+        return (stamped & ~STATE_MASK) | update.ordinal();
     }
 
     @Override
@@ -288,11 +428,27 @@ public class DefaultPooledObject<T> implements PooledObject<T> {
     // TODO: uncomment below in 3.0
     // @Override
     public void setRequireFullStackTrace(final boolean requireFullStackTrace) {
+        setRequireFullStackTrace(requireFullStackTrace, 1.0);
+    }
+
+    /**
+     * Configures the stack trace generation strategy based on whether or not fully
+     * detailed stack traces are required and the fraction of borrows and uses that
+     * should record a stack trace.
+     *
+     * @param requireFullStackTrace the new configuration setting for abandoned object
+     *                              logging
+     * @param sampleRate            the fraction, between 0 and 1, of borrows and uses
+     *                              that record a stack trace
+     * @see CallStackUtils#newCallStack(String, boolean, boolean, double)
+     * @since 2.6.1
+     */
+    public void setRequireFullStackTrace(final boolean requireFullStackTrace, final double sampleRate) {
         borrowedBy = CallStackUtils.newCallStack("'Pooled object created' " +
             "yyyy-MM-dd HH:mm:ss Z 'by the following code has not been returned to the pool:'",
-            true, requireFullStackTrace);
+            true, requireFullStackTrace, sampleRate);
         usedBy = CallStackUtils.newCallStack("The last code to use this object was:",
-            false, requireFullStackTrace);
+            false, requireFullStackTrace, sampleRate);
     }
 
 }
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Forecasts the demand on a pool from exponentially weighted moving averages
+ * (EWMA) of the borrow rate and of the time objects are kept active. By
+ * Little's law the expected number of objects active at once is the product
+ * of the two.
+ * <p>
+ * Samples are taken at most once every {@link #SAMPLE_INTERVAL_MILLIS}. The
+ * weight given to each sample depends on the time since the previous sample
+ * so that the averages decay with a time constant of
+ * {@link #SMOOTHING_MILLIS} however irregularly they are sampled.
+ * <p>
+ * This class is intended to be thread-safe. A thread that finds another
+ * thread taking a sample skips its own sample rather than waiting.
+ *
+ * @since 2.6.1
+ */
+final class DemandForecast {
+
+    /** The minimum time in milliseconds between samples. */
+    static final long SAMPLE_INTERVAL_MILLIS = 100;
+
+    /** The time constant in milliseconds of the moving averages. */
+    static final long SMOOTHING_MILLIS = 1000;
+
+    private final Lock sampleLock = new ReentrantLock();
+    private volatile long lastSampleTime;
+    private long lastBorrowedCount; // @GuardedBy("sampleLock")
+    private volatile double borrowRate; // borrows per millisecond
+    private volatile double activeTimeMillis;
+
+    /**
+     * Create a new forecast with no demand.
+     *
+     * @param now the current time in milliseconds
+     */
+    DemandForecast(final long now) {
+        lastSampleTime = now;
+    }
+
+    /**
+     * Is a new sample due?
+     *
+     * @param now the current time in milliseconds
+     *
+     * @return {@code true} if {@link #sample(long, long, long)} would take a
+     *         sample
+     */
+    boolean isSampleDue(final long now) {
+        return now - lastSampleTime >= SAMPLE_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Updates the moving averages if a sample is due.
+     *
+     * @param now                the current time in milliseconds
+     * @param borrowedCount      the total number of objects borrowed from
+     *                           the pool
+     * @param meanActiveTimeMillis the current mean active time of objects
+     *                           returned to the pool
+     *
+     * @return {@code true} if a sample was taken
+     */
+    boolean sample(final long now, final long borrowedCount,
+            final long meanActiveTimeMillis) {
+        if (!isSampleDue(now) || !sampleLock.tryLock()) {
+            return false;
+        }
+        try {
+            final long elapsed = now - lastSampleTime;
+            if (elapsed < SAMPLE_INTERVAL_MILLIS) {
+                // Another thread took the sample
+                return false;
+            }
+            final double rate = (borrowedCount - lastBorrowedCount) / (double) elapsed;
+            final double alpha = 1 - Math.exp(-(double) elapsed / SMOOTHING_MILLIS);
+            borrowRate += alpha * (rate - borrowRate);
+            activeTimeMillis += alpha * (meanActiveTimeMillis - activeTimeMillis);
+            lastBorrowedCount = borrowedCount;
+            lastSampleTime = now;
+            return true;
+        } finally {
+            sampleLock.unlock();
+        }
+    }
+
+    /**
+     * Obtains the forecast borrow rate.
+     *
+     * @return the moving average of the number of borrows per second
+     */
+    double getBorrowRate() {
+        return borrowRate * 1000;
+    }
+
+    /**
+     * Obtains the forecast active time.
+     *
+     * @return the moving average of the time in milliseconds objects are
+     *         kept active
+     */
+    double getActiveTimeMillis() {
+        return activeTimeMillis;
+    }
+
+    /**
+     * Obtains the forecast demand.
+     *
+     * @return the expected number of objects active at any one time
+     */
+    double getDemand() {
+        return borrowRate * activeTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("DemandForecast [borrowRate=");
+        builder.append(getBorrowRate());
+        builder.append(", activeTimeMillis=");
+        builder.append(activeTimeMillis);
+        builder.append("]");
+        return builder.toString();
+    }
+}
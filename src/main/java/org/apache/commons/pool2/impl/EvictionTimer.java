@@ -29,6 +29,8 @@ import java.util.concurrent.TimeUnit;
  * currently implemented using {@link ScheduledThreadPoolExecutor}. This
  * implementation may change in any future release. This class keeps track of
  * how many pools are using it. If no pools are using the timer, it is cancelled.
+ * The timer uses as many threads as the largest thread count requested by the
+ * pools that have used it since it was last cancelled.
  * This prevents a thread being left running which, in application server
  * environments, can lead to memory leads and/or prevent applications from
  * shutting down or reloading cleanly.
@@ -73,9 +75,29 @@ class EvictionTimer {
      */
     static synchronized void schedule(
             final BaseGenericObjectPool<?>.Evictor task, final long delay, final long period) {
+        schedule(task, delay, period, 1);
+    }
+
+    /**
+     * Add the specified eviction task to the timer, ensuring the timer has at
+     * least the given number of threads. Tasks that are added with a call to
+     * this method *must* call {@link #cancel(TimerTask)} to cancel the task
+     * to prevent memory and/or thread leaks in application server
+     * environments.
+     * @param task      Task to be scheduled
+     * @param delay     Delay in milliseconds before task is executed
+     * @param period    Time in milliseconds between executions
+     * @param threads   Minimum number of timer threads
+     * @since 2.6.1
+     */
+    static synchronized void schedule(final BaseGenericObjectPool<?>.Evictor task,
+            final long delay, final long period, final int threads) {
+        final int poolSize = Math.max(1, threads);
         if (null == executor) {
-            executor = new ScheduledThreadPoolExecutor(1, new EvictorThreadFactory());
+            executor = new ScheduledThreadPoolExecutor(poolSize, new EvictorThreadFactory());
             executor.setRemoveOnCancelPolicy(true);
+        } else if (executor.getCorePoolSize() < poolSize) {
+            executor.setCorePoolSize(poolSize);
         }
         final ScheduledFuture<?> scheduledFuture =
                 executor.scheduleWithFixedDelay(task, delay, period, TimeUnit.MILLISECONDS);
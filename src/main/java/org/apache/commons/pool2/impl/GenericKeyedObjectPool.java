@@ -17,6 +17,7 @@
 package org.apache.commons.pool2.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -25,19 +26,24 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import org.apache.commons.pool2.KeyedObjectPool;
+import org.apache.commons.pool2.BatchKeyedObjectPool;
 import org.apache.commons.pool2.KeyedPooledObjectFactory;
 import org.apache.commons.pool2.PoolUtils;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.PooledObjectState;
+import org.apache.commons.pool2.ShrinkableKeyedPooledObjectFactory;
 import org.apache.commons.pool2.SwallowedExceptionListener;
 
 /**
@@ -78,7 +84,7 @@ import org.apache.commons.pool2.SwallowedExceptionListener;
  * @since 2.0
  */
 public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
-        implements KeyedObjectPool<K, T>, GenericKeyedObjectPoolMXBean<K> {
+        implements BatchKeyedObjectPool<K, T>, GenericKeyedObjectPoolMXBean<K> {
 
     /**
      * Create a new <code>GenericKeyedObjectPool</code> using defaults from
@@ -110,6 +116,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         }
         this.factory = factory;
         this.fairness = config.getFairness();
+        this.handOff = config.getHandOff();
 
         setConfig(config);
     }
@@ -297,7 +304,18 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
      * ({@link #getBlockWhenExhausted()} is false).
      * The length of time that this method will block when
      * {@link #getBlockWhenExhausted()} is true is determined by the value
-     * passed in to the <code>borrowMaxWait</code> parameter.
+     * passed in to the <code>borrowMaxWait</code> parameter. If
+     * {@link #getMaxWaiters()} borrowers are already waiting under any key, a
+     * {@link BorrowRejectedException} is thrown without waiting.
+     * <p>
+     * <code>borrowMaxWaitMillis</code> is a single budget for the whole borrow,
+     * measured with {@link System#nanoTime()}. Waiting for other threads to
+     * finish creating objects for the key, waiting for an idle instance and
+     * retrying after an idle instance fails activation or validation all draw
+     * on it. Once it is used up the borrow fails with a
+     * <code>NoSuchElementException</code> rather than examining further
+     * instances. A call to the factory that is already in progress is not
+     * interrupted.
      * <p>
      * When <code>maxTotal</code> is set to a positive value and this method is
      * invoked when at the limit with no idle instances available under the requested
@@ -324,6 +342,184 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
     public T borrowObject(final K key, final long borrowMaxWaitMillis) throws Exception {
         assertOpen();
 
+        final PooledObject<T> p;
+        final long waitTime = System.currentTimeMillis();
+        final ObjectDeque<T> objectDeque = register(key);
+
+        try {
+            p = acquire(key, objectDeque, System.nanoTime(),
+                    toMaxWaitNanos(borrowMaxWaitMillis));
+        } finally {
+            deregister(key);
+        }
+
+        updateStatsBorrow(p, System.currentTimeMillis() - waitTime);
+
+        return p.getObject();
+    }
+
+    /**
+     * Equivalent to <code>{@link #borrowObjectAsync(Object, long)
+     * borrowObjectAsync}(key, {@link #getMaxWaitMillis()})</code>.
+     *
+     * @param key pool key
+     *
+     * @return the pending borrow
+     *
+     * @since 2.6.1
+     */
+    public BorrowFuture<T> borrowObjectAsync(final K key) {
+        return borrowObjectAsync(key, getMaxWaitMillis());
+    }
+
+    /**
+     * Borrows an object from the sub-pool associated with the given key
+     * without blocking the calling thread while waiting for an object to
+     * become available.
+     * <p>
+     * An idle instance is used, or a new instance created, in the same way as
+     * for {@link #borrowObject(Object, long)}. Note that creating, activating
+     * and validating an instance happens in the calling thread. If the
+     * sub-pool is exhausted and {@link #getBlockWhenExhausted()} is true, the
+     * borrow is queued with any threads waiting in
+     * {@link #borrowObject(Object, long)} rather than parking the calling
+     * thread. It is then completed by the thread that returns or creates an
+     * instance for the key, which also activates and validates the instance.
+     * If no instance is available within <code>borrowMaxWaitMillis</code>, the
+     * borrow fails with a {@link NoSuchElementException}.
+     * <p>
+     * Failures are reported via the returned future rather than thrown.
+     *
+     * @param key pool key
+     * @param borrowMaxWaitMillis The time to wait in milliseconds for an object
+     *                            to become available. A negative value waits
+     *                            indefinitely.
+     *
+     * @return the pending borrow
+     *
+     * @see BorrowFuture
+     * @since 2.6.1
+     */
+    public BorrowFuture<T> borrowObjectAsync(final K key, final long borrowMaxWaitMillis) {
+        try {
+            assertOpen();
+        } catch (final IllegalStateException e) {
+            final BorrowFuture<T> failed = new BorrowFuture<>();
+            failed.fail(e);
+            return failed;
+        }
+        final ObjectDeque<T> objectDeque = register(key);
+        final AsyncBorrow borrow = new AsyncBorrow(key, objectDeque);
+        borrow.addListener(new Runnable() {
+            @Override
+            public void run() {
+                deregister(key);
+            }
+        });
+        borrow.attempt(null);
+        if (borrowMaxWaitMillis >= 0 && !borrow.isDone()) {
+            final ScheduledFuture<?> timeout =
+                    BorrowTimeoutTimer.schedule(borrow, borrowMaxWaitMillis);
+            borrow.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    timeout.cancel(false);
+                }
+            });
+        }
+        return borrow;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The key is registered once for the whole batch. Each instance is
+     * obtained as for {@link #borrowObject(Object, long)}, with
+     * <code>maxWaitMillis</code> applying to the batch as a whole. The borrow
+     * statistics are updated once for the batch.
+     */
+    @Override
+    public List<T> borrowObjects(final K key, final int n, final long maxWaitMillis)
+            throws Exception {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        assertOpen();
+
+        final long waitTime = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        final long maxWaitNanos = toMaxWaitNanos(maxWaitMillis);
+        final List<PooledObject<T>> borrowed = new ArrayList<>(n);
+        final ObjectDeque<T> objectDeque = register(key);
+
+        try {
+            while (borrowed.size() < n) {
+                borrowed.add(acquire(key, objectDeque, startNanos, maxWaitNanos));
+            }
+        } catch (final Throwable t) {
+            // All or nothing. Return anything already borrowed.
+            returnUnused(key, objectDeque, borrowed);
+            throw t;
+        } finally {
+            deregister(key);
+        }
+
+        updateStatsBorrow(borrowed, System.currentTimeMillis() - waitTime);
+
+        final List<T> result = new ArrayList<>(n);
+        for (final PooledObject<T> p : borrowed) {
+            result.add(p.getObject());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the objects obtained for a batch borrow that could not be
+     * completed. The caller never received these objects so they are not
+     * counted as borrowed or returned.
+     *
+     * @param key         The key the objects were borrowed for
+     * @param objectDeque The objects for the key
+     * @param borrowed    The wrappers of the objects to return
+     */
+    private void returnUnused(final K key, final ObjectDeque<T> objectDeque,
+            final List<PooledObject<T>> borrowed) {
+        for (final PooledObject<T> p : borrowed) {
+            try {
+                markReturningState(p);
+                returnToIdle(key, objectDeque, p);
+            } catch (final Exception e) {
+                // Ignore - the borrow failure is more important
+            }
+        }
+        if (!borrowed.isEmpty() && hasBorrowWaiters() && !replenishAsync(reuseCapacityTask)) {
+            try {
+                reuseCapacity();
+            } catch (final Exception e) {
+                // Ignore - the borrow failure is more important
+            }
+        }
+    }
+
+    /**
+     * Obtains a single allocated, activated and (if configured) validated
+     * object for the given key, creating or waiting for one as necessary,
+     * within the given budget. The caller must have registered interest in
+     * the key.
+     *
+     * @param key          pool key
+     * @param objectDeque  the registered deque for the key
+     * @param startNanos   The value of {@link System#nanoTime()} when the
+     *                     borrow started
+     * @param maxWaitNanos The budget in nanoseconds or a negative value for
+     *                     no limit
+     *
+     * @return the wrapper of the obtained object
+     *
+     * @throws Exception if an object instance cannot be obtained
+     */
+    private PooledObject<T> acquire(final K key, final ObjectDeque<T> objectDeque,
+            final long startNanos, final long maxWaitNanos) throws Exception {
         PooledObject<T> p = null;
 
         // Get local copy of current config so it is consistent for entire
@@ -331,92 +527,111 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         final boolean blockWhenExhausted = getBlockWhenExhausted();
 
         boolean create;
-        final long waitTime = System.currentTimeMillis();
-        final ObjectDeque<T> objectDeque = register(key);
 
-        try {
-            while (p == null) {
-                create = false;
-                p = objectDeque.getIdleObjects().pollFirst();
-                if (p == null) {
-                    p = create(key);
-                    if (p != null) {
-                        create = true;
-                    }
+        while (p == null) {
+            create = false;
+            p = objectDeque.getIdleObjects().pollFirst();
+            if (p == null) {
+                p = create(key, startNanos, maxWaitNanos);
+                if (p != null) {
+                    create = true;
                 }
-                if (blockWhenExhausted) {
-                    if (p == null) {
-                        if (borrowMaxWaitMillis < 0) {
+            }
+            if (blockWhenExhausted) {
+                if (p == null) {
+                    addWaiter();
+                    try {
+                        final long remainingNanos = remainingNanos(startNanos, maxWaitNanos);
+                        if (remainingNanos < 0) {
                             p = objectDeque.getIdleObjects().takeFirst();
                         } else {
                             p = objectDeque.getIdleObjects().pollFirst(
-                                    borrowMaxWaitMillis, TimeUnit.MILLISECONDS);
+                                    remainingNanos, TimeUnit.NANOSECONDS);
                         }
-                    }
-                    if (p == null) {
-                        throw new NoSuchElementException(
-                                "Timeout waiting for idle object");
-                    }
-                } else {
-                    if (p == null) {
-                        throw new NoSuchElementException("Pool exhausted");
+                    } finally {
+                        removeWaiter();
                     }
                 }
-                if (!p.allocate()) {
-                    p = null;
+                if (p == null) {
+                    throw new NoSuchElementException(
+                            "Timeout waiting for idle object");
                 }
-
-                if (p != null) {
-                    try {
-                        factory.activateObject(key, p);
-                    } catch (final Exception e) {
-                        try {
-                            destroy(key, p, true);
-                        } catch (final Exception e1) {
-                            // Ignore - activation failure is more important
-                        }
-                        p = null;
-                        if (create) {
-                            final NoSuchElementException nsee = new NoSuchElementException(
-                                    "Unable to activate object");
-                            nsee.initCause(e);
-                            throw nsee;
-                        }
-                    }
-                    if (p != null && (getTestOnBorrow() || create && getTestOnCreate())) {
-                        boolean validate = false;
-                        Throwable validationThrowable = null;
-                        try {
-                            validate = factory.validateObject(key, p);
-                        } catch (final Throwable t) {
-                            PoolUtils.checkRethrow(t);
-                            validationThrowable = t;
-                        }
-                        if (!validate) {
-                            try {
-                                destroy(key, p, true);
-                                destroyedByBorrowValidationCount.incrementAndGet();
-                            } catch (final Exception e) {
-                                // Ignore - validation failure is more important
-                            }
-                            p = null;
-                            if (create) {
-                                final NoSuchElementException nsee = new NoSuchElementException(
-                                        "Unable to validate object");
-                                nsee.initCause(validationThrowable);
-                                throw nsee;
-                            }
-                        }
-                    }
+            } else {
+                if (p == null) {
+                    throw new NoSuchElementException("Pool exhausted");
+                }
+            }
+            if (!p.allocate() || !activateAndValidate(key, p, create)) {
+                p = null;
+                if (blockWhenExhausted && remainingNanos(startNanos, maxWaitNanos) == 0) {
+                    throw new NoSuchElementException(
+                            "Timeout waiting for idle object");
                 }
             }
-        } finally {
-            deregister(key);
         }
 
-        updateStatsBorrow(p, System.currentTimeMillis() - waitTime);
+        return p;
+    }
 
-        return p.getObject();
+    /**
+     * Activates and, if configured, validates an object that has been
+     * allocated to a borrower. An object that fails is destroyed.
+     *
+     * @param key    pool key
+     * @param p      The allocated object
+     * @param create Was the object newly created for this borrower?
+     *
+     * @return {@code true} if the object is ready to be borrowed or
+     *         {@code false} if it failed and was destroyed
+     *
+     * @throws NoSuchElementException if a newly created object fails
+     */
+    private boolean activateAndValidate(final K key, final PooledObject<T> p,
+            final boolean create) {
+        try {
+            factory.activateObject(key, p);
+        } catch (final Exception e) {
+            try {
+                destroy(key, p, true);
+            } catch (final Exception e1) {
+                // Ignore - activation failure is more important
+            }
+            if (create) {
+                final NoSuchElementException nsee = new NoSuchElementException(
+                        "Unable to activate object");
+                nsee.initCause(e);
+                throw nsee;
+            }
+            return false;
+        }
+        if (getTestOnBorrow() && (create || isValidationDue(p)) ||
+                create && getTestOnCreate()) {
+            boolean validate = false;
+            Throwable validationThrowable = null;
+            try {
+                validate = factory.validateObject(key, p);
+            } catch (final Throwable t) {
+                PoolUtils.checkRethrow(t);
+                validationThrowable = t;
+            }
+            if (!validate) {
+                try {
+                    destroy(key, p, true);
+                    destroyedByBorrowValidationCount.incrementAndGet();
+                } catch (final Exception e) {
+                    // Ignore - validation failure is more important
+                }
+                if (create) {
+                    final NoSuchElementException nsee = new NoSuchElementException(
+                            "Unable to validate object");
+                    nsee.initCause(validationThrowable);
+                    throw nsee;
+                }
+                return false;
+            }
+            markValidated(p);
+        }
+        return true;
     }
 
 
@@ -459,77 +674,339 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         final long activeTime = p.getActiveTimeMillis();
 
         try {
-            if (getTestOnReturn() && !factory.validateObject(key, p)) {
-                try {
-                    destroy(key, p, true);
-                } catch (final Exception e) {
-                    swallowException(e);
-                }
-                whenWaitersAddObject(key, objectDeque.idleObjects);
-                return;
+            returnToIdle(key, objectDeque, p);
+        } finally {
+            if (hasBorrowWaiters() && !replenishAsync(reuseCapacityTask)) {
+                reuseCapacity();
             }
+            updateStatsReturn(activeTime);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The return statistics are updated once for the batch.
+     */
+    @Override
+    public void returnObjects(final K key, final Collection<T> objs) {
 
+        final ObjectDeque<T> objectDeque = poolMap.get(key);
+
+        if (objectDeque == null) {
+            throw new IllegalStateException(
+                    "Returned object not currently part of this pool");
+        }
+
+        final long[] activeTimes = new long[objs.size()];
+        int returned = 0;
+        RuntimeException failure = null;
+        for (final T obj : objs) {
+            final PooledObject<T> p =
+                    objectDeque.getAllObjects().get(new IdentityWrapper<>(obj));
+            if (p == null) {
+                if (failure == null) {
+                    failure = new IllegalStateException(
+                            "Returned object not currently part of this pool");
+                }
+                continue;
+            }
             try {
-                factory.passivateObject(key, p);
-            } catch (final Exception e1) {
-                swallowException(e1);
-                try {
-                    destroy(key, p, true);
-                } catch (final Exception e) {
-                    swallowException(e);
+                markReturningState(p);
+                activeTimes[returned++] = p.getActiveTimeMillis();
+                returnToIdle(key, objectDeque, p);
+            } catch (final RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                if (hasBorrowWaiters() && !replenishAsync(reuseCapacityTask)) {
+                    reuseCapacity();
                 }
-                whenWaitersAddObject(key, objectDeque.idleObjects);
-                return;
             }
+        }
+        updateStatsReturn(activeTimes, returned);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Validates, passivates and deallocates an object that has been marked as
+     * returning and then adds it to the idle objects for its key, destroying
+     * it instead if any of these steps fail or there is no room for it.
+     *
+     * @param key         pool key
+     * @param objectDeque the deque for the key
+     * @param p           The wrapper of the object being returned
+     */
+    private void returnToIdle(final K key, final ObjectDeque<T> objectDeque,
+            final PooledObject<T> p) {
+        if (isRetired(p)) {
+            retire(key, objectDeque, p);
+            return;
+        }
 
-            if (!p.deallocate()) {
-                throw new IllegalStateException(
-                        "Object has already been returned to this pool");
+        if (getTestOnReturn() && !factory.validateObject(key, p)) {
+            try {
+                destroy(key, p, true);
+            } catch (final Exception e) {
+                swallowException(e);
             }
+            whenWaitersAddObject(key, objectDeque.idleObjects);
+            return;
+        }
 
-            final int maxIdle = getMaxIdlePerKey();
-            final LinkedBlockingDeque<PooledObject<T>> idleObjects =
-                    objectDeque.getIdleObjects();
+        try {
+            factory.passivateObject(key, p);
+        } catch (final Exception e1) {
+            swallowException(e1);
+            try {
+                destroy(key, p, true);
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+            whenWaitersAddObject(key, objectDeque.idleObjects);
+            return;
+        }
 
-            if (isClosed() || maxIdle > -1 && maxIdle <= idleObjects.size()) {
+        if (!p.deallocate()) {
+            throw new IllegalStateException(
+                    "Object has already been returned to this pool");
+        }
+
+        final int maxIdle = getMaxIdlePerKey();
+        final ConcurrentIdleDeque<PooledObject<T>> idleObjects =
+                objectDeque.getIdleObjects();
+
+        measureSize(p);
+
+        if (isClosed() || maxIdle > -1 && maxIdle <= idleObjects.size() ||
+                isIdleBytesExceeded(idleObjects, p)) {
+            try {
+                destroy(key, p, true);
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        } else {
+            if (getLifo()) {
+                idleObjects.addFirst(p);
+            } else {
+                idleObjects.addLast(p);
+            }
+            if (isClosed()) {
+                // Pool closed while object was being added to idle objects.
+                // Make sure the returned object is destroyed rather than left
+                // in the idle object pool (which would effectively be a leak)
+                clear(key);
+            }
+        }
+    }
+
+    /**
+     * Whether there is at least one thread waiting on this deque, add an pool object.
+     * @param key
+     * @param idleObjects
+     */
+    private void whenWaitersAddObject(final K key, final ConcurrentIdleDeque<PooledObject<T>> idleObjects) {
+        try {
+            replenish(key, idleObjects);
+        } catch (final Exception e) {
+            swallowException(e);
+        }
+    }
+
+    /**
+     * Determines whether adding a returned object to the idle objects for
+     * its key would exceed {@link #getMaxIdleBytes() maxIdleBytes}.
+     *
+     * @param idleObjects the idle objects for the key
+     * @param p           the wrapper of the object being returned
+     *
+     * @return {@code true} if the object should be destroyed
+     */
+    private boolean isIdleBytesExceeded(final ConcurrentIdleDeque<PooledObject<T>> idleObjects,
+            final PooledObject<T> p) {
+        final long maxIdleBytes = getMaxIdleBytes();
+        return maxIdleBytes > 0 && getObjectSizer() != null &&
+                idleObjects.getBytes() + sizeOf(p) > maxIdleBytes;
+    }
+
+    /**
+     * Destroys an object that has reached its maximum lifetime or borrow
+     * count as it is returned. A replacement is created by the replenishment
+     * executor if one is configured, otherwise only if threads are waiting to
+     * borrow an object for the key.
+     *
+     * @param key         pool key
+     * @param objectDeque the objects for the key
+     * @param p           the wrapper of the object being returned
+     */
+    private void retire(final K key, final ObjectDeque<T> objectDeque,
+            final PooledObject<T> p) {
+        try {
+            destroy(key, p, true);
+        } catch (final Exception e) {
+            swallowException(e);
+        }
+        retiredCount.incrementAndGet();
+        final boolean submitted = replenishAsync(new Runnable() {
+            @Override
+            public void run() {
+                if (isClosed()) {
+                    return;
+                }
                 try {
-                    destroy(key, p, true);
+                    addObject(key);
                 } catch (final Exception e) {
                     swallowException(e);
                 }
-            } else {
-                if (getLifo()) {
-                    idleObjects.addFirst(p);
-                } else {
-                    idleObjects.addLast(p);
-                }
-                if (isClosed()) {
-                    // Pool closed while object was being added to idle objects.
-                    // Make sure the returned object is destroyed rather than left
-                    // in the idle object pool (which would effectively be a leak)
-                    clear(key);
+            }
+        });
+        if (!submitted) {
+            whenWaitersAddObject(key, objectDeque.idleObjects);
+        }
+    }
+
+    /**
+     * Replaces the idle objects for every key that have reached their
+     * maximum lifetime or borrow count, oldest first and at most
+     * {@link #getNumTestsPerEvictionRun()} of them per run. The replacements
+     * are created by the replenishment executor if one is configured,
+     * otherwise by the calling thread.
+     */
+    private void retireIdleObjects() {
+        final long start = System.currentTimeMillis();
+        int remaining = getNumTests();
+        final List<K> keyCopy = new ArrayList<>();
+        final Lock readLock = keyLock.readLock();
+        readLock.lock();
+        try {
+            keyCopy.addAll(poolKeyList);
+        } finally {
+            readLock.unlock();
+        }
+        for (final K key : keyCopy) {
+            if (remaining <= 0) {
+                break;
+            }
+            final ObjectDeque<T> objectDeque = register(key);
+            try {
+                final EvictionIterator iter = new EvictionIterator(objectDeque.getIdleObjects());
+                while (remaining > 0 && iter.hasNext()) {
+                    final PooledObject<T> p;
+                    try {
+                        p = iter.next();
+                    } catch (final NoSuchElementException nsee) {
+                        // Object was borrowed in another thread
+                        break;
+                    }
+                    // Skip the replacements created by this run
+                    if (p.getCreateTime() >= start || !isRetired(p) ||
+                            !p.startEvictionTest()) {
+                        continue;
+                    }
+                    remaining--;
+                    final boolean submitted = replenishAsync(new Runnable() {
+                        @Override
+                        public void run() {
+                            register(key);
+                            try {
+                                replaceRetired(key, objectDeque, p);
+                            } finally {
+                                deregister(key);
+                            }
+                        }
+                    });
+                    if (!submitted) {
+                        replaceRetired(key, objectDeque, p);
+                    }
                 }
+            } finally {
+                deregister(key);
             }
-        } finally {
-            if (hasBorrowWaiters()) {
-                reuseCapacity();
-            }
-            updateStatsReturn(activeTime);
         }
     }
 
     /**
-     * Whether there is at least one thread waiting on this deque, add an pool object.
-     * @param key
-     * @param idleObjects
+     * Replaces an idle object that has reached its maximum lifetime or borrow
+     * count and is undergoing an eviction test. The replacement is added to
+     * the idle objects before the old object is destroyed, so borrowers are
+     * not left waiting for it. If the pool is at capacity the old object is
+     * kept and is retired when it is next returned. The key must be
+     * registered by the caller.
+     *
+     * @param key         pool key
+     * @param objectDeque the objects for the key
+     * @param p           the wrapper of the object to retire
      */
-    private void whenWaitersAddObject(final K key, final LinkedBlockingDeque<PooledObject<T>> idleObjects) {
-        if (idleObjects.hasTakeWaiters()) {
+    private void replaceRetired(final K key, final ObjectDeque<T> objectDeque,
+            final PooledObject<T> p) {
+        PooledObject<T> replacement = null;
+        if (!isClosed()) {
+            try {
+                replacement = create(key);
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
+        if (replacement != null) {
             try {
-                addObject(key);
+                addIdleObject(key, replacement);
             } catch (final Exception e) {
                 swallowException(e);
+                try {
+                    destroy(key, replacement, true);
+                } catch (final Exception e1) {
+                    swallowException(e1);
+                }
+                replacement = null;
+            }
+        }
+        if (replacement == null) {
+            p.endEvictionTest(objectDeque.getIdleObjects());
+            return;
+        }
+        try {
+            destroy(key, p, true);
+        } catch (final Exception e) {
+            swallowException(e);
+        }
+        retiredCount.incrementAndGet();
+    }
+
+    /**
+     * Creates an object to replace one that has been destroyed if there are
+     * threads waiting to borrow an object for the given key. The object is
+     * created by the replenishment executor if one is configured, otherwise
+     * by the calling thread.
+     *
+     * @param key         pool key
+     * @param idleObjects the idle objects for the key
+     *
+     * @throws Exception if the factory's makeObject throws while creating
+     *                   the object on the calling thread
+     */
+    private void replenish(final K key,
+            final ConcurrentIdleDeque<PooledObject<T>> idleObjects) throws Exception {
+        if (!idleObjects.hasTakeWaiters()) {
+            return;
+        }
+        final boolean submitted = replenishAsync(new Runnable() {
+            @Override
+            public void run() {
+                if (isClosed()) {
+                    return;
+                }
+                try {
+                    addObject(key);
+                } catch (final Exception e) {
+                    swallowException(e);
+                }
             }
+        });
+        if (!submitted) {
+            addObject(key);
         }
     }
 
@@ -557,14 +1034,10 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
             throw new IllegalStateException(
                     "Object not currently part of this pool");
         }
-        synchronized (p) {
-            if (p.getState() != PooledObjectState.INVALID) {
-                destroy(key, p, true);
-            }
-        }
-        if (objectDeque.idleObjects.hasTakeWaiters()) {
-            addObject(key);
+        if (markInvalid(p)) {
+            destroy(key, p, true);
         }
+        replenish(key, objectDeque.idleObjects);
     }
 
 
@@ -610,7 +1083,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         final ObjectDeque<T> objectDeque = register(key);
 
         try {
-            final LinkedBlockingDeque<PooledObject<T>> idleObjects =
+            final ConcurrentIdleDeque<PooledObject<T>> idleObjects =
                     objectDeque.getIdleObjects();
 
             PooledObject<T> p = idleObjects.poll();
@@ -647,6 +1120,15 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         return result;
     }
 
+    @Override
+    public long getIdleBytes() {
+        long result = 0;
+        for (final ObjectDeque<T> objectDeque : poolMap.values()) {
+            result += objectDeque.getIdleObjects().getBytes();
+        }
+        return result;
+    }
+
 
     @Override
     public int getNumActive(final K key) {
@@ -681,7 +1163,8 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
             return;
         }
 
-        synchronized (closeLock) {
+        closeLock.lock();
+        try {
             if (isClosed()) {
                 return;
             }
@@ -689,6 +1172,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
             // Stop the evictor before the pool is closed since evict() calls
             // assertOpen()
             stopEvitor();
+            MemoryPressureMonitor.unregister(this);
 
             closed = true;
             // This clear removes any idle objects
@@ -704,6 +1188,8 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
             // This clear cleans up the keys now any waiting threads have been
             // interrupted
             clear();
+        } finally {
+            closeLock.unlock();
         }
     }
 
@@ -723,7 +1209,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
             // Protect against possible NPE if key has been removed in another
             // thread. Not worth locking the keys while this loop completes.
             if (deque != null) {
-                final LinkedBlockingDeque<PooledObject<T>> idleObjects =
+                final ConcurrentIdleDeque<PooledObject<T>> idleObjects =
                         deque.getIdleObjects();
                 for (final PooledObject<T> p : idleObjects) {
                     // each item into the map using the PooledObject object as the
@@ -778,13 +1264,13 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
 
         // Find the most loaded pool that could take a new instance
         int maxQueueLength = 0;
-        LinkedBlockingDeque<PooledObject<T>> mostLoaded = null;
+        ConcurrentIdleDeque<PooledObject<T>> mostLoaded = null;
         K loadedKey = null;
         for (final Map.Entry<K, ObjectDeque<T>> entry : poolMap.entrySet()) {
             final K k = entry.getKey();
             final ObjectDeque<T> deque = entry.getValue();
             if (deque != null) {
-                final LinkedBlockingDeque<PooledObject<T>> pool = deque.getIdleObjects();
+                final ConcurrentIdleDeque<PooledObject<T>> pool = deque.getIdleObjects();
                 final int queueLength = pool.getTakeQueueLength();
                 if (getNumActive(k) < maxTotalPerKeySave && queueLength > maxQueueLength) {
                     maxQueueLength = queueLength;
@@ -821,7 +1307,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         for (final Map.Entry<K, ObjectDeque<T>> entry : poolMap.entrySet()) {
             final ObjectDeque<T> deque = entry.getValue();
             if (deque != null) {
-                final LinkedBlockingDeque<PooledObject<T>> pool =
+                final ConcurrentIdleDeque<PooledObject<T>> pool =
                         deque.getIdleObjects();
                 if(pool.hasTakeWaiters()) {
                     return true;
@@ -849,16 +1335,33 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
 
         PooledObject<T> underTest = null;
         final EvictionPolicy<T> evictionPolicy = getEvictionPolicy();
+        final List<Callable<Void>> parallelTests = new ArrayList<>();
 
-        synchronized (evictionLock) {
+        evictionLock.lock();
+        try {
             final EvictionConfig evictionConfig = new EvictionConfig(
                     getMinEvictableIdleTimeMillis(),
                     getSoftMinEvictableIdleTimeMillis(),
                     getMinIdlePerKey());
 
             final boolean testWhileIdle = getTestWhileIdle();
+            final boolean parallel = testWhileIdle && getEvictionParallelism() > 1;
 
-            for (int i = 0, m = getNumTests(); i < m; i++) {
+            if (getMaxLifetimeMillis() > 0 || getMaxBorrowCount() > 0) {
+                retireIdleObjects();
+            }
+            if (getMaxIdleBytes() > 0 && getObjectSizer() != null) {
+                evictIdleBytes();
+            }
+
+            final int m;
+            if (isEvictExpiredOnly(evictionPolicy)) {
+                evictExpired(evictionPolicy, evictionConfig);
+                m = 0;
+            } else {
+                m = getNumTests();
+            }
+            for (int i = 0; i < m; i++) {
                 if(evictionIterator == null || !evictionIterator.hasNext()) {
                     if (evictionKeyIterator == null ||
                             !evictionKeyIterator.hasNext()) {
@@ -929,29 +1432,23 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
                 if (evict) {
                     destroy(evictionKey, underTest, true);
                     destroyedByEvictorCount.incrementAndGet();
-                } else {
-                    if (testWhileIdle) {
-                        boolean active = false;
-                        try {
-                            factory.activateObject(evictionKey, underTest);
-                            active = true;
-                        } catch (final Exception e) {
-                            destroy(evictionKey, underTest, true);
-                            destroyedByEvictorCount.incrementAndGet();
-                        }
-                        if (active) {
-                            if (!factory.validateObject(evictionKey, underTest)) {
-                                destroy(evictionKey, underTest, true);
-                                destroyedByEvictorCount.incrementAndGet();
-                            } else {
-                                try {
-                                    factory.passivateObject(evictionKey, underTest);
-                                } catch (final Exception e) {
-                                    destroy(evictionKey, underTest, true);
-                                    destroyedByEvictorCount.incrementAndGet();
-                                }
+                } else if (parallel) {
+                    final K candidateKey = evictionKey;
+                    final PooledObject<T> candidate = underTest;
+                    parallelTests.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            try {
+                                testIdleObject(candidateKey, candidate);
+                            } finally {
+                                candidate.endEvictionTest(idleObjects);
                             }
+                            return null;
                         }
+                    });
+                } else {
+                    if (testWhileIdle) {
+                        testIdleObject(evictionKey, underTest);
                     }
                     if (!underTest.endEvictionTest(idleObjects)) {
                         // TODO - May need to add code here once additional
@@ -959,19 +1456,184 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
                     }
                 }
             }
+        } finally {
+            try {
+                // Objects selected for testing must always leave the eviction
+                // state
+                runEvictionTests(parallelTests);
+            } finally {
+                evictionLock.unlock();
+            }
         }
     }
 
     /**
-     * Create a new pooled object.
+     * Destroys the idle objects that have expired according to the eviction
+     * policy for every key. Every idle object is checked, since the idle
+     * objects are not strictly ordered by return time, but objects that have
+     * not expired are not placed in the eviction state.
+     *
+     * @param evictionPolicy the eviction policy, which must only consider
+     *                       idle time
+     * @param evictionConfig the eviction configuration for the run
+     *
+     * @throws Exception If the factory fails to destroy an object
+     */
+    private void evictExpired(final EvictionPolicy<T> evictionPolicy,
+            final EvictionConfig evictionConfig) throws Exception {
+        final List<K> keyCopy = new ArrayList<>();
+        final Lock readLock = keyLock.readLock();
+        readLock.lock();
+        try {
+            keyCopy.addAll(poolKeyList);
+        } finally {
+            readLock.unlock();
+        }
+        for (final K key : keyCopy) {
+            final ObjectDeque<T> objectDeque = poolMap.get(key);
+            if (objectDeque == null) {
+                continue;
+            }
+            final Deque<PooledObject<T>> idleObjects = objectDeque.getIdleObjects();
+            final EvictionIterator iter = new EvictionIterator(idleObjects);
+            while (iter.hasNext()) {
+                final PooledObject<T> underTest;
+                try {
+                    underTest = iter.next();
+                } catch (final NoSuchElementException nsee) {
+                    // Object was borrowed in another thread
+                    break;
+                }
+                if (!evictionPolicy.evict(evictionConfig, underTest, idleObjects.size())) {
+                    continue;
+                }
+                if (!underTest.startEvictionTest()) {
+                    // Object was borrowed in another thread
+                    continue;
+                }
+                // Check again in case the object was borrowed and returned
+                if (evictionPolicy.evict(evictionConfig, underTest, idleObjects.size())) {
+                    destroy(key, underTest, true);
+                    destroyedByEvictorCount.incrementAndGet();
+                } else {
+                    underTest.endEvictionTest(idleObjects);
+                }
+            }
+        }
+    }
+
+    /**
+     * Destroys the oldest idle objects for each key until the remaining idle
+     * objects for the key fit within {@link #getMaxIdleBytes()
+     * maxIdleBytes}.
+     *
+     * @throws Exception If the factory fails to destroy an object
+     */
+    private void evictIdleBytes() throws Exception {
+        final long maxIdleBytes = getMaxIdleBytes();
+        final List<K> keyCopy = new ArrayList<>();
+        final Lock readLock = keyLock.readLock();
+        readLock.lock();
+        try {
+            keyCopy.addAll(poolKeyList);
+        } finally {
+            readLock.unlock();
+        }
+        for (final K key : keyCopy) {
+            final ObjectDeque<T> objectDeque = poolMap.get(key);
+            if (objectDeque == null) {
+                continue;
+            }
+            final ConcurrentIdleDeque<PooledObject<T>> idleObjects = objectDeque.getIdleObjects();
+            long excess = idleObjects.getBytes() - maxIdleBytes;
+            final EvictionIterator iter = new EvictionIterator(idleObjects);
+            while (excess > 0 && iter.hasNext()) {
+                final PooledObject<T> underTest;
+                try {
+                    underTest = iter.next();
+                } catch (final NoSuchElementException nsee) {
+                    // Object was borrowed in another thread
+                    break;
+                }
+                if (!underTest.startEvictionTest()) {
+                    // Object was borrowed in another thread
+                    continue;
+                }
+                excess -= sizeOf(underTest);
+                destroy(key, underTest, true);
+                destroyedByEvictorCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Activates, validates and passivates an idle object that is undergoing
+     * an eviction test, destroying it if any of these steps fail.
+     *
+     * @param key the key of the object to test
+     * @param underTest the object to test
+     *
+     * @throws Exception If the factory fails to validate or destroy the object
+     */
+    private void testIdleObject(final K key, final PooledObject<T> underTest)
+            throws Exception {
+        boolean active = false;
+        try {
+            factory.activateObject(key, underTest);
+            active = true;
+        } catch (final Exception e) {
+            destroy(key, underTest, true);
+            destroyedByEvictorCount.incrementAndGet();
+        }
+        if (active) {
+            if (!factory.validateObject(key, underTest)) {
+                destroy(key, underTest, true);
+                destroyedByEvictorCount.incrementAndGet();
+            } else {
+                try {
+                    factory.passivateObject(key, underTest);
+                    markValidated(underTest);
+                } catch (final Exception e) {
+                    destroy(key, underTest, true);
+                    destroyedByEvictorCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a new pooled object, waiting as long as necessary for other
+     * creations for the same key to complete.
      *
      * @param key Key associated with new pooled object
      *
      * @return The new, wrapped pooled object
      *
      * @throws Exception If the objection creation fails
+     *
+     * @see #create(Object, long, long)
      */
     private PooledObject<T> create(final K key) throws Exception {
+        return create(key, System.nanoTime(), -1);
+    }
+
+    /**
+     * Create a new pooled object.
+     *
+     * @param key          Key associated with new pooled object
+     * @param startNanos   The value of {@link System#nanoTime()} when the
+     *                     wait budget started
+     * @param maxWaitNanos The budget in nanoseconds for waiting for other
+     *                     creations for the key to complete or a negative
+     *                     value for no limit
+     *
+     * @return The new, wrapped pooled object or {@code null} if the key is
+     *         at capacity or the budget was used up
+     *
+     * @throws Exception If the objection creation fails
+     */
+    private PooledObject<T> create(final K key, final long startNanos,
+            final long maxWaitNanos) throws Exception {
         int maxTotalPerKeySave = getMaxTotalPerKey(); // Per key
         if (maxTotalPerKeySave < 0) {
             maxTotalPerKeySave = Integer.MAX_VALUE;
@@ -985,7 +1647,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
 
         while (loop) {
             final int newNumTotal = numTotal.incrementAndGet();
-            if (maxTotal > -1 && newNumTotal > maxTotal) {
+            if (maxTotal > -1 && newNumTotal > maxTotal || isTotalBytesExceeded()) {
                 numTotal.decrementAndGet();
                 if (getNumIdle() == 0) {
                     return null;
@@ -1003,7 +1665,8 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         //          call the factory
         Boolean create = null;
         while (create == null) {
-            synchronized (objectDeque.makeObjectCountLock) {
+            objectDeque.makeObjectCountLock.lock();
+            try {
                 final long newCreateCount = objectDeque.getCreateCount().incrementAndGet();
                 // Check against the per key limit
                 if (newCreateCount > maxTotalPerKeySave) {
@@ -1021,13 +1684,22 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
                         // bring the pool to capacity. Those calls might also
                         // fail so wait until they complete and then re-test if
                         // the pool is at capacity or not.
-                        objectDeque.makeObjectCountLock.wait();
+                        final long remainingNanos = remainingNanos(startNanos, maxWaitNanos);
+                        if (remainingNanos == 0) {
+                            create = Boolean.FALSE;
+                        } else if (remainingNanos > 0) {
+                            objectDeque.makeObjectCountChanged.awaitNanos(remainingNanos);
+                        } else {
+                            objectDeque.makeObjectCountChanged.await();
+                        }
                     }
                 } else {
                     // The pool is not at capacity. Create a new object.
                     objectDeque.makeObjectCount++;
                     create = Boolean.TRUE;
                 }
+            } finally {
+                objectDeque.makeObjectCountLock.unlock();
             }
         }
 
@@ -1044,13 +1716,17 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
             objectDeque.getCreateCount().decrementAndGet();
             throw e;
         } finally {
-            synchronized (objectDeque.makeObjectCountLock) {
+            objectDeque.makeObjectCountLock.lock();
+            try {
                 objectDeque.makeObjectCount--;
-                objectDeque.makeObjectCountLock.notifyAll();
+                objectDeque.makeObjectCountChanged.signalAll();
+            } finally {
+                objectDeque.makeObjectCountLock.unlock();
             }
         }
 
         createdCount.incrementAndGet();
+        measureSize(p);
         objectDeque.getAllObjects().put(new IdentityWrapper<>(p.getObject()), p);
         return p;
     }
@@ -1080,6 +1756,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
                 try {
                     factory.destroyObject(key, toDestroy);
                 } finally {
+                    releaseSize(toDestroy);
                     objectDeque.getCreateCount().decrementAndGet();
                     destroyedCount.incrementAndGet();
                     numTotal.decrementAndGet();
@@ -1117,7 +1794,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
                 lock.lock();
                 objectDeque = poolMap.get(k);
                 if (objectDeque == null) {
-                    objectDeque = new ObjectDeque<>(fairness);
+                    objectDeque = new ObjectDeque<>(fairness, handOff);
                     objectDeque.getNumInterested().incrementAndGet();
                     // NOTE: Keys must always be added to both poolMap and
                     //       poolKeyList at the same time while protected by
@@ -1167,6 +1844,84 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         }
     }
 
+    @Override
+    void trimIdleObjects() throws Exception {
+        final int maxIdle = Math.max(0, getMemoryPressureMaxIdle());
+        final List<K> keyCopy = new ArrayList<>();
+        final Lock readLock = keyLock.readLock();
+        readLock.lock();
+        try {
+            keyCopy.addAll(poolKeyList);
+        } finally {
+            readLock.unlock();
+        }
+        for (final K key : keyCopy) {
+            final ObjectDeque<T> objectDeque = poolMap.get(key);
+            if (objectDeque == null) {
+                continue;
+            }
+            final ConcurrentIdleDeque<PooledObject<T>> idleObjects = objectDeque.getIdleObjects();
+            int excess = idleObjects.size() - maxIdle;
+            final EvictionIterator iter = new EvictionIterator(idleObjects);
+            while (excess > 0 && iter.hasNext()) {
+                final PooledObject<T> p;
+                try {
+                    p = iter.next();
+                } catch (final NoSuchElementException nsee) {
+                    // Object was borrowed in another thread
+                    break;
+                }
+                if (!p.startEvictionTest()) {
+                    // Object was borrowed in another thread
+                    continue;
+                }
+                excess--;
+                if (shrink(key, p)) {
+                    memoryPressureShrunkCount.incrementAndGet();
+                    // Re-measure the object while it is out of the deque so
+                    // the deque's byte count matches the recorded sizes. If a
+                    // borrower has already taken it, endEvictionTest puts it
+                    // back.
+                    final boolean removed = idleObjects.removeFirstOccurrence(p);
+                    measureSize(p);
+                    p.endEvictionTest(idleObjects);
+                    if (removed) {
+                        // Back to the oldest end, where it was found
+                        if (getLifo()) {
+                            idleObjects.addLast(p);
+                        } else {
+                            idleObjects.addFirst(p);
+                        }
+                    }
+                } else {
+                    destroy(key, p, true);
+                    memoryPressureDestroyedCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks the factory to shrink an idle object that is undergoing an
+     * eviction test, if the factory supports it.
+     *
+     * @param key the key of the object
+     * @param p   the object to shrink
+     *
+     * @return {@code true} if the object was shrunk and should be kept
+     */
+    private boolean shrink(final K key, final PooledObject<T> p) {
+        if (!(factory instanceof ShrinkableKeyedPooledObjectFactory)) {
+            return false;
+        }
+        try {
+            return ((ShrinkableKeyedPooledObjectFactory<K, T>) factory).shrinkObject(key, p);
+        } catch (final Exception e) {
+            swallowException(e);
+            return false;
+        }
+    }
+
     @Override
     void ensureMinIdle() throws Exception {
         final int minIdlePerKeySave = getMinIdlePerKey();
@@ -1247,7 +2002,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
 
         if (p != null) {
             factory.passivateObject(key, p);
-            final LinkedBlockingDeque<PooledObject<T>> idleObjects =
+            final ConcurrentIdleDeque<PooledObject<T>> idleObjects =
                     poolMap.get(key).getIdleObjects();
             if (getLifo()) {
                 idleObjects.addFirst(p);
@@ -1435,6 +2190,167 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
 
     //--- inner classes ----------------------------------------------
 
+    /**
+     * A borrow that waits for an object without blocking a thread. Running it
+     * times the borrow out.
+     */
+    private class AsyncBorrow extends BorrowFuture<T> implements Runnable {
+
+        private final long startTime = System.currentTimeMillis();
+
+        /**
+         * Local copy of the config so it is consistent for the entire borrow.
+         */
+        private final boolean blockWhenExhausted = getBlockWhenExhausted();
+
+        private final K key;
+
+        /** The registered deque for the key. */
+        private final ObjectDeque<T> objectDeque;
+
+        /** The currently registered waiter, if any. */
+        private volatile ConcurrentIdleDeque.AsyncWaiter<PooledObject<T>> waiter;
+
+        /** Has this borrow been counted against maxWaiters? */
+        private volatile boolean waiting = false;
+
+        /**
+         * Create a new borrow for the given key.
+         *
+         * @param key         pool key
+         * @param objectDeque the registered deque for the key
+         */
+        AsyncBorrow(final K key, final ObjectDeque<T> objectDeque) {
+            this.key = key;
+            this.objectDeque = objectDeque;
+        }
+
+        /**
+         * Counts this borrow against maxWaiters until it completes.
+         *
+         * @return {@code true} if the borrow may wait or {@code false} if it
+         *         has been rejected
+         */
+        private boolean addAsyncWaiter() {
+            try {
+                addWaiter();
+            } catch (final BorrowRejectedException e) {
+                fail(e);
+                return false;
+            }
+            waiting = true;
+            addListener(new Runnable() {
+                @Override
+                public void run() {
+                    removeWaiter();
+                }
+            });
+            return true;
+        }
+
+        /**
+         * Tries to complete the borrow, registering a waiter if no object is
+         * available.
+         *
+         * @param handed An idle object handed to the waiter or {@code null}
+         */
+        void attempt(final PooledObject<T> handed) {
+            final ConcurrentIdleDeque<PooledObject<T>> idleObjects =
+                    objectDeque.getIdleObjects();
+            PooledObject<T> p = handed;
+            while (true) {
+                if (isDone()) {
+                    if (p != null) {
+                        // Timed out or cancelled while the object was handed
+                        // over. Pass it on.
+                        idleObjects.addFirst(p);
+                        if (isClosed()) {
+                            clear(key);
+                        }
+                    }
+                    return;
+                }
+                boolean create = false;
+                if (p == null) {
+                    p = idleObjects.pollFirst();
+                }
+                if (p == null) {
+                    try {
+                        p = create(key);
+                    } catch (final Throwable t) {
+                        PoolUtils.checkRethrow(t);
+                        fail(t);
+                        return;
+                    }
+                    create = p != null;
+                }
+                if (p == null) {
+                    if (!blockWhenExhausted) {
+                        fail(new NoSuchElementException("Pool exhausted"));
+                        return;
+                    }
+                    if (isClosed()) {
+                        fail(new IllegalStateException("Pool not open"));
+                        return;
+                    }
+                    if (!waiting && !addAsyncWaiter()) {
+                        return;
+                    }
+                    final ConcurrentIdleDeque.AsyncWaiter<PooledObject<T>> w =
+                            new ConcurrentIdleDeque.AsyncWaiter<PooledObject<T>>() {
+                        @Override
+                        void taken(final PooledObject<T> e) {
+                            attempt(e);
+                        }
+
+                        @Override
+                        void interrupted() {
+                            fail(new IllegalStateException("Pool not open"));
+                        }
+                    };
+                    waiter = w;
+                    p = idleObjects.takeFirstAsync(w);
+                    if (p == null) {
+                        if (isDone()) {
+                            // Timed out or cancelled while registering
+                            idleObjects.cancelAsync(w);
+                        }
+                        return;
+                    }
+                }
+                try {
+                    if (p.allocate() && activateAndValidate(key, p, create)) {
+                        updateStatsBorrow(p, System.currentTimeMillis() - startTime);
+                        if (!complete(p.getObject())) {
+                            returnObject(key, p.getObject());
+                        }
+                        return;
+                    }
+                } catch (final NoSuchElementException e) {
+                    fail(e);
+                    return;
+                }
+                p = null;
+            }
+        }
+
+        /**
+         * Times out the borrow.
+         */
+        @Override
+        public void run() {
+            fail(new NoSuchElementException("Timeout waiting for idle object"));
+        }
+
+        @Override
+        void withdraw() {
+            final ConcurrentIdleDeque.AsyncWaiter<PooledObject<T>> w = waiter;
+            if (w != null) {
+                objectDeque.getIdleObjects().cancelAsync(w);
+            }
+        }
+    }
+
     /**
      * Maintains information on the per key queue for a given key.
      *
@@ -1442,7 +2358,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
      */
     private class ObjectDeque<S> {
 
-        private final LinkedBlockingDeque<PooledObject<S>> idleObjects;
+        private final ConcurrentIdleDeque<PooledObject<S>> idleObjects;
 
         /*
          * Number of instances created - number destroyed.
@@ -1451,7 +2367,8 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         private final AtomicInteger createCount = new AtomicInteger(0);
 
         private long makeObjectCount = 0;
-        private final Object makeObjectCountLock = new Object();
+        private final Lock makeObjectCountLock = new ReentrantLock();
+        private final Condition makeObjectCountChanged = makeObjectCountLock.newCondition();
 
         /*
          * The map is keyed on pooled instances, wrapped to ensure that
@@ -1469,12 +2386,15 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
         private final AtomicLong numInterested = new AtomicLong(0);
 
         /**
-         * Create a new ObjecDeque with the given fairness policy.
+         * Create a new ObjecDeque with the given fairness and hand-off policy.
          * @param fairness true means client threads waiting to borrow / return instances
          * will be served as if waiting in a FIFO queue.
+         * @param handOff true means instances returned to or created for this
+         * key while client threads are waiting will be passed directly to the
+         * longest waiting thread.
          */
-        public ObjectDeque(final boolean fairness) {
-            idleObjects = new LinkedBlockingDeque<>(fairness);
+        public ObjectDeque(final boolean fairness, final boolean handOff) {
+            idleObjects = new ConcurrentIdleDeque<>(fairness, handOff);
         }
 
         /**
@@ -1482,7 +2402,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
          *
          * @return The idle objects
          */
-        public LinkedBlockingDeque<PooledObject<S>> getIdleObjects() {
+        public ConcurrentIdleDeque<PooledObject<S>> getIdleObjects() {
             return idleObjects;
         }
 
@@ -1540,6 +2460,7 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
             GenericKeyedObjectPoolConfig.DEFAULT_MAX_TOTAL_PER_KEY;
     private final KeyedPooledObjectFactory<K,T> factory;
     private final boolean fairness;
+    private final boolean handOff;
 
 
     //--- internal attributes --------------------------------------------------
@@ -1568,6 +2489,14 @@ public class GenericKeyedObjectPool<K, T> extends BaseGenericObjectPool<T>
     private final AtomicInteger numTotal = new AtomicInteger(0);
     private Iterator<K> evictionKeyIterator = null; // @GuardedBy("evictionLock")
     private K evictionKey = null; // @GuardedBy("evictionLock")
+    private final Runnable reuseCapacityTask = new Runnable() {
+        @Override
+        public void run() {
+            if (!isClosed()) {
+                reuseCapacity();
+            }
+        }
+    };
 
     // JMX specific attributes
     private static final String ONAME_BASE =
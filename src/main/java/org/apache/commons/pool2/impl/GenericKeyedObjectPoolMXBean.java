@@ -49,6 +49,13 @@ public interface GenericKeyedObjectPoolMXBean<K> {
      */
     boolean getFairness();
 
+    /**
+     * See {@link GenericKeyedObjectPool#getHandOff()}
+     * @return See {@link GenericKeyedObjectPool#getHandOff()}
+     * @since 2.6.1
+     */
+    boolean getHandOff();
+
     /**
      * See {@link GenericKeyedObjectPool#getLifo()}
      * @return See {@link GenericKeyedObjectPool#getLifo()}
@@ -79,6 +86,118 @@ public interface GenericKeyedObjectPoolMXBean<K> {
      */
     long getMaxWaitMillis();
 
+    /**
+     * See {@link GenericKeyedObjectPool#getMaxWaiters()}
+     * @return See {@link GenericKeyedObjectPool#getMaxWaiters()}
+     * @since 2.6.1
+     */
+    int getMaxWaiters();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getRejectedCount()}
+     * @return See {@link GenericKeyedObjectPool#getRejectedCount()}
+     * @since 2.6.1
+     */
+    long getRejectedCount();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMaxLifetimeMillis()}
+     * @return See {@link GenericKeyedObjectPool#getMaxLifetimeMillis()}
+     * @since 2.6.1
+     */
+    long getMaxLifetimeMillis();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMaxBorrowCount()}
+     * @return See {@link GenericKeyedObjectPool#getMaxBorrowCount()}
+     * @since 2.6.1
+     */
+    long getMaxBorrowCount();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getRetirementJitter()}
+     * @return See {@link GenericKeyedObjectPool#getRetirementJitter()}
+     * @since 2.6.1
+     */
+    double getRetirementJitter();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getRetiredCount()}
+     * @return See {@link GenericKeyedObjectPool#getRetiredCount()}
+     * @since 2.6.1
+     */
+    long getRetiredCount();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMemoryPressureThreshold()}
+     * @return See {@link GenericKeyedObjectPool#getMemoryPressureThreshold()}
+     * @since 2.6.1
+     */
+    double getMemoryPressureThreshold();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMemoryPressureMaxIdle()}
+     * @return See {@link GenericKeyedObjectPool#getMemoryPressureMaxIdle()}
+     * @since 2.6.1
+     */
+    int getMemoryPressureMaxIdle();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMemoryPressureDestroyedCount()}
+     * @return See {@link GenericKeyedObjectPool#getMemoryPressureDestroyedCount()}
+     * @since 2.6.1
+     */
+    long getMemoryPressureDestroyedCount();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMemoryPressureShrunkCount()}
+     * @return See {@link GenericKeyedObjectPool#getMemoryPressureShrunkCount()}
+     * @since 2.6.1
+     */
+    long getMemoryPressureShrunkCount();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMaxTotalBytes()}
+     * @return See {@link GenericKeyedObjectPool#getMaxTotalBytes()}
+     * @since 2.6.1
+     */
+    long getMaxTotalBytes();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMaxIdleBytes()}
+     * @return See {@link GenericKeyedObjectPool#getMaxIdleBytes()}
+     * @since 2.6.1
+     */
+    long getMaxIdleBytes();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getTotalBytes()}
+     * @return See {@link GenericKeyedObjectPool#getTotalBytes()}
+     * @since 2.6.1
+     */
+    long getTotalBytes();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getIdleBytes()}
+     * @return See {@link GenericKeyedObjectPool#getIdleBytes()}
+     * @since 2.6.1
+     */
+    long getIdleBytes();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getValidationIdleThresholdMillis()}
+     * @return See {@link GenericKeyedObjectPool#getValidationIdleThresholdMillis()}
+     * @since 2.6.1
+     */
+    long getValidationIdleThresholdMillis();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getSkippedValidationCount()}
+     * @return See {@link GenericKeyedObjectPool#getSkippedValidationCount()}
+     * @since 2.6.1
+     */
+    long getSkippedValidationCount();
+
     /**
      * See {@link GenericKeyedObjectPool#getMinEvictableIdleTimeMillis()}
      * @return See {@link GenericKeyedObjectPool#getMinEvictableIdleTimeMillis()}
@@ -109,6 +228,34 @@ public interface GenericKeyedObjectPoolMXBean<K> {
      */
     int getNumTestsPerEvictionRun();
 
+    /**
+     * See {@link GenericKeyedObjectPool#getEvictionParallelism()}
+     * @return See {@link GenericKeyedObjectPool#getEvictionParallelism()}
+     * @since 2.6.1
+     */
+    int getEvictionParallelism();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getEvictAllExpired()}
+     * @return See {@link GenericKeyedObjectPool#getEvictAllExpired()}
+     * @since 2.6.1
+     */
+    boolean getEvictAllExpired();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getEvictorThreadCount()}
+     * @return See {@link GenericKeyedObjectPool#getEvictorThreadCount()}
+     * @since 2.6.1
+     */
+    int getEvictorThreadCount();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getEvictionJitterMillis()}
+     * @return See {@link GenericKeyedObjectPool#getEvictionJitterMillis()}
+     * @since 2.6.1
+     */
+    long getEvictionJitterMillis();
+
     /**
      * See {@link GenericKeyedObjectPool#getTestOnCreate()}
      * @return See {@link GenericKeyedObjectPool#getTestOnCreate()}
@@ -208,12 +355,75 @@ public interface GenericKeyedObjectPoolMXBean<K> {
      */
     long getMeanBorrowWaitTimeMillis();
 
+    /**
+     * See {@link GenericKeyedObjectPool#getP99BorrowWaitTimeMillis()}
+     * @return See {@link GenericKeyedObjectPool#getP99BorrowWaitTimeMillis()}
+     * @since 2.6.1
+     */
+    long getP99BorrowWaitTimeMillis();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getReplenishQueueDepth()}
+     * @return See {@link GenericKeyedObjectPool#getReplenishQueueDepth()}
+     * @since 2.6.1
+     */
+    int getReplenishQueueDepth();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMeanReplenishLatencyMillis()}
+     * @return See {@link GenericKeyedObjectPool#getMeanReplenishLatencyMillis()}
+     * @since 2.6.1
+     */
+    long getMeanReplenishLatencyMillis();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getForecastBorrowRate()}
+     * @return See {@link GenericKeyedObjectPool#getForecastBorrowRate()}
+     * @since 2.6.1
+     */
+    double getForecastBorrowRate();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getForecastActiveTimeMillis()}
+     * @return See {@link GenericKeyedObjectPool#getForecastActiveTimeMillis()}
+     * @since 2.6.1
+     */
+    double getForecastActiveTimeMillis();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getForecastDemand()}
+     * @return See {@link GenericKeyedObjectPool#getForecastDemand()}
+     * @since 2.6.1
+     */
+    double getForecastDemand();
+
     /**
      * See {@link GenericKeyedObjectPool#getMaxBorrowWaitTimeMillis()}
      * @return See {@link GenericKeyedObjectPool#getMaxBorrowWaitTimeMillis()}
      */
     long getMaxBorrowWaitTimeMillis();
 
+    /**
+     * See {@link GenericKeyedObjectPool#getMeanEvictionLagMillis()}
+     * @return See {@link GenericKeyedObjectPool#getMeanEvictionLagMillis()}
+     * @since 2.6.1
+     */
+    long getMeanEvictionLagMillis();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMaxEvictionLagMillis()}
+     * @return See {@link GenericKeyedObjectPool#getMaxEvictionLagMillis()}
+     * @since 2.6.1
+     */
+    long getMaxEvictionLagMillis();
+
+    /**
+     * See {@link GenericKeyedObjectPool#getMeanEvictionRunTimeMillis()}
+     * @return See {@link GenericKeyedObjectPool#getMeanEvictionRunTimeMillis()}
+     * @since 2.6.1
+     */
+    long getMeanEvictionRunTimeMillis();
+
     /**
      * See {@link GenericKeyedObjectPool#getCreationStackTrace()}
      * @return See {@link GenericKeyedObjectPool#getCreationStackTrace()}
@@ -16,24 +16,41 @@
  */
 package org.apache.commons.pool2.impl;
 
+import org.apache.commons.pool2.BatchObjectPool;
 import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.PoolUtils;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.PooledObjectFactory;
 import org.apache.commons.pool2.PooledObjectState;
+import org.apache.commons.pool2.ShrinkablePooledObjectFactory;
 import org.apache.commons.pool2.SwallowedExceptionListener;
 import org.apache.commons.pool2.TrackedUse;
 import org.apache.commons.pool2.UsageTracking;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A configurable {@link ObjectPool} implementation.
@@ -56,7 +73,11 @@ import java.util.concurrent.atomic.AtomicLong;
  * {@link AbandonedConfig#getRemoveAbandonedTimeout() removeAbandonedTimeout}.
  * Abandoned object removal can be configured to happen when
  * <code>borrowObject</code> is invoked and the pool is close to starvation, or
- * it can be executed by the idle object evictor, or both. If pooled objects
+ * it can be executed by the idle object evictor, or both. Borrowed objects are
+ * indexed by when they were last used so only the objects that have not been
+ * used within the timeout are examined. Removal on borrow runs on the
+ * {@link #getReplenishExecutor() replenishment executor} rather than the
+ * borrowing thread if one is configured. If pooled objects
  * implement the {@link TrackedUse} interface, their last use will be queried
  * using the <code>getLastUsed</code> method on that interface; otherwise
  * abandonment is determined by how long an object has been checked out from
@@ -75,7 +96,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * @since 2.0
  */
 public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
-        implements ObjectPool<T>, GenericObjectPoolMXBean, UsageTracking<T> {
+        implements BatchObjectPool<T>, GenericObjectPoolMXBean, UsageTracking<T> {
 
     /**
      * Creates a new <code>GenericObjectPool</code> using defaults from
@@ -110,7 +131,13 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         }
         this.factory = factory;
 
-        idleObjects = new LinkedBlockingDeque<>(config.getFairness());
+        idleObjects = new ConcurrentIdleDeque<PooledObject<T>>(
+                config.getFairness(), config.getHandOff()) {
+            @Override
+            PooledObject<T> pollFallback() {
+                return stealThreadCache();
+            }
+        };
 
         setConfig(config);
     }
@@ -219,6 +246,238 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         return minIdle;
     }
 
+    /**
+     * Returns whether each thread keeps the last object it returned in a
+     * thread local cache. When enabled, a thread that borrows an object will
+     * first try to reclaim the object it last returned which avoids the shared
+     * idle object store entirely for threads that repeatedly borrow and return
+     * a single object. An object held in a thread's cache may be borrowed by
+     * any other thread once there are no other idle objects available.
+     * <p>
+     * Cached objects are counted as idle objects. They are not examined by the
+     * evictor while cached so each eviction run first moves cached objects
+     * back to the shared idle object store. As a result, the number of idle
+     * objects may briefly exceed {@link #getMaxIdle()} by one object per
+     * thread between eviction runs.
+     *
+     * @return <code>true</code> if the per thread cache is enabled
+     *
+     * @see #setThreadCache(boolean)
+     * @since 2.6.1
+     */
+    @Override
+    public boolean getThreadCache() {
+        return threadCache;
+    }
+
+    /**
+     * Sets whether each thread keeps the last object it returned in a thread
+     * local cache. Disabling the cache moves any currently cached objects back
+     * to the shared idle object store.
+     *
+     * @param threadCache <code>true</code> to enable the per thread cache
+     *
+     * @see #getThreadCache()
+     * @since 2.6.1
+     */
+    public void setThreadCache(final boolean threadCache) {
+        this.threadCache = threadCache;
+        if (!threadCache) {
+            flushThreadCaches();
+        }
+    }
+
+    /**
+     * Returns the maximum number of objects that may be in the process of
+     * being created by the factory at any one time. When zero or negative,
+     * there is no limit other than {@link #getMaxTotal()}. A borrowing thread that
+     * needs to create an object while this many creations are already in
+     * progress waits for one of them to complete.
+     *
+     * @return the cap on the number of concurrent object creations
+     *
+     * @see #setMaxConcurrentCreates(int)
+     * @since 2.6.1
+     */
+    @Override
+    public int getMaxConcurrentCreates() {
+        return maxConcurrentCreates;
+    }
+
+    /**
+     * Sets the maximum number of objects that may be in the process of being
+     * created by the factory at any one time. Use zero or a negative value
+     * for no limit other than {@link #getMaxTotal()}.
+     *
+     * @param maxConcurrentCreates
+     *            The cap on the number of concurrent object creations
+     *
+     * @see #getMaxConcurrentCreates()
+     * @since 2.6.1
+     */
+    public void setMaxConcurrentCreates(final int maxConcurrentCreates) {
+        this.maxConcurrentCreates = maxConcurrentCreates;
+        // Waiting threads may now be able to create objects
+        makeObjectCountLock.lock();
+        try {
+            createPermitAvailable.signalAll();
+        } finally {
+            makeObjectCountLock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether idle objects are created ahead of forecast demand. When
+     * enabled, the pool creates objects so that the number of idle objects
+     * projected to remain once active objects grow to the
+     * {@link #getForecastDemand() forecast demand} stays at or above
+     * {@link #getPrewarmLowWatermark()}, without exceeding
+     * {@link #getMaxIdle()} or {@link #getMaxTotal()}.
+     * <p>
+     * The forecast is updated as objects are borrowed and when the evictor
+     * runs. Objects are created on the {@link #getReplenishExecutor()
+     * replenishment executor} when one is configured and otherwise only when
+     * the evictor runs.
+     *
+     * @return <code>true</code> if idle objects are created ahead of demand
+     *
+     * @see #setPrewarmEnabled(boolean)
+     * @since 2.6.1
+     */
+    @Override
+    public boolean getPrewarmEnabled() {
+        return prewarmEnabled;
+    }
+
+    /**
+     * Sets whether idle objects are created ahead of forecast demand.
+     *
+     * @param prewarmEnabled <code>true</code> to create idle objects ahead of
+     *                       demand
+     *
+     * @see #getPrewarmEnabled()
+     * @since 2.6.1
+     */
+    public void setPrewarmEnabled(final boolean prewarmEnabled) {
+        this.prewarmEnabled = prewarmEnabled;
+    }
+
+    /**
+     * Returns the number of idle objects that pre-warming aims to keep
+     * available once active objects grow to the forecast demand.
+     *
+     * @return the low watermark for projected idle objects
+     *
+     * @see #setPrewarmLowWatermark(int)
+     * @see #getPrewarmEnabled()
+     * @since 2.6.1
+     */
+    @Override
+    public int getPrewarmLowWatermark() {
+        return prewarmLowWatermark;
+    }
+
+    /**
+     * Sets the number of idle objects that pre-warming aims to keep available
+     * once active objects grow to the forecast demand.
+     *
+     * @param prewarmLowWatermark the low watermark for projected idle objects
+     *
+     * @see #getPrewarmLowWatermark()
+     * @since 2.6.1
+     */
+    public void setPrewarmLowWatermark(final int prewarmLowWatermark) {
+        this.prewarmLowWatermark = prewarmLowWatermark;
+    }
+
+    /**
+     * The total number of objects created ahead of forecast demand since the
+     * pool was created.
+     *
+     * @return the number of objects created by pre-warming
+     *
+     * @see #getPrewarmEnabled()
+     * @since 2.6.1
+     */
+    @Override
+    public long getPrewarmedCount() {
+        return prewarmedCount.get();
+    }
+
+    /**
+     * Returns the time a borrower must wait for its priority to be raised by
+     * one. Aging ensures that borrowers with a low priority are eventually
+     * served when the pool is busy with borrowers with a higher priority.
+     *
+     * @return the aging interval in milliseconds. Zero or negative means
+     *         priorities are never raised.
+     *
+     * @see #borrowObject(int, long)
+     * @see #setPriorityAgingMillis(long)
+     * @since 2.6.1
+     */
+    @Override
+    public long getPriorityAgingMillis() {
+        return priorityAgingMillis;
+    }
+
+    /**
+     * Sets the time a borrower must wait for its priority to be raised by
+     * one.
+     *
+     * @param priorityAgingMillis the aging interval in milliseconds. Use zero
+     *                            or a negative value to disable aging.
+     *
+     * @see #getPriorityAgingMillis()
+     * @since 2.6.1
+     */
+    public void setPriorityAgingMillis(final long priorityAgingMillis) {
+        this.priorityAgingMillis = priorityAgingMillis;
+        idleObjects.setPriorityAgingNanos(priorityAgingMillis > 0 ?
+                TimeUnit.MILLISECONDS.toNanos(priorityAgingMillis) : -1);
+    }
+
+    /**
+     * The mean time threads with each priority wait to borrow an object,
+     * based on the last {@link #MEAN_TIMING_STATS_CACHE_SIZE} objects
+     * borrowed with that priority. Borrows with the default priority of zero
+     * are only included once a borrow with another priority has been made.
+     *
+     * @return mean wait time in milliseconds keyed by priority
+     *
+     * @see #borrowObject(int, long)
+     * @since 2.6.1
+     */
+    @Override
+    public Map<Integer,Long> getMeanBorrowWaitTimeMillisByPriority() {
+        final Map<Integer,Long> result = new TreeMap<>();
+        for (final Map.Entry<Integer,StatsStore> entry : priorityWaitTimes.entrySet()) {
+            result.put(entry.getKey(), Long.valueOf(entry.getValue().getMean()));
+        }
+        return result;
+    }
+
+    /**
+     * The 99th percentile of the time threads with each priority wait to
+     * borrow an object, based on the last
+     * {@link #MEAN_TIMING_STATS_CACHE_SIZE} objects borrowed with that
+     * priority. Borrows with the default priority of zero are only included
+     * once a borrow with another priority has been made.
+     *
+     * @return 99th percentile wait time in milliseconds keyed by priority
+     *
+     * @see #borrowObject(int, long)
+     * @since 2.6.1
+     */
+    @Override
+    public Map<Integer,Long> getP99BorrowWaitTimeMillisByPriority() {
+        final Map<Integer,Long> result = new TreeMap<>();
+        for (final Map.Entry<Integer,StatsStore> entry : priorityWaitTimes.entrySet()) {
+            result.put(entry.getKey(), Long.valueOf(entry.getValue().getPercentile(99)));
+        }
+        return result;
+    }
+
     /**
      * Gets whether or not abandoned object removal is configured for this pool.
      *
@@ -301,6 +560,11 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         setMaxIdle(conf.getMaxIdle());
         setMinIdle(conf.getMinIdle());
         setMaxTotal(conf.getMaxTotal());
+        setThreadCache(conf.getThreadCache());
+        setMaxConcurrentCreates(conf.getMaxConcurrentCreates());
+        setPrewarmEnabled(conf.getPrewarmEnabled());
+        setPrewarmLowWatermark(conf.getPrewarmLowWatermark());
+        setPriorityAgingMillis(conf.getPriorityAgingMillis());
     }
 
     /**
@@ -311,8 +575,11 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
      * @see AbandonedConfig
      */
     public void setAbandonedConfig(final AbandonedConfig abandonedConfig) {
+        final boolean wasTracking = this.abandonedConfig != null;
         if (abandonedConfig == null) {
             this.abandonedConfig = null;
+            abandonedIndex.clear();
+            leaseTracker.clear();
         } else {
             this.abandonedConfig = new AbandonedConfig();
             this.abandonedConfig.setLogAbandoned(abandonedConfig.getLogAbandoned());
@@ -322,7 +589,76 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             this.abandonedConfig.setRemoveAbandonedTimeout(abandonedConfig.getRemoveAbandonedTimeout());
             this.abandonedConfig.setUseUsageTracking(abandonedConfig.getUseUsageTracking());
             this.abandonedConfig.setRequireFullStackTrace(abandonedConfig.getRequireFullStackTrace());
+            this.abandonedConfig.setStackTraceSampleRate(abandonedConfig.getStackTraceSampleRate());
+            this.abandonedConfig.setRemoveUnreachableLeases(abandonedConfig.getRemoveUnreachableLeases());
+            if (!abandonedConfig.getRemoveUnreachableLeases()) {
+                leaseTracker.clear();
+            }
+            if (!wasTracking) {
+                // Index the objects that are already borrowed
+                for (final PooledObject<T> p : allObjects.values()) {
+                    if (p.getState() == PooledObjectState.ALLOCATED) {
+                        abandonedIndex.add(p);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets whether or not automatic tuning is configured for this pool.
+     *
+     * @return true if this pool is configured to adjust its sizing
+     *         attributes automatically
+     *
+     * @see #setAutoTuneConfig(AutoTuneConfig)
+     * @since 2.6.1
+     */
+    @Override
+    public boolean isAutoTuneEnabled() {
+        return autoTuner != null;
+    }
+
+    /**
+     * Sets the automatic tuning configuration. When set, each run of the
+     * evictor adjusts {@link #getMaxTotal()}, {@link #getMaxIdle()} and
+     * {@link #getMinIdle()} within the configured bounds aiming for the
+     * configured 99th percentile borrow wait time with as few objects as
+     * possible.
+     *
+     * @param autoTuneConfig the new configuration to use or <code>null</code>
+     *                       to disable automatic tuning. This is used by
+     *                       value.
+     *
+     * @see AutoTuneConfig
+     * @since 2.6.1
+     */
+    public void setAutoTuneConfig(final AutoTuneConfig autoTuneConfig) {
+        if (autoTuneConfig == null) {
+            this.autoTuner = null;
+        } else {
+            this.autoTuner = new AutoTuner(autoTuneConfig);
+        }
+    }
+
+    /**
+     * Obtains the most recent decisions made by automatic tuning, oldest
+     * first. Each entry records the time, the attribute changed, its old and
+     * new values, the reason and the statistics the decision was based on.
+     *
+     * @return the audit log, which is empty if automatic tuning is not
+     *         configured
+     *
+     * @see #setAutoTuneConfig(AutoTuneConfig)
+     * @since 2.6.1
+     */
+    @Override
+    public List<String> getAutoTuneAuditLog() {
+        final AutoTuner tuner = this.autoTuner;
+        if (tuner == null) {
+            return Collections.emptyList();
         }
+        return tuner.getAuditLog();
     }
 
     /**
@@ -374,7 +710,16 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
      * {@link #getBlockWhenExhausted()} is false). The length of time that this
      * method will block when {@link #getBlockWhenExhausted()} is true is
      * determined by the value passed in to the <code>borrowMaxWaitMillis</code>
-     * parameter.
+     * parameter. If {@link #getMaxWaiters()} borrowers are already waiting,
+     * a {@link BorrowRejectedException} is thrown without waiting.
+     * <p>
+     * <code>borrowMaxWaitMillis</code> is a single budget for the whole borrow,
+     * measured with {@link System#nanoTime()}. Waiting for other threads to
+     * finish creating objects, waiting for an idle instance and retrying after
+     * an idle instance fails activation or validation all draw on it. Once it
+     * is used up the borrow fails with a <code>NoSuchElementException</code>
+     * rather than examining further instances. A call to the factory that is
+     * already in progress is not interrupted.
      * <p>
      * When the pool is exhausted, multiple calling threads may be
      * simultaneously blocked waiting for instances to become available. A
@@ -392,122 +737,500 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
      *                   error
      */
     public T borrowObject(final long borrowMaxWaitMillis) throws Exception {
-        assertOpen();
+        return borrow(0, borrowMaxWaitMillis).getObject();
+    }
+
+    /**
+     * Borrows an object from the pool in the same way as
+     * {@link #borrowObject(long)} but, if the pool is exhausted, waits with
+     * the given priority. When an object becomes available it is given to
+     * the waiting thread with the highest priority and, of those, the one
+     * that has waited longest. The priority of a waiting thread is raised by
+     * one for every {@link #getPriorityAgingMillis()} it waits so that threads
+     * with a low priority are not starved.
+     * <p>
+     * Priorities are only strictly observed if the pool is configured with
+     * {@link BaseObjectPoolConfig#setFairness(boolean) fairness} or
+     * {@link BaseObjectPoolConfig#setHandOff(boolean) hand-off}. Otherwise,
+     * the highest priority thread is woken but competes for the object with
+     * threads that are not yet waiting. Waiting threads are queued
+     * separately for each priority so a small number of distinct priorities
+     * should be used.
+     *
+     * @param priority            The priority of the borrow. Higher values
+     *                            are served first. The priority of
+     *                            {@link #borrowObject(long)} is zero.
+     * @param borrowMaxWaitMillis The time to wait in milliseconds for an object
+     *                            to become available
+     *
+     * @return object instance from the pool
+     *
+     * @throws NoSuchElementException if an instance cannot be returned
+     *
+     * @throws Exception if an object instance cannot be returned due to an
+     *                   error
+     *
+     * @see #getMeanBorrowWaitTimeMillisByPriority()
+     * @since 2.6.1
+     */
+    public T borrowObject(final int priority, final long borrowMaxWaitMillis)
+            throws Exception {
+        return borrow(priority, borrowMaxWaitMillis).getObject();
+    }
+
+    /**
+     * Equivalent to <code>{@link #borrowLease(long)
+     * borrowLease}({@link #getMaxWaitMillis()})</code>.
+     *
+     * @return a lease on an object instance from the pool
+     *
+     * @throws NoSuchElementException if an instance cannot be returned
+     *
+     * @throws Exception if an object instance cannot be returned due to an
+     *                   error
+     *
+     * @since 2.6.1
+     */
+    public PooledObjectLease<T> borrowLease() throws Exception {
+        return borrowLease(getMaxWaitMillis());
+    }
 
+    /**
+     * Borrows an object from the pool in the same way as
+     * {@link #borrowObject(long)} but returns a lease that holds a direct
+     * reference to the pool's wrapper for the object. Returning or
+     * invalidating the object through the lease does not need to look up the
+     * object in the pool and the lease may be used with try-with-resources
+     * to ensure the object is returned.
+     * <p>
+     * If {@link AbandonedConfig#getRemoveUnreachableLeases()} is configured,
+     * the object is invalidated if the lease becomes unreachable before it
+     * has been released.
+     *
+     * @param borrowMaxWaitMillis The time to wait in milliseconds for an object
+     *                            to become available
+     *
+     * @return a lease on an object instance from the pool
+     *
+     * @throws NoSuchElementException if an instance cannot be returned
+     *
+     * @throws Exception if an object instance cannot be returned due to an
+     *                   error
+     *
+     * @see PooledObjectLease
+     * @since 2.6.1
+     */
+    public PooledObjectLease<T> borrowLease(final long borrowMaxWaitMillis) throws Exception {
+        final PooledObject<T> p = borrow(0, borrowMaxWaitMillis);
+        final PooledObjectLease<T> lease = new PooledObjectLease<>(this, p);
         final AbandonedConfig ac = this.abandonedConfig;
-        if (ac != null && ac.getRemoveAbandonedOnBorrow() &&
-                (getNumIdle() < 2) &&
-                (getNumActive() > getMaxTotal() - 3) ) {
-            removeAbandoned(ac);
+        if (ac != null && ac.getRemoveUnreachableLeases()) {
+            leaseTracker.track(lease, p);
         }
+        return lease;
+    }
 
-        PooledObject<T> p = null;
+    /**
+     * Equivalent to <code>{@link #borrowObjectAsync(long)
+     * borrowObjectAsync}({@link #getMaxWaitMillis()})</code>.
+     *
+     * @return the pending borrow
+     *
+     * @since 2.6.1
+     */
+    public BorrowFuture<T> borrowObjectAsync() {
+        return borrowObjectAsync(getMaxWaitMillis());
+    }
 
-        // Get local copy of current config so it is consistent for entire
-        // method execution
-        final boolean blockWhenExhausted = getBlockWhenExhausted();
+    /**
+     * Borrows an object from the pool without blocking the calling thread
+     * while waiting for an object to become available.
+     * <p>
+     * An idle instance is used, or a new instance created, in the same way as
+     * for {@link #borrowObject(long)}. Note that creating, activating and
+     * validating an instance happens in the calling thread. If the pool is
+     * exhausted and {@link #getBlockWhenExhausted()} is true, the borrow is
+     * queued with any threads waiting in {@link #borrowObject(long)} rather
+     * than parking the calling thread. It is then completed by the thread
+     * that returns an instance to the pool, which also activates and
+     * validates the instance. If no instance is available within
+     * <code>borrowMaxWaitMillis</code>, the borrow fails with a
+     * {@link NoSuchElementException}.
+     * <p>
+     * Failures are reported via the returned future rather than thrown.
+     *
+     * @param borrowMaxWaitMillis The time to wait in milliseconds for an object
+     *                            to become available. A negative value waits
+     *                            indefinitely.
+     *
+     * @return the pending borrow
+     *
+     * @see BorrowFuture
+     * @since 2.6.1
+     */
+    public BorrowFuture<T> borrowObjectAsync(final long borrowMaxWaitMillis) {
+        final AsyncBorrow borrow = new AsyncBorrow();
+        try {
+            assertOpen();
+            removeAbandonedOnBorrow();
+        } catch (final RuntimeException e) {
+            borrow.fail(e);
+            return borrow;
+        }
+        borrow.attempt(null);
+        if (borrowMaxWaitMillis >= 0 && !borrow.isDone()) {
+            final ScheduledFuture<?> timeout =
+                    BorrowTimeoutTimer.schedule(borrow, borrowMaxWaitMillis);
+            borrow.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    timeout.cancel(false);
+                }
+            });
+        }
+        return borrow;
+    }
+
+    /**
+     * Borrows an object from the pool.
+     *
+     * @param priority            The priority of the borrow
+     * @param borrowMaxWaitMillis The time to wait in milliseconds for an object
+     *                            to become available
+     *
+     * @return the wrapper of the borrowed object
+     *
+     * @throws Exception if an object instance cannot be returned
+     *
+     * @see #borrowObject(int, long)
+     */
+    private PooledObject<T> borrow(final int priority, final long borrowMaxWaitMillis)
+            throws Exception {
+        assertOpen();
+        removeAbandonedOnBorrow();
 
-        boolean create;
         final long waitTime = System.currentTimeMillis();
 
-        while (p == null) {
-            create = false;
-            p = idleObjects.pollFirst();
-            if (p == null) {
-                p = create();
-                if (p != null) {
-                    create = true;
-                }
-            }
-            if (blockWhenExhausted) {
-                if (p == null) {
-                    if (borrowMaxWaitMillis < 0) {
-                        p = idleObjects.takeFirst();
-                    } else {
-                        p = idleObjects.pollFirst(borrowMaxWaitMillis,
-                                TimeUnit.MILLISECONDS);
-                    }
-                }
-                if (p == null) {
-                    throw new NoSuchElementException(
-                            "Timeout waiting for idle object");
-                }
-            } else {
-                if (p == null) {
-                    throw new NoSuchElementException("Pool exhausted");
-                }
-            }
-            if (!p.allocate()) {
-                p = null;
-            }
+        final PooledObject<T> p = acquire(System.nanoTime(),
+                toMaxWaitNanos(borrowMaxWaitMillis), priority);
 
-            if (p != null) {
-                try {
-                    factory.activateObject(p);
-                } catch (final Exception e) {
-                    try {
-                        destroy(p);
-                    } catch (final Exception e1) {
-                        // Ignore - activation failure is more important
-                    }
-                    p = null;
-                    if (create) {
-                        final NoSuchElementException nsee = new NoSuchElementException(
-                                "Unable to activate object");
-                        nsee.initCause(e);
-                        throw nsee;
-                    }
-                }
-                if (p != null && (getTestOnBorrow() || create && getTestOnCreate())) {
-                    boolean validate = false;
-                    Throwable validationThrowable = null;
-                    try {
-                        validate = factory.validateObject(p);
-                    } catch (final Throwable t) {
-                        PoolUtils.checkRethrow(t);
-                        validationThrowable = t;
-                    }
-                    if (!validate) {
-                        try {
-                            destroy(p);
-                            destroyedByBorrowValidationCount.incrementAndGet();
-                        } catch (final Exception e) {
-                            // Ignore - validation failure is more important
-                        }
-                        p = null;
-                        if (create) {
-                            final NoSuchElementException nsee = new NoSuchElementException(
-                                    "Unable to validate object");
-                            nsee.initCause(validationThrowable);
-                            throw nsee;
-                        }
-                    }
-                }
-            }
+        final long waitTimeMillis = System.currentTimeMillis() - waitTime;
+        updateStatsBorrow(p, waitTimeMillis);
+        // Only track priorities once they are in use
+        if (priority != 0 || !priorityWaitTimes.isEmpty()) {
+            updateStatsBorrow(priority, waitTimeMillis);
         }
 
-        updateStatsBorrow(p, System.currentTimeMillis() - waitTime);
+        if (threadCache) {
+            getThreadCacheSlot().borrowed = p;
+        }
 
-        return p.getObject();
+        return p;
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * If {@link #getMaxIdle() maxIdle} is set to a positive value and the
-     * number of idle instances has reached this value, the returning instance
-     * is destroyed.
-     * <p>
-     * If {@link #getTestOnReturn() testOnReturn} == true, the returning
-     * instance is validated before being returned to the idle instance pool. In
-     * this case, if validation fails, the instance is destroyed.
-     * <p>
-     * Exceptions encountered destroying objects for any reason are swallowed
-     * but notified via a {@link SwallowedExceptionListener}.
+     * Idle instances are used first. Capacity for any further instances that
+     * are required is then reserved in a single step and those instances are
+     * created. If there is still a shortfall and
+     * {@link #getBlockWhenExhausted()} is true, this method waits for the
+     * remaining instances to be returned, with <code>maxWaitMillis</code>
+     * applying to the batch as a whole. The borrow statistics are updated
+     * once for the batch.
+     */
+    @Override
+    public List<T> borrowObjects(final int n, final long maxWaitMillis) throws Exception {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        assertOpen();
+        removeAbandonedOnBorrow();
+
+        final long waitTime = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        final List<PooledObject<T>> borrowed = new ArrayList<>(n);
+
+        try {
+            PooledObject<T> p;
+            while (borrowed.size() < n && (p = pollIdle()) != null) {
+                if (p.allocate() && activateAndValidate(p, false)) {
+                    borrowed.add(p);
+                }
+            }
+
+            final int reserved = reserveCapacity(n - borrowed.size());
+            int made = 0;
+            try {
+                while (made < reserved) {
+                    made++;
+                    p = makeReservedObject();
+                    p.allocate();
+                    activateAndValidate(p, true);
+                    borrowed.add(p);
+                }
+            } finally {
+                releaseCapacity(reserved, reserved - made);
+            }
+
+            final long maxWaitNanos = toMaxWaitNanos(maxWaitMillis);
+            while (borrowed.size() < n) {
+                borrowed.add(acquire(startNanos, maxWaitNanos, 0));
+            }
+        } catch (final Throwable t) {
+            // All or nothing. Return anything already borrowed.
+            returnUnused(borrowed);
+            throw t;
+        }
+
+        updateStatsBorrow(borrowed, System.currentTimeMillis() - waitTime);
+
+        final List<T> result = new ArrayList<>(n);
+        for (final PooledObject<T> p : borrowed) {
+            result.add(p.getObject());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the objects obtained for a batch borrow that could not be
+     * completed. The caller never received these objects so they are not
+     * counted as borrowed or returned.
+     *
+     * @param borrowed The wrappers of the objects to return
+     */
+    private void returnUnused(final List<PooledObject<T>> borrowed) {
+        for (final PooledObject<T> p : borrowed) {
+            try {
+                markReturningState(p);
+                returnToIdle(p);
+            } catch (final Exception e) {
+                // Ignore - the borrow failure is more important
+            }
+        }
+    }
+
+    /**
+     * Removes the objects whose lease has become unreachable, if configured,
+     * and removes abandoned objects if configured to do so on borrow and the
+     * pool is close to exhaustion.
+     */
+    private void removeAbandonedOnBorrow() {
+        final AbandonedConfig ac = this.abandonedConfig;
+        if (ac != null && ac.getRemoveUnreachableLeases()) {
+            removeUnreachableLeases(ac);
+        }
+        if (ac != null && ac.getRemoveAbandonedOnBorrow() &&
+                abandonedIndex.hasCandidates(getAbandonedTimeout(ac)) &&
+                (getNumIdle() < 2) &&
+                (getNumActive() > getMaxTotal() - 3) &&
+                removeAbandonedPending.compareAndSet(false, true)) {
+            if (!replenishAsync(removeAbandonedTask)) {
+                removeAbandonedTask.run();
+            }
+        }
+    }
+
+    /**
+     * Obtains a single allocated, activated and (if configured) validated
+     * object, creating or waiting for one as necessary, within the given
+     * budget.
+     *
+     * @param startNanos   The value of {@link System#nanoTime()} when the
+     *                     borrow started
+     * @param maxWaitNanos The budget in nanoseconds or a negative value for
+     *                     no limit
+     * @param priority     The priority with which to wait
+     *
+     * @return the wrapper of the obtained object
+     *
+     * @throws Exception if an object instance cannot be obtained
+     */
+    private PooledObject<T> acquire(final long startNanos, final long maxWaitNanos,
+            final int priority) throws Exception {
+        PooledObject<T> p = null;
+
+        // Get local copy of current config so it is consistent for entire
+        // method execution
+        final boolean blockWhenExhausted = getBlockWhenExhausted();
+
+        boolean create;
+
+        while (p == null) {
+            create = false;
+            p = pollIdle();
+            if (p == null) {
+                p = create(startNanos, maxWaitNanos);
+                if (p != null) {
+                    create = true;
+                }
+            }
+            if (blockWhenExhausted) {
+                if (p == null) {
+                    addWaiter();
+                    try {
+                        final long remainingNanos = remainingNanos(startNanos, maxWaitNanos);
+                        if (remainingNanos < 0) {
+                            p = idleObjects.takeFirst(priority);
+                        } else {
+                            p = idleObjects.pollFirst(remainingNanos,
+                                    TimeUnit.NANOSECONDS, priority);
+                        }
+                    } finally {
+                        removeWaiter();
+                    }
+                }
+                if (p == null) {
+                    throw new NoSuchElementException(
+                            "Timeout waiting for idle object");
+                }
+            } else {
+                if (p == null) {
+                    throw new NoSuchElementException("Pool exhausted");
+                }
+            }
+            if (!p.allocate() || !activateAndValidate(p, create)) {
+                p = null;
+                if (blockWhenExhausted && remainingNanos(startNanos, maxWaitNanos) == 0) {
+                    throw new NoSuchElementException(
+                            "Timeout waiting for idle object");
+                }
+            }
+        }
+
+        return p;
+    }
+
+    /**
+     * Updates the wait time statistics for borrows with the given priority.
+     *
+     * @param priority the priority of the borrow
+     * @param waitTime the time in milliseconds the borrower waited
+     */
+    private void updateStatsBorrow(final int priority, final long waitTime) {
+        final Integer key = Integer.valueOf(priority);
+        StatsStore stats = priorityWaitTimes.get(key);
+        if (stats == null) {
+            stats = new StatsStore(MEAN_TIMING_STATS_CACHE_SIZE);
+            final StatsStore existing = priorityWaitTimes.putIfAbsent(key, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        stats.add(waitTime);
+    }
+
+    /**
+     * Takes an idle object without waiting, preferring the current thread's
+     * cached object.
+     *
+     * @return an idle object or {@code null} if there is none
+     */
+    private PooledObject<T> pollIdle() {
+        PooledObject<T> p = pollThreadCache();
+        if (p == null) {
+            p = idleObjects.pollFirst();
+        }
+        if (p == null) {
+            p = stealThreadCache();
+        }
+        return p;
+    }
+
+    /**
+     * Activates and, if configured, validates an object that has been
+     * allocated to a borrower. An object that fails is destroyed.
+     *
+     * @param p      The allocated object
+     * @param create Was the object newly created for this borrower?
+     *
+     * @return {@code true} if the object is ready to be borrowed or
+     *         {@code false} if it failed and was destroyed
+     *
+     * @throws NoSuchElementException if a newly created object fails
+     */
+    private boolean activateAndValidate(final PooledObject<T> p, final boolean create) {
+        try {
+            factory.activateObject(p);
+        } catch (final Exception e) {
+            try {
+                destroy(p);
+            } catch (final Exception e1) {
+                // Ignore - activation failure is more important
+            }
+            if (create) {
+                final NoSuchElementException nsee = new NoSuchElementException(
+                        "Unable to activate object");
+                nsee.initCause(e);
+                throw nsee;
+            }
+            return false;
+        }
+        if (getTestOnBorrow() && (create || isValidationDue(p)) ||
+                create && getTestOnCreate()) {
+            boolean validate = false;
+            Throwable validationThrowable = null;
+            try {
+                validate = factory.validateObject(p);
+            } catch (final Throwable t) {
+                PoolUtils.checkRethrow(t);
+                validationThrowable = t;
+            }
+            if (!validate) {
+                try {
+                    destroy(p);
+                    destroyedByBorrowValidationCount.incrementAndGet();
+                } catch (final Exception e) {
+                    // Ignore - validation failure is more important
+                }
+                if (create) {
+                    final NoSuchElementException nsee = new NoSuchElementException(
+                            "Unable to validate object");
+                    nsee.initCause(validationThrowable);
+                    throw nsee;
+                }
+                return false;
+            }
+            markValidated(p);
+        }
+        if (isAbandonedConfig()) {
+            abandonedIndex.add(p);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If {@link #getMaxIdle() maxIdle} is set to a positive value and the
+     * number of idle instances has reached this value, the returning instance
+     * is destroyed.
+     * <p>
+     * If {@link #getTestOnReturn() testOnReturn} == true, the returning
+     * instance is validated before being returned to the idle instance pool. In
+     * this case, if validation fails, the instance is destroyed.
+     * <p>
+     * Exceptions encountered destroying objects for any reason are swallowed
+     * but notified via a {@link SwallowedExceptionListener}.
      */
     @Override
     public void returnObject(final T obj) {
-        final PooledObject<T> p = allObjects.get(new IdentityWrapper<>(obj));
+        PooledObject<T> p = null;
+        final ThreadCacheSlot<T> slot = threadCacheSlot.get();
+        if (slot != null) {
+            // Avoid the allObjects look-up if this thread is returning the
+            // object it borrowed
+            final PooledObject<T> borrowed = slot.borrowed;
+            if (borrowed != null && borrowed.getObject() == obj) {
+                slot.borrowed = null;
+                if (borrowed.getState() == PooledObjectState.ALLOCATED) {
+                    p = borrowed;
+                }
+            }
+        }
+        if (p == null) {
+            p = allObjects.get(new IdentityWrapper<>(obj));
+        }
 
         if (p == null) {
             if (!isAbandonedConfig()) {
@@ -517,10 +1240,89 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             return; // Object was abandoned and removed
         }
 
+        returnPooledObject(p);
+    }
+
+    /**
+     * Returns an object borrowed via {@link #borrowLease(long)}.
+     *
+     * @param p The wrapper of the leased object
+     */
+    void returnLeased(final PooledObject<T> p) {
+        if (isAbandonedConfig() && isRemoved(p)) {
+            return; // Object was abandoned and removed
+        }
+        returnPooledObject(p);
+    }
+
+    /**
+     * Returns an object to the pool once its wrapper has been located.
+     *
+     * @param p The wrapper of the object being returned
+     */
+    private void returnPooledObject(final PooledObject<T> p) {
         markReturningState(p);
 
         final long activeTime = p.getActiveTimeMillis();
 
+        returnToIdle(p);
+
+        updateStatsReturn(activeTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The return statistics are updated once for the batch.
+     */
+    @Override
+    public void returnObjects(final Collection<T> objs) {
+        final long[] activeTimes = new long[objs.size()];
+        int returned = 0;
+        RuntimeException failure = null;
+        for (final T obj : objs) {
+            final PooledObject<T> p = allObjects.get(new IdentityWrapper<>(obj));
+            if (p == null) {
+                if (!isAbandonedConfig() && failure == null) {
+                    failure = new IllegalStateException(
+                            "Returned object not currently part of this pool");
+                }
+                continue; // Object was abandoned and removed
+            }
+            try {
+                markReturningState(p);
+                activeTimes[returned++] = p.getActiveTimeMillis();
+                returnToIdle(p);
+            } catch (final RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        updateStatsReturn(activeTimes, returned);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Validates, passivates and deallocates an object that has been marked as
+     * returning and then adds it to the idle objects, destroying it instead if
+     * any of these steps fail or the pool has no room for it.
+     *
+     * @param p The wrapper of the object being returned
+     */
+    private void returnToIdle(final PooledObject<T> p) {
+        if (isAbandonedConfig()) {
+            abandonedIndex.remove(p);
+            leaseTracker.untrack(p);
+        }
+
+        if (isRetired(p)) {
+            retire(p);
+            return;
+        }
+
         if (getTestOnReturn() && !factory.validateObject(p)) {
             try {
                 destroy(p);
@@ -528,11 +1330,10 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                 swallowException(e);
             }
             try {
-                ensureIdle(1, false);
+                replenish();
             } catch (final Exception e) {
                 swallowException(e);
             }
-            updateStatsReturn(activeTime);
             return;
         }
 
@@ -546,11 +1347,10 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                 swallowException(e);
             }
             try {
-                ensureIdle(1, false);
+                replenish();
             } catch (final Exception e) {
                 swallowException(e);
             }
-            updateStatsReturn(activeTime);
             return;
         }
 
@@ -559,18 +1359,21 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                     "Object has already been returned to this pool or is invalid");
         }
 
-        final int maxIdleSave = getMaxIdle();
-        if (isClosed() || maxIdleSave > -1 && maxIdleSave <= idleObjects.size()) {
+        measureSize(p);
+
+        if (isClosed() || isMaxIdleReached() || isIdleBytesExceeded(p)) {
             try {
                 destroy(p);
             } catch (final Exception e) {
                 swallowException(e);
             }
         } else {
-            if (getLifo()) {
-                idleObjects.addFirst(p);
-            } else {
-                idleObjects.addLast(p);
+            if (!offerThreadCache(p)) {
+                if (getLifo()) {
+                    idleObjects.addFirst(p);
+                } else {
+                    idleObjects.addLast(p);
+                }
             }
             if (isClosed()) {
                 // Pool closed while object was being added to idle objects.
@@ -579,7 +1382,136 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                 clear();
             }
         }
-        updateStatsReturn(activeTime);
+    }
+
+    /**
+     * Determines whether the pool already holds {@link #getMaxIdle() maxIdle}
+     * idle objects, including those held in per thread caches.
+     *
+     * @return {@code true} if no more idle objects may be added
+     */
+    private boolean isMaxIdleReached() {
+        final int maxIdleSave = getMaxIdle();
+        return maxIdleSave > -1 && maxIdleSave <= getNumIdle();
+    }
+
+    /**
+     * Determines whether adding a returned object to the idle objects would
+     * exceed {@link #getMaxIdleBytes() maxIdleBytes}. Objects held in per
+     * thread caches are counted.
+     *
+     * @param p The wrapper of the object being returned
+     *
+     * @return {@code true} if the object should be destroyed
+     */
+    private boolean isIdleBytesExceeded(final PooledObject<T> p) {
+        final long maxIdleBytes = getMaxIdleBytes();
+        return maxIdleBytes > 0 && getObjectSizer() != null &&
+                getIdleBytes() + sizeOf(p) > maxIdleBytes;
+    }
+
+    /**
+     * Destroys an object that has reached its maximum lifetime or borrow
+     * count as it is returned. A replacement is created by the replenishment
+     * executor if one is configured, otherwise only if threads are waiting to
+     * borrow.
+     *
+     * @param p The wrapper of the object being returned
+     */
+    private void retire(final PooledObject<T> p) {
+        try {
+            destroy(p);
+        } catch (final Exception e) {
+            swallowException(e);
+        }
+        retiredCount.incrementAndGet();
+        if (!replenishAsync(retireReplacementTask)) {
+            try {
+                replenish();
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Replaces the idle objects that have reached their maximum lifetime or
+     * borrow count, oldest first and at most
+     * {@link #getNumTestsPerEvictionRun()} of them per run. The replacements
+     * are created by the replenishment executor if one is configured,
+     * otherwise by the calling thread.
+     */
+    private void retireIdleObjects() {
+        final long start = System.currentTimeMillis();
+        int remaining = getNumTests();
+        final EvictionIterator iter = new EvictionIterator(idleObjects);
+        while (remaining > 0 && iter.hasNext()) {
+            final PooledObject<T> p;
+            try {
+                p = iter.next();
+            } catch (final NoSuchElementException nsee) {
+                // Object was borrowed in another thread
+                break;
+            }
+            // Skip the replacements created by this run
+            if (p.getCreateTime() >= start || !isRetired(p) ||
+                    !p.startEvictionTest()) {
+                continue;
+            }
+            remaining--;
+            final boolean submitted = replenishAsync(new Runnable() {
+                @Override
+                public void run() {
+                    replaceRetired(p);
+                }
+            });
+            if (!submitted) {
+                replaceRetired(p);
+            }
+        }
+    }
+
+    /**
+     * Replaces an idle object that has reached its maximum lifetime or borrow
+     * count and is undergoing an eviction test. The replacement is added to
+     * the idle objects before the old object is destroyed, so borrowers are
+     * not left waiting for it. If the pool is at capacity the old object is
+     * kept and is retired when it is next returned.
+     *
+     * @param p The wrapper of the object to retire
+     */
+    private void replaceRetired(final PooledObject<T> p) {
+        PooledObject<T> replacement = null;
+        if (!isClosed()) {
+            try {
+                replacement = create();
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
+        if (replacement != null) {
+            try {
+                addIdleObject(replacement);
+            } catch (final Exception e) {
+                swallowException(e);
+                try {
+                    destroy(replacement);
+                } catch (final Exception e1) {
+                    swallowException(e1);
+                }
+                replacement = null;
+            }
+        }
+        if (replacement == null) {
+            p.endEvictionTest(idleObjects);
+            return;
+        }
+        try {
+            destroy(p);
+        } catch (final Exception e) {
+            swallowException(e);
+        }
+        retiredCount.incrementAndGet();
     }
 
     /**
@@ -602,12 +1534,54 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             throw new IllegalStateException(
                     "Invalidated object not currently part of this pool");
         }
-        synchronized (p) {
-            if (p.getState() != PooledObjectState.INVALID) {
-                destroy(p);
+        invalidate(p);
+    }
+
+    /**
+     * Invalidates an object borrowed via {@link #borrowLease(long)}.
+     *
+     * @param p The wrapper of the leased object
+     *
+     * @throws Exception if an exception occurs destroying the object
+     */
+    void invalidateLeased(final PooledObject<T> p) throws Exception {
+        if (isRemoved(p)) {
+            if (isAbandonedConfig()) {
+                return;
             }
+            throw new IllegalStateException(
+                    "Invalidated object not currently part of this pool");
         }
-        ensureIdle(1, false);
+        invalidate(p);
+    }
+
+    /**
+     * Invalidates an object once its wrapper has been located.
+     *
+     * @param p The wrapper of the object to invalidate
+     *
+     * @throws Exception if an exception occurs destroying the object
+     */
+    private void invalidate(final PooledObject<T> p) throws Exception {
+        if (markInvalid(p)) {
+            destroy(p);
+        }
+        replenish();
+    }
+
+    /**
+     * Has the object been, or is it in the process of being, removed from the
+     * pool? This is the equivalent for a wrapper of the object no longer being
+     * present in {@link #allObjects}.
+     *
+     * @param p The wrapper to test
+     *
+     * @return {@code true} if the object has been abandoned or destroyed
+     */
+    private static boolean isRemoved(final PooledObject<?> p) {
+        final PooledObjectState state = p.getState();
+        return state == PooledObjectState.INVALID ||
+                state == PooledObjectState.ABANDONED;
     }
 
     /**
@@ -629,6 +1603,8 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
      */
     @Override
     public void clear() {
+        flushThreadCaches();
+
         PooledObject<T> p = idleObjects.poll();
 
         while (p != null) {
@@ -643,12 +1619,17 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
 
     @Override
     public int getNumActive() {
-        return allObjects.size() - idleObjects.size();
+        return allObjects.size() - getNumIdle();
     }
 
     @Override
     public int getNumIdle() {
-        return idleObjects.size();
+        return idleObjects.size() + threadCachedCount.get();
+    }
+
+    @Override
+    public long getIdleBytes() {
+        return idleObjects.getBytes() + threadCachedBytes.get();
     }
 
     /**
@@ -665,7 +1646,8 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             return;
         }
 
-        synchronized (closeLock) {
+        closeLock.lock();
+        try {
             if (isClosed()) {
                 return;
             }
@@ -673,6 +1655,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             // Stop the evictor before the pool is closed since evict() calls
             // assertOpen()
             stopEvitor();
+            MemoryPressureMonitor.unregister(this);
 
             closed = true;
             // This clear removes any idle objects
@@ -682,6 +1665,8 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
 
             // Release any threads that were waiting for an object
             idleObjects.interuptTakeWaiters();
+        } finally {
+            closeLock.unlock();
         }
     }
 
@@ -695,20 +1680,40 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
     public void evict() throws Exception {
         assertOpen();
 
+        // Cached objects are not visible to the evictor
+        flushThreadCaches();
+
         if (idleObjects.size() > 0) {
 
             PooledObject<T> underTest = null;
             final EvictionPolicy<T> evictionPolicy = getEvictionPolicy();
+            final List<Callable<Void>> parallelTests = new ArrayList<>();
 
-            synchronized (evictionLock) {
+            evictionLock.lock();
+            try {
                 final EvictionConfig evictionConfig = new EvictionConfig(
                         getMinEvictableIdleTimeMillis(),
                         getSoftMinEvictableIdleTimeMillis(),
                         getMinIdle());
 
                 final boolean testWhileIdle = getTestWhileIdle();
+                final boolean parallel = testWhileIdle && getEvictionParallelism() > 1;
+
+                if (getMaxLifetimeMillis() > 0 || getMaxBorrowCount() > 0) {
+                    retireIdleObjects();
+                }
+                if (getMaxIdleBytes() > 0 && getObjectSizer() != null) {
+                    evictIdleBytes();
+                }
 
-                for (int i = 0, m = getNumTests(); i < m; i++) {
+                final int m;
+                if (isEvictExpiredOnly(evictionPolicy)) {
+                    evictExpired(evictionPolicy, evictionConfig);
+                    m = 0;
+                } else {
+                    m = getNumTests();
+                }
+                for (int i = 0; i < m; i++) {
                     if (evictionIterator == null || !evictionIterator.hasNext()) {
                         evictionIterator = new EvictionIterator(idleObjects);
                     }
@@ -753,29 +1758,22 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                     if (evict) {
                         destroy(underTest);
                         destroyedByEvictorCount.incrementAndGet();
-                    } else {
-                        if (testWhileIdle) {
-                            boolean active = false;
-                            try {
-                                factory.activateObject(underTest);
-                                active = true;
-                            } catch (final Exception e) {
-                                destroy(underTest);
-                                destroyedByEvictorCount.incrementAndGet();
-                            }
-                            if (active) {
-                                if (!factory.validateObject(underTest)) {
-                                    destroy(underTest);
-                                    destroyedByEvictorCount.incrementAndGet();
-                                } else {
-                                    try {
-                                        factory.passivateObject(underTest);
-                                    } catch (final Exception e) {
-                                        destroy(underTest);
-                                        destroyedByEvictorCount.incrementAndGet();
-                                    }
+                    } else if (parallel) {
+                        final PooledObject<T> candidate = underTest;
+                        parallelTests.add(new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                try {
+                                    testIdleObject(candidate);
+                                } finally {
+                                    candidate.endEvictionTest(idleObjects);
                                 }
+                                return null;
                             }
+                        });
+                    } else {
+                        if (testWhileIdle) {
+                            testIdleObject(underTest);
                         }
                         if (!underTest.endEvictionTest(idleObjects)) {
                             // TODO - May need to add code here once additional
@@ -783,14 +1781,125 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                         }
                     }
                 }
+            } finally {
+                try {
+                    // Objects selected for testing must always leave the
+                    // eviction state
+                    runEvictionTests(parallelTests);
+                } finally {
+                    evictionLock.unlock();
+                }
             }
         }
         final AbandonedConfig ac = this.abandonedConfig;
+        if (ac != null && ac.getRemoveUnreachableLeases()) {
+            removeUnreachableLeases(ac);
+        }
         if (ac != null && ac.getRemoveAbandonedOnMaintenance()) {
             removeAbandoned(ac);
         }
     }
 
+    /**
+     * Destroys the idle objects that have expired according to the eviction
+     * policy. Every idle object is checked, since the idle objects are not
+     * strictly ordered by return time, but objects that have not expired are
+     * not placed in the eviction state.
+     *
+     * @param evictionPolicy the eviction policy, which must only consider
+     *                       idle time
+     * @param evictionConfig the eviction configuration for the run
+     *
+     * @throws Exception If the factory fails to destroy an object
+     */
+    private void evictExpired(final EvictionPolicy<T> evictionPolicy,
+            final EvictionConfig evictionConfig) throws Exception {
+        final EvictionIterator iter = new EvictionIterator(idleObjects);
+        while (iter.hasNext()) {
+            final PooledObject<T> underTest;
+            try {
+                underTest = iter.next();
+            } catch (final NoSuchElementException nsee) {
+                // Object was borrowed in another thread
+                break;
+            }
+            if (!evictionPolicy.evict(evictionConfig, underTest, idleObjects.size())) {
+                continue;
+            }
+            if (!underTest.startEvictionTest()) {
+                // Object was borrowed in another thread
+                continue;
+            }
+            // Check again in case the object was borrowed and returned
+            if (evictionPolicy.evict(evictionConfig, underTest, idleObjects.size())) {
+                destroy(underTest);
+                destroyedByEvictorCount.incrementAndGet();
+            } else {
+                underTest.endEvictionTest(idleObjects);
+            }
+        }
+    }
+
+    /**
+     * Destroys the oldest idle objects until the remaining idle objects fit
+     * within {@link #getMaxIdleBytes() maxIdleBytes}.
+     *
+     * @throws Exception If the factory fails to destroy an object
+     */
+    private void evictIdleBytes() throws Exception {
+        long excess = idleObjects.getBytes() - getMaxIdleBytes();
+        final EvictionIterator iter = new EvictionIterator(idleObjects);
+        while (excess > 0 && iter.hasNext()) {
+            final PooledObject<T> underTest;
+            try {
+                underTest = iter.next();
+            } catch (final NoSuchElementException nsee) {
+                // Object was borrowed in another thread
+                break;
+            }
+            if (!underTest.startEvictionTest()) {
+                // Object was borrowed in another thread
+                continue;
+            }
+            excess -= sizeOf(underTest);
+            destroy(underTest);
+            destroyedByEvictorCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Activates, validates and passivates an idle object that is undergoing
+     * an eviction test, destroying it if any of these steps fail.
+     *
+     * @param underTest the object to test
+     *
+     * @throws Exception If the factory fails to validate or destroy the object
+     */
+    private void testIdleObject(final PooledObject<T> underTest) throws Exception {
+        boolean active = false;
+        try {
+            factory.activateObject(underTest);
+            active = true;
+        } catch (final Exception e) {
+            destroy(underTest);
+            destroyedByEvictorCount.incrementAndGet();
+        }
+        if (active) {
+            if (!factory.validateObject(underTest)) {
+                destroy(underTest);
+                destroyedByEvictorCount.incrementAndGet();
+            } else {
+                try {
+                    factory.passivateObject(underTest);
+                    markValidated(underTest);
+                } catch (final Exception e) {
+                    destroy(underTest);
+                    destroyedByEvictorCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
     /**
      * Tries to ensure that {@link #getMinIdle()} idle instances are available
      * in the pool.
@@ -805,81 +1914,214 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         ensureMinIdle();
     }
 
+    /**
+     * Attempts to create a new wrapped pooled object, waiting for up to
+     * {@link #getMaxWaitMillis()} for other creations to complete.
+     *
+     * @return The new wrapped pooled object
+     *
+     * @throws Exception if the object factory's {@code makeObject} fails
+     *
+     * @see #create(long, long)
+     */
+    private PooledObject<T> create() throws Exception {
+        final long localMaxWaitMillis = getMaxWaitMillis();
+        return create(System.nanoTime(),
+                localMaxWaitMillis > 0 ? toMaxWaitNanos(localMaxWaitMillis) : -1);
+    }
+
     /**
      * Attempts to create a new wrapped pooled object.
      * <p>
      * If there are {@link #getMaxTotal()} objects already in circulation
      * or in process of being created, this method returns null.
      *
+     * @param startNanos   The value of {@link System#nanoTime()} when the
+     *                     wait budget started
+     * @param maxWaitNanos The budget in nanoseconds for waiting for other
+     *                     creations to complete or a negative value for no
+     *                     limit
+     *
      * @return The new wrapped pooled object
      *
      * @throws Exception if the object factory's {@code makeObject} fails
      */
-    private PooledObject<T> create() throws Exception {
+    private PooledObject<T> create(final long startNanos, final long maxWaitNanos)
+            throws Exception {
+
+        boolean create;
+        makeObjectCountLock.lock();
+        try {
+            for (;;) {
+                final int available = availableCapacity();
+                if (available > 0) {
+                    // The pool is not at capacity. Create a new object.
+                    createCount.incrementAndGet();
+                    makeObjectCount++;
+                    create = true;
+                    break;
+                }
+                if (available < 0 && makeObjectCount == 0) {
+                    // The pool is at capacity and there are no makeObject()
+                    // calls in progress. Do not attempt to create a new
+                    // object. Return and wait for an object to be returned.
+                    // Any other thread waiting here will reach the same
+                    // conclusion so pass the signal on.
+                    createPermitAvailable.signal();
+                    create = false;
+                    break;
+                }
+                // Either there are makeObject() calls in progress that might
+                // bring the pool to capacity or the limit on concurrent
+                // creations has been reached. Those calls might also fail so
+                // wait until one completes and then re-test.
+                final long remainingNanos = remainingNanos(startNanos, maxWaitNanos);
+                if (remainingNanos == 0) {
+                    // Do not block more once the budget is used up. A
+                    // signal may have been consumed so pass it on.
+                    createPermitAvailable.signal();
+                    create = false;
+                    break;
+                }
+                if (remainingNanos > 0) {
+                    createPermitAvailable.awaitNanos(remainingNanos);
+                } else {
+                    createPermitAvailable.await();
+                }
+            }
+        } finally {
+            makeObjectCountLock.unlock();
+        }
+
+        if (!create) {
+            return null;
+        }
+
+        try {
+            return makeReservedObject();
+        } finally {
+            makeObjectCountLock.lock();
+            try {
+                makeObjectCount--;
+                // One creation slot and, if the creation failed, one unit of
+                // capacity is available
+                createPermitAvailable.signal();
+            } finally {
+                makeObjectCountLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Determines how many objects may be created right now. The caller must
+     * hold {@link #makeObjectCountLock}.
+     *
+     * @return the number of objects that may be created, zero if none may be
+     *         created because of the limit on concurrent creations or a
+     *         negative number if the pool is at capacity
+     */
+    private int availableCapacity() {
         int localMaxTotal = getMaxTotal();
         // This simplifies the code later in this method
         if (localMaxTotal < 0) {
             localMaxTotal = Integer.MAX_VALUE;
         }
+        final long capacity = localMaxTotal - createCount.get();
+        if (capacity <= 0 || isTotalBytesExceeded()) {
+            return -1;
+        }
+        final int localMaxConcurrentCreates = getMaxConcurrentCreates();
+        if (localMaxConcurrentCreates <= 0) {
+            return (int) Math.min(capacity, Integer.MAX_VALUE);
+        }
+        return (int) Math.max(0, Math.min(capacity,
+                localMaxConcurrentCreates - makeObjectCount));
+    }
 
-        final long localStartTimeMillis = System.currentTimeMillis();
-        final long localMaxWaitTimeMillis = Math.max(getMaxWaitMillis(), 0);
-
-        // Flag that indicates if create should:
-        // - TRUE:  call the factory to create an object
-        // - FALSE: return null
-        // - null:  loop and re-test the condition that determines whether to
-        //          call the factory
-        Boolean create = null;
-        while (create == null) {
-            synchronized (makeObjectCountLock) {
-                final long newCreateCount = createCount.incrementAndGet();
-                if (newCreateCount > localMaxTotal) {
-                    // The pool is currently at capacity or in the process of
-                    // making enough new objects to take it to capacity.
-                    createCount.decrementAndGet();
-                    if (makeObjectCount == 0) {
-                        // There are no makeObject() calls in progress so the
-                        // pool is at capacity. Do not attempt to create a new
-                        // object. Return and wait for an object to be returned
-                        create = Boolean.FALSE;
-                    } else {
-                        // There are makeObject() calls in progress that might
-                        // bring the pool to capacity. Those calls might also
-                        // fail so wait until they complete and then re-test if
-                        // the pool is at capacity or not.
-                        makeObjectCountLock.wait(localMaxWaitTimeMillis);
-                    }
-                } else {
-                    // The pool is not at capacity. Create a new object.
-                    makeObjectCount++;
-                    create = Boolean.TRUE;
-                }
+    /**
+     * Wakes up to the given number of threads waiting in {@link #create()}
+     * because capacity has been released.
+     *
+     * @param permits The number of units of capacity released
+     */
+    private void signalCreateWaiters(final int permits) {
+        makeObjectCountLock.lock();
+        try {
+            for (int i = 0; i < permits; i++) {
+                createPermitAvailable.signal();
             }
+        } finally {
+            makeObjectCountLock.unlock();
+        }
+    }
 
-            // Do not block more if maxWaitTimeMillis is set.
-            if (create == null &&
-                (localMaxWaitTimeMillis > 0 &&
-                 System.currentTimeMillis() - localStartTimeMillis >= localMaxWaitTimeMillis)) {
-                create = Boolean.FALSE;
+    /**
+     * Reserves capacity to create up to the given number of objects in a
+     * single step. Unlike {@link #create()}, this never waits for object
+     * creation in progress in other threads to complete. Each reservation
+     * must be used by calling {@link #makeReservedObject()} and all
+     * reservations released with {@link #releaseCapacity(int, int)}.
+     *
+     * @param wanted The number of objects to reserve capacity for
+     *
+     * @return The number of objects capacity was reserved for
+     */
+    private int reserveCapacity(final int wanted) {
+        if (wanted <= 0) {
+            return 0;
+        }
+        makeObjectCountLock.lock();
+        try {
+            final int available = availableCapacity();
+            if (available <= 0) {
+                return 0;
             }
+            final int reserved = Math.min(wanted, available);
+            createCount.addAndGet(reserved);
+            makeObjectCount += reserved;
+            return reserved;
+        } finally {
+            makeObjectCountLock.unlock();
         }
+    }
 
-        if (!create.booleanValue()) {
-            return null;
+    /**
+     * Releases capacity reserved by {@link #reserveCapacity(int)}.
+     *
+     * @param reserved The number of reservations made
+     * @param unused   The number of those reservations that were not used to
+     *                 create an object
+     */
+    private void releaseCapacity(final int reserved, final int unused) {
+        if (reserved == 0) {
+            return;
         }
+        createCount.addAndGet(-unused);
+        makeObjectCountLock.lock();
+        try {
+            makeObjectCount -= reserved;
+            for (int i = 0; i < reserved; i++) {
+                createPermitAvailable.signal();
+            }
+        } finally {
+            makeObjectCountLock.unlock();
+        }
+    }
 
+    /**
+     * Creates a new object once capacity for it has been reserved. If the
+     * object cannot be created, the reservation is released.
+     *
+     * @throws Exception if the object factory's {@code makeObject} fails
+     * @return The new wrapped pooled object
+     */
+    private PooledObject<T> makeReservedObject() throws Exception {
         final PooledObject<T> p;
         try {
             p = factory.makeObject();
         } catch (final Throwable e) {
             createCount.decrementAndGet();
             throw e;
-        } finally {
-            synchronized (makeObjectCountLock) {
-                makeObjectCount--;
-                makeObjectCountLock.notifyAll();
-            }
         }
 
         final AbandonedConfig ac = this.abandonedConfig;
@@ -887,47 +2129,215 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             p.setLogAbandoned(true);
             // TODO: in 3.0, this can use the method defined on PooledObject
             if (p instanceof DefaultPooledObject<?>) {
-                ((DefaultPooledObject<T>) p).setRequireFullStackTrace(ac.getRequireFullStackTrace());
+                ((DefaultPooledObject<T>) p).setRequireFullStackTrace(ac.getRequireFullStackTrace(),
+                        ac.getStackTraceSampleRate());
+            }
+        }
+
+        createdCount.incrementAndGet();
+        measureSize(p);
+        allObjects.put(new IdentityWrapper<>(p.getObject()), p);
+        return p;
+    }
+
+    /**
+     * Destroys a wrapped pooled object.
+     *
+     * @param toDestroy The wrapped pooled object to destroy
+     *
+     * @throws Exception If the factory fails to destroy the pooled object
+     *                   cleanly
+     */
+    private void destroy(final PooledObject<T> toDestroy) throws Exception {
+        toDestroy.invalidate();
+        if (isAbandonedConfig()) {
+            abandonedIndex.remove(toDestroy);
+            leaseTracker.untrack(toDestroy);
+        }
+        idleObjects.remove(toDestroy);
+        allObjects.remove(new IdentityWrapper<>(toDestroy.getObject()));
+        try {
+            factory.destroyObject(toDestroy);
+        } finally {
+            releaseSize(toDestroy);
+            destroyedCount.incrementAndGet();
+            createCount.decrementAndGet();
+            signalCreateWaiters(1);
+        }
+
+        if (idleObjects.isEmpty() && idleObjects.hasTakeWaiters() &&
+                !replenishAsync(replenishTask)) {
+            // POOL-356.
+            // In case there are already threads waiting on something in the pool
+            // (e.g. idleObjects.takeFirst(); then we need to provide them a fresh instance.
+            // Otherwise they will be stuck forever (or until timeout)
+            PooledObject<T> freshPooled = create();
+            idleObjects.put(freshPooled);
+        }
+    }
+
+    /**
+     * Creates an object to replace one that has been destroyed if there are
+     * threads waiting to borrow. The object is created by the replenishment
+     * executor if one is configured, otherwise by the calling thread.
+     *
+     * @throws Exception if the factory's makeObject throws while creating
+     *                   the object on the calling thread
+     */
+    private void replenish() throws Exception {
+        if (isClosed() || !idleObjects.hasTakeWaiters() ||
+                replenishAsync(replenishTask)) {
+            return;
+        }
+        ensureIdle(1, false);
+    }
+
+    @Override
+    void trimIdleObjects() throws Exception {
+        flushThreadCaches();
+        int excess = idleObjects.size() - Math.max(0, getMemoryPressureMaxIdle());
+        final EvictionIterator iter = new EvictionIterator(idleObjects);
+        while (excess > 0 && iter.hasNext()) {
+            final PooledObject<T> p;
+            try {
+                p = iter.next();
+            } catch (final NoSuchElementException nsee) {
+                // Object was borrowed in another thread
+                break;
+            }
+            if (!p.startEvictionTest()) {
+                // Object was borrowed in another thread
+                continue;
+            }
+            excess--;
+            if (shrink(p)) {
+                memoryPressureShrunkCount.incrementAndGet();
+                // Re-measure the object while it is out of the deque so the
+                // deque's byte count matches the recorded sizes. If a
+                // borrower has already taken it, endEvictionTest puts it back.
+                final boolean removed = idleObjects.removeFirstOccurrence(p);
+                measureSize(p);
+                p.endEvictionTest(idleObjects);
+                if (removed) {
+                    // Back to the oldest end, where it was found
+                    if (getLifo()) {
+                        idleObjects.addLast(p);
+                    } else {
+                        idleObjects.addFirst(p);
+                    }
+                }
+            } else {
+                destroy(p);
+                memoryPressureDestroyedCount.incrementAndGet();
             }
         }
-
-        createdCount.incrementAndGet();
-        allObjects.put(new IdentityWrapper<>(p.getObject()), p);
-        return p;
     }
 
     /**
-     * Destroys a wrapped pooled object.
+     * Asks the factory to shrink an idle object that is undergoing an
+     * eviction test, if the factory supports it.
      *
-     * @param toDestroy The wrapped pooled object to destroy
+     * @param p the object to shrink
      *
-     * @throws Exception If the factory fails to destroy the pooled object
-     *                   cleanly
+     * @return {@code true} if the object was shrunk and should be kept
      */
-    private void destroy(final PooledObject<T> toDestroy) throws Exception {
-        toDestroy.invalidate();
-        idleObjects.remove(toDestroy);
-        allObjects.remove(new IdentityWrapper<>(toDestroy.getObject()));
-        try {
-            factory.destroyObject(toDestroy);
-        } finally {
-            destroyedCount.incrementAndGet();
-            createCount.decrementAndGet();
+    private boolean shrink(final PooledObject<T> p) {
+        if (!(factory instanceof ShrinkablePooledObjectFactory)) {
+            return false;
         }
-
-        if (idleObjects.isEmpty() && idleObjects.hasTakeWaiters()) {
-            // POOL-356.
-            // In case there are already threads waiting on something in the pool
-            // (e.g. idleObjects.takeFirst(); then we need to provide them a fresh instance.
-            // Otherwise they will be stuck forever (or until timeout)
-            PooledObject<T> freshPooled = create();
-            idleObjects.put(freshPooled);
+        try {
+            return ((ShrinkablePooledObjectFactory<T>) factory).shrinkObject(p);
+        } catch (final Exception e) {
+            swallowException(e);
+            return false;
         }
     }
 
     @Override
     void ensureMinIdle() throws Exception {
         ensureIdle(getMinIdle(), true);
+        if (getPrewarmEnabled()) {
+            prewarm();
+        }
+    }
+
+    @Override
+    void autoTune() throws Exception {
+        final AutoTuner tuner = this.autoTuner;
+        if (tuner != null) {
+            tuner.tune(this);
+            // Borrowers already waiting on an exhausted pool are only woken
+            // by a return so use any capacity that has just been added
+            replenish();
+        }
+    }
+
+    @Override
+    void demandForecastUpdated() {
+        if (getPrewarmEnabled() && !prewarming.get() && getPrewarmDeficit() > 0) {
+            replenishAsync(prewarmTask);
+        }
+    }
+
+    /**
+     * Determines how many idle objects need to be created so that the number
+     * of idle objects projected to remain once active objects grow to the
+     * forecast demand is at least {@link #getPrewarmLowWatermark()}.
+     *
+     * @return the number of objects to create, limited by
+     *         {@link #getMaxIdle()}
+     */
+    private int getPrewarmDeficit() {
+        final int idle = idleObjects.size();
+        final double growth = Math.max(0, getForecastDemand() - getNumActive());
+        int deficit = (int) Math.ceil(getPrewarmLowWatermark() + growth - idle);
+        final int maxIdleSave = getMaxIdle();
+        if (maxIdleSave > -1) {
+            deficit = Math.min(deficit, maxIdleSave - idle);
+        }
+        return deficit;
+    }
+
+    /**
+     * Creates idle objects ahead of forecast demand. Capacity is reserved
+     * without waiting so pre-warming never competes with borrowing threads
+     * for capacity that is not immediately available.
+     */
+    private void prewarm() {
+        if (!prewarming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (isClosed()) {
+                return;
+            }
+            final int reserved = reserveCapacity(getPrewarmDeficit());
+            int made = 0;
+            try {
+                while (made < reserved) {
+                    made++;
+                    final PooledObject<T> p = makeReservedObject();
+                    prewarmedCount.incrementAndGet();
+                    if (getLifo()) {
+                        idleObjects.addFirst(p);
+                    } else {
+                        idleObjects.addLast(p);
+                    }
+                }
+            } catch (final Exception e) {
+                swallowException(e);
+            } finally {
+                releaseCapacity(reserved, reserved - made);
+            }
+            if (isClosed()) {
+                // Pool closed while objects were being added to idle objects.
+                // Make sure they are destroyed rather than left in the idle
+                // object pool (which would effectively be a leak)
+                clear();
+            }
+        } finally {
+            prewarming.set(false);
+        }
     }
 
     /**
@@ -1029,21 +2439,8 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
      */
     private void removeAbandoned(final AbandonedConfig ac) {
         // Generate a list of abandoned objects to remove
-        final long now = System.currentTimeMillis();
-        final long timeout =
-                now - (ac.getRemoveAbandonedTimeout() * 1000L);
-        final ArrayList<PooledObject<T>> remove = new ArrayList<>();
-        final Iterator<PooledObject<T>> it = allObjects.values().iterator();
-        while (it.hasNext()) {
-            final PooledObject<T> pooledObject = it.next();
-            synchronized (pooledObject) {
-                if (pooledObject.getState() == PooledObjectState.ALLOCATED &&
-                        pooledObject.getLastUsedTime() <= timeout) {
-                    pooledObject.markAbandoned();
-                    remove.add(pooledObject);
-                }
-            }
-        }
+        final List<PooledObject<T>> remove =
+                abandonedIndex.removeAbandoned(getAbandonedTimeout(ac));
 
         // Now remove the abandoned objects
         final Iterator<PooledObject<T>> itr = remove.iterator();
@@ -1061,6 +2458,216 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
     }
 
 
+    /**
+     * Invalidates the objects whose lease has become unreachable without
+     * having been released. Objects that are concurrently being returned by
+     * other means are left alone.
+     *
+     * @param ac The configuration to use to log the removed objects
+     */
+    private void removeUnreachableLeases(final AbandonedConfig ac) {
+        for (final PooledObject<T> pooledObject : leaseTracker.removeUnreachable()) {
+            if (!compareAndSetState(pooledObject, PooledObjectState.ALLOCATED,
+                    PooledObjectState.ABANDONED)) {
+                continue;
+            }
+            if (ac.getLogAbandoned()) {
+                pooledObject.printStackTrace(ac.getLogWriter());
+            }
+            try {
+                invalidate(pooledObject);
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Calculates the latest last used time for an object to be considered
+     * abandoned.
+     *
+     * @param ac The configuration to use to identify abandoned objects
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    private static long getAbandonedTimeout(final AbandonedConfig ac) {
+        return System.currentTimeMillis() - (ac.getRemoveAbandonedTimeout() * 1000L);
+    }
+
+
+    //--- Per thread cache support ---------------------------------------------
+
+    /**
+     * Obtains the cache slot for the current thread, creating and registering
+     * it if necessary. Registering a slot first unregisters the slots of
+     * threads that have terminated so the registry does not grow with the
+     * number of threads that have ever used the pool.
+     *
+     * @return the cache slot for the current thread
+     */
+    private ThreadCacheSlot<T> getThreadCacheSlot() {
+        ThreadCacheSlot<T> slot = threadCacheSlot.get();
+        if (slot == null) {
+            pruneThreadCacheSlots();
+            slot = new ThreadCacheSlot<>(Thread.currentThread());
+            threadCacheSlot.set(slot);
+            threadCacheSlots.add(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Unregisters the slots of threads that have terminated, moving any
+     * object they still hold to the idle object store.
+     */
+    private void pruneThreadCacheSlots() {
+        final Iterator<ThreadCacheSlot<T>> iter = threadCacheSlots.iterator();
+        while (iter.hasNext()) {
+            final ThreadCacheSlot<T> slot = iter.next();
+            if (!slot.isOwnerAlive()) {
+                iter.remove();
+                final PooledObject<T> p = takeThreadCache(slot);
+                if (p != null) {
+                    addFlushedToIdle(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the object held in the given slot, if any, and removes it from
+     * the thread cache counters.
+     *
+     * @param slot The slot to take the object from
+     *
+     * @return the cached object or {@code null} if there is none
+     */
+    private PooledObject<T> takeThreadCache(final ThreadCacheSlot<T> slot) {
+        if (slot.idle.get() == null) {
+            return null;
+        }
+        final PooledObject<T> p = slot.idle.getAndSet(null);
+        if (p != null) {
+            threadCachedBytes.addAndGet(-sizeOf(p));
+            threadCachedCount.decrementAndGet();
+        }
+        return p;
+    }
+
+    /**
+     * Reclaims the object cached by the current thread, if any.
+     *
+     * @return the cached object or {@code null} if there is none
+     */
+    private PooledObject<T> pollThreadCache() {
+        if (!threadCache) {
+            return null;
+        }
+        final ThreadCacheSlot<T> slot = threadCacheSlot.get();
+        if (slot == null) {
+            return null;
+        }
+        return takeThreadCache(slot);
+    }
+
+    /**
+     * Takes an object cached by any thread. Slots of threads that have
+     * terminated are unregistered once they are empty.
+     *
+     * @return a cached object or {@code null} if there is none
+     */
+    private PooledObject<T> stealThreadCache() {
+        if (threadCachedCount.get() <= 0) {
+            return null;
+        }
+        for (final ThreadCacheSlot<T> slot : threadCacheSlots) {
+            final PooledObject<T> p = takeThreadCache(slot);
+            if (p != null) {
+                return p;
+            } else if (!slot.isOwnerAlive()) {
+                threadCacheSlots.remove(slot);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Attempts to place a returned object in the current thread's cache.
+     *
+     * @param p The object being returned, already deallocated
+     *
+     * @return {@code true} if the object was cached, {@code false} if it
+     *         needs to be added to the idle object store
+     */
+    private boolean offerThreadCache(final PooledObject<T> p) {
+        if (!threadCache) {
+            return false;
+        }
+        final ThreadCacheSlot<T> slot = getThreadCacheSlot();
+        if (slot.idle.get() != null) {
+            return false;
+        }
+        // Count the object before publishing it so a thread that takes it
+        // straight away never drives the counters negative.
+        final long bytes = sizeOf(p);
+        threadCachedCount.incrementAndGet();
+        threadCachedBytes.addAndGet(bytes);
+        if (!slot.idle.compareAndSet(null, p)) {
+            threadCachedBytes.addAndGet(-bytes);
+            threadCachedCount.decrementAndGet();
+            return false;
+        }
+        // Don't leave a waiting thread blocked while this object sits in the
+        // cache. Waiting threads register before checking the caches so one
+        // of these checks will always see the other.
+        if (idleObjects.hasTakeWaiters() && slot.idle.compareAndSet(p, null)) {
+            threadCachedBytes.addAndGet(-bytes);
+            threadCachedCount.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Moves any objects held in thread caches to the idle object store,
+     * destroying them if the store already holds {@link #getMaxIdle()}
+     * objects.
+     */
+    private void flushThreadCaches() {
+        for (final ThreadCacheSlot<T> slot : threadCacheSlots) {
+            final PooledObject<T> p = takeThreadCache(slot);
+            if (p == null) {
+                if (!slot.isOwnerAlive()) {
+                    threadCacheSlots.remove(slot);
+                }
+                continue;
+            }
+            addFlushedToIdle(p);
+        }
+    }
+
+    /**
+     * Adds an object taken from a thread cache to the idle object store,
+     * destroying it if the pool already holds {@link #getMaxIdle()} idle
+     * objects.
+     *
+     * @param p The object taken from a thread cache
+     */
+    private void addFlushedToIdle(final PooledObject<T> p) {
+        if (isMaxIdleReached()) {
+            try {
+                destroy(p);
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        } else if (getLifo()) {
+            idleObjects.addFirst(p);
+        } else {
+            idleObjects.addLast(p);
+        }
+    }
+
+
     //--- Usage tracking support -----------------------------------------------
 
     @Override
@@ -1162,9 +2769,59 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
      * {@link #_maxActive} objects created at any one time.
      */
     private final AtomicLong createCount = new AtomicLong(0);
-    private long makeObjectCount = 0;
-    private final Object makeObjectCountLock = new Object();
-    private final LinkedBlockingDeque<PooledObject<T>> idleObjects;
+    private volatile int maxConcurrentCreates =
+            GenericObjectPoolConfig.DEFAULT_MAX_CONCURRENT_CREATES;
+    /*
+     * The number of calls to the factory's makeObject() in progress. Threads
+     * in create() that cannot obtain capacity wait on createPermitAvailable.
+     * Each completed creation and each object destroyed signals exactly one
+     * waiting thread rather than waking all of them.
+     */
+    private long makeObjectCount = 0; // @GuardedBy("makeObjectCountLock")
+    private final Lock makeObjectCountLock = new ReentrantLock();
+    private final Condition createPermitAvailable = makeObjectCountLock.newCondition();
+    private final ConcurrentIdleDeque<PooledObject<T>> idleObjects;
+    // Pre-warming of idle objects ahead of forecast demand
+    private volatile boolean prewarmEnabled =
+            GenericObjectPoolConfig.DEFAULT_PREWARM_ENABLED;
+    private volatile int prewarmLowWatermark =
+            GenericObjectPoolConfig.DEFAULT_PREWARM_LOW_WATERMARK;
+    private final AtomicBoolean prewarming = new AtomicBoolean(false);
+    // Borrow priorities
+    private volatile long priorityAgingMillis =
+            GenericObjectPoolConfig.DEFAULT_PRIORITY_AGING_MILLIS;
+    private final ConcurrentMap<Integer,StatsStore> priorityWaitTimes =
+            new ConcurrentHashMap<>();
+    private final AtomicLong prewarmedCount = new AtomicLong(0);
+    private final Runnable prewarmTask = new Runnable() {
+        @Override
+        public void run() {
+            prewarm();
+        }
+    };
+    private final Runnable replenishTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                ensureIdle(1, false);
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
+    };
+    private final Runnable retireReplacementTask = new Runnable() {
+        @Override
+        public void run() {
+            if (isClosed()) {
+                return;
+            }
+            try {
+                addObject();
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
+    };
 
     // JMX specific attributes
     private static final String ONAME_BASE =
@@ -1172,6 +2829,37 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
 
     // Additional configuration properties for abandoned object tracking
     private volatile AbandonedConfig abandonedConfig = null;
+    // Borrowed objects ordered by when they were last used
+    private final AbandonedIndex<T> abandonedIndex = new AbandonedIndex<>();
+    // Leases on borrowed objects, if objects with unreachable leases are removed
+    private final LeaseTracker<T> leaseTracker = new LeaseTracker<>();
+    private final AtomicBoolean removeAbandonedPending = new AtomicBoolean(false);
+    private final Runnable removeAbandonedTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                final AbandonedConfig ac = abandonedConfig;
+                if (ac != null) {
+                    removeAbandoned(ac);
+                }
+            } finally {
+                removeAbandonedPending.set(false);
+            }
+        }
+    };
+
+    // Automatic tuning of the sizing attributes
+    private volatile AutoTuner autoTuner = null;
+
+    // Per thread cache of the last returned object
+    private volatile boolean threadCache =
+            GenericObjectPoolConfig.DEFAULT_THREAD_CACHE;
+    private final ThreadLocal<ThreadCacheSlot<T>> threadCacheSlot =
+            new ThreadLocal<>();
+    private final Collection<ThreadCacheSlot<T>> threadCacheSlots =
+            new ConcurrentLinkedQueue<>();
+    private final AtomicInteger threadCachedCount = new AtomicInteger(0);
+    private final AtomicLong threadCachedBytes = new AtomicLong(0);
 
     @Override
     protected void toStringAppendFields(final StringBuilder builder) {
@@ -1192,6 +2880,200 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         builder.append(idleObjects);
         builder.append(", abandonedConfig=");
         builder.append(abandonedConfig);
+        builder.append(", autoTuner=");
+        builder.append(autoTuner);
+        builder.append(", threadCache=");
+        builder.append(threadCache);
+        builder.append(", maxConcurrentCreates=");
+        builder.append(maxConcurrentCreates);
+        builder.append(", prewarmEnabled=");
+        builder.append(prewarmEnabled);
+        builder.append(", prewarmLowWatermark=");
+        builder.append(prewarmLowWatermark);
+        builder.append(", priorityAgingMillis=");
+        builder.append(priorityAgingMillis);
+    }
+
+    /**
+     * A borrow that waits for an object without blocking a thread. Running it
+     * times the borrow out.
+     */
+    private class AsyncBorrow extends BorrowFuture<T> implements Runnable {
+
+        private final long startTime = System.currentTimeMillis();
+
+        /**
+         * Local copy of the config so it is consistent for the entire borrow.
+         */
+        private final boolean blockWhenExhausted = getBlockWhenExhausted();
+
+        /** The currently registered waiter, if any. */
+        private volatile ConcurrentIdleDeque.AsyncWaiter<PooledObject<T>> waiter;
+
+        /** Has this borrow been counted against maxWaiters? */
+        private volatile boolean waiting = false;
+
+        /**
+         * Counts this borrow against maxWaiters until it completes.
+         *
+         * @return {@code true} if the borrow may wait or {@code false} if it
+         *         has been rejected
+         */
+        private boolean addAsyncWaiter() {
+            try {
+                addWaiter();
+            } catch (final BorrowRejectedException e) {
+                fail(e);
+                return false;
+            }
+            waiting = true;
+            addListener(new Runnable() {
+                @Override
+                public void run() {
+                    removeWaiter();
+                }
+            });
+            return true;
+        }
+
+        /**
+         * Tries to complete the borrow, registering a waiter if no object is
+         * available.
+         *
+         * @param handed An idle object handed to the waiter or {@code null}
+         */
+        void attempt(final PooledObject<T> handed) {
+            PooledObject<T> p = handed;
+            while (true) {
+                if (isDone()) {
+                    if (p != null) {
+                        // Timed out or cancelled while the object was handed
+                        // over. Pass it on.
+                        idleObjects.addFirst(p);
+                        if (isClosed()) {
+                            clear();
+                        }
+                    }
+                    return;
+                }
+                boolean create = false;
+                if (p == null) {
+                    p = pollIdle();
+                }
+                if (p == null && reserveCapacity(1) == 1) {
+                    try {
+                        p = makeReservedObject();
+                        create = true;
+                    } catch (final Throwable t) {
+                        PoolUtils.checkRethrow(t);
+                        fail(t);
+                        return;
+                    } finally {
+                        releaseCapacity(1, 0);
+                    }
+                }
+                if (p == null) {
+                    if (!blockWhenExhausted) {
+                        fail(new NoSuchElementException("Pool exhausted"));
+                        return;
+                    }
+                    if (isClosed()) {
+                        fail(new IllegalStateException("Pool not open"));
+                        return;
+                    }
+                    if (!waiting && !addAsyncWaiter()) {
+                        return;
+                    }
+                    final ConcurrentIdleDeque.AsyncWaiter<PooledObject<T>> w =
+                            new ConcurrentIdleDeque.AsyncWaiter<PooledObject<T>>() {
+                        @Override
+                        void taken(final PooledObject<T> e) {
+                            attempt(e);
+                        }
+
+                        @Override
+                        void interrupted() {
+                            fail(new IllegalStateException("Pool not open"));
+                        }
+                    };
+                    waiter = w;
+                    p = idleObjects.takeFirstAsync(w);
+                    if (p == null) {
+                        if (isDone()) {
+                            // Timed out or cancelled while registering
+                            idleObjects.cancelAsync(w);
+                        }
+                        return;
+                    }
+                }
+                try {
+                    if (p.allocate() && activateAndValidate(p, create)) {
+                        updateStatsBorrow(p, System.currentTimeMillis() - startTime);
+                        if (!complete(p.getObject())) {
+                            returnPooledObject(p);
+                        }
+                        return;
+                    }
+                } catch (final NoSuchElementException e) {
+                    fail(e);
+                    return;
+                }
+                p = null;
+            }
+        }
+
+        /**
+         * Times out the borrow.
+         */
+        @Override
+        public void run() {
+            fail(new NoSuchElementException("Timeout waiting for idle object"));
+        }
+
+        @Override
+        void withdraw() {
+            final ConcurrentIdleDeque.AsyncWaiter<PooledObject<T>> w = waiter;
+            if (w != null) {
+                idleObjects.cancelAsync(w);
+            }
+        }
+    }
+
+    /**
+     * The per thread cache of a single thread.
+     *
+     * @param <T> type of objects in the pool
+     */
+    private static final class ThreadCacheSlot<T> {
+
+        /** The owning thread, held weakly so the slot does not prevent GC. */
+        private final WeakReference<Thread> owner;
+
+        /** The cached idle object. Any thread may take it. */
+        private final AtomicReference<PooledObject<T>> idle =
+                new AtomicReference<>();
+
+        /** The object most recently borrowed. Only used by the owner. */
+        private PooledObject<T> borrowed;
+
+        /**
+         * Create a new slot for the given thread.
+         *
+         * @param owner The owning thread
+         */
+        ThreadCacheSlot(final Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        /**
+         * Is the owning thread still running?
+         *
+         * @return {@code true} if the owner is alive
+         */
+        boolean isOwnerAlive() {
+            final Thread t = owner.get();
+            return t != null && t.isAlive();
+        }
     }
 
 }
@@ -48,6 +48,44 @@ public class GenericObjectPoolConfig<T> extends BaseObjectPoolConfig<T> {
      */
     public static final int DEFAULT_MIN_IDLE = 0;
 
+    /**
+     * The default value for the {@code threadCache} configuration attribute.
+     * @see GenericObjectPool#getThreadCache()
+     * @since 2.6.1
+     */
+    public static final boolean DEFAULT_THREAD_CACHE = false;
+
+    /**
+     * The default value for the {@code maxConcurrentCreates} configuration
+     * attribute.
+     * @see GenericObjectPool#getMaxConcurrentCreates()
+     * @since 2.6.1
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_CREATES = -1;
+
+    /**
+     * The default value for the {@code prewarmEnabled} configuration
+     * attribute.
+     * @see GenericObjectPool#getPrewarmEnabled()
+     * @since 2.6.1
+     */
+    public static final boolean DEFAULT_PREWARM_ENABLED = false;
+
+    /**
+     * The default value for the {@code prewarmLowWatermark} configuration
+     * attribute.
+     * @see GenericObjectPool#getPrewarmLowWatermark()
+     * @since 2.6.1
+     */
+    public static final int DEFAULT_PREWARM_LOW_WATERMARK = 1;
+
+    /**
+     * The default value for the {@code priorityAgingMillis} configuration
+     * attribute.
+     * @see GenericObjectPool#getPriorityAgingMillis()
+     * @since 2.6.1
+     */
+    public static final long DEFAULT_PRIORITY_AGING_MILLIS = 1000L;
 
     private int maxTotal = DEFAULT_MAX_TOTAL;
 
@@ -55,6 +93,16 @@ public class GenericObjectPoolConfig<T> extends BaseObjectPoolConfig<T> {
 
     private int minIdle = DEFAULT_MIN_IDLE;
 
+    private boolean threadCache = DEFAULT_THREAD_CACHE;
+
+    private int maxConcurrentCreates = DEFAULT_MAX_CONCURRENT_CREATES;
+
+    private boolean prewarmEnabled = DEFAULT_PREWARM_ENABLED;
+
+    private int prewarmLowWatermark = DEFAULT_PREWARM_LOW_WATERMARK;
+
+    private long priorityAgingMillis = DEFAULT_PRIORITY_AGING_MILLIS;
+
     /**
      * Get the value for the {@code maxTotal} configuration attribute
      * for pools created with this configuration instance.
@@ -135,6 +183,146 @@ public class GenericObjectPoolConfig<T> extends BaseObjectPoolConfig<T> {
         this.minIdle = minIdle;
     }
 
+    /**
+     * Get the value for the {@code threadCache} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code threadCache} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getThreadCache()
+     * @since 2.6.1
+     */
+    public boolean getThreadCache() {
+        return threadCache;
+    }
+
+    /**
+     * Set the value for the {@code threadCache} configuration attribute for
+     * pools created with this configuration instance.
+     *
+     * @param threadCache The new setting of {@code threadCache}
+     *        for this configuration instance
+     *
+     * @see GenericObjectPool#setThreadCache(boolean)
+     * @since 2.6.1
+     */
+    public void setThreadCache(final boolean threadCache) {
+        this.threadCache = threadCache;
+    }
+
+    /**
+     * Get the value for the {@code maxConcurrentCreates} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code maxConcurrentCreates} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getMaxConcurrentCreates()
+     * @since 2.6.1
+     */
+    public int getMaxConcurrentCreates() {
+        return maxConcurrentCreates;
+    }
+
+    /**
+     * Set the value for the {@code maxConcurrentCreates} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param maxConcurrentCreates The new setting of
+     *        {@code maxConcurrentCreates} for this configuration instance
+     *
+     * @see GenericObjectPool#setMaxConcurrentCreates(int)
+     * @since 2.6.1
+     */
+    public void setMaxConcurrentCreates(final int maxConcurrentCreates) {
+        this.maxConcurrentCreates = maxConcurrentCreates;
+    }
+
+    /**
+     * Get the value for the {@code prewarmEnabled} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code prewarmEnabled} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getPrewarmEnabled()
+     * @since 2.6.1
+     */
+    public boolean getPrewarmEnabled() {
+        return prewarmEnabled;
+    }
+
+    /**
+     * Set the value for the {@code prewarmEnabled} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @param prewarmEnabled The new setting of {@code prewarmEnabled}
+     *        for this configuration instance
+     *
+     * @see GenericObjectPool#setPrewarmEnabled(boolean)
+     * @since 2.6.1
+     */
+    public void setPrewarmEnabled(final boolean prewarmEnabled) {
+        this.prewarmEnabled = prewarmEnabled;
+    }
+
+    /**
+     * Get the value for the {@code prewarmLowWatermark} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code prewarmLowWatermark} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getPrewarmLowWatermark()
+     * @since 2.6.1
+     */
+    public int getPrewarmLowWatermark() {
+        return prewarmLowWatermark;
+    }
+
+    /**
+     * Set the value for the {@code prewarmLowWatermark} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param prewarmLowWatermark The new setting of
+     *        {@code prewarmLowWatermark} for this configuration instance
+     *
+     * @see GenericObjectPool#setPrewarmLowWatermark(int)
+     * @since 2.6.1
+     */
+    public void setPrewarmLowWatermark(final int prewarmLowWatermark) {
+        this.prewarmLowWatermark = prewarmLowWatermark;
+    }
+
+    /**
+     * Get the value for the {@code priorityAgingMillis} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code priorityAgingMillis} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getPriorityAgingMillis()
+     * @since 2.6.1
+     */
+    public long getPriorityAgingMillis() {
+        return priorityAgingMillis;
+    }
+
+    /**
+     * Set the value for the {@code priorityAgingMillis} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param priorityAgingMillis The new setting of
+     *        {@code priorityAgingMillis} for this configuration instance
+     *
+     * @see GenericObjectPool#setPriorityAgingMillis(long)
+     * @since 2.6.1
+     */
+    public void setPriorityAgingMillis(final long priorityAgingMillis) {
+        this.priorityAgingMillis = priorityAgingMillis;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public GenericObjectPoolConfig<T> clone() {
@@ -154,5 +342,15 @@ public class GenericObjectPoolConfig<T> extends BaseObjectPoolConfig<T> {
         builder.append(maxIdle);
         builder.append(", minIdle=");
         builder.append(minIdle);
+        builder.append(", threadCache=");
+        builder.append(threadCache);
+        builder.append(", maxConcurrentCreates=");
+        builder.append(maxConcurrentCreates);
+        builder.append(", prewarmEnabled=");
+        builder.append(prewarmEnabled);
+        builder.append(", prewarmLowWatermark=");
+        builder.append(prewarmLowWatermark);
+        builder.append(", priorityAgingMillis=");
+        builder.append(priorityAgingMillis);
     }
 }
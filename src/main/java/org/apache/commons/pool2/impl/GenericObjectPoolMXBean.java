@@ -16,6 +16,8 @@
  */
 package org.apache.commons.pool2.impl;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -46,6 +48,13 @@ public interface GenericObjectPoolMXBean {
      */
     boolean getFairness();
 
+    /**
+     * See {@link GenericObjectPool#getHandOff()}
+     * @return See {@link GenericObjectPool#getHandOff()}
+     * @since 2.6.1
+     */
+    boolean getHandOff();
+
     /**
      * See {@link GenericObjectPool#getFairness()}
      * @return See {@link GenericObjectPool#getFairness()}
@@ -70,6 +79,118 @@ public interface GenericObjectPoolMXBean {
      */
     long getMaxWaitMillis();
 
+    /**
+     * See {@link GenericObjectPool#getMaxWaiters()}
+     * @return See {@link GenericObjectPool#getMaxWaiters()}
+     * @since 2.6.1
+     */
+    int getMaxWaiters();
+
+    /**
+     * See {@link GenericObjectPool#getRejectedCount()}
+     * @return See {@link GenericObjectPool#getRejectedCount()}
+     * @since 2.6.1
+     */
+    long getRejectedCount();
+
+    /**
+     * See {@link GenericObjectPool#getMaxLifetimeMillis()}
+     * @return See {@link GenericObjectPool#getMaxLifetimeMillis()}
+     * @since 2.6.1
+     */
+    long getMaxLifetimeMillis();
+
+    /**
+     * See {@link GenericObjectPool#getMaxBorrowCount()}
+     * @return See {@link GenericObjectPool#getMaxBorrowCount()}
+     * @since 2.6.1
+     */
+    long getMaxBorrowCount();
+
+    /**
+     * See {@link GenericObjectPool#getRetirementJitter()}
+     * @return See {@link GenericObjectPool#getRetirementJitter()}
+     * @since 2.6.1
+     */
+    double getRetirementJitter();
+
+    /**
+     * See {@link GenericObjectPool#getRetiredCount()}
+     * @return See {@link GenericObjectPool#getRetiredCount()}
+     * @since 2.6.1
+     */
+    long getRetiredCount();
+
+    /**
+     * See {@link GenericObjectPool#getMemoryPressureThreshold()}
+     * @return See {@link GenericObjectPool#getMemoryPressureThreshold()}
+     * @since 2.6.1
+     */
+    double getMemoryPressureThreshold();
+
+    /**
+     * See {@link GenericObjectPool#getMemoryPressureMaxIdle()}
+     * @return See {@link GenericObjectPool#getMemoryPressureMaxIdle()}
+     * @since 2.6.1
+     */
+    int getMemoryPressureMaxIdle();
+
+    /**
+     * See {@link GenericObjectPool#getMemoryPressureDestroyedCount()}
+     * @return See {@link GenericObjectPool#getMemoryPressureDestroyedCount()}
+     * @since 2.6.1
+     */
+    long getMemoryPressureDestroyedCount();
+
+    /**
+     * See {@link GenericObjectPool#getMemoryPressureShrunkCount()}
+     * @return See {@link GenericObjectPool#getMemoryPressureShrunkCount()}
+     * @since 2.6.1
+     */
+    long getMemoryPressureShrunkCount();
+
+    /**
+     * See {@link GenericObjectPool#getMaxTotalBytes()}
+     * @return See {@link GenericObjectPool#getMaxTotalBytes()}
+     * @since 2.6.1
+     */
+    long getMaxTotalBytes();
+
+    /**
+     * See {@link GenericObjectPool#getMaxIdleBytes()}
+     * @return See {@link GenericObjectPool#getMaxIdleBytes()}
+     * @since 2.6.1
+     */
+    long getMaxIdleBytes();
+
+    /**
+     * See {@link GenericObjectPool#getTotalBytes()}
+     * @return See {@link GenericObjectPool#getTotalBytes()}
+     * @since 2.6.1
+     */
+    long getTotalBytes();
+
+    /**
+     * See {@link GenericObjectPool#getIdleBytes()}
+     * @return See {@link GenericObjectPool#getIdleBytes()}
+     * @since 2.6.1
+     */
+    long getIdleBytes();
+
+    /**
+     * See {@link GenericObjectPool#getValidationIdleThresholdMillis()}
+     * @return See {@link GenericObjectPool#getValidationIdleThresholdMillis()}
+     * @since 2.6.1
+     */
+    long getValidationIdleThresholdMillis();
+
+    /**
+     * See {@link GenericObjectPool#getSkippedValidationCount()}
+     * @return See {@link GenericObjectPool#getSkippedValidationCount()}
+     * @since 2.6.1
+     */
+    long getSkippedValidationCount();
+
     /**
      * See {@link GenericObjectPool#getMinEvictableIdleTimeMillis()}
      * @return See {@link GenericObjectPool#getMinEvictableIdleTimeMillis()}
@@ -82,6 +203,76 @@ public interface GenericObjectPoolMXBean {
      */
     int getMinIdle();
 
+    /**
+     * See {@link GenericObjectPool#getThreadCache()}
+     * @return See {@link GenericObjectPool#getThreadCache()}
+     * @since 2.6.1
+     */
+    boolean getThreadCache();
+
+    /**
+     * See {@link GenericObjectPool#getMaxConcurrentCreates()}
+     * @return See {@link GenericObjectPool#getMaxConcurrentCreates()}
+     * @since 2.6.1
+     */
+    int getMaxConcurrentCreates();
+
+    /**
+     * See {@link GenericObjectPool#getPrewarmEnabled()}
+     * @return See {@link GenericObjectPool#getPrewarmEnabled()}
+     * @since 2.6.1
+     */
+    boolean getPrewarmEnabled();
+
+    /**
+     * See {@link GenericObjectPool#getPrewarmLowWatermark()}
+     * @return See {@link GenericObjectPool#getPrewarmLowWatermark()}
+     * @since 2.6.1
+     */
+    int getPrewarmLowWatermark();
+
+    /**
+     * See {@link GenericObjectPool#getPrewarmedCount()}
+     * @return See {@link GenericObjectPool#getPrewarmedCount()}
+     * @since 2.6.1
+     */
+    long getPrewarmedCount();
+
+    /**
+     * See {@link GenericObjectPool#getPriorityAgingMillis()}
+     * @return See {@link GenericObjectPool#getPriorityAgingMillis()}
+     * @since 2.6.1
+     */
+    long getPriorityAgingMillis();
+
+    /**
+     * See {@link GenericObjectPool#getMeanBorrowWaitTimeMillisByPriority()}
+     * @return See {@link GenericObjectPool#getMeanBorrowWaitTimeMillisByPriority()}
+     * @since 2.6.1
+     */
+    Map<Integer,Long> getMeanBorrowWaitTimeMillisByPriority();
+
+    /**
+     * See {@link GenericObjectPool#getP99BorrowWaitTimeMillisByPriority()}
+     * @return See {@link GenericObjectPool#getP99BorrowWaitTimeMillisByPriority()}
+     * @since 2.6.1
+     */
+    Map<Integer,Long> getP99BorrowWaitTimeMillisByPriority();
+
+    /**
+     * See {@link GenericObjectPool#isAutoTuneEnabled()}
+     * @return See {@link GenericObjectPool#isAutoTuneEnabled()}
+     * @since 2.6.1
+     */
+    boolean isAutoTuneEnabled();
+
+    /**
+     * See {@link GenericObjectPool#getAutoTuneAuditLog()}
+     * @return See {@link GenericObjectPool#getAutoTuneAuditLog()}
+     * @since 2.6.1
+     */
+    List<String> getAutoTuneAuditLog();
+
     /**
      * See {@link GenericObjectPool#getNumActive()}
      * @return See {@link GenericObjectPool#getNumActive()}
@@ -100,6 +291,34 @@ public interface GenericObjectPoolMXBean {
      */
     int getNumTestsPerEvictionRun();
 
+    /**
+     * See {@link GenericObjectPool#getEvictionParallelism()}
+     * @return See {@link GenericObjectPool#getEvictionParallelism()}
+     * @since 2.6.1
+     */
+    int getEvictionParallelism();
+
+    /**
+     * See {@link GenericObjectPool#getEvictAllExpired()}
+     * @return See {@link GenericObjectPool#getEvictAllExpired()}
+     * @since 2.6.1
+     */
+    boolean getEvictAllExpired();
+
+    /**
+     * See {@link GenericObjectPool#getEvictorThreadCount()}
+     * @return See {@link GenericObjectPool#getEvictorThreadCount()}
+     * @since 2.6.1
+     */
+    int getEvictorThreadCount();
+
+    /**
+     * See {@link GenericObjectPool#getEvictionJitterMillis()}
+     * @return See {@link GenericObjectPool#getEvictionJitterMillis()}
+     * @since 2.6.1
+     */
+    long getEvictionJitterMillis();
+
     /**
      * See {@link GenericObjectPool#getTestOnCreate()}
      * @return See {@link GenericObjectPool#getTestOnCreate()}
@@ -193,12 +412,75 @@ public interface GenericObjectPoolMXBean {
      */
     long getMeanBorrowWaitTimeMillis();
 
+    /**
+     * See {@link GenericObjectPool#getP99BorrowWaitTimeMillis()}
+     * @return See {@link GenericObjectPool#getP99BorrowWaitTimeMillis()}
+     * @since 2.6.1
+     */
+    long getP99BorrowWaitTimeMillis();
+
+    /**
+     * See {@link GenericObjectPool#getReplenishQueueDepth()}
+     * @return See {@link GenericObjectPool#getReplenishQueueDepth()}
+     * @since 2.6.1
+     */
+    int getReplenishQueueDepth();
+
+    /**
+     * See {@link GenericObjectPool#getMeanReplenishLatencyMillis()}
+     * @return See {@link GenericObjectPool#getMeanReplenishLatencyMillis()}
+     * @since 2.6.1
+     */
+    long getMeanReplenishLatencyMillis();
+
+    /**
+     * See {@link GenericObjectPool#getForecastBorrowRate()}
+     * @return See {@link GenericObjectPool#getForecastBorrowRate()}
+     * @since 2.6.1
+     */
+    double getForecastBorrowRate();
+
+    /**
+     * See {@link GenericObjectPool#getForecastActiveTimeMillis()}
+     * @return See {@link GenericObjectPool#getForecastActiveTimeMillis()}
+     * @since 2.6.1
+     */
+    double getForecastActiveTimeMillis();
+
+    /**
+     * See {@link GenericObjectPool#getForecastDemand()}
+     * @return See {@link GenericObjectPool#getForecastDemand()}
+     * @since 2.6.1
+     */
+    double getForecastDemand();
+
     /**
      * See {@link GenericObjectPool#getMaxBorrowWaitTimeMillis()}
      * @return See {@link GenericObjectPool#getMaxBorrowWaitTimeMillis()}
      */
     long getMaxBorrowWaitTimeMillis();
 
+    /**
+     * See {@link GenericObjectPool#getMeanEvictionLagMillis()}
+     * @return See {@link GenericObjectPool#getMeanEvictionLagMillis()}
+     * @since 2.6.1
+     */
+    long getMeanEvictionLagMillis();
+
+    /**
+     * See {@link GenericObjectPool#getMaxEvictionLagMillis()}
+     * @return See {@link GenericObjectPool#getMaxEvictionLagMillis()}
+     * @since 2.6.1
+     */
+    long getMaxEvictionLagMillis();
+
+    /**
+     * See {@link GenericObjectPool#getMeanEvictionRunTimeMillis()}
+     * @return See {@link GenericObjectPool#getMeanEvictionRunTimeMillis()}
+     * @since 2.6.1
+     */
+    long getMeanEvictionRunTimeMillis();
+
     /**
      * See {@link GenericObjectPool#getCreationStackTrace()}
      * @return See {@link GenericObjectPool#getCreationStackTrace()}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.BaseGenericObjectPool.IdentityWrapper;
+
+/**
+ * Tracks the leases on borrowed objects so that objects whose lease becomes
+ * unreachable before the object is returned can be found as soon as the
+ * garbage collector has noticed, rather than after the abandoned timeout.
+ * <p>
+ * Each tracked lease is registered with a phantom reference that holds the
+ * pool's wrapper for the borrowed object. Objects are untracked when they are
+ * returned or destroyed so that a lease that is discarded after its object
+ * has been returned by other means is never reported.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @param <T> Type of element pooled in the pool.
+ *
+ * @since 2.6.1
+ */
+final class LeaseTracker<T> {
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final ConcurrentMap<IdentityWrapper<PooledObject<T>>, LeaseReference<T>> tracked =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Starts tracking the lease on a borrowed object.
+     *
+     * @param lease the lease
+     * @param p     the borrowed object
+     */
+    void track(final PooledObjectLease<T> lease, final PooledObject<T> p) {
+        final LeaseReference<T> previous = tracked.put(new IdentityWrapper<>(p),
+                new LeaseReference<>(lease, p, queue));
+        if (previous != null) {
+            previous.clear();
+        }
+    }
+
+    /**
+     * Stops tracking the lease, if any, on an object that has been returned
+     * or destroyed.
+     *
+     * @param p the object
+     */
+    void untrack(final PooledObject<T> p) {
+        if (tracked.isEmpty()) {
+            return;
+        }
+        final LeaseReference<T> reference = tracked.remove(new IdentityWrapper<>(p));
+        if (reference != null) {
+            reference.clear();
+        }
+    }
+
+    /**
+     * Stops tracking all leases.
+     */
+    void clear() {
+        for (final LeaseReference<T> reference : tracked.values()) {
+            reference.clear();
+        }
+        tracked.clear();
+    }
+
+    /**
+     * Removes the objects whose lease has become unreachable since the last
+     * call to this method and which have not been returned or destroyed.
+     *
+     * @return the objects with an unreachable lease
+     */
+    List<PooledObject<T>> removeUnreachable() {
+        List<PooledObject<T>> unreachable = null;
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            @SuppressWarnings("unchecked")
+            final LeaseReference<T> leaseReference = (LeaseReference<T>) reference;
+            final PooledObject<T> p = leaseReference.pooledObject;
+            if (tracked.remove(new IdentityWrapper<>(p), leaseReference)) {
+                if (unreachable == null) {
+                    unreachable = new ArrayList<>();
+                }
+                unreachable.add(p);
+            }
+        }
+        return unreachable == null ? Collections.<PooledObject<T>>emptyList() : unreachable;
+    }
+
+    /**
+     * Obtains the number of tracked leases.
+     *
+     * @return the number of tracked leases
+     */
+    int size() {
+        return tracked.size();
+    }
+
+    /**
+     * A phantom reference to a lease that holds the object borrowed by it.
+     */
+    private static final class LeaseReference<T> extends PhantomReference<Object> {
+
+        final PooledObject<T> pooledObject;
+
+        LeaseReference(final PooledObjectLease<T> lease, final PooledObject<T> pooledObject,
+                final ReferenceQueue<Object> queue) {
+            super(lease, queue);
+            this.pooledObject = pooledObject;
+        }
+    }
+}
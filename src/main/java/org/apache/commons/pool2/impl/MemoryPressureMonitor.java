@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Tells pools when the heap is running low so that they can trim their idle
+ * objects. While at least one pool is registered, the monitor sets the
+ * collection usage threshold of every heap memory pool that supports one to
+ * the lowest {@link BaseGenericObjectPool#getMemoryPressureThreshold()
+ * memoryPressureThreshold} of the registered pools and listens for the
+ * notifications the JVM sends when a garbage collection leaves more of a
+ * memory pool in use than its threshold. Collection usage is used rather
+ * than usage so that garbage that has yet to be collected does not trigger
+ * trimming.
+ * <p>
+ * Collection usage thresholds are JVM wide, so the monitor only takes over
+ * the threshold of a memory pool that has none (a threshold of zero) when
+ * the first pool is registered, and gives it up as soon as other code
+ * changes it. The notifications sent for thresholds set by other code are
+ * still passed on to the pools, which compare the usage with their own
+ * thresholds.
+ * <p>
+ * Pools are trimmed on a single daemon thread so that slow factories do not
+ * hold up the delivery of notifications. When the last pool is unregistered
+ * the listener is removed, the thread is stopped and the thresholds that the
+ * monitor still manages are cleared.
+ * <p>
+ * This class has package scope to prevent its inclusion in the pool public API.
+ * The class declaration below should *not* be changed to public.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @since 2.6.1
+ */
+final class MemoryPressureMonitor {
+
+    /*
+     * Registered pools. Weak references avoid memory leaks if a pool is
+     * discarded rather than closed.
+     */
+    private static final List<WeakReference<BaseGenericObjectPool<?>>> pools =
+            new ArrayList<>(); //@GuardedBy("MemoryPressureMonitor.class")
+
+    /** Memory pools whose threshold is managed, with the threshold last set */
+    private static final Map<MemoryPoolMXBean, Long> managedThresholds =
+            new HashMap<>(); //@GuardedBy("MemoryPressureMonitor.class")
+
+    private static NotificationListener listener; //@GuardedBy("MemoryPressureMonitor.class")
+
+    private static ThreadPoolExecutor executor; //@GuardedBy("MemoryPressureMonitor.class")
+
+    /** Prevent instantiation */
+    private MemoryPressureMonitor() {
+        // Hide the default constructor
+    }
+
+    /**
+     * Registers a pool, or updates the thresholds after the pool's
+     * {@link BaseGenericObjectPool#getMemoryPressureThreshold()
+     * memoryPressureThreshold} has changed.
+     *
+     * @param pool the pool to notify when the heap is running low
+     */
+    static synchronized void register(final BaseGenericObjectPool<?> pool) {
+        remove(pool);
+        pools.add(new WeakReference<BaseGenericObjectPool<?>>(pool));
+        if (listener == null) {
+            start();
+        }
+        updateThresholds();
+    }
+
+    /**
+     * Unregisters a pool. Does nothing if the pool is not registered.
+     *
+     * @param pool the pool
+     */
+    static synchronized void unregister(final BaseGenericObjectPool<?> pool) {
+        remove(pool);
+        if (listener == null) {
+            return;
+        }
+        if (pools.isEmpty()) {
+            stop();
+        } else {
+            updateThresholds();
+        }
+    }
+
+    /**
+     * Tells the registered pools that a memory pool has exceeded its
+     * collection usage threshold. Each pool checks the usage against its own
+     * threshold.
+     *
+     * @param usage the memory usage after the collection
+     */
+    static synchronized void notifyPools(final MemoryUsage usage) {
+        if (executor == null) {
+            return;
+        }
+        final List<BaseGenericObjectPool<?>> targets = new ArrayList<>(pools.size());
+        for (final WeakReference<BaseGenericObjectPool<?>> ref : pools) {
+            final BaseGenericObjectPool<?> pool = ref.get();
+            if (pool != null) {
+                targets.add(pool);
+            }
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (final BaseGenericObjectPool<?> pool : targets) {
+                    pool.memoryPressure(usage);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes the given pool and any pools that have been garbage collected.
+     */
+    private static void remove(final BaseGenericObjectPool<?> pool) {
+        final Iterator<WeakReference<BaseGenericObjectPool<?>>> iter = pools.iterator();
+        while (iter.hasNext()) {
+            final BaseGenericObjectPool<?> registered = iter.next().get();
+            if (registered == null || registered == pool) {
+                iter.remove();
+            }
+        }
+    }
+
+    private static void start() {
+        for (final MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            // Leave thresholds that other code has set alone
+            if (memoryPool.getType() == MemoryType.HEAP &&
+                    memoryPool.isCollectionUsageThresholdSupported() &&
+                    memoryPool.getCollectionUsageThreshold() == 0) {
+                managedThresholds.put(memoryPool, Long.valueOf(0));
+            }
+        }
+        executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new MonitorThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        listener = new NotificationListener() {
+            @Override
+            public void handleNotification(final Notification notification,
+                    final Object handback) {
+                if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(
+                        notification.getType())) {
+                    notifyPools(MemoryNotificationInfo.from(
+                            (CompositeData) notification.getUserData()).getUsage());
+                }
+            }
+        };
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+                .addNotificationListener(listener, null, null);
+    }
+
+    private static void stop() {
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+                    .removeNotificationListener(listener);
+        } catch (final ListenerNotFoundException e) {
+            // Ignore - the listener has already gone
+        }
+        listener = null;
+        for (final Map.Entry<MemoryPoolMXBean, Long> entry : managedThresholds.entrySet()) {
+            final MemoryPoolMXBean memoryPool = entry.getKey();
+            if (memoryPool.getCollectionUsageThreshold() == entry.getValue().longValue()) {
+                memoryPool.setCollectionUsageThreshold(0);
+            }
+        }
+        managedThresholds.clear();
+        executor.shutdown();
+        executor = null;
+    }
+
+    private static void updateThresholds() {
+        double lowest = 1;
+        for (final WeakReference<BaseGenericObjectPool<?>> ref : pools) {
+            final BaseGenericObjectPool<?> pool = ref.get();
+            if (pool != null) {
+                final double threshold = pool.getMemoryPressureThreshold();
+                if (threshold > 0 && threshold < lowest) {
+                    lowest = threshold;
+                }
+            }
+        }
+        final Iterator<Map.Entry<MemoryPoolMXBean, Long>> iter =
+                managedThresholds.entrySet().iterator();
+        while (iter.hasNext()) {
+            final Map.Entry<MemoryPoolMXBean, Long> entry = iter.next();
+            final MemoryPoolMXBean memoryPool = entry.getKey();
+            if (memoryPool.getCollectionUsageThreshold() != entry.getValue().longValue()) {
+                // Changed by other code, which now owns it
+                iter.remove();
+                continue;
+            }
+            final long max = memoryPool.getUsage().getMax();
+            if (max > 0) {
+                final long threshold = (long) (max * lowest);
+                memoryPool.setCollectionUsageThreshold(threshold);
+                entry.setValue(Long.valueOf(threshold));
+            }
+        }
+    }
+
+    /**
+     * Obtains the number of pools that are registered.
+     *
+     * @return the number of registered pools
+     */
+    static synchronized int getNumPools() {
+        int count = 0;
+        for (final WeakReference<BaseGenericObjectPool<?>> ref : pools) {
+            if (ref.get() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Thread factory that creates a daemon thread, with the context class
+     * loader from this class.
+     */
+    private static class MonitorThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(null, runnable, "commons-pool-memory-pressure");
+            thread.setDaemon(true);
+
+            AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                @Override
+                public Void run() {
+                    thread.setContextClassLoader(MonitorThreadFactory.class.getClassLoader());
+                    return null;
+                }
+            });
+
+            return thread;
+        }
+    }
+}
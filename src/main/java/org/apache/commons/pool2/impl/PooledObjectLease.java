@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import org.apache.commons.pool2.PooledObject;
+
+/**
+ * A lease on an object borrowed from a {@link GenericObjectPool} via
+ * {@link GenericObjectPool#borrowLease(long)}.
+ * <p>
+ * The lease holds the pool's wrapper for the borrowed object so returning or
+ * invalidating the object through the lease does not require the pool to
+ * look up the object. Closing the lease returns the object to the pool, so a
+ * lease may be used with try-with-resources:
+ * <pre>
+ * try (PooledObjectLease&lt;Connection&gt; lease = pool.borrowLease()) {
+ *     lease.getObject().execute(...);
+ * }
+ * </pre>
+ * A lease may only be released once. Once it has been closed or invalidated,
+ * further calls to {@link #close()} have no effect.
+ * <p>
+ * If the pool is configured to
+ * {@link AbandonedConfig#getRemoveUnreachableLeases() remove unreachable
+ * leases}, an object whose lease becomes unreachable before it has been
+ * released is invalidated shortly after the garbage collector notices, so the
+ * lease must be kept reachable for as long as the object is in use.
+ * <p>
+ * This class is not intended to be shared between threads.
+ *
+ * @param <T> Type of element pooled.
+ * @since 2.6.1
+ */
+public final class PooledObjectLease<T> implements AutoCloseable {
+
+    private final GenericObjectPool<T> pool;
+
+    private final PooledObject<T> pooledObject;
+
+    private volatile boolean released = false;
+
+    /**
+     * Create a new lease for the given borrowed object.
+     *
+     * @param pool         The pool the object was borrowed from
+     * @param pooledObject The pool's wrapper for the borrowed object
+     */
+    PooledObjectLease(final GenericObjectPool<T> pool, final PooledObject<T> pooledObject) {
+        this.pool = pool;
+        this.pooledObject = pooledObject;
+    }
+
+    /**
+     * Obtains the borrowed object.
+     *
+     * @return The borrowed object
+     */
+    public T getObject() {
+        return pooledObject.getObject();
+    }
+
+    /**
+     * Has the object been returned to, or invalidated in, the pool via this
+     * lease?
+     *
+     * @return {@code true} if this lease has been released
+     */
+    public boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * Returns the borrowed object to the pool. This is equivalent to
+     * {@link GenericObjectPool#returnObject(Object)} for the borrowed object.
+     * Calling this method on a lease that has already been released has no
+     * effect.
+     *
+     * @throws IllegalStateException if the object has already been returned
+     *                               to the pool by other means
+     */
+    @Override
+    public void close() {
+        if (released) {
+            return;
+        }
+        released = true;
+        pool.returnLeased(pooledObject);
+    }
+
+    /**
+     * Invalidates the borrowed object. This is equivalent to
+     * {@link GenericObjectPool#invalidateObject(Object)} for the borrowed
+     * object.
+     *
+     * @throws IllegalStateException if this lease has already been released
+     * @throws Exception if an exception occurs destroying the object
+     */
+    public void invalidate() throws Exception {
+        if (released) {
+            throw new IllegalStateException(
+                    "Lease has already been released");
+        }
+        released = true;
+        pool.invalidateLeased(pooledObject);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(getClass().getSimpleName());
+        builder.append(" [pooledObject=");
+        builder.append(pooledObject);
+        builder.append(", released=");
+        builder.append(released);
+        builder.append("]");
+        return builder.toString();
+    }
+}
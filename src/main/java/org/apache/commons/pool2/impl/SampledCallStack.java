@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.io.PrintWriter;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * CallStack strategy that only records a fraction of the calls to
+ * {@link #fillInStackTrace()}, delegating the recorded ones to another
+ * strategy. Calls that are not sampled clear the previously recorded stack so
+ * that a stale stack trace is never reported.
+ * <p>
+ * Sampling allows abandoned object logging to remain enabled under load: an
+ * object that leaks repeatedly from the same code will still be reported with
+ * that code's stack trace while most borrows avoid the cost of walking the
+ * stack.
+ *
+ * @since 2.6.1
+ */
+public class SampledCallStack implements CallStack {
+
+    private final CallStack delegate;
+    private final double sampleRate;
+
+    /**
+     * Create a new instance.
+     *
+     * @param delegate   the strategy used to record the sampled calls
+     * @param sampleRate the fraction, between 0 and 1, of calls to record
+     */
+    public SampledCallStack(final CallStack delegate, final double sampleRate) {
+        this.delegate = delegate;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Obtains the fraction of calls to {@link #fillInStackTrace()} that are
+     * recorded.
+     *
+     * @return the sample rate
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public boolean printStackTrace(final PrintWriter writer) {
+        return delegate.printStackTrace(writer);
+    }
+
+    @Override
+    public void fillInStackTrace() {
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            delegate.fillInStackTrace();
+        } else {
+            delegate.clear();
+        }
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+}
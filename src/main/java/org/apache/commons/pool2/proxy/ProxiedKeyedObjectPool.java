@@ -16,9 +16,14 @@
  */
 package org.apache.commons.pool2.proxy;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.apache.commons.pool2.BatchKeyedObjectPool;
 import org.apache.commons.pool2.KeyedObjectPool;
+import org.apache.commons.pool2.PoolUtils;
 import org.apache.commons.pool2.UsageTracking;
 
 /**
@@ -32,7 +37,7 @@ import org.apache.commons.pool2.UsageTracking;
  *
  * @since 2.0
  */
-public class ProxiedKeyedObjectPool<K, V> implements KeyedObjectPool<K, V> {
+public class ProxiedKeyedObjectPool<K, V> implements BatchKeyedObjectPool<K, V> {
 
     private final KeyedObjectPool<K, V> pool;
     private final ProxySource<V> proxySource;
@@ -64,12 +69,43 @@ public class ProxiedKeyedObjectPool<K, V> implements KeyedObjectPool<K, V> {
         return proxy;
     }
 
+    /**
+     * @since 2.6.1
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<V> borrowObjects(final K key, final int n, final long maxWaitMillis)
+            throws Exception, NoSuchElementException, IllegalStateException {
+        UsageTracking<V> usageTracking = null;
+        if (pool instanceof UsageTracking) {
+            usageTracking = (UsageTracking<V>) pool;
+        }
+        final List<V> pooledObjects = PoolUtils.borrowObjects(pool, key, n, maxWaitMillis);
+        final List<V> proxies = new ArrayList<>(pooledObjects.size());
+        for (final V pooledObject : pooledObjects) {
+            proxies.add(proxySource.createProxy(pooledObject, usageTracking));
+        }
+        return proxies;
+    }
+
     @Override
     public void returnObject(final K key, final V proxy) throws Exception {
         final V pooledObject = proxySource.resolveProxy(proxy);
         pool.returnObject(key, pooledObject);
     }
 
+    /**
+     * @since 2.6.1
+     */
+    @Override
+    public void returnObjects(final K key, final Collection<V> proxies) throws Exception {
+        final List<V> pooledObjects = new ArrayList<>(proxies.size());
+        for (final V proxy : proxies) {
+            pooledObjects.add(proxySource.resolveProxy(proxy));
+        }
+        PoolUtils.returnObjects(pool, key, pooledObjects);
+    }
+
     @Override
     public void invalidateObject(final K key, final V proxy) throws Exception {
         final V pooledObject = proxySource.resolveProxy(proxy);
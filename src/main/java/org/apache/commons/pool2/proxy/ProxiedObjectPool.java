@@ -16,9 +16,14 @@
  */
 package org.apache.commons.pool2.proxy;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.apache.commons.pool2.BatchObjectPool;
 import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PoolUtils;
 import org.apache.commons.pool2.UsageTracking;
 
 /**
@@ -31,7 +36,7 @@ import org.apache.commons.pool2.UsageTracking;
  *
  * @since 2.0
  */
-public class ProxiedObjectPool<T> implements ObjectPool<T> {
+public class ProxiedObjectPool<T> implements BatchObjectPool<T> {
 
     private final ObjectPool<T> pool;
     private final ProxySource<T> proxySource;
@@ -65,6 +70,26 @@ public class ProxiedObjectPool<T> implements ObjectPool<T> {
     }
 
 
+    /**
+     * @since 2.6.1
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<T> borrowObjects(final int n, final long maxWaitMillis)
+            throws Exception, NoSuchElementException, IllegalStateException {
+        UsageTracking<T> usageTracking = null;
+        if (pool instanceof UsageTracking) {
+            usageTracking = (UsageTracking<T>) pool;
+        }
+        final List<T> pooledObjects = PoolUtils.borrowObjects(pool, n, maxWaitMillis);
+        final List<T> proxies = new ArrayList<>(pooledObjects.size());
+        for (final T pooledObject : pooledObjects) {
+            proxies.add(proxySource.createProxy(pooledObject, usageTracking));
+        }
+        return proxies;
+    }
+
+
     @Override
     public void returnObject(final T proxy) throws Exception {
         final T pooledObject = proxySource.resolveProxy(proxy);
@@ -72,6 +97,19 @@ public class ProxiedObjectPool<T> implements ObjectPool<T> {
     }
 
 
+    /**
+     * @since 2.6.1
+     */
+    @Override
+    public void returnObjects(final Collection<T> proxies) throws Exception {
+        final List<T> pooledObjects = new ArrayList<>(proxies.size());
+        for (final T proxy : proxies) {
+            pooledObjects.add(proxySource.resolveProxy(proxy));
+        }
+        PoolUtils.returnObjects(pool, pooledObjects);
+    }
+
+
     @Override
     public void invalidateObject(final T proxy) throws Exception {
         final T pooledObject = proxySource.resolveProxy(proxy);
@@ -422,6 +422,51 @@ public class TestPoolUtils {
         // TODO: Anyone feel motivated to construct a test that verifies proper synchronization?
     }
 
+    @Test
+    public void testBorrowReturnObjectsObjectPool() throws Exception {
+        final List<String> calledMethods = new ArrayList<>();
+        try (@SuppressWarnings("unchecked")
+            final ObjectPool<Object> op = createProxy(ObjectPool.class, calledMethods)) {
+            final List<Object> objs = PoolUtils.borrowObjects(op, 2, 0);
+            assertEquals(2, objs.size());
+            PoolUtils.returnObjects(op, objs);
+            assertEquals(Arrays.asList("borrowObject", "borrowObject", "returnObject", "returnObject"),
+                    calledMethods);
+        }
+
+        calledMethods.clear();
+        try (@SuppressWarnings("unchecked")
+            final BatchObjectPool<Object> bop = createProxy(BatchObjectPool.class, calledMethods)) {
+            final ObjectPool<Object> sop = PoolUtils.synchronizedPool((ObjectPool<Object>) bop);
+            PoolUtils.borrowObjects(sop, 2, 0);
+            PoolUtils.returnObjects(sop, Collections.emptyList());
+            assertEquals(Arrays.asList("borrowObjects", "returnObjects"), calledMethods);
+        }
+    }
+
+    @Test
+    public void testBorrowReturnObjectsKeyedObjectPool() throws Exception {
+        final List<String> calledMethods = new ArrayList<>();
+        try (@SuppressWarnings("unchecked")
+            final KeyedObjectPool<Object, Object> kop = createProxy(KeyedObjectPool.class, calledMethods)) {
+            final List<Object> objs = PoolUtils.borrowObjects(kop, "key", 2, 0);
+            assertEquals(2, objs.size());
+            PoolUtils.returnObjects(kop, "key", objs);
+            assertEquals(Arrays.asList("borrowObject", "borrowObject", "returnObject", "returnObject"),
+                    calledMethods);
+        }
+
+        calledMethods.clear();
+        try (@SuppressWarnings("unchecked")
+            final BatchKeyedObjectPool<Object, Object> bkop = createProxy(BatchKeyedObjectPool.class, calledMethods)) {
+            final KeyedObjectPool<Object, Object> skop =
+                    PoolUtils.synchronizedPool((KeyedObjectPool<Object, Object>) bkop);
+            PoolUtils.borrowObjects(skop, "key", 2, 0);
+            PoolUtils.returnObjects(skop, "key", Collections.emptyList());
+            assertEquals(Arrays.asList("borrowObjects", "returnObjects"), calledMethods);
+        }
+    }
+
     @Test
     public void testSynchronizedPoolableFactoryPoolableObjectFactory() throws Exception {
         try {
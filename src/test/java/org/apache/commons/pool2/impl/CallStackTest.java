@@ -40,7 +40,8 @@ public class CallStackTest {
     public static Object[] data() {
         return new Object[]{
             new ThrowableCallStack("Test", false),
-            new SecurityManagerCallStack("Test", false)
+            new SecurityManagerCallStack("Test", false),
+            new SampledCallStack(new ThrowableCallStack("Test", false), 1.0)
         };
     }
 
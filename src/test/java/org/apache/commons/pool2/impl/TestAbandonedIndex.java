@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectState;
+import org.junit.Test;
+
+public class TestAbandonedIndex {
+
+    private static DefaultPooledObject<String> borrowed(final String s) {
+        final DefaultPooledObject<String> p = new DefaultPooledObject<>(s);
+        p.allocate();
+        return p;
+    }
+
+    @Test
+    public void testRemoveAbandoned() throws Exception {
+        final AbandonedIndex<String> index = new AbandonedIndex<>();
+        final DefaultPooledObject<String> older = borrowed("older");
+        index.add(older);
+        Thread.sleep(20);
+        final DefaultPooledObject<String> newer = borrowed("newer");
+        index.add(newer);
+
+        assertFalse(index.hasCandidates(older.getLastUsedTime() - 1));
+        final long timeout = newer.getLastUsedTime() - 1;
+        assertTrue(index.hasCandidates(timeout));
+
+        // Only the objects not used since the timeout are abandoned
+        final List<PooledObject<String>> abandoned = index.removeAbandoned(timeout);
+        assertEquals(1, abandoned.size());
+        assertSame(older, abandoned.get(0));
+        assertEquals(PooledObjectState.ABANDONED, older.getState());
+        assertEquals(PooledObjectState.ALLOCATED, newer.getState());
+        assertEquals(1, index.size());
+        assertFalse(index.hasCandidates(timeout));
+    }
+
+    @Test
+    public void testUsedObjectsAreReindexed() throws Exception {
+        final AbandonedIndex<String> index = new AbandonedIndex<>();
+        final DefaultPooledObject<String> p = borrowed("used");
+        index.add(p);
+        final long timeout = p.getLastUsedTime();
+        Thread.sleep(20);
+        p.use();
+
+        assertTrue(index.hasCandidates(timeout));
+        assertTrue(index.removeAbandoned(timeout).isEmpty());
+        assertEquals(PooledObjectState.ALLOCATED, p.getState());
+        assertEquals(1, index.size());
+        assertFalse(index.hasCandidates(timeout));
+    }
+
+    @Test
+    public void testReturnedObjectsAreRemoved() {
+        final AbandonedIndex<String> index = new AbandonedIndex<>();
+        final DefaultPooledObject<String> p = borrowed("returned");
+        index.add(p);
+        index.add(p);
+        assertEquals(1, index.size());
+        index.remove(p);
+        assertEquals(0, index.size());
+        assertFalse(index.hasCandidates(Long.MAX_VALUE));
+    }
+}
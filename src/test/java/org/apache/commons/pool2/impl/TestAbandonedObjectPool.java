@@ -21,6 +21,7 @@ import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -171,6 +172,89 @@ public class TestAbandonedObjectPool {
         Assert.assertEquals(1, pool.getNumActive());
     }
 
+    /**
+     * Verify that closing a lease on an object that has been removed as
+     * abandoned is silently ignored.
+     *
+     * @throws Exception May occur in some failure modes
+     */
+    @Test
+    public void testAbandonedLeaseClose() throws Exception {
+        pool.setMaxTotal(2);
+        pool.setBlockWhenExhausted(false);
+        final PooledObjectLease<PooledTestObject> lease = pool.borrowLease();
+        Thread.sleep(1500);  // abandon checked out instance
+        final PooledTestObject obj = pool.borrowObject(); // removes abandoned
+        Assert.assertEquals(1, pool.getDestroyedCount());
+        lease.close();       // should be ignored
+        Assert.assertEquals(0, pool.getNumIdle());
+        Assert.assertEquals(1, pool.getNumActive());
+        pool.returnObject(obj);
+    }
+
+    /**
+     * Verify that an object borrowed via a lease that becomes unreachable
+     * without being closed is removed and logged without waiting for the
+     * abandoned timeout.
+     *
+     * @throws Exception May occur in some failure modes
+     */
+    @Test
+    public void testRemoveUnreachableLease() throws Exception {
+        abandonedConfig = new AbandonedConfig();
+        abandonedConfig.setRemoveUnreachableLeases(true);
+        abandonedConfig.setRemoveAbandonedTimeout(300);
+        abandonedConfig.setLogAbandoned(true);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        abandonedConfig.setLogWriter(new PrintWriter(new BufferedOutputStream(baos)));
+        pool.setAbandonedConfig(abandonedConfig);
+        pool.setMaxTotal(1);
+        pool.setBlockWhenExhausted(false);
+        // Borrow the object via a lease that is immediately discarded
+        final PooledTestObject leaked = pool.borrowLease().getObject();
+        for (int i = 0; i < 50 && !leaked.isDestroyed(); i++) {
+            System.gc();
+            Thread.sleep(20);
+            pool.evict();
+        }
+        Assert.assertTrue(leaked.isDestroyed());
+        Assert.assertEquals(0, pool.getNumActive());
+        Assert.assertTrue(baos.toString().indexOf("Pooled object") >= 0);
+        pool.returnObject(pool.borrowObject());
+    }
+
+    /**
+     * Verify that a lease that becomes unreachable after it has been closed
+     * does not affect a later borrower of the same object.
+     *
+     * @throws Exception May occur in some failure modes
+     */
+    @Test
+    public void testUnreachableClosedLease() throws Exception {
+        abandonedConfig = new AbandonedConfig();
+        abandonedConfig.setRemoveUnreachableLeases(true);
+        abandonedConfig.setRemoveAbandonedTimeout(300);
+        pool.setAbandonedConfig(abandonedConfig);
+        pool.setMaxTotal(1);
+        final WeakReference<PooledObjectLease<PooledTestObject>> lease = borrowAndCloseLease();
+        final PooledTestObject obj = pool.borrowObject();
+        for (int i = 0; i < 50 && lease.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        Assert.assertNull(lease.get());
+        pool.evict();
+        Assert.assertFalse(obj.isDestroyed());
+        Assert.assertEquals(1, pool.getNumActive());
+        pool.returnObject(obj);
+    }
+
+    private WeakReference<PooledObjectLease<PooledTestObject>> borrowAndCloseLease() throws Exception {
+        final PooledObjectLease<PooledTestObject> lease = pool.borrowLease();
+        lease.close();
+        return new WeakReference<>(lease);
+    }
+
     /**
      * Verify that an object that gets flagged as abandoned and is subsequently
      * invalidated is only destroyed (and pool counter decremented) once.
@@ -202,6 +286,31 @@ public class TestAbandonedObjectPool {
         Assert.assertEquals(5, pool.getDestroyedCount());
     }
 
+    /**
+     * Verify that only the objects that have not been used within the timeout
+     * are removed when usage tracking is enabled.
+     *
+     * @throws Exception May occur in some failure modes
+     */
+    @Test
+    public void testRemoveAbandonedUsageTracking() throws Exception {
+        abandonedConfig = new AbandonedConfig();
+        abandonedConfig.setRemoveAbandonedOnMaintenance(true);
+        abandonedConfig.setRemoveAbandonedTimeout(1);
+        abandonedConfig.setUseUsageTracking(true);
+        pool.setAbandonedConfig(abandonedConfig);
+        final PooledTestObject unused = pool.borrowObject();
+        final PooledTestObject used = pool.borrowObject();
+        Thread.sleep(600);
+        pool.use(used);
+        Thread.sleep(600);
+        pool.evict();
+        Assert.assertTrue(unused.isDestroyed());
+        Assert.assertFalse(used.isDestroyed());
+        Assert.assertEquals(1, pool.getNumActive());
+        pool.returnObject(used);
+    }
+
     /**
      * Verify that an object that the evictor identifies as abandoned while it
      * is in process of being returned to the pool is not destroyed.
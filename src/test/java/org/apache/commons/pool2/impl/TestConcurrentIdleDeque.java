@@ -0,0 +1,444 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.pool2.PooledObject;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentIdleDeque}.
+ */
+public class TestConcurrentIdleDeque {
+
+    private static final Integer ONE = Integer.valueOf(1);
+    private static final Integer TWO = Integer.valueOf(2);
+    private static final Integer THREE = Integer.valueOf(3);
+
+    ConcurrentIdleDeque<Integer> deque;
+
+    @Before
+    public void setUp() {
+        deque = new ConcurrentIdleDeque<>();
+    }
+
+    @Test
+    public void testAddFirstAndLast() {
+        deque.addFirst(ONE);
+        deque.addLast(TWO);
+        deque.addFirst(THREE);
+        assertEquals(3, deque.size());
+        assertEquals(THREE, deque.peekFirst());
+        assertEquals(TWO, deque.peekLast());
+        try {
+            deque.addFirst(null);
+            fail("Not supposed to get here");
+        } catch (final NullPointerException e) {
+            // OK
+        }
+        assertEquals(3, deque.size());
+    }
+
+    @Test
+    public void testPollFirstAndLast() {
+        assertNull(deque.pollFirst());
+        assertNull(deque.pollLast());
+        deque.add(ONE);
+        deque.add(TWO);
+        deque.add(THREE);
+        assertEquals(ONE, deque.pollFirst());
+        assertEquals(THREE, deque.pollLast());
+        assertEquals(1, deque.size());
+        assertEquals(TWO, deque.poll());
+        assertEquals(0, deque.size());
+        assertTrue(deque.isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        try {
+            deque.removeFirst();
+            fail("Not supposed to get here");
+        } catch (final NoSuchElementException e) {
+            // OK
+        }
+        deque.add(ONE);
+        deque.add(TWO);
+        deque.add(ONE);
+        assertTrue(deque.remove(ONE));
+        assertEquals(2, deque.size());
+        assertTrue(deque.removeLastOccurrence(ONE));
+        assertFalse(deque.remove(ONE));
+        assertFalse(deque.remove(null));
+        assertEquals(1, deque.size());
+        assertEquals(TWO, deque.removeLast());
+    }
+
+    @Test
+    public void testIterator() {
+        deque.add(ONE);
+        deque.add(TWO);
+        deque.add(THREE);
+        Iterator<Integer> iter = deque.iterator();
+        assertEquals(ONE, iter.next());
+        iter.remove();
+        assertEquals(TWO, iter.next());
+        assertEquals(THREE, iter.next());
+        assertFalse(iter.hasNext());
+        assertEquals(2, deque.size());
+
+        iter = deque.descendingIterator();
+        assertEquals(THREE, iter.next());
+        iter.remove();
+        try {
+            iter.remove();
+            fail("Not supposed to get here");
+        } catch (final IllegalStateException e) {
+            // OK
+        }
+        assertEquals(1, deque.size());
+        assertEquals(TWO, deque.peek());
+    }
+
+    @Test
+    public void testBytes() {
+        final ConcurrentIdleDeque<PooledObject<String>> objects = new ConcurrentIdleDeque<>();
+        final DefaultPooledObject<String> small = new DefaultPooledObject<>("small");
+        small.setSize(10);
+        final DefaultPooledObject<String> large = new DefaultPooledObject<>("large");
+        large.setSize(100);
+        objects.addFirst(small);
+        objects.addLast(large);
+        objects.addLast(new DefaultPooledObject<>("unsized"));
+        assertEquals(110, objects.getBytes());
+        assertEquals(small, objects.pollFirst());
+        assertEquals(100, objects.getBytes());
+        final Iterator<PooledObject<String>> iter = objects.iterator();
+        iter.next();
+        iter.remove();
+        assertEquals(0, objects.getBytes());
+        objects.addFirst(small);
+        assertTrue(objects.remove(small));
+        assertEquals(0, objects.getBytes());
+        assertEquals(0, deque.getBytes());
+    }
+
+    @Test
+    public void testPushPop() {
+        deque.push(ONE);
+        deque.push(TWO);
+        assertEquals(TWO, deque.pop());
+        assertEquals(ONE, deque.pop());
+        try {
+            deque.pop();
+            fail("Not supposed to get here");
+        } catch (final NoSuchElementException e) {
+            // OK
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPollFirstWithTimeout() throws InterruptedException {
+        assertNull(deque.pollFirst(50, TimeUnit.MILLISECONDS));
+        assertFalse(deque.hasTakeWaiters());
+        deque.add(ONE);
+        assertEquals(ONE, deque.pollFirst(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testTakeFirstWaitsForElement() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger taken = new AtomicInteger();
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    taken.set(deque.takeFirst().intValue());
+                } catch (final InterruptedException e) {
+                    // Ignore
+                }
+                done.countDown();
+            }
+        };
+        t.start();
+        while (!deque.hasTakeWaiters()) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, deque.getTakeQueueLength());
+        deque.addLast(TWO);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, taken.get());
+        assertEquals(0, deque.size());
+        t.join();
+        assertEquals(0, deque.getTakeQueueLength());
+    }
+
+    @Test(timeout = 10000)
+    public void testFairHandOffIsInArrivalOrder() throws Exception {
+        deque = new ConcurrentIdleDeque<>(true);
+        final int threads = 5;
+        final int[] received = new int[threads];
+        final Thread[] waiters = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            waiters[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        received[index] = deque.takeFirst().intValue();
+                    } catch (final InterruptedException e) {
+                        // Ignore
+                    }
+                }
+            };
+            waiters[i].start();
+            while (deque.getTakeQueueLength() < i + 1) {
+                Thread.sleep(5);
+            }
+        }
+        for (int i = 0; i < threads; i++) {
+            deque.addFirst(Integer.valueOf(i));
+        }
+        for (int i = 0; i < threads; i++) {
+            waiters[i].join();
+            assertEquals(i, received[i]);
+        }
+        assertEquals(0, deque.size());
+    }
+
+    private Thread startWaiter(final int priority, final int[] received, final int index)
+            throws InterruptedException {
+        final int waiting = deque.getTakeQueueLength();
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    received[index] = deque.takeFirst(priority).intValue();
+                } catch (final InterruptedException e) {
+                    // Ignore
+                }
+            }
+        };
+        t.start();
+        while (deque.getTakeQueueLength() == waiting) {
+            Thread.sleep(5);
+        }
+        return t;
+    }
+
+    @Test(timeout = 10000)
+    public void testPriorityHandOff() throws Exception {
+        deque = new ConcurrentIdleDeque<>(true);
+        final int[] priorities = new int[] { 0, 0, 5, 1 };
+        final int[] received = new int[priorities.length];
+        final Thread[] waiters = new Thread[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            waiters[i] = startWaiter(priorities[i], received, i);
+        }
+        for (int i = 0; i < priorities.length; i++) {
+            deque.addFirst(Integer.valueOf(i));
+        }
+        for (final Thread t : waiters) {
+            t.join();
+        }
+        // Highest priority first, then arrival order
+        assertEquals(2, received[0]);
+        assertEquals(3, received[1]);
+        assertEquals(0, received[2]);
+        assertEquals(1, received[3]);
+    }
+
+    @Test(timeout = 10000)
+    public void testPriorityAging() throws Exception {
+        deque = new ConcurrentIdleDeque<>(true);
+        deque.setPriorityAgingNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        final int[] received = new int[2];
+        final Thread low = startWaiter(0, received, 0);
+        Thread.sleep(200);
+        final Thread high = startWaiter(5, received, 1);
+        // The low priority waiter has aged past the high priority waiter
+        deque.addFirst(ONE);
+        low.join();
+        assertEquals(1, received[0]);
+        deque.addFirst(TWO);
+        high.join();
+        assertEquals(2, received[1]);
+    }
+
+    @Test(timeout = 10000)
+    public void testHandOffWithoutFairness() throws Exception {
+        deque = new ConcurrentIdleDeque<>(false, true);
+        final AtomicInteger taken = new AtomicInteger();
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    taken.set(deque.takeFirst().intValue());
+                } catch (final InterruptedException e) {
+                    // Ignore
+                }
+            }
+        };
+        t.start();
+        while (!deque.hasTakeWaiters()) {
+            Thread.sleep(5);
+        }
+        deque.addLast(THREE);
+        // The element never reaches the deque
+        assertNull(deque.pollFirst());
+        t.join();
+        assertEquals(3, taken.get());
+    }
+
+    @Test
+    public void testTakeFirstAsync() {
+        final AtomicInteger taken = new AtomicInteger();
+        final ConcurrentIdleDeque.AsyncWaiter<Integer> w = new ConcurrentIdleDeque.AsyncWaiter<Integer>() {
+            @Override
+            void taken(final Integer e) {
+                taken.set(e.intValue());
+            }
+
+            @Override
+            void interrupted() {
+                taken.set(-1);
+            }
+        };
+        deque.add(ONE);
+        assertEquals(ONE, deque.takeFirstAsync(w));
+        assertFalse(deque.hasTakeWaiters());
+
+        assertNull(deque.takeFirstAsync(w));
+        assertEquals(1, deque.getTakeQueueLength());
+        // Without hand-off the waiter is still handed the element as it can't
+        // compete for it
+        deque.addLast(TWO);
+        assertEquals(2, taken.get());
+        assertEquals(0, deque.size());
+        assertFalse(deque.hasTakeWaiters());
+        assertFalse(deque.cancelAsync(w));
+    }
+
+    @Test
+    public void testCancelAndInterruptAsync() {
+        final AtomicInteger interrupted = new AtomicInteger();
+        final ConcurrentIdleDeque.AsyncWaiter<Integer> w1 = new ConcurrentIdleDeque.AsyncWaiter<Integer>() {
+            @Override
+            void taken(final Integer e) {
+                fail("Not supposed to get here");
+            }
+
+            @Override
+            void interrupted() {
+                interrupted.incrementAndGet();
+            }
+        };
+        final ConcurrentIdleDeque.AsyncWaiter<Integer> w2 = new ConcurrentIdleDeque.AsyncWaiter<Integer>() {
+            @Override
+            void taken(final Integer e) {
+                fail("Not supposed to get here");
+            }
+
+            @Override
+            void interrupted() {
+                interrupted.incrementAndGet();
+            }
+        };
+        assertNull(deque.takeFirstAsync(w1));
+        assertNull(deque.takeFirstAsync(w2));
+        assertEquals(2, deque.getTakeQueueLength());
+        assertTrue(deque.cancelAsync(w1));
+        assertEquals(1, deque.getTakeQueueLength());
+        deque.interuptTakeWaiters();
+        assertEquals(1, interrupted.get());
+        assertFalse(deque.hasTakeWaiters());
+        deque.add(THREE);
+        assertEquals(1, deque.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testInterruptTakeWaiters() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    deque.takeFirst();
+                } catch (final InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        };
+        t.start();
+        while (!deque.hasTakeWaiters()) {
+            Thread.sleep(5);
+        }
+        deque.interuptTakeWaiters();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        t.join();
+        assertFalse(deque.hasTakeWaiters());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentTakeAndReturn() throws Exception {
+        final int threads = 8;
+        final int iterations = 10000;
+        deque.add(ONE);
+        deque.add(TWO);
+        final AtomicInteger failures = new AtomicInteger();
+        final Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < iterations; j++) {
+                            final Integer e = deque.takeFirst();
+                            if (j % 2 == 0) {
+                                deque.addFirst(e);
+                            } else {
+                                deque.addLast(e);
+                            }
+                        }
+                    } catch (final InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(0, failures.get());
+        assertEquals(2, deque.size());
+        assertTrue(deque.contains(ONE));
+        assertTrue(deque.contains(TWO));
+    }
+}
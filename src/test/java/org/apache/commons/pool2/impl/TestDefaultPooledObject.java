@@ -18,11 +18,16 @@ package org.apache.commons.pool2.impl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectState;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -83,4 +88,147 @@ public class TestDefaultPooledObject {
            negativeIdleTimeReturned.get());
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void testCompareAndSetState() {
+        final DefaultPooledObject<Object> dpo = new DefaultPooledObject<>(new Object());
+        Assert.assertFalse(dpo.compareAndSetState(PooledObjectState.ALLOCATED,
+                PooledObjectState.RETURNING));
+        Assert.assertEquals(PooledObjectState.IDLE, dpo.getState());
+        Assert.assertTrue(dpo.allocate());
+        Assert.assertTrue(BaseGenericObjectPool.compareAndSetState(dpo,
+                PooledObjectState.ALLOCATED, PooledObjectState.RETURNING));
+        Assert.assertEquals(PooledObjectState.RETURNING, dpo.getState());
+        Assert.assertTrue(dpo.deallocate());
+        Assert.assertTrue(BaseGenericObjectPool.markInvalid(dpo));
+        Assert.assertFalse(BaseGenericObjectPool.markInvalid(dpo));
+        Assert.assertEquals(PooledObjectState.INVALID, dpo.getState());
+    }
+
+    @Test
+    public void testAllocateDuringEvictionTest() {
+        final DefaultPooledObject<Object> dpo = new DefaultPooledObject<>(new Object());
+        final LinkedBlockingDeque<PooledObject<Object>> idleQueue = new LinkedBlockingDeque<>();
+        Assert.assertTrue(dpo.startEvictionTest());
+        Assert.assertFalse(dpo.startEvictionTest());
+        Assert.assertFalse(dpo.allocate());
+        Assert.assertEquals(PooledObjectState.EVICTION_RETURN_TO_HEAD, dpo.getState());
+        Assert.assertFalse(dpo.endEvictionTest(idleQueue));
+        Assert.assertEquals(PooledObjectState.IDLE, dpo.getState());
+        Assert.assertSame(dpo, idleQueue.peekFirst());
+        Assert.assertTrue(dpo.allocate());
+        Assert.assertEquals(1, dpo.getBorrowedCount());
+    }
+
+    @Test
+    public void testConcurrentAllocate() throws Exception {
+        final DefaultPooledObject<Object> dpo = new DefaultPooledObject<>(new Object());
+        final int nThreads = 8;
+        final int nIterations = 10000;
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        final AtomicInteger allocated = new AtomicInteger();
+        final AtomicBoolean doubleAllocation = new AtomicBoolean(false);
+        final Runnable allocateAndDeallocateTask = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < nIterations; i++) {
+                    if (dpo.allocate()) {
+                        if (allocated.incrementAndGet() > 1) {
+                            doubleAllocation.set(true);
+                        }
+                        allocated.decrementAndGet();
+                        Assert.assertTrue(dpo.deallocate());
+                    }
+                }
+            }
+        };
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            futures.add(executor.submit(allocateAndDeallocateTask));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Assert.assertFalse(doubleAllocation.get());
+        Assert.assertEquals(PooledObjectState.IDLE, dpo.getState());
+        Assert.assertFalse(dpo.deallocate());
+    }
+
+    @Test
+    public void testMarkAbandoned() {
+        final DefaultPooledObject<Object> dpo = new DefaultPooledObject<>(new Object());
+        final long future = System.currentTimeMillis() + 60000;
+        Assert.assertFalse(BaseGenericObjectPool.markAbandoned(dpo, future));
+        Assert.assertTrue(dpo.allocate());
+        Assert.assertFalse(BaseGenericObjectPool.markAbandoned(dpo,
+                dpo.getLastUsedTime() - 1));
+        Assert.assertEquals(PooledObjectState.ALLOCATED, dpo.getState());
+        Assert.assertTrue(BaseGenericObjectPool.markAbandoned(dpo, future));
+        Assert.assertEquals(PooledObjectState.ABANDONED, dpo.getState());
+        Assert.assertFalse(BaseGenericObjectPool.markAbandoned(dpo, future));
+    }
+
+    /**
+     * An object that is returned and borrowed again by another thread while
+     * it is being checked for abandonment must not be abandoned, and its new
+     * borrower must be able to return it at any point during the check.
+     *
+     * @throws Exception May occur in some failure modes
+     */
+    @Test
+    public void testMarkAbandonedWhileReturnedAndBorrowed() throws Exception {
+        final long timeout = 100;
+        final AtomicLong lastUsed = new AtomicLong(timeout);
+        final AtomicInteger checks = new AtomicInteger(0);
+        final AtomicBoolean returned = new AtomicBoolean(false);
+        final ExecutorService borrower = Executors.newSingleThreadExecutor();
+        final DefaultPooledObject<Object> dpo = new DefaultPooledObject<Object>(new Object()) {
+            @Override
+            public long getLastUsedTime() {
+                final long lastUsedTime = lastUsed.get();
+                final PooledObject<Object> p = this;
+                try {
+                    if (checks.incrementAndGet() == 1) {
+                        // Returned and borrowed again after the time was read
+                        borrower.submit(new Callable<Boolean>() {
+                            @Override
+                            public Boolean call() {
+                                Assert.assertTrue(returnObject(p));
+                                lastUsed.set(timeout + 1);
+                                return Boolean.valueOf(p.allocate());
+                            }
+                        }).get();
+                    } else {
+                        returned.set(borrower.submit(returnTask(p)).get().booleanValue());
+                    }
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return lastUsedTime;
+            }
+        };
+        Assert.assertTrue(dpo.allocate());
+        Assert.assertFalse(BaseGenericObjectPool.markAbandoned(dpo, timeout));
+        if (checks.get() == 1) {
+            returned.set(borrower.submit(returnTask(dpo)).get().booleanValue());
+        }
+        borrower.shutdown();
+        Assert.assertTrue(returned.get());
+        Assert.assertEquals(PooledObjectState.IDLE, dpo.getState());
+    }
+
+    private static Callable<Boolean> returnTask(final PooledObject<Object> p) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Boolean.valueOf(returnObject(p));
+            }
+        };
+    }
+
+    private static boolean returnObject(final PooledObject<Object> p) {
+        return BaseGenericObjectPool.compareAndSetState(p, PooledObjectState.ALLOCATED,
+                PooledObjectState.RETURNING) && p.deallocate();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestDemandForecast {
+
+    @Test
+    public void testSampleInterval() {
+        final DemandForecast forecast = new DemandForecast(0);
+        assertFalse(forecast.isSampleDue(DemandForecast.SAMPLE_INTERVAL_MILLIS - 1));
+        assertFalse(forecast.sample(DemandForecast.SAMPLE_INTERVAL_MILLIS - 1, 10, 10));
+        assertEquals(0, forecast.getDemand(), 0);
+        assertTrue(forecast.isSampleDue(DemandForecast.SAMPLE_INTERVAL_MILLIS));
+        assertTrue(forecast.sample(DemandForecast.SAMPLE_INTERVAL_MILLIS, 10, 10));
+        assertFalse(forecast.isSampleDue(DemandForecast.SAMPLE_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void testConverges() {
+        final DemandForecast forecast = new DemandForecast(0);
+        // 100 borrows per second, each active for 50ms
+        long now = 0;
+        long borrowed = 0;
+        for (int i = 0; i < 100; i++) {
+            now += DemandForecast.SAMPLE_INTERVAL_MILLIS;
+            borrowed += 10;
+            assertTrue(forecast.sample(now, borrowed, 50));
+        }
+        assertEquals(100, forecast.getBorrowRate(), 0.1);
+        assertEquals(50, forecast.getActiveTimeMillis(), 0.1);
+        assertEquals(5, forecast.getDemand(), 0.01);
+
+        // Demand decays once borrowing stops
+        now += DemandForecast.SMOOTHING_MILLIS;
+        assertTrue(forecast.sample(now, borrowed, 50));
+        assertEquals(100 / Math.E, forecast.getBorrowRate(), 0.1);
+    }
+}
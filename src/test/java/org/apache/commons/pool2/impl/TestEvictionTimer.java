@@ -102,4 +102,46 @@ public class TestEvictionTimer {
             assertNull(evictorExecutorField.get(null));
         }
     }
+
+    @Test
+    public void testThreadCount() throws Exception {
+
+        try (final GenericObjectPool<String> pool = new GenericObjectPool<>(new BasePooledObjectFactory<String>() {
+
+            @Override
+            public String create() throws Exception {
+                return null;
+            }
+
+            @Override
+            public PooledObject<String> wrap(final String obj) {
+                return new DefaultPooledObject<>(obj);
+            }
+        })) {
+
+            final Field evictorExecutorField = EvictionTimer.class.getDeclaredField("executor");
+            evictorExecutorField.setAccessible(true);
+
+            final BaseGenericObjectPool<String>.Evictor evictor1 = pool.new Evictor();
+            EvictionTimer.schedule(evictor1, 60000, 60000, 1);
+            final ThreadPoolExecutor evictionExecutor = (ThreadPoolExecutor) evictorExecutorField.get(null);
+            assertEquals(1, evictionExecutor.getCorePoolSize());
+
+            // The timer grows to the largest requested thread count
+            final BaseGenericObjectPool<String>.Evictor evictor2 = pool.new Evictor();
+            EvictionTimer.schedule(evictor2, 60000, 60000, 3);
+            assertEquals(3, evictionExecutor.getCorePoolSize());
+            final BaseGenericObjectPool<String>.Evictor evictor3 = pool.new Evictor();
+            EvictionTimer.schedule(evictor3, 60000, 60000, 2);
+            assertEquals(3, evictionExecutor.getCorePoolSize());
+
+            EvictionTimer.cancel(evictor1, BaseObjectPoolConfig.DEFAULT_EVICTOR_SHUTDOWN_TIMEOUT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            EvictionTimer.cancel(evictor2, BaseObjectPoolConfig.DEFAULT_EVICTOR_SHUTDOWN_TIMEOUT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            EvictionTimer.cancel(evictor3, BaseObjectPoolConfig.DEFAULT_EVICTOR_SHUTDOWN_TIMEOUT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            assertNull(evictorExecutorField.get(null));
+        }
+    }
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -28,8 +29,10 @@ import static org.junit.Assert.fail;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
@@ -38,6 +41,7 @@ import java.util.TimerTask;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
@@ -52,6 +56,7 @@ import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
 import org.apache.commons.pool2.KeyedObjectPool;
 import org.apache.commons.pool2.KeyedPooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectSizer;
 import org.apache.commons.pool2.TestKeyedObjectPool;
 import org.apache.commons.pool2.VisitTracker;
 import org.apache.commons.pool2.VisitTrackerFactory;
@@ -301,6 +306,36 @@ public class TestGenericKeyedObjectPool extends TestKeyedObjectPool {
                 gkoPool.getMaxTotal());
     }
 
+    @Test(timeout=60000)
+    public void testMaxTotalBytes() throws Exception {
+        gkoPool.setObjectSizer(new PooledObjectSizer<String>() {
+            @Override
+            public long sizeOf(final PooledObject<String> p) {
+                return 100;
+            }
+        });
+        gkoPool.setMaxTotalBytes(250);
+        gkoPool.setBlockWhenExhausted(false);
+
+        gkoPool.borrowObject("a");
+        gkoPool.borrowObject("a");
+        final String o = gkoPool.borrowObject("b");
+        assertEquals(300, gkoPool.getTotalBytes());
+        try {
+            gkoPool.borrowObject("c");
+            fail("Expected NoSuchElementException");
+        } catch(final NoSuchElementException e) {
+            // expected
+        }
+
+        // Idle objects for other keys are destroyed to make room
+        gkoPool.returnObject("b", o);
+        assertEquals(100, gkoPool.getIdleBytes());
+        assertNotNull(gkoPool.borrowObject("c"));
+        assertEquals(0, gkoPool.getNumIdle());
+        assertEquals(300, gkoPool.getTotalBytes());
+    }
+
     @Test(timeout=60000)
     public void testMaxTotalZero() throws Exception {
         gkoPool.setMaxTotal(0);
@@ -1664,6 +1699,258 @@ public class TestGenericKeyedObjectPool extends TestKeyedObjectPool {
      * Very simple test thread that just tries to borrow an object from
      * the provided pool with the specified key and returns it after a wait
      */
+    @Test(timeout=60000)
+    public void testHandOffToWaiter() throws Exception {
+        final GenericKeyedObjectPoolConfig<String> config = new GenericKeyedObjectPoolConfig<>();
+        config.setHandOff(true);
+        config.setMaxTotalPerKey(1);
+        try (final GenericKeyedObjectPool<String, String> pool =
+                new GenericKeyedObjectPool<>(simpleFactory, config)) {
+            assertTrue(pool.getHandOff());
+            final String o = pool.borrowObject("one");
+            final WaitingTestThread thread = new WaitingTestThread(pool, "one", 200);
+            thread.start();
+            while (pool.getNumWaiters() == 0) {
+                Thread.sleep(5);
+            }
+            pool.returnObject("one", o);
+            // Handed straight to the waiter rather than added to the idle objects
+            assertEquals(0, pool.getNumIdle("one"));
+            thread.join();
+            assertNull(thread._thrown);
+            assertEquals(o, thread.objectId);
+            assertEquals(1, pool.getNumIdle("one"));
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testBorrowReturnObjects() throws Exception {
+        gkoPool.setMaxTotalPerKey(3);
+        gkoPool.setBlockWhenExhausted(false);
+        gkoPool.addObject("one");
+        List<String> batch = gkoPool.borrowObjects("one", 3, -1);
+        assertEquals(3, batch.size());
+        assertEquals(3, gkoPool.getNumActive("one"));
+        assertEquals(0, gkoPool.getNumIdle("one"));
+        assertEquals(3, gkoPool.getBorrowedCount());
+
+        gkoPool.returnObjects("one", batch);
+        assertEquals(0, gkoPool.getNumActive("one"));
+        assertEquals(3, gkoPool.getNumIdle("one"));
+        assertEquals(3, gkoPool.getReturnedCount());
+
+        // All or nothing
+        final String o = gkoPool.borrowObject("one");
+        try {
+            gkoPool.borrowObjects("one", 3, 0);
+            fail("Expecting NoSuchElementException");
+        } catch (final NoSuchElementException ex) {
+            // Expected
+        }
+        assertEquals(1, gkoPool.getNumActive("one"));
+        assertEquals(2, gkoPool.getNumIdle("one"));
+        // The failed batch is not counted as borrowed or returned
+        assertEquals(4, gkoPool.getBorrowedCount());
+        assertEquals(3, gkoPool.getReturnedCount());
+
+        batch = gkoPool.borrowObjects("one", 2, 0);
+        final List<String> returns = new ArrayList<>(batch);
+        returns.add("not from pool");
+        try {
+            gkoPool.returnObjects("one", returns);
+            fail("Expecting IllegalStateException");
+        } catch (final IllegalStateException ex) {
+            // Expected
+        }
+        assertEquals(1, gkoPool.getNumActive("one"));
+        assertEquals(2, gkoPool.getNumIdle("one"));
+        gkoPool.returnObject("one", o);
+
+        try {
+            gkoPool.returnObjects("two", batch);
+            fail("Expecting IllegalStateException");
+        } catch (final IllegalStateException ex) {
+            // Expected
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testBorrowObjectAsync() throws Exception {
+        gkoPool.setMaxTotalPerKey(1);
+        final String o = gkoPool.borrowObjectAsync("one").get();
+        BorrowFuture<String> future = gkoPool.borrowObjectAsync("one", -1);
+        assertFalse(future.isDone());
+        assertEquals(1, gkoPool.getNumWaiters());
+        gkoPool.returnObject("one", o);
+        assertEquals(o, future.get());
+        assertEquals(0, gkoPool.getNumWaiters());
+        assertEquals(1, gkoPool.getNumActive("one"));
+
+        future = gkoPool.borrowObjectAsync("one", 50);
+        try {
+            future.get();
+            fail("Expecting ExecutionException");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof NoSuchElementException);
+        }
+
+        future = gkoPool.borrowObjectAsync("one", -1);
+        assertTrue(future.cancel(false));
+        assertEquals(0, gkoPool.getNumWaiters());
+        gkoPool.returnObject("one", o);
+        assertEquals(1, gkoPool.getNumIdle("one"));
+    }
+
+    @Test(timeout=60000)
+    public void testEvictAllExpired() throws Exception {
+        gkoPool.setMinEvictableIdleTimeMillis(500);
+        gkoPool.setNumTestsPerEvictionRun(1);
+        gkoPool.setEvictAllExpired(true);
+        for (int i = 0; i < 3; i++) {
+            gkoPool.addObject("one");
+            gkoPool.addObject("two");
+        }
+        Thread.sleep(600);
+        gkoPool.addObject("one");
+        gkoPool.addObject("two");
+
+        // The expired objects for every key are evicted in a single run
+        gkoPool.evict();
+        assertEquals(6, gkoPool.getDestroyedByEvictorCount());
+        assertEquals(1, gkoPool.getNumIdle("one"));
+        assertEquals(1, gkoPool.getNumIdle("two"));
+    }
+
+    @Test(timeout=60000)
+    public void testMaxLifetime() throws Exception {
+        gkoPool.setMaxLifetimeMillis(300);
+        gkoPool.addObject("one");
+        gkoPool.addObject("two");
+        final String active = gkoPool.borrowObject("two");
+        Thread.sleep(400);
+
+        // Idle objects are replaced by the evictor
+        gkoPool.evict();
+        assertEquals(1, gkoPool.getRetiredCount());
+        assertEquals(1, gkoPool.getNumIdle("one"));
+        assertEquals(0, gkoPool.getNumIdle("two"));
+
+        // Active objects are retired when they are returned
+        gkoPool.returnObject("two", active);
+        assertEquals(2, gkoPool.getRetiredCount());
+        assertEquals(0, gkoPool.getNumIdle("two"));
+        assertEquals(0, gkoPool.getNumActive());
+    }
+
+    @Test(timeout=60000)
+    public void testMemoryPressure() throws Exception {
+        gkoPool.setMemoryPressureThreshold(0.8);
+        gkoPool.setMemoryPressureMaxIdle(1);
+        for (int i = 0; i < 3; i++) {
+            gkoPool.addObject("one");
+        }
+        gkoPool.addObject("two");
+
+        // The limit applies to each key
+        gkoPool.memoryPressure(new MemoryUsage(0, 90, 100, 100));
+        assertEquals(2, gkoPool.getMemoryPressureDestroyedCount());
+        assertEquals(1, gkoPool.getNumIdle("one"));
+        assertEquals(1, gkoPool.getNumIdle("two"));
+    }
+
+    @Test(timeout=60000)
+    public void testMaxWaiters() throws Exception {
+        gkoPool.setMaxTotalPerKey(1);
+        gkoPool.setMaxWaiters(1);
+        final String o = gkoPool.borrowObject("one");
+        final String other = gkoPool.borrowObject("two");
+        final WaitingTestThread thread = new WaitingTestThread(gkoPool, "one", 0);
+        thread.start();
+        while (gkoPool.getNumWaiters() == 0) {
+            Thread.sleep(10);
+        }
+
+        // The limit applies across all keys
+        final long start = System.currentTimeMillis();
+        try {
+            gkoPool.borrowObject("two", 5000);
+            fail("Expected BorrowRejectedException");
+        } catch (final BorrowRejectedException e) {
+            assertEquals(0, e.getStackTrace().length);
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        final BorrowFuture<String> future = gkoPool.borrowObjectAsync("one", 5000);
+        try {
+            future.get();
+            fail("Expected ExecutionException");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof BorrowRejectedException);
+        }
+        assertEquals(2, gkoPool.getRejectedCount());
+
+        gkoPool.returnObject("one", o);
+        thread.join();
+        assertNull(thread._thrown);
+        gkoPool.returnObject("two", other);
+        assertEquals(0, gkoPool.getNumWaiters());
+    }
+
+    /**
+     * Validation retries draw on the borrow's wait budget.
+     */
+    @Test(timeout=60000)
+    public void testBorrowDeadlineIncludesRetries() throws Exception {
+        gkoPool.setTestOnBorrow(true);
+        for (int i = 0; i < 5; i++) {
+            gkoPool.addObject("one");
+        }
+        simpleFactory.setValidationEnabled(true);
+        simpleFactory.setValid(false);
+        simpleFactory.setValidateLatency(50);
+
+        // Without a budget, every idle object and then a new one would be
+        // validated, taking at least 300ms
+        final long start = System.currentTimeMillis();
+        try {
+            gkoPool.borrowObject("one", 100);
+            fail("Expected NoSuchElementException");
+        } catch (final NoSuchElementException e) {
+            assertEquals("Timeout waiting for idle object", e.getMessage());
+        }
+        assertTrue(System.currentTimeMillis() - start < 250);
+        assertTrue(gkoPool.getNumIdle("one") > 0);
+        assertEquals(0, gkoPool.getNumActive("one"));
+    }
+
+    @Test(timeout=60000)
+    public void testReplenishExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            gkoPool.setReplenishExecutor(executor);
+            gkoPool.setMaxTotalPerKey(1);
+            final String o = gkoPool.borrowObject("one");
+            final BorrowFuture<String> future = gkoPool.borrowObjectAsync("one", -1);
+            assertFalse(future.isDone());
+
+            // The replacement is made without blocking the invalidating thread
+            simpleFactory.setMakeLatency(500);
+            final long start = System.currentTimeMillis();
+            gkoPool.invalidateObject("one", o);
+            assertTrue(System.currentTimeMillis() - start < 500);
+            final String replacement = future.get();
+            assertFalse(o.equals(replacement));
+            assertEquals(1, gkoPool.getNumActive("one"));
+
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(0, gkoPool.getReplenishQueueDepth());
+            assertTrue(gkoPool.getMeanReplenishLatencyMillis() > 0);
+            gkoPool.returnObject("one", replacement);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     static class WaitingTestThread extends Thread {
         private final KeyedObjectPool<String,String> _pool;
         private final String _key;
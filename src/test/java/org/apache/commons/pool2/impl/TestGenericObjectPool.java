@@ -25,8 +25,13 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -34,7 +39,11 @@ import java.util.Random;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.MBeanServer;
@@ -45,6 +54,8 @@ import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.PoolUtils;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.PooledObjectSizer;
+import org.apache.commons.pool2.ShrinkablePooledObjectFactory;
 import org.apache.commons.pool2.SwallowedExceptionListener;
 import org.apache.commons.pool2.TestBaseObjectPool;
 import org.apache.commons.pool2.VisitTracker;
@@ -271,6 +282,112 @@ public class TestGenericObjectPool extends TestBaseObjectPool {
         genericObjectPool.close();
     }
 
+    @Test(timeout=60000)
+    public void testEvictAllExpiredOutOfOrder() throws Exception {
+        genericObjectPool.setMinEvictableIdleTimeMillis(500);
+        genericObjectPool.setEvictAllExpired(true);
+        genericObjectPool.setLifo(false);
+        genericObjectPool.addObject();
+        Thread.sleep(600);
+        genericObjectPool.addObject();
+        // The newer object is now examined first
+        genericObjectPool.setLifo(true);
+        genericObjectPool.evict();
+        assertEquals(1, genericObjectPool.getDestroyedByEvictorCount());
+        assertEquals(1, genericObjectPool.getNumIdle());
+        assertEquals("1", genericObjectPool.borrowObject());
+    }
+
+    @Test(timeout=60000)
+    public void testEvictAllExpired() throws Exception {
+        genericObjectPool.setMinEvictableIdleTimeMillis(500);
+        genericObjectPool.setNumTestsPerEvictionRun(1);
+        genericObjectPool.setEvictAllExpired(true);
+        for (int i = 0; i < 4; i++) {
+            genericObjectPool.addObject();
+        }
+        Thread.sleep(600);
+        for (int i = 0; i < 4; i++) {
+            genericObjectPool.addObject();
+        }
+
+        // All the expired objects are evicted in a single run regardless of
+        // numTestsPerEvictionRun
+        genericObjectPool.evict();
+        assertEquals(4, genericObjectPool.getDestroyedByEvictorCount());
+        assertEquals(4, genericObjectPool.getNumIdle());
+        genericObjectPool.evict();
+        assertEquals(4, genericObjectPool.getNumIdle());
+
+        // The same applies with FIFO ordering
+        genericObjectPool.setLifo(false);
+        Thread.sleep(600);
+        genericObjectPool.addObject();
+        genericObjectPool.evict();
+        assertEquals(8, genericObjectPool.getDestroyedByEvictorCount());
+        assertEquals(1, genericObjectPool.getNumIdle());
+
+        // Only applies if objects are not tested while idle
+        genericObjectPool.setTestWhileIdle(true);
+        for (int i = 0; i < 4; i++) {
+            genericObjectPool.addObject();
+        }
+        Thread.sleep(600);
+        genericObjectPool.evict();
+        assertEquals(9, genericObjectPool.getDestroyedByEvictorCount());
+        assertEquals(4, genericObjectPool.getNumIdle());
+    }
+
+    @Test(timeout=60000)
+    public void testEvictionTimingStats() throws Exception {
+        genericObjectPool.addObject();
+        simpleFactory.setValidateLatency(200);
+        genericObjectPool.setTestWhileIdle(true);
+        genericObjectPool.setEvictorThreadCount(2);
+        genericObjectPool.setEvictionJitterMillis(100);
+        genericObjectPool.setTimeBetweenEvictionRunsMillis(50);
+        Thread.sleep(1000);
+        genericObjectPool.setTimeBetweenEvictionRunsMillis(-1);
+
+        assertTrue(simpleFactory.validateCounter > 0);
+        assertTrue(genericObjectPool.getMeanEvictionRunTimeMillis() >= 200);
+        assertTrue(genericObjectPool.getMaxEvictionLagMillis() >=
+                genericObjectPool.getMeanEvictionLagMillis());
+        genericObjectPool.close();
+    }
+
+    @Test(timeout=60000)
+    public void testEvictionParallelism() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            genericObjectPool.addObject();
+        }
+        simpleFactory.setValidateLatency(500);
+        genericObjectPool.setTestWhileIdle(true);
+        genericObjectPool.setNumTestsPerEvictionRun(4);
+        genericObjectPool.setEvictionParallelism(4);
+
+        // The objects are validated concurrently
+        final long start = System.currentTimeMillis();
+        genericObjectPool.evict();
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        assertEquals(4, simpleFactory.validateCounter);
+        assertEquals(4, genericObjectPool.getNumIdle());
+
+        // Objects that fail validation are destroyed and the rest can be
+        // borrowed
+        simpleFactory.setOddValid(false);
+        genericObjectPool.evict();
+        assertEquals(2, genericObjectPool.getDestroyedByEvictorCount());
+        assertEquals(2, genericObjectPool.getNumIdle());
+        simpleFactory.setValidateLatency(0);
+        final String o1 = genericObjectPool.borrowObject();
+        final String o2 = genericObjectPool.borrowObject();
+        assertEquals(2, genericObjectPool.getNumActive());
+        genericObjectPool.returnObject(o1);
+        genericObjectPool.returnObject(o2);
+        genericObjectPool.close();
+    }
+
     /**
      * Tests addObject contention between ensureMinIdle triggered by
      * the Evictor with minIdle &gt; 0 and borrowObject.
@@ -618,6 +735,32 @@ public class TestGenericObjectPool extends TestBaseObjectPool {
         }
     }
 
+    @Test(timeout=60000)
+    public void testMaxIdleBytes() throws Exception {
+        genericObjectPool.setObjectSizer(new FixedSizer(100));
+        genericObjectPool.setMaxIdleBytes(250);
+        final String[] active = new String[4];
+        for (int i = 0; i < active.length; i++) {
+            active[i] = genericObjectPool.borrowObject();
+        }
+        assertEquals(400, genericObjectPool.getTotalBytes());
+
+        // Objects that do not fit are destroyed on return
+        for (final String o : active) {
+            genericObjectPool.returnObject(o);
+        }
+        assertEquals(2, genericObjectPool.getNumIdle());
+        assertEquals(200, genericObjectPool.getIdleBytes());
+        assertEquals(200, genericObjectPool.getTotalBytes());
+
+        // The evictor destroys the oldest objects that do not fit
+        genericObjectPool.setMaxIdleBytes(100);
+        genericObjectPool.evict();
+        assertEquals(1, genericObjectPool.getDestroyedByEvictorCount());
+        assertEquals(100, genericObjectPool.getTotalBytes());
+        assertEquals("1", genericObjectPool.borrowObject());
+    }
+
     @Test(timeout=60000)
     public void testMaxTotal() throws Exception {
         genericObjectPool.setMaxTotal(3);
@@ -634,6 +777,29 @@ public class TestGenericObjectPool extends TestBaseObjectPool {
         }
     }
 
+    @Test(timeout=60000)
+    public void testMaxTotalBytes() throws Exception {
+        genericObjectPool.setObjectSizer(new FixedSizer(100));
+        genericObjectPool.setMaxTotalBytes(250);
+        genericObjectPool.setBlockWhenExhausted(false);
+
+        genericObjectPool.borrowObject();
+        genericObjectPool.borrowObject();
+        final String o = genericObjectPool.borrowObject();
+        assertEquals(300, genericObjectPool.getTotalBytes());
+        try {
+            genericObjectPool.borrowObject();
+            fail("Expected NoSuchElementException");
+        } catch(final NoSuchElementException e) {
+            // expected
+        }
+
+        // Destroying an object releases its bytes
+        genericObjectPool.invalidateObject(o);
+        assertEquals(200, genericObjectPool.getTotalBytes());
+        assertEquals("3", genericObjectPool.borrowObject());
+    }
+
     @Test(timeout=60000)
     public void testTimeoutNoLeak() throws Exception {
         genericObjectPool.setMaxTotal(2);
@@ -1759,6 +1925,871 @@ public class TestGenericObjectPool extends TestBaseObjectPool {
         assertEquals("should be zero active", 0, genericObjectPool.getNumActive());
     }
 
+    @Test(timeout=60000)
+    public void testThreadCacheReturnsSameObject() throws Exception {
+        genericObjectPool.setThreadCache(true);
+        genericObjectPool.addObject(); // "0"
+        genericObjectPool.addObject(); // "1"
+        final String o = genericObjectPool.borrowObject();
+        assertEquals("1", o);
+        genericObjectPool.returnObject(o);
+        assertEquals(2, genericObjectPool.getNumIdle());
+        assertEquals(0, genericObjectPool.getNumActive());
+        // Without the cache, FIFO would return the oldest object
+        genericObjectPool.setLifo(false);
+        assertEquals("1", genericObjectPool.borrowObject());
+        assertEquals(1, genericObjectPool.getNumIdle());
+        assertEquals(1, genericObjectPool.getNumActive());
+    }
+
+    @Test(timeout=60000)
+    public void testThreadCacheStolenByOtherThread() throws Exception {
+        genericObjectPool.setThreadCache(true);
+        genericObjectPool.setMaxTotal(1);
+        genericObjectPool.setMaxWaitMillis(1000);
+        final String o = genericObjectPool.borrowObject();
+        genericObjectPool.returnObject(o);
+        assertEquals(1, genericObjectPool.getNumIdle());
+
+        final WaitingTestThread thread = new WaitingTestThread(genericObjectPool, 0);
+        thread.start();
+        thread.join();
+        assertNull(thread._thrown);
+        assertEquals(o, thread.objectId);
+        assertEquals(1, genericObjectPool.getNumIdle());
+        assertEquals(1, simpleFactory.makeCounter);
+    }
+
+    @Test(timeout=60000)
+    public void testThreadCacheDoesNotStrandWaiter() throws Exception {
+        genericObjectPool.setThreadCache(true);
+        genericObjectPool.setMaxTotal(1);
+        genericObjectPool.setMaxWaitMillis(-1);
+        final String o = genericObjectPool.borrowObject();
+
+        final WaitingTestThread thread = new WaitingTestThread(genericObjectPool, 0);
+        thread.start();
+        while (genericObjectPool.getNumWaiters() == 0) {
+            Thread.sleep(5);
+        }
+        genericObjectPool.returnObject(o);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertNull(thread._thrown);
+        assertEquals(o, thread.objectId);
+    }
+
+    @Test(timeout=60000)
+    public void testThreadCacheFlushedOnDisableAndEvict() throws Exception {
+        genericObjectPool.setThreadCache(true);
+        final String o = genericObjectPool.borrowObject();
+        genericObjectPool.returnObject(o);
+        genericObjectPool.setThreadCache(false);
+        assertEquals(1, genericObjectPool.getNumIdle());
+
+        genericObjectPool.setThreadCache(true);
+        genericObjectPool.setMinEvictableIdleTimeMillis(1);
+        genericObjectPool.returnObject(genericObjectPool.borrowObject());
+        Thread.sleep(10);
+        genericObjectPool.evict();
+        assertEquals(0, genericObjectPool.getNumIdle());
+        assertEquals(0, genericObjectPool.getNumActive());
+    }
+
+    @Test(timeout=60000)
+    public void testThreadCacheCountsTowardsMaxIdle() throws Exception {
+        genericObjectPool.setThreadCache(true);
+        genericObjectPool.setMaxIdle(1);
+        final String o1 = genericObjectPool.borrowObject();
+        final String o2 = genericObjectPool.borrowObject();
+        genericObjectPool.returnObject(o1);
+        genericObjectPool.returnObject(o2);
+        assertEquals(1, genericObjectPool.getNumIdle());
+        assertEquals(0, genericObjectPool.getNumActive());
+        assertEquals(1, genericObjectPool.getDestroyedCount());
+
+        // The slot of a terminated thread is pruned when another thread
+        // registers, and its cached object stays idle
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    genericObjectPool.returnObject(genericObjectPool.borrowObject());
+                } catch (final Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        t.start();
+        t.join();
+        assertEquals(1, genericObjectPool.getNumIdle());
+        final WaitingTestThread thread = new WaitingTestThread(genericObjectPool, 0);
+        thread.start();
+        thread.join();
+        assertNull(thread._thrown);
+        assertEquals(1, genericObjectPool.getNumIdle());
+        assertEquals(0, genericObjectPool.getNumActive());
+    }
+
+    @Test(timeout=60000)
+    public void testHandOffToWaiter() throws Exception {
+        final GenericObjectPoolConfig<String> config = new GenericObjectPoolConfig<>();
+        config.setHandOff(true);
+        config.setMaxTotal(1);
+        try (final GenericObjectPool<String> pool = new GenericObjectPool<>(simpleFactory, config)) {
+            assertTrue(pool.getHandOff());
+            assertFalse(pool.getFairness());
+            final String o = pool.borrowObject();
+            final WaitingTestThread thread = new WaitingTestThread(pool, 200);
+            thread.start();
+            while (pool.getNumWaiters() == 0) {
+                Thread.sleep(5);
+            }
+            pool.returnObject(o);
+            // Handed straight to the waiter rather than added to the idle objects
+            assertEquals(0, pool.getNumIdle());
+            thread.join();
+            assertNull(thread._thrown);
+            assertEquals(o, thread.objectId);
+            assertEquals(1, pool.getNumIdle());
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testBorrowLease() throws Exception {
+        final String o;
+        try (final PooledObjectLease<String> lease = genericObjectPool.borrowLease()) {
+            o = lease.getObject();
+            assertEquals("0", o);
+            assertFalse(lease.isReleased());
+            assertEquals(1, genericObjectPool.getNumActive());
+        }
+        assertEquals(0, genericObjectPool.getNumActive());
+        assertEquals(1, genericObjectPool.getNumIdle());
+        assertEquals(1, genericObjectPool.getReturnedCount());
+
+        // Closing twice is a NO-OP
+        final PooledObjectLease<String> lease = genericObjectPool.borrowLease();
+        assertEquals(o, lease.getObject());
+        lease.close();
+        lease.close();
+        assertTrue(lease.isReleased());
+        assertEquals(2, genericObjectPool.getReturnedCount());
+
+        // Returning via the pool after the lease is still rejected
+        try {
+            genericObjectPool.returnObject(o);
+            fail("Expecting IllegalStateException");
+        } catch (final IllegalStateException ex) {
+            // Expected
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testLeaseInvalidate() throws Exception {
+        final PooledObjectLease<String> lease = genericObjectPool.borrowLease();
+        lease.invalidate();
+        assertTrue(lease.isReleased());
+        assertEquals(0, genericObjectPool.getNumActive());
+        assertEquals(0, genericObjectPool.getNumIdle());
+        assertEquals(1, genericObjectPool.getDestroyedCount());
+        // Close after invalidate is a NO-OP
+        lease.close();
+        try {
+            lease.invalidate();
+            fail("Expecting IllegalStateException");
+        } catch (final IllegalStateException ex) {
+            // Expected
+        }
+        assertEquals(1, genericObjectPool.getDestroyedCount());
+    }
+
+    @Test(timeout=60000)
+    public void testBorrowReturnObjects() throws Exception {
+        genericObjectPool.addObject();
+        genericObjectPool.addObject();
+        List<String> batch = genericObjectPool.borrowObjects(3, -1);
+        assertEquals(3, batch.size());
+        assertEquals(3, new HashSet<>(batch).size());
+        assertEquals(3, genericObjectPool.getNumActive());
+        assertEquals(0, genericObjectPool.getNumIdle());
+        assertEquals(3, genericObjectPool.getBorrowedCount());
+        assertEquals(3, genericObjectPool.getCreatedCount());
+
+        genericObjectPool.returnObjects(batch);
+        assertEquals(0, genericObjectPool.getNumActive());
+        assertEquals(3, genericObjectPool.getNumIdle());
+        assertEquals(3, genericObjectPool.getReturnedCount());
+
+        assertTrue(genericObjectPool.borrowObjects(0, -1).isEmpty());
+        try {
+            genericObjectPool.borrowObjects(-1, -1);
+            fail("Expecting IllegalArgumentException");
+        } catch (final IllegalArgumentException ex) {
+            // Expected
+        }
+
+        // All or nothing
+        genericObjectPool.setMaxTotal(4);
+        genericObjectPool.setBlockWhenExhausted(false);
+        final String o = genericObjectPool.borrowObject();
+        try {
+            genericObjectPool.borrowObjects(4, 0);
+            fail("Expecting NoSuchElementException");
+        } catch (final NoSuchElementException ex) {
+            // Expected
+        }
+        assertEquals(1, genericObjectPool.getNumActive());
+        assertEquals(3, genericObjectPool.getNumIdle());
+        // The failed batch is not counted as borrowed or returned
+        assertEquals(4, genericObjectPool.getBorrowedCount());
+        assertEquals(3, genericObjectPool.getReturnedCount());
+
+        batch = genericObjectPool.borrowObjects(3, 0);
+        assertEquals(4, genericObjectPool.getNumActive());
+        assertEquals(4, genericObjectPool.getCreatedCount());
+
+        // Objects that are part of the pool are returned despite the failure
+        final List<String> returns = new ArrayList<>(batch);
+        returns.add("not from pool");
+        try {
+            genericObjectPool.returnObjects(returns);
+            fail("Expecting IllegalStateException");
+        } catch (final IllegalStateException ex) {
+            // Expected
+        }
+        assertEquals(1, genericObjectPool.getNumActive());
+        assertEquals(3, genericObjectPool.getNumIdle());
+        genericObjectPool.returnObject(o);
+    }
+
+    @Test(timeout=60000)
+    public void testMaxConcurrentCreates() throws Exception {
+        final AtomicInteger inProgress = new AtomicInteger();
+        final AtomicInteger maxInProgress = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger(2);
+        final GenericObjectPool<String> pool = new GenericObjectPool<>(
+                new BasePooledObjectFactory<String>() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public String create() throws Exception {
+                final int current = inProgress.incrementAndGet();
+                try {
+                    int max = maxInProgress.get();
+                    while (current > max &&
+                            !maxInProgress.compareAndSet(max, current)) {
+                        max = maxInProgress.get();
+                    }
+                    Thread.sleep(50);
+                    if (failures.getAndDecrement() > 0) {
+                        throw new Exception("make failed");
+                    }
+                    return String.valueOf(counter.incrementAndGet());
+                } finally {
+                    inProgress.decrementAndGet();
+                }
+            }
+
+            @Override
+            public PooledObject<String> wrap(final String value) {
+                return new DefaultPooledObject<>(value);
+            }
+        });
+        try {
+            pool.setMaxTotal(6);
+            pool.setMaxConcurrentCreates(2);
+            pool.setMaxWaitMillis(10000);
+            assertEquals(2, pool.getMaxConcurrentCreates());
+
+            final int nThreads = 6;
+            final List<String> borrowed = new ArrayList<>();
+            final Thread[] threads = new Thread[nThreads];
+            for (int i = 0; i < nThreads; i++) {
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        // The first two creations fail
+                        for (int attempt = 0; attempt < 2; attempt++) {
+                            try {
+                                final String o = pool.borrowObject();
+                                synchronized (borrowed) {
+                                    borrowed.add(o);
+                                }
+                                return;
+                            } catch (final Exception e) {
+                                // Retry
+                            }
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(nThreads, borrowed.size());
+            assertEquals(2, maxInProgress.get());
+            assertEquals(nThreads, pool.getNumActive());
+            assertEquals(nThreads, pool.getCreatedCount());
+            for (final String o : borrowed) {
+                pool.returnObject(o);
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testReplenishExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            genericObjectPool.setReplenishExecutor(executor);
+            genericObjectPool.setMaxTotal(1);
+            final String o = genericObjectPool.borrowObject();
+            final BorrowFuture<String> future = genericObjectPool.borrowObjectAsync(-1);
+            assertFalse(future.isDone());
+
+            // The replacement is made without blocking the invalidating thread
+            simpleFactory.setMakeLatency(500);
+            final long start = System.currentTimeMillis();
+            genericObjectPool.invalidateObject(o);
+            assertTrue(System.currentTimeMillis() - start < 500);
+            final String replacement = future.get();
+            assertFalse(o.equals(replacement));
+            assertEquals(1, genericObjectPool.getNumActive());
+
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(0, genericObjectPool.getReplenishQueueDepth());
+            assertTrue(genericObjectPool.getMeanReplenishLatencyMillis() > 0);
+            genericObjectPool.returnObject(replacement);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testPrewarm() throws Exception {
+        genericObjectPool.setMaxTotal(10);
+        genericObjectPool.setMaxIdle(10);
+        genericObjectPool.setPrewarmEnabled(true);
+        genericObjectPool.setPrewarmLowWatermark(3);
+        assertEquals(0, genericObjectPool.getNumIdle());
+
+        // Without a replenishment executor, objects are created when the
+        // evictor runs
+        genericObjectPool.ensureMinIdle();
+        assertEquals(3, genericObjectPool.getNumIdle());
+        assertEquals(3, genericObjectPool.getPrewarmedCount());
+        genericObjectPool.clear();
+
+        // With one, objects are created as the forecast is updated
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            genericObjectPool.setReplenishExecutor(executor);
+            genericObjectPool.setPrewarmLowWatermark(5);
+            final long end = System.currentTimeMillis() + 500;
+            while (System.currentTimeMillis() < end) {
+                final String o1 = genericObjectPool.borrowObject();
+                final String o2 = genericObjectPool.borrowObject();
+                Thread.sleep(10);
+                genericObjectPool.returnObject(o1);
+                genericObjectPool.returnObject(o2);
+            }
+            assertTrue(genericObjectPool.getForecastBorrowRate() > 0);
+            assertTrue(genericObjectPool.getForecastActiveTimeMillis() > 0);
+            assertTrue(genericObjectPool.getForecastDemand() > 0);
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertTrue(genericObjectPool.getPrewarmedCount() > 3);
+            assertTrue(genericObjectPool.getNumIdle() >= 5);
+            assertTrue(genericObjectPool.getNumIdle() <= 10);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testBorrowPriority() throws Exception {
+        final GenericObjectPoolConfig<String> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(1);
+        config.setFairness(true);
+        config.setPriorityAgingMillis(-1);
+        try (final GenericObjectPool<String> pool =
+                new GenericObjectPool<>(new SimpleFactory(), config)) {
+            final String o = pool.borrowObject();
+            final List<Integer> served = new ArrayList<>();
+            final Thread[] threads = new Thread[2];
+            final int[] priorities = new int[] { 0, 10 };
+            for (int i = 0; i < threads.length; i++) {
+                final int priority = priorities[i];
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            final String obj = pool.borrowObject(priority, -1);
+                            synchronized (served) {
+                                served.add(Integer.valueOf(priority));
+                            }
+                            pool.returnObject(obj);
+                        } catch (final Exception e) {
+                            // Detected by the assertions below
+                        }
+                    }
+                };
+                threads[i].start();
+                while (pool.getNumWaiters() < i + 1) {
+                    Thread.sleep(5);
+                }
+            }
+            pool.returnObject(o);
+            for (final Thread t : threads) {
+                t.join();
+            }
+            assertEquals(2, served.size());
+            assertEquals(10, served.get(0).intValue());
+            assertEquals(0, served.get(1).intValue());
+            assertEquals(2, pool.getMeanBorrowWaitTimeMillisByPriority().size());
+            assertTrue(pool.getP99BorrowWaitTimeMillisByPriority().containsKey(Integer.valueOf(10)));
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testMaxWaiters() throws Exception {
+        genericObjectPool.setMaxTotal(1);
+        genericObjectPool.setMaxWaiters(1);
+        final String o = genericObjectPool.borrowObject();
+        final WaitingTestThread thread = new WaitingTestThread(genericObjectPool, 0);
+        thread.start();
+        while (genericObjectPool.getNumWaiters() == 0) {
+            Thread.sleep(10);
+        }
+
+        // The second waiter is rejected without waiting or a stack trace
+        final long start = System.currentTimeMillis();
+        try {
+            genericObjectPool.borrowObject(5000);
+            fail("Expected BorrowRejectedException");
+        } catch (final BorrowRejectedException e) {
+            assertEquals(0, e.getStackTrace().length);
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        final BorrowFuture<String> future = genericObjectPool.borrowObjectAsync(5000);
+        try {
+            future.get();
+            fail("Expected ExecutionException");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof BorrowRejectedException);
+        }
+        assertEquals(2, genericObjectPool.getRejectedCount());
+
+        genericObjectPool.returnObject(o);
+        thread.join();
+        assertNull(thread._thrown);
+        assertEquals(0, genericObjectPool.getNumWaiters());
+
+        // Capacity for one waiter is available again
+        final String o2 = genericObjectPool.borrowObject();
+        final BorrowFuture<String> queued = genericObjectPool.borrowObjectAsync(-1);
+        assertFalse(queued.isDone());
+        genericObjectPool.returnObject(o2);
+        genericObjectPool.returnObject(queued.get());
+        assertEquals(2, genericObjectPool.getRejectedCount());
+    }
+
+    @Test(timeout=60000)
+    public void testMaxBorrowCount() throws Exception {
+        genericObjectPool.setMaxBorrowCount(2);
+
+        // The object is retired when it is returned after its second borrow
+        genericObjectPool.returnObject(genericObjectPool.borrowObject());
+        assertEquals(0, genericObjectPool.getRetiredCount());
+        final String o = genericObjectPool.borrowObject();
+        assertEquals("0", o);
+        genericObjectPool.returnObject(o);
+        assertEquals(1, genericObjectPool.getRetiredCount());
+        assertEquals(0, genericObjectPool.getNumIdle());
+        assertEquals("1", genericObjectPool.borrowObject());
+    }
+
+    @Test(timeout=60000)
+    public void testMaxLifetime() throws Exception {
+        genericObjectPool.setMaxLifetimeMillis(300);
+        genericObjectPool.addObject();
+        genericObjectPool.addObject();
+        final String active = genericObjectPool.borrowObject();
+        Thread.sleep(400);
+
+        // Idle objects are replaced by the evictor
+        genericObjectPool.evict();
+        assertEquals(1, genericObjectPool.getRetiredCount());
+        assertEquals(1, genericObjectPool.getNumIdle());
+        assertEquals(3, simpleFactory.getMakeCounter());
+
+        // Active objects are retired when they are returned
+        genericObjectPool.returnObject(active);
+        assertEquals(2, genericObjectPool.getRetiredCount());
+        assertEquals(1, genericObjectPool.getNumIdle());
+        assertEquals(0, genericObjectPool.getNumActive());
+    }
+
+    @Test(timeout=60000)
+    public void testMemoryPressure() throws Exception {
+        final int registered = MemoryPressureMonitor.getNumPools();
+        genericObjectPool.setMemoryPressureThreshold(0.8);
+        genericObjectPool.setMemoryPressureMaxIdle(2);
+        assertEquals(registered + 1, MemoryPressureMonitor.getNumPools());
+        for (int i = 0; i < 6; i++) {
+            genericObjectPool.addObject();
+        }
+
+        // Usage below the threshold is ignored
+        genericObjectPool.memoryPressure(new MemoryUsage(0, 70, 100, 100));
+        assertEquals(6, genericObjectPool.getNumIdle());
+
+        // The oldest objects are destroyed
+        genericObjectPool.memoryPressure(new MemoryUsage(0, 90, 100, 100));
+        assertEquals(4, genericObjectPool.getMemoryPressureDestroyedCount());
+        assertEquals(2, genericObjectPool.getNumIdle());
+        assertEquals("5", genericObjectPool.borrowObject());
+        assertEquals("4", genericObjectPool.borrowObject());
+
+        genericObjectPool.close();
+        assertEquals(registered, MemoryPressureMonitor.getNumPools());
+    }
+
+    @Test(timeout=60000)
+    public void testMemoryPressureKeepsOtherThresholds() throws Exception {
+        if (MemoryPressureMonitor.getNumPools() > 0) {
+            return;
+        }
+        MemoryPoolMXBean memoryPool = null;
+        for (final MemoryPoolMXBean candidate : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (candidate.getType() == MemoryType.HEAP &&
+                    candidate.isCollectionUsageThresholdSupported() &&
+                    candidate.getUsage().getMax() > 0) {
+                memoryPool = candidate;
+                break;
+            }
+        }
+        if (memoryPool == null) {
+            return;
+        }
+        final long original = memoryPool.getCollectionUsageThreshold();
+        final long max = memoryPool.getUsage().getMax();
+        try {
+            memoryPool.setCollectionUsageThreshold(max);
+            genericObjectPool.setMemoryPressureThreshold(0.5);
+            assertEquals(max, memoryPool.getCollectionUsageThreshold());
+            genericObjectPool.setMemoryPressureThreshold(0);
+            assertEquals(max, memoryPool.getCollectionUsageThreshold());
+
+            // Unset thresholds are managed, and cleared once no pool needs them
+            memoryPool.setCollectionUsageThreshold(0);
+            genericObjectPool.setMemoryPressureThreshold(0.5);
+            assertEquals(max / 2, memoryPool.getCollectionUsageThreshold());
+            genericObjectPool.setMemoryPressureThreshold(0);
+            assertEquals(0, memoryPool.getCollectionUsageThreshold());
+        } finally {
+            memoryPool.setCollectionUsageThreshold(original);
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testMemoryPressureShrink() throws Exception {
+        final ShrinkableFactory factory = new ShrinkableFactory();
+        try (final GenericObjectPool<String> pool = new GenericObjectPool<>(factory)) {
+            pool.setMemoryPressureThreshold(0.8);
+            pool.setObjectSizer(factory);
+            for (int i = 0; i < 4; i++) {
+                pool.addObject();
+            }
+            assertEquals(400, pool.getIdleBytes());
+            // Objects that can't be shrunk are destroyed
+            pool.memoryPressure(new MemoryUsage(0, 90, 100, 100));
+            assertEquals(2, pool.getMemoryPressureShrunkCount());
+            assertEquals(2, pool.getMemoryPressureDestroyedCount());
+            assertEquals(2, pool.getNumIdle());
+            // Shrunk objects are measured again
+            assertEquals(20, pool.getIdleBytes());
+            assertEquals(20, pool.getTotalBytes());
+            // and stay at the oldest end of the idle objects
+            pool.addObject();
+            assertEquals("4", pool.borrowObject());
+            final String o1 = pool.borrowObject();
+            final String o2 = pool.borrowObject();
+            assertEquals(new HashSet<>(Arrays.asList("0", "2")), new HashSet<>(Arrays.asList(o1, o2)));
+            assertEquals(0, pool.getIdleBytes());
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testMemoryPressureTrimsThreadCache() throws Exception {
+        genericObjectPool.setThreadCache(true);
+        genericObjectPool.setMemoryPressureThreshold(0.8);
+        genericObjectPool.setMemoryPressureMaxIdle(0);
+        genericObjectPool.returnObject(genericObjectPool.borrowObject());
+        assertEquals(1, genericObjectPool.getNumIdle());
+        genericObjectPool.memoryPressure(new MemoryUsage(0, 90, 100, 100));
+        assertEquals(1, genericObjectPool.getMemoryPressureDestroyedCount());
+        assertEquals(0, genericObjectPool.getNumIdle());
+    }
+
+    @Test(timeout=60000)
+    public void testRetireIdleObjectsBounded() throws Exception {
+        genericObjectPool.setMaxTotal(3);
+        genericObjectPool.setNumTestsPerEvictionRun(2);
+        genericObjectPool.setMaxLifetimeMillis(300);
+        for (int i = 0; i < 3; i++) {
+            genericObjectPool.addObject();
+        }
+        Thread.sleep(400);
+
+        // Objects are only retired while there is capacity to create their
+        // replacements first
+        genericObjectPool.evict();
+        assertEquals(0, genericObjectPool.getRetiredCount());
+        assertEquals(0, genericObjectPool.getDestroyedCount());
+        assertEquals(3, genericObjectPool.getNumIdle());
+
+        // At most numTestsPerEvictionRun objects are retired per run
+        genericObjectPool.setMaxTotal(4);
+        genericObjectPool.evict();
+        assertEquals(2, genericObjectPool.getRetiredCount());
+        assertEquals(3, genericObjectPool.getNumIdle());
+        genericObjectPool.evict();
+        assertEquals(3, genericObjectPool.getRetiredCount());
+        assertEquals(3, genericObjectPool.getNumIdle());
+
+        // With an executor the replacements are created asynchronously
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            genericObjectPool.setReplenishExecutor(executor);
+            genericObjectPool.setMaxTotal(10);
+            Thread.sleep(400);
+            simpleFactory.setMakeLatency(200);
+            final long start = System.currentTimeMillis();
+            genericObjectPool.evict();
+            assertTrue(System.currentTimeMillis() - start < 200);
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(5, genericObjectPool.getRetiredCount());
+            assertEquals(3, genericObjectPool.getNumIdle());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testRetirementJitter() throws Exception {
+        // Leave capacity for the replacements
+        genericObjectPool.setMaxTotal(40);
+        genericObjectPool.setNumTestsPerEvictionRun(20);
+        genericObjectPool.setMaxLifetimeMillis(2000);
+        genericObjectPool.setRetirementJitter(0.9);
+        for (int i = 0; i < 20; i++) {
+            genericObjectPool.addObject();
+        }
+        // Lifetimes are spread between 200ms and 2000ms
+        Thread.sleep(1100);
+        genericObjectPool.evict();
+        final long retired = genericObjectPool.getRetiredCount();
+        assertTrue(retired > 0);
+        assertTrue(retired < 20);
+        assertEquals(20, genericObjectPool.getNumIdle());
+    }
+
+    @Test(timeout=60000)
+    public void testValidationIdleThreshold() throws Exception {
+        genericObjectPool.setTestOnBorrow(true);
+        genericObjectPool.setValidationIdleThresholdMillis(200);
+
+        // Objects created by the borrow are always validated
+        String o = genericObjectPool.borrowObject();
+        assertEquals(1, simpleFactory.validateCounter);
+
+        // Recently returned objects are not
+        genericObjectPool.returnObject(o);
+        o = genericObjectPool.borrowObject();
+        assertEquals(1, simpleFactory.validateCounter);
+        assertEquals(1, genericObjectPool.getSkippedValidationCount());
+
+        // Objects idle for longer than the threshold are
+        genericObjectPool.returnObject(o);
+        Thread.sleep(300);
+        o = genericObjectPool.borrowObject();
+        assertEquals(2, simpleFactory.validateCounter);
+        assertEquals(1, genericObjectPool.getSkippedValidationCount());
+        genericObjectPool.returnObject(o);
+
+        // A threshold of zero validates every borrow
+        genericObjectPool.setValidationIdleThresholdMillis(0);
+        genericObjectPool.returnObject(genericObjectPool.borrowObject());
+        assertEquals(3, simpleFactory.validateCounter);
+        assertEquals(1, genericObjectPool.getSkippedValidationCount());
+    }
+
+    /**
+     * Validation retries draw on the borrow's wait budget.
+     */
+    @Test(timeout=60000)
+    public void testBorrowDeadlineIncludesRetries() throws Exception {
+        genericObjectPool.setMaxTotal(10);
+        genericObjectPool.setMaxIdle(10);
+        genericObjectPool.setTestOnBorrow(true);
+        for (int i = 0; i < 5; i++) {
+            genericObjectPool.addObject();
+        }
+        simpleFactory.setValid(false);
+        simpleFactory.setValidateLatency(50);
+
+        // Without a budget, every idle object and then a new one would be
+        // validated, taking at least 300ms
+        final long start = System.currentTimeMillis();
+        try {
+            genericObjectPool.borrowObject(100);
+            fail("Expected NoSuchElementException");
+        } catch (final NoSuchElementException e) {
+            assertEquals("Timeout waiting for idle object", e.getMessage());
+        }
+        assertTrue(System.currentTimeMillis() - start < 250);
+        assertTrue(genericObjectPool.getNumIdle() > 0);
+        assertEquals(0, genericObjectPool.getNumActive());
+    }
+
+    @Test(timeout=60000)
+    public void testAutoTune() throws Exception {
+        assertFalse(genericObjectPool.isAutoTuneEnabled());
+        assertTrue(genericObjectPool.getAutoTuneAuditLog().isEmpty());
+        final AutoTuneConfig config = new AutoTuneConfig();
+        config.setTargetBorrowWaitMillis(1000);
+        config.setMinMaxTotal(2);
+        config.setMaxMaxTotal(4);
+        config.setAuditLogSize(3);
+        genericObjectPool.setAutoTuneConfig(config);
+        assertTrue(genericObjectPool.isAutoTuneEnabled());
+        genericObjectPool.setMaxTotal(2);
+        genericObjectPool.setMaxIdle(2);
+
+        // Exhausted with a waiting borrower grows the pool and serves the
+        // waiter from the new capacity
+        final String o1 = genericObjectPool.borrowObject();
+        final String o2 = genericObjectPool.borrowObject();
+        final WaitingTestThread thread = new WaitingTestThread(genericObjectPool, 0);
+        thread.start();
+        while (genericObjectPool.getNumWaiters() == 0) {
+            Thread.sleep(10);
+        }
+        genericObjectPool.autoTune();
+        thread.join();
+        assertNull(thread._thrown);
+        assertNotNull(thread.objectId);
+        assertEquals(3, genericObjectPool.getMaxTotal());
+        assertEquals(3, genericObjectPool.getMaxIdle());
+        assertEquals(2, genericObjectPool.getAutoTuneAuditLog().size());
+        assertTrue(genericObjectPool.getAutoTuneAuditLog().get(0).contains("maxTotal 2 -> 3"));
+        assertTrue(genericObjectPool.getP99BorrowWaitTimeMillis() >=
+                genericObjectPool.getMeanBorrowWaitTimeMillis());
+
+        // Under utilized shrinks the pool, but not below the lower bound
+        genericObjectPool.returnObject(o1);
+        genericObjectPool.returnObject(o2);
+        genericObjectPool.autoTune();
+        assertEquals(2, genericObjectPool.getMaxTotal());
+        assertEquals(2, genericObjectPool.getMaxIdle());
+        genericObjectPool.autoTune();
+        assertEquals(2, genericObjectPool.getMaxTotal());
+
+        // Only the most recent decisions are retained
+        final List<String> auditLog = genericObjectPool.getAutoTuneAuditLog();
+        assertEquals(3, auditLog.size());
+        assertTrue(auditLog.get(2).contains("maxIdle 3 -> 2"));
+
+        genericObjectPool.setAutoTuneConfig(null);
+        assertFalse(genericObjectPool.isAutoTuneEnabled());
+        assertTrue(genericObjectPool.getAutoTuneAuditLog().isEmpty());
+    }
+
+    @Test(timeout=60000)
+    public void testBorrowObjectAsync() throws Exception {
+        genericObjectPool.setMaxTotal(1);
+        BorrowFuture<String> future = genericObjectPool.borrowObjectAsync();
+        assertTrue(future.isDone());
+        final String o = future.get();
+        assertEquals(1, genericObjectPool.getNumActive());
+
+        // Queued without a thread and completed by the return
+        future = genericObjectPool.borrowObjectAsync(-1);
+        assertFalse(future.isDone());
+        assertEquals(1, genericObjectPool.getNumWaiters());
+        final AtomicInteger listenerCalls = new AtomicInteger();
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                listenerCalls.incrementAndGet();
+            }
+        });
+        genericObjectPool.returnObject(o);
+        assertTrue(future.isDone());
+        assertEquals(1, listenerCalls.get());
+        assertEquals(o, future.get());
+        assertEquals(0, genericObjectPool.getNumWaiters());
+        assertEquals(1, genericObjectPool.getNumActive());
+        assertEquals(2, genericObjectPool.getBorrowedCount());
+
+        // Times out
+        future = genericObjectPool.borrowObjectAsync(50);
+        try {
+            future.get();
+            fail("Expecting ExecutionException");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof NoSuchElementException);
+        }
+        assertEquals(0, genericObjectPool.getNumWaiters());
+
+        // Cancelled
+        future = genericObjectPool.borrowObjectAsync(-1);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertEquals(0, genericObjectPool.getNumWaiters());
+        genericObjectPool.returnObject(o);
+        assertEquals(1, genericObjectPool.getNumIdle());
+
+        // Fails immediately when exhausted and not blocking
+        genericObjectPool.borrowObject();
+        genericObjectPool.setBlockWhenExhausted(false);
+        future = genericObjectPool.borrowObjectAsync(-1);
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail("Expecting ExecutionException");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof NoSuchElementException);
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testBorrowObjectAsyncClose() throws Exception {
+        genericObjectPool.setMaxTotal(1);
+        genericObjectPool.borrowObject();
+        final BorrowFuture<String> future = genericObjectPool.borrowObjectAsync(-1);
+        assertFalse(future.isDone());
+        genericObjectPool.close();
+        try {
+            future.get();
+            fail("Expecting ExecutionException");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        try {
+            genericObjectPool.borrowObjectAsync().get();
+            fail("Expecting ExecutionException");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
     protected GenericObjectPool<String> genericObjectPool = null;
 
     private SimpleFactory simpleFactory = null;
@@ -1784,6 +2815,45 @@ public class TestGenericObjectPool extends TestBaseObjectPool {
         assertEquals("timeBetweenEvictionRunsMillis",expected.getTimeBetweenEvictionRunsMillis(),actual.getTimeBetweenEvictionRunsMillis());
     }
 
+    /**
+     * Sizer that gives every object the same size.
+     */
+    private static class FixedSizer implements PooledObjectSizer<String> {
+        private final long size;
+
+        FixedSizer(final long size) {
+            this.size = size;
+        }
+
+        @Override
+        public long sizeOf(final PooledObject<String> p) {
+            return size;
+        }
+    }
+
+    /**
+     * Factory that can shrink the objects with even numbers. It also sizes
+     * objects at 100 bytes, or 10 bytes once shrunk.
+     */
+    private static class ShrinkableFactory extends SimpleFactory
+            implements ShrinkablePooledObjectFactory<String>, PooledObjectSizer<String> {
+        private final Set<String> shrunk = Collections.synchronizedSet(new HashSet<String>());
+
+        @Override
+        public boolean shrinkObject(final PooledObject<String> p) {
+            if (Integer.parseInt(p.getObject()) % 2 == 0) {
+                shrunk.add(p.getObject());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long sizeOf(final PooledObject<String> p) {
+            return shrunk.contains(p.getObject()) ? 10 : 100;
+        }
+    }
+
     public static class SimpleFactory implements PooledObjectFactory<String> {
         public SimpleFactory() {
             this(true);
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class TestSampledCallStack {
+
+    private static String print(final CallStack stack) {
+        final StringWriter writer = new StringWriter();
+        stack.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    @Test
+    public void testNewCallStackSampleRate() {
+        Assert.assertSame(NoOpCallStack.INSTANCE, CallStackUtils.newCallStack("Test", false, true, 0));
+        Assert.assertTrue(CallStackUtils.newCallStack("Test", false, true, 1) instanceof ThrowableCallStack);
+        final CallStack stack = CallStackUtils.newCallStack("Test", false, true, 0.5);
+        Assert.assertTrue(stack instanceof SampledCallStack);
+        Assert.assertEquals(0.5, ((SampledCallStack) stack).getSampleRate(), 0);
+    }
+
+    @Test
+    public void testNotSampledClearsStackTrace() {
+        final CallStack delegate = new ThrowableCallStack("Test", false);
+        delegate.fillInStackTrace();
+        Assert.assertTrue(print(delegate).contains(getClass().getName()));
+        final CallStack stack = new SampledCallStack(delegate, 0);
+        stack.fillInStackTrace();
+        Assert.assertEquals("", print(stack));
+    }
+
+    @Test
+    public void testSampleRate() {
+        final CallStack stack = new SampledCallStack(new ThrowableCallStack("Test", false), 0.5);
+        int sampled = 0;
+        for (int i = 0; i < 1000; i++) {
+            stack.fillInStackTrace();
+            if (!print(stack).isEmpty()) {
+                sampled++;
+            }
+        }
+        Assert.assertTrue(sampled > 300 && sampled < 700);
+    }
+}
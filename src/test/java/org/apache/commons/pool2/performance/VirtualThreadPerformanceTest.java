@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.pool2.performance;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * Multi-thread performance test with many borrowers sharing a small pool.
+ * <p>
+ * When run on a Java runtime that supports virtual threads the borrowers
+ * are virtual threads, so any monitor held while a borrower blocks pins a
+ * carrier thread and shows up as a collapse in throughput. On older
+ * runtimes the borrowers are platform threads. The library targets Java 7
+ * so virtual threads are created via reflection.
+ */
+public class VirtualThreadPerformanceTest {
+
+    private static class IntegerFactory extends BasePooledObjectFactory<Integer> {
+        private final AtomicLong counter = new AtomicLong();
+
+        @Override
+        public Integer create() throws Exception {
+            return Integer.valueOf((int) counter.incrementAndGet());
+        }
+
+        @Override
+        public PooledObject<Integer> wrap(final Integer value) {
+            return new DefaultPooledObject<>(value);
+        }
+    }
+
+    private GenericObjectPool<Integer> pool;
+
+    /**
+     * Creates a factory for virtual threads if the runtime supports them.
+     *
+     * @return the factory or {@code null} if virtual threads are not
+     *         supported
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory").invoke(builder);
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+
+    private void run(final ThreadFactory threadFactory, final int nrIterations,
+            final int nrThreads, final int maxTotal, final long holdMillis)
+            throws InterruptedException {
+        pool = new GenericObjectPool<>(new IntegerFactory());
+        pool.setMaxTotal(maxTotal);
+        pool.setMaxIdle(maxTotal);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(nrThreads);
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong totalBorrowNanos = new AtomicLong();
+
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int i = 0; i < nrIterations; i++) {
+                        final long bbegin = System.nanoTime();
+                        final Integer o = pool.borrowObject();
+                        totalBorrowNanos.addAndGet(System.nanoTime() - bbegin);
+                        if (holdMillis > 0) {
+                            Thread.sleep(holdMillis);
+                        }
+                        pool.returnObject(o);
+                    }
+                } catch (final Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int i = 0; i < nrThreads; i++) {
+            threadFactory.newThread(task).start();
+        }
+
+        final long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        final long elapsedMillis = (System.nanoTime() - begin) / 1000000;
+        final long nrSamples = (long) nrIterations * nrThreads;
+
+        System.out.println("-----------------------------------------");
+        System.out.println("nrIterations: " + nrIterations);
+        System.out.println("nrThreads: " + nrThreads);
+        System.out.println("maxTotal: " + maxTotal);
+        System.out.println("holdMillis: " + holdMillis);
+        System.out.println("failures: " + failures.get());
+        System.out.println("elapsed ms: " + elapsedMillis);
+        System.out.println("borrows/s: " + nrSamples * 1000 / Math.max(elapsedMillis, 1));
+        System.out.println("avg BorrowTime us: " +
+                totalBorrowNanos.get() / nrSamples / 1000);
+
+        pool.close();
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final VirtualThreadPerformanceTest test = new VirtualThreadPerformanceTest();
+        ThreadFactory threadFactory = virtualThreadFactory();
+        if (threadFactory == null) {
+            System.out.println("Virtual threads not supported. Using platform threads.");
+            threadFactory = new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(r);
+                }
+            };
+        } else {
+            System.out.println("Using virtual threads");
+        }
+
+        System.out.println("Increase borrowers");
+        test.run(threadFactory, 100,   100, 10, 1);
+        test.run(threadFactory,  10,  1000, 10, 1);
+        test.run(threadFactory,   2, 10000, 10, 1);
+
+        System.out.println("Increase pool size");
+        test.run(threadFactory,  10, 10000,  50, 1);
+        test.run(threadFactory,  10, 10000, 200, 1);
+
+        System.out.println("No hold time");
+        test.run(threadFactory, 1000, 1000, 10, 0);
+    }
+}